@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection between two nodes. The requests of many threads are multiplexed over it: they
+ * are written as soon as they are sent, without waiting for the previous responses, and the
+ * responses are matched to the pending calls by request id. Only the selector thread reads and
+ * writes the socket.
+ *
+ * @version $Rev$ $Date$
+ */
+class Connection implements FrameChannel, Frame.Handler {
+    private static final int MAX_GATHERED_WRITES = 16;
+
+    private final NIOTransport transport;
+    private final SocketChannel channel;
+    private final NIOTransport.Server server;
+    private SelectionKey key;
+
+    private ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, PendingCall> calls = new ConcurrentHashMap<Long, PendingCall>();
+    private volatile boolean closed;
+
+    /**
+     * @param transport the transport
+     * @param channel the socket
+     * @param server the server that accepted the connection, or null for a client connection
+     */
+    Connection(NIOTransport transport, SocketChannel channel, NIOTransport.Server server) {
+        this.transport = transport;
+        this.channel = channel;
+        this.server = server;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    int getPendingCalls() {
+        return calls.size();
+    }
+
+    /**
+     * Send a request
+     *
+     * @return the call to wait on for the response
+     * @throws IOException if the connection is closed
+     * @throws ServiceRuntimeException if the request is larger than the maximum frame size
+     */
+    PendingCall call(String path, OperationCodec operation, Object[] args) throws IOException {
+        long id = ids.incrementAndGet();
+        // Build the frame first: a request that is too large fails before it is pending
+        ByteBuffer frame = Frame.request(id, path, operation, args, getMaxFrameSize());
+        PendingCall call = new PendingCall(id);
+        calls.put(id, call);
+        try {
+            send(frame);
+        } catch (IOException e) {
+            calls.remove(id);
+            throw e;
+        }
+        return call;
+    }
+
+    void cancel(PendingCall call) {
+        calls.remove(call.getId());
+    }
+
+    public int getMaxFrameSize() {
+        return transport.getMaxFrameSize();
+    }
+
+    public void send(ByteBuffer frame) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        writeQueue.add(frame);
+        if (writeScheduled.compareAndSet(false, true)) {
+            transport.scheduleWrite(this);
+        }
+    }
+
+    /**
+     * Called on the selector thread when the socket is readable
+     */
+    void read() throws IOException {
+        int n = channel.read(readBuffer);
+        if (n == -1) {
+            close(new IOException("Connection closed by the peer"));
+            return;
+        }
+        readBuffer = Frame.parse(readBuffer, this, transport.getMaxFrameSize());
+    }
+
+    public void received(byte type, long id, byte[] body) throws IOException {
+        if (type == Frame.REQUEST) {
+            if (server == null) {
+                throw new IOException("Unexpected request on a client connection");
+            }
+            transport.dispatch(this, server, id, body);
+        } else {
+            PendingCall call = calls.remove(id);
+            if (call != null) {
+                call.complete(type == Frame.FAULT, body);
+            }
+        }
+    }
+
+    /**
+     * Called on the selector thread when the socket is writable or a write has been scheduled.
+     * Several queued frames are written with one gathering write.
+     */
+    void write() throws IOException {
+        if (closed) {
+            return;
+        }
+        List<ByteBuffer> batch = new ArrayList<ByteBuffer>(MAX_GATHERED_WRITES);
+        while (true) {
+            batch.clear();
+            for (ByteBuffer frame : writeQueue) {
+                batch.add(frame);
+                if (batch.size() == MAX_GATHERED_WRITES) {
+                    break;
+                }
+            }
+            if (batch.isEmpty()) {
+                key.interestOps(SelectionKey.OP_READ);
+                writeScheduled.set(false);
+                // A frame may have been queued after the queue was found empty
+                if (writeQueue.isEmpty() || !writeScheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            channel.write(batch.toArray(new ByteBuffer[batch.size()]));
+            for (ByteBuffer frame : batch) {
+                if (frame.hasRemaining()) {
+                    // The socket buffer is full, wait until it is writable
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll();
+            }
+        }
+    }
+
+    /**
+     * Close the connection and fail the pending calls
+     */
+    public void close(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        for (PendingCall call : calls.values()) {
+            call.fail(cause);
+        }
+        calls.clear();
+        writeQueue.clear();
+    }
+
+}
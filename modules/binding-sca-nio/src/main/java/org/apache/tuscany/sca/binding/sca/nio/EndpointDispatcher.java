@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.oasisopen.sca.ServiceRuntimeException;
+import org.oasisopen.sca.ServiceUnavailableException;
+
+/**
+ * The services exposed by a node on a transport. It invokes the requests received on the
+ * connections of the node and sends the responses back.
+ *
+ * @version $Rev$ $Date$
+ */
+class EndpointDispatcher {
+    private final String name;
+    private final Map<String, NIOEndpoint> endpoints = new ConcurrentHashMap<String, NIOEndpoint>();
+
+    /**
+     * @param name the name of the node, for the error messages
+     */
+    EndpointDispatcher(String name) {
+        this.name = name;
+    }
+
+    void addEndpoint(String path, NIOEndpoint endpoint) {
+        endpoints.put(path, endpoint);
+    }
+
+    void removeEndpoint(String path) {
+        endpoints.remove(path);
+    }
+
+    boolean isEmpty() {
+        return endpoints.isEmpty();
+    }
+
+    /**
+     * Invoke a request on a worker thread and send the response back
+     *
+     * @param workers the executor of the requests
+     * @param channel the connection the request was received on
+     * @param id the id of the request
+     * @param body the body of the request frame
+     */
+    void dispatch(Executor workers, final FrameChannel channel, final long id, final byte[] body) {
+        try {
+            workers.execute(new Runnable() {
+                public void run() {
+                    invoke(channel, id, body);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sendError(channel, id, new ServiceUnavailableException("Too many requests on " + name));
+        }
+    }
+
+    private void invoke(FrameChannel channel, long id, byte[] body) {
+        OperationCodec operation = null;
+        byte type = Frame.RESPONSE;
+        byte[] result;
+        try {
+            DataInputStream in = Frame.body(body);
+            String path = in.readUTF();
+            String operationName = in.readUTF();
+            NIOEndpoint endpoint = endpoints.get(path);
+            if (endpoint == null) {
+                throw new ServiceUnavailableException("No service at " + path + " on " + name);
+            }
+            operation = endpoint.getOperationCodec(operationName);
+            if (operation == null) {
+                throw new ServiceRuntimeException("Operation " + operationName + " not found at " + path + " on " + name);
+            }
+            Object[] args = operation.readArguments(in, endpoint.getClassLoader());
+            try {
+                result = operation.encodeResult(endpoint.invoke(operationName, args));
+            } catch (InvocationTargetException e) {
+                type = Frame.FAULT;
+                result = operation.encodeFault(e.getCause());
+            }
+        } catch (Throwable e) {
+            sendError(channel, id, e);
+            return;
+        }
+        ByteBuffer frame;
+        try {
+            frame = Frame.response(type, id, result, channel.getMaxFrameSize());
+        } catch (Throwable e) {
+            // Too large to send: fail this call only, the connection is shared
+            sendError(channel, id, e);
+            return;
+        }
+        try {
+            channel.send(frame);
+        } catch (IOException e) {
+            channel.close(e);
+        }
+    }
+
+    private void sendError(FrameChannel channel, long id, Throwable error) {
+        try {
+            channel.send(Frame.response(Frame.FAULT, id, OperationCodec.encodeError(error), channel.getMaxFrameSize()));
+        } catch (IOException e) {
+            channel.close(e);
+        }
+    }
+
+}
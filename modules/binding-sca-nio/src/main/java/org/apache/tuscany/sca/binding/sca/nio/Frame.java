@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.oasisopen.sca.ServiceRuntimeException;
+
+/**
+ * The framing of the messages exchanged over a connection. Every frame is
+ * <pre>
+ *   int  length of the rest of the frame
+ *   byte type
+ *   long request id
+ *   ...  body
+ * </pre>
+ * The body of a request is the path of the service and the name of the operation, written
+ * with DataOutput.writeUTF(), followed by the arguments, each one preceded by its length. The
+ * body of a response or of a fault is the result or the exception. The values are encoded by
+ * the {@link OperationCodec} of the operation.
+ * <p>
+ * A frame longer than the limit of the receiving transport closes the connection, so that a
+ * peer can't make a node allocate large buffers. The sender checks the limit of its own
+ * transport when it builds a frame, so that a request or a response that is too large fails
+ * alone instead of closing a connection shared by other calls.
+ *
+ * @version $Rev$ $Date$
+ */
+final class Frame {
+    static final byte REQUEST = 1;
+    static final byte RESPONSE = 2;
+    static final byte FAULT = 3;
+
+    // length, type and id
+    static final int HEADER_SIZE = 4 + 1 + 8;
+
+    private Frame() {
+    }
+
+    /**
+     * Build a request frame
+     *
+     * @throws ServiceRuntimeException if the frame is larger than maxFrameSize
+     */
+    static ByteBuffer request(long id, String path, OperationCodec operation, Object[] args, int maxFrameSize)
+        throws IOException {
+        FrameOutputStream bos = new FrameOutputStream(REQUEST, id);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeUTF(path);
+        out.writeUTF(operation.getName());
+        operation.writeArguments(out, args);
+        out.flush();
+        return bos.toFrame(maxFrameSize, "The request of " + operation.getName());
+    }
+
+    /**
+     * Build a response or a fault frame
+     *
+     * @throws ServiceRuntimeException if the frame is larger than maxFrameSize
+     */
+    static ByteBuffer response(byte type, long id, byte[] body, int maxFrameSize) throws IOException {
+        FrameOutputStream bos = new FrameOutputStream(type, id);
+        bos.write(body);
+        return bos.toFrame(maxFrameSize, type == FAULT ? "The fault" : "The response");
+    }
+
+    /**
+     * Parse the complete frames read into a buffer
+     *
+     * @param buffer the buffer the data has been read into, ready for a put
+     * @param handler the handler of the frames
+     * @param maxFrameSize the largest frame accepted
+     * @return the buffer to read the rest of the data into, ready for a put: the same buffer
+     *         compacted or a larger one if the next frame doesn't fit
+     * @throws IOException if a frame is invalid
+     */
+    static ByteBuffer parse(ByteBuffer buffer, Handler handler, int maxFrameSize) throws IOException {
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length < HEADER_SIZE - 4 || length > maxFrameSize - 4) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            if (buffer.remaining() < 4 + length) {
+                if (buffer.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(buffer);
+                    return larger;
+                }
+                break;
+            }
+            buffer.getInt();
+            byte type = buffer.get();
+            long id = buffer.getLong();
+            byte[] body = new byte[length - (HEADER_SIZE - 4)];
+            buffer.get(body);
+            handler.received(type, id, body);
+        }
+        buffer.compact();
+        return buffer;
+    }
+
+    static DataInputStream body(byte[] body) {
+        return new DataInputStream(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Receives the frames read from a connection
+     */
+    interface Handler {
+        void received(byte type, long id, byte[] body) throws IOException;
+    }
+
+    /**
+     * Collects the body after a reserved header and fills in the header at the end, so the
+     * frame is built with a single copy
+     */
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+        private final byte type;
+        private final long id;
+
+        FrameOutputStream(byte type, long id) {
+            super(256);
+            this.type = type;
+            this.id = id;
+            count = HEADER_SIZE;
+        }
+
+        ByteBuffer toFrame(int maxFrameSize, String description) {
+            if (count > maxFrameSize) {
+                throw new ServiceRuntimeException(description + " is " + count
+                    + " bytes, larger than the maximum frame size of " + maxFrameSize + " bytes");
+            }
+            ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+            frame.putInt(count - 4);
+            frame.put(type);
+            frame.putLong(id);
+            frame.rewind();
+            return frame;
+        }
+    }
+
+}
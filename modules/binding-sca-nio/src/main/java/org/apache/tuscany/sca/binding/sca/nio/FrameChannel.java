@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A connection that frames can be sent on
+ *
+ * @version $Rev$ $Date$
+ */
+interface FrameChannel {
+
+    /**
+     * Send a frame, built by {@link Frame}
+     *
+     * @throws IOException if the connection is closed
+     */
+    void send(ByteBuffer frame) throws IOException;
+
+    /**
+     * @return the largest frame that can be sent
+     */
+    int getMaxFrameSize();
+
+    /**
+     * Close the connection and fail its pending calls
+     */
+    void close(Throwable cause);
+
+}
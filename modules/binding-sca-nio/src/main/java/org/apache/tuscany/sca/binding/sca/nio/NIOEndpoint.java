@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * A service exposed through a transport of the distributed SCA binding
+ *
+ * @version $Rev$ $Date$
+ */
+public interface NIOEndpoint {
+
+    /**
+     * @return the class loader used to load the subtypes named in the arguments of the requests
+     */
+    ClassLoader getClassLoader();
+
+    /**
+     * @param operationName the name of an operation
+     * @return the codec of the operation, or null if the service has no such operation
+     */
+    OperationCodec getOperationCodec(String operationName);
+
+    /**
+     * Invoke an operation of the service
+     *
+     * @param operationName the name of the operation
+     * @param args the arguments
+     * @return the result
+     * @throws InvocationTargetException if the operation throws an exception
+     */
+    Object invoke(String operationName, Object[] args) throws InvocationTargetException;
+
+}
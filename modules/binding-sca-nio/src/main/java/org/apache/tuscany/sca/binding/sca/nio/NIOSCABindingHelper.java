@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.net.URI;
+import java.util.List;
+
+import org.apache.tuscany.sca.binding.sca.DistributedSCABinding;
+import org.apache.tuscany.sca.databinding.binary.BinaryDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Interface;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.oasisopen.sca.ServiceRuntimeException;
+
+/**
+ * Helper methods shared by the providers of the distributed SCA binding over NIO
+ *
+ * @version $Rev$ $Date$
+ */
+final class NIOSCABindingHelper {
+
+    private NIOSCABindingHelper() {
+    }
+
+    /**
+     * Get the absolute URI of the service of a distributed SCA binding, for example
+     * tuscany://localhost:8765/Component/Service or shm://node1/Component/Service
+     */
+    static URI getURI(DistributedSCABinding binding) {
+        String uri = binding.getSCABinding().getURI();
+        if (uri == null || !URI.create(uri).isAbsolute() || URI.create(uri).getAuthority() == null) {
+            throw new ServiceRuntimeException("The SCA binding URI must be an absolute URI with an authority: " + uri);
+        }
+        return URI.create(uri);
+    }
+
+    /**
+     * Create the interface contract of the binding. The arguments and the results of the
+     * operations of a remotable interface that use a Java databinding use the binary databinding
+     * instead, so the databinding interceptors of the wires encode them before they reach the
+     * transport and decode them after. The other databindings and the faults are left as they
+     * are.
+     *
+     * @param contract the interface contract of the reference or of the service
+     * @return the interface contract of the binding
+     */
+    static InterfaceContract getBindingInterfaceContract(InterfaceContract contract) {
+        Interface contractInterface = contract.getInterface();
+        if (contractInterface == null || !contractInterface.isRemotable()) {
+            return contract;
+        }
+        InterfaceContract bindingContract;
+        try {
+            bindingContract = (InterfaceContract)contract.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new ServiceRuntimeException(e);
+        }
+        for (Operation operation : bindingContract.getInterface().getOperations()) {
+            DataType<List<DataType>> inputType = operation.getInputType();
+            if (inputType != null) {
+                for (DataType<?> dataType : inputType.getLogical()) {
+                    setBinaryDataBinding(dataType);
+                }
+            }
+            if (operation.getOutputType() != null) {
+                setBinaryDataBinding(operation.getOutputType());
+            }
+        }
+        return bindingContract;
+    }
+
+    private static void setBinaryDataBinding(DataType<?> dataType) {
+        // Only the Java databindings have a transformation path to the binary databinding. The
+        // arrays are passed with their own databinding, their elements may not be encodable.
+        // The other databindings are left as they are and their values are encoded by the
+        // operation codec.
+        String dataBinding = dataType.getDataBinding();
+        if (dataBinding != null && dataBinding.startsWith("java:") && !"java:array".equals(dataBinding)
+            && dataType.getPhysical() != void.class) {
+            dataType.setDataBinding(BinaryDataBinding.NAME);
+        }
+    }
+
+}
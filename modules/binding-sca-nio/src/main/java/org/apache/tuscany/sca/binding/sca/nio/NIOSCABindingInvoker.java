@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+
+import org.apache.tuscany.sca.invocation.DataExchangeSemantics;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.invocation.Message;
+
+/**
+ * Invoker for the references of the distributed SCA binding over NIO sockets or shared memory.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOSCABindingInvoker implements Invoker, DataExchangeSemantics {
+
+    private Transport transport;
+    private URI uri;
+    private OperationCodec operation;
+    private ClassLoader classLoader;
+
+    public NIOSCABindingInvoker(Transport transport, URI uri, OperationCodec operation, ClassLoader classLoader) {
+        this.transport = transport;
+        this.uri = uri;
+        this.operation = operation;
+        this.classLoader = classLoader;
+    }
+
+    public Message invoke(Message msg) {
+        try {
+            Object body = msg.getBody();
+            Object[] args = body == null || body instanceof Object[] ? (Object[])body : new Object[] {body};
+            ClassLoader loader = classLoader != null ? classLoader : Thread.currentThread().getContextClassLoader();
+            msg.setBody(transport.invoke(uri, operation, args, loader));
+        } catch (InvocationTargetException e) {
+            msg.setFaultBody(e.getCause());
+        } catch (Throwable e) {
+            msg.setFaultBody(e);
+        }
+        return msg;
+    }
+
+    public boolean allowsPassByReference() {
+        // The request and the response are serialized
+        return true;
+    }
+
+}
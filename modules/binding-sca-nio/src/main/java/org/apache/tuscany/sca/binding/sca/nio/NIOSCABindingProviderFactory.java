@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.net.URI;
+
+import org.apache.tuscany.sca.binding.sca.DistributedSCABinding;
+import org.apache.tuscany.sca.core.ExtensionPointRegistry;
+import org.apache.tuscany.sca.provider.BindingProviderFactory;
+import org.apache.tuscany.sca.provider.ReferenceBindingProvider;
+import org.apache.tuscany.sca.provider.ServiceBindingProvider;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+import org.apache.tuscany.sca.runtime.RuntimeComponentReference;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+
+/**
+ * The provider factory for the distributed SCA binding over NIO sockets or, for the nodes on
+ * the same host, shared memory. All the references and services of a node share the transports.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOSCABindingProviderFactory implements BindingProviderFactory<DistributedSCABinding> {
+
+    private NIOTransport socketTransport;
+    private SharedMemoryTransport sharedMemoryTransport;
+
+    public NIOSCABindingProviderFactory(ExtensionPointRegistry extensionPoints) {
+        this.socketTransport = new NIOTransport();
+        this.sharedMemoryTransport = new SharedMemoryTransport();
+    }
+
+    public ReferenceBindingProvider createReferenceBindingProvider(RuntimeComponent component,
+                                                                   RuntimeComponentReference reference,
+                                                                   DistributedSCABinding binding) {
+        return new NIOSCAReferenceBindingProvider(component, reference, binding, getTransport(binding));
+    }
+
+    public ServiceBindingProvider createServiceBindingProvider(RuntimeComponent component,
+                                                               RuntimeComponentService service,
+                                                               DistributedSCABinding binding) {
+        return new NIOSCAServiceBindingProvider(component, service, binding, getTransport(binding));
+    }
+
+    /**
+     * The shm scheme selects the shared memory transport for the nodes on the same host, the
+     * other schemes the sockets
+     */
+    private Transport getTransport(DistributedSCABinding binding) {
+        URI uri = NIOSCABindingHelper.getURI(binding);
+        if (SharedMemoryTransport.SCHEME.equals(uri.getScheme())) {
+            return sharedMemoryTransport;
+        }
+        return socketTransport;
+    }
+
+    public Class<DistributedSCABinding> getModelType() {
+        return DistributedSCABinding.class;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import org.apache.tuscany.sca.binding.sca.DistributedSCABinding;
+import org.apache.tuscany.sca.interfacedef.Interface;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.java.JavaInterface;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.provider.ReferenceBindingProvider;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+import org.apache.tuscany.sca.runtime.RuntimeComponentReference;
+
+/**
+ * Calls a remote service of the distributed SCA binding over a socket or shared memory transport.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOSCAReferenceBindingProvider implements ReferenceBindingProvider {
+
+    private RuntimeComponent component;
+    private RuntimeComponentReference reference;
+    private DistributedSCABinding binding;
+    private Transport transport;
+    private InterfaceContract bindingContract;
+
+    public NIOSCAReferenceBindingProvider(RuntimeComponent component,
+                                          RuntimeComponentReference reference,
+                                          DistributedSCABinding binding,
+                                          Transport transport) {
+        this.component = component;
+        this.reference = reference;
+        this.binding = binding;
+        this.transport = transport;
+        this.bindingContract = NIOSCABindingHelper.getBindingInterfaceContract(reference.getInterfaceContract());
+    }
+
+    public Invoker createInvoker(Operation operation) {
+        ClassLoader classLoader = null;
+        Interface referenceInterface = reference.getInterfaceContract().getInterface();
+        if (referenceInterface instanceof JavaInterface) {
+            Class<?> javaClass = ((JavaInterface)referenceInterface).getJavaClass();
+            if (javaClass != null) {
+                classLoader = javaClass.getClassLoader();
+            }
+        }
+        return new NIOSCABindingInvoker(transport, NIOSCABindingHelper.getURI(binding), getOperationCodec(operation),
+                                        classLoader);
+    }
+
+    /**
+     * The arguments reach the binding as described by the binding interface contract
+     */
+    private OperationCodec getOperationCodec(Operation operation) {
+        for (Operation bindingOperation : bindingContract.getInterface().getOperations()) {
+            if (bindingOperation.getName().equals(operation.getName())) {
+                return new OperationCodec(bindingOperation);
+            }
+        }
+        return new OperationCodec(operation);
+    }
+
+    public void start() {
+        transport.start();
+    }
+
+    public void stop() {
+        transport.stop();
+    }
+
+    public InterfaceContract getBindingInterfaceContract() {
+        return bindingContract;
+    }
+
+    public boolean supportsOneWayInvocation() {
+        return false;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.tuscany.sca.binding.sca.DistributedSCABinding;
+import org.apache.tuscany.sca.interfacedef.Interface;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.java.JavaInterface;
+import org.apache.tuscany.sca.provider.ServiceBindingProvider;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+import org.oasisopen.sca.ServiceRuntimeException;
+
+/**
+ * Exposes a service of the distributed SCA binding on a socket or shared memory transport.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOSCAServiceBindingProvider implements ServiceBindingProvider, NIOEndpoint {
+
+    private RuntimeComponent component;
+    private RuntimeComponentService service;
+    private DistributedSCABinding binding;
+    private Transport transport;
+    private InterfaceContract bindingContract;
+    private RuntimeWire wire;
+    private URI uri;
+    private Map<String, OperationCodec> operationCodecs = new HashMap<String, OperationCodec>();
+
+    public NIOSCAServiceBindingProvider(RuntimeComponent component,
+                                        RuntimeComponentService service,
+                                        DistributedSCABinding binding,
+                                        Transport transport) {
+        this.component = component;
+        this.service = service;
+        this.binding = binding;
+        this.transport = transport;
+        this.bindingContract = NIOSCABindingHelper.getBindingInterfaceContract(service.getInterfaceContract());
+        for (Operation operation : bindingContract.getInterface().getOperations()) {
+            operationCodecs.put(operation.getName(), new OperationCodec(operation));
+        }
+    }
+
+    public void start() {
+        wire = service.getRuntimeWire(binding.getSCABinding());
+        uri = NIOSCABindingHelper.getURI(binding);
+        transport.start();
+        transport.addEndpoint(uri, this);
+    }
+
+    public void stop() {
+        transport.removeEndpoint(uri);
+        transport.stop();
+    }
+
+    public ClassLoader getClassLoader() {
+        Interface serviceInterface = service.getInterfaceContract().getInterface();
+        if (serviceInterface instanceof JavaInterface) {
+            Class<?> javaClass = ((JavaInterface)serviceInterface).getJavaClass();
+            if (javaClass != null && javaClass.getClassLoader() != null) {
+                return javaClass.getClassLoader();
+            }
+        }
+        return Thread.currentThread().getContextClassLoader();
+    }
+
+    public OperationCodec getOperationCodec(String operationName) {
+        return operationCodecs.get(operationName);
+    }
+
+    public Object invoke(String operationName, Object[] args) throws InvocationTargetException {
+        for (Operation operation : bindingContract.getInterface().getOperations()) {
+            if (operation.getName().equals(operationName)) {
+                return wire.invoke(operation, args);
+            }
+        }
+        throw new ServiceRuntimeException("Operation " + operationName
+            + " not found on service "
+            + component.getURI()
+            + "/"
+            + service.getName());
+    }
+
+    public InterfaceContract getBindingInterfaceContract() {
+        return bindingContract;
+    }
+
+    public boolean supportsOneWayInvocation() {
+        return false;
+    }
+
+}
@@ -0,0 +1,499 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.oasisopen.sca.ServiceRuntimeException;
+import org.oasisopen.sca.ServiceUnavailableException;
+
+/**
+ * A transport for SCA calls between nodes over non-blocking sockets. One selector thread
+ * serves all the connections of the transport. A node keeps a few persistent connections to
+ * each node it calls and multiplexes the concurrent requests over them; the requests are
+ * invoked on a thread pool and the responses are sent back as soon as they are ready, in any
+ * order.
+ * <p>
+ * The services are addressed by URIs such as <code>tuscany://host:port/Component/Service</code>,
+ * the scheme is not used. A node listens on the host of the URIs of its services only, so a
+ * service at <code>tuscany://localhost:8765/...</code> can't be reached from other hosts.
+ * <p>
+ * The transport doesn't authenticate the nodes or encrypt the messages: any process that can
+ * connect to the port can call the services exposed on it. To secure a service:
+ * <ul>
+ * <li>use the host name of an interface that only the trusted nodes can reach, such as
+ * localhost or an address of a private network, rather than 0.0.0.0;
+ * <li>restrict the access to the port to the hosts of the other nodes with a firewall;
+ * <li>between hosts that don't share a trusted network, tunnel the port over SSH, IPsec or a
+ * VPN, which also encrypts the messages.
+ * </ul>
+ * The requests are decoded with the types declared by the interfaces of the services, see
+ * {@link OperationCodec}. A peer can't send frames larger than the maximum frame size, set with
+ * the {@link #MAX_FRAME_SIZE_PROPERTY} system property, or make the node run more requests at
+ * once than its workers, set with the {@link #MAX_WORKERS_PROPERTY} system property: the extra
+ * requests are queued, up to a limit, and then rejected.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOTransport implements Transport {
+    private static final Logger logger = Logger.getLogger(NIOTransport.class.getName());
+
+    public static final int DEFAULT_PORT = 8765;
+    public static final int DEFAULT_CONNECTIONS_PER_NODE = 2;
+    public static final long DEFAULT_TIMEOUT = 60000L;
+    public static final String MAX_FRAME_SIZE_PROPERTY = "org.apache.tuscany.sca.binding.sca.nio.maxFrameSize";
+    public static final int DEFAULT_MAX_FRAME_SIZE = 1024 * 1024;
+    public static final String MAX_WORKERS_PROPERTY = "org.apache.tuscany.sca.binding.sca.nio.maxWorkers";
+    public static final int DEFAULT_MAX_WORKERS = 64;
+    private static final int QUEUED_REQUESTS_PER_WORKER = 16;
+
+    private final int connectionsPerNode;
+    private final long timeout;
+    private final int maxFrameSize;
+    private final int maxWorkers;
+
+    private Selector selector;
+    private Thread selectorThread;
+    private ExecutorService workers;
+    private volatile boolean running;
+    private int users;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final Map<InetSocketAddress, Server> servers = new ConcurrentHashMap<InetSocketAddress, Server>();
+    private final Map<InetSocketAddress, Connection[]> connections = new ConcurrentHashMap<InetSocketAddress, Connection[]>();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    public NIOTransport() {
+        this(DEFAULT_CONNECTIONS_PER_NODE, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param connectionsPerNode the number of connections kept to each remote node
+     * @param timeout the time to wait for a response, in milliseconds
+     */
+    public NIOTransport(int connectionsPerNode, long timeout) {
+        this(connectionsPerNode, timeout, getMaxFrameSizeProperty(), getMaxWorkersProperty());
+    }
+
+    /**
+     * @param connectionsPerNode the number of connections kept to each remote node
+     * @param timeout the time to wait for a response, in milliseconds
+     * @param maxFrameSize the largest frame accepted from a peer, in bytes
+     * @param maxWorkers the number of threads invoking the requests received
+     */
+    public NIOTransport(int connectionsPerNode, long timeout, int maxFrameSize, int maxWorkers) {
+        this.connectionsPerNode = connectionsPerNode;
+        this.timeout = timeout;
+        this.maxFrameSize = maxFrameSize;
+        this.maxWorkers = maxWorkers;
+    }
+
+    static int getMaxFrameSizeProperty() {
+        return Integer.getInteger(MAX_FRAME_SIZE_PROPERTY, DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    static int getMaxWorkersProperty() {
+        return Integer.getInteger(MAX_WORKERS_PROPERTY, DEFAULT_MAX_WORKERS);
+    }
+
+    /**
+     * Create the pool of the threads invoking the requests. The threads are created on demand,
+     * up to the maximum, and the requests that find them all busy wait in a bounded queue.
+     */
+    static ExecutorService createWorkers(String name, int maxWorkers) {
+        return new ThreadPoolExecutor(maxWorkers, maxWorkers, 0L, TimeUnit.MILLISECONDS,
+                                      new LinkedBlockingQueue<Runnable>(maxWorkers * QUEUED_REQUESTS_PER_WORKER),
+                                      new DaemonThreadFactory(name));
+    }
+
+    int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Start the transport for a new user. The selector thread is started by the first user.
+     */
+    public synchronized void start() {
+        if (users++ > 0) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            users--;
+            throw new ServiceRuntimeException(e);
+        }
+        running = true;
+        workers = createWorkers("Tuscany SCA NIO worker", maxWorkers);
+        selectorThread = new DaemonThreadFactory("Tuscany SCA NIO selector").newThread(new Runnable() {
+            public void run() {
+                select();
+            }
+        });
+        selectorThread.start();
+    }
+
+    /**
+     * Stop the transport for a user. The connections are closed when the last user stops.
+     */
+    public synchronized void stop() {
+        if (users == 0 || --users > 0) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        selectorThread = null;
+        workers = null;
+    }
+
+    /**
+     * Expose a service
+     *
+     * @param uri the URI of the service, its host and port are the address to listen on
+     * @param endpoint the service
+     */
+    public void addEndpoint(URI uri, NIOEndpoint endpoint) {
+        InetSocketAddress address = getAddress(uri);
+        synchronized (servers) {
+            Server server = servers.get(address);
+            if (server == null) {
+                server = new Server(address);
+                try {
+                    ServerSocketChannel channel = ServerSocketChannel.open();
+                    channel.socket().setReuseAddress(true);
+                    channel.socket().bind(address);
+                    channel.configureBlocking(false);
+                    server.channel = channel;
+                } catch (IOException e) {
+                    throw new ServiceRuntimeException("Unable to listen on " + address, e);
+                }
+                register(server.channel, SelectionKey.OP_ACCEPT, server);
+                servers.put(address, server);
+            }
+            server.dispatcher.addEndpoint(uri.getPath(), endpoint);
+        }
+    }
+
+    /**
+     * Remove a service. The port is closed when its last service is removed.
+     *
+     * @param uri the URI of the service
+     */
+    public void removeEndpoint(URI uri) {
+        InetSocketAddress address = getAddress(uri);
+        synchronized (servers) {
+            Server server = servers.get(address);
+            if (server != null) {
+                server.dispatcher.removeEndpoint(uri.getPath());
+                if (server.dispatcher.isEmpty()) {
+                    servers.remove(address);
+                    try {
+                        server.channel.close();
+                    } catch (IOException e) {
+                        // Ignore
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoke a remote service
+     *
+     * @param uri the URI of the service
+     * @param operation the codec of the operation
+     * @param args the arguments
+     * @param classLoader the class loader used to load the subtypes named in the result
+     * @return the result
+     * @throws InvocationTargetException if the operation has thrown an exception
+     */
+    public Object invoke(URI uri, OperationCodec operation, Object[] args, ClassLoader classLoader)
+        throws InvocationTargetException {
+        Connection connection = getConnection(getAddress(uri));
+        PendingCall call;
+        try {
+            call = connection.call(uri.getPath(), operation, args);
+        } catch (IOException e) {
+            throw new ServiceUnavailableException("Unable to send the request to " + uri, e);
+        }
+        try {
+            if (!call.await(timeout)) {
+                connection.cancel(call);
+                throw new ServiceUnavailableException("No response from " + uri + " after " + timeout + "ms");
+            }
+        } catch (InterruptedException e) {
+            connection.cancel(call);
+            Thread.currentThread().interrupt();
+            throw new ServiceRuntimeException(e);
+        }
+        return call.getResult(uri, operation, classLoader);
+    }
+
+    /**
+     * Get one of the connections to a node, round robin. The connections are opened on demand
+     * and replaced when they are closed.
+     */
+    private Connection getConnection(InetSocketAddress address) {
+        Connection[] pool = connections.get(address);
+        if (pool == null) {
+            synchronized (connections) {
+                pool = connections.get(address);
+                if (pool == null) {
+                    pool = new Connection[connectionsPerNode];
+                    connections.put(address, pool);
+                }
+            }
+        }
+        int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % pool.length;
+        synchronized (pool) {
+            Connection connection = pool[index];
+            if (connection != null && !connection.isClosed()) {
+                return connection;
+            }
+        }
+        // Connect without holding the lock, so an unreachable node doesn't block the callers
+        // of the other connections
+        Connection connection = connect(address);
+        synchronized (pool) {
+            Connection current = pool[index];
+            if (current != null && !current.isClosed()) {
+                // Another thread has connected first
+                connection.close(null);
+                return current;
+            }
+            pool[index] = connection;
+        }
+        try {
+            register(connection.getChannel(), SelectionKey.OP_READ, connection);
+        } catch (RuntimeException e) {
+            connection.close(e);
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Open a connection, waiting at most the timeout of the transport
+     */
+    private Connection connect(InetSocketAddress address) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().connect(address, (int)Math.min(timeout, Integer.MAX_VALUE));
+            channel.configureBlocking(false);
+            return new Connection(this, channel, null);
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // Ignore
+                }
+            }
+            throw new ServiceUnavailableException("Unable to connect to " + address, e);
+        }
+    }
+
+    /**
+     * @return the number of open client connections
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (Connection[] pool : connections.values()) {
+            synchronized (pool) {
+                for (Connection connection : pool) {
+                    if (connection != null && !connection.isClosed()) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private void register(final SelectableChannel channel, final int ops, final Object attachment) {
+        runOnSelector(new Runnable() {
+            public void run() {
+                if (attachment instanceof Connection && ((Connection)attachment).isClosed()) {
+                    return;
+                }
+                try {
+                    SelectionKey key = channel.register(selector, ops, attachment);
+                    if (attachment instanceof Connection) {
+                        ((Connection)attachment).setKey(key);
+                    }
+                } catch (IOException e) {
+                    if (attachment instanceof Connection) {
+                        ((Connection)attachment).close(e);
+                    }
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        });
+    }
+
+    void scheduleWrite(final Connection connection) {
+        runOnSelector(new Runnable() {
+            public void run() {
+                try {
+                    connection.write();
+                } catch (IOException e) {
+                    connection.close(e);
+                }
+            }
+        });
+    }
+
+    private void runOnSelector(Runnable task) {
+        if (!running) {
+            throw new ServiceUnavailableException("The SCA NIO transport is not started");
+        }
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Invoke a request on a worker thread and send the response back
+     */
+    void dispatch(Connection connection, Server server, long id, byte[] body) {
+        server.dispatcher.dispatch(workers, connection, id, body);
+    }
+
+    private void select() {
+        try {
+            while (running) {
+                selector.select();
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    Object attachment = key.attachment();
+                    if (key.isAcceptable()) {
+                        accept((Server)attachment);
+                        continue;
+                    }
+                    Connection connection = (Connection)attachment;
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    } catch (IOException e) {
+                        connection.close(e);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept(Server server) {
+        try {
+            SocketChannel channel = server.channel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+            Connection connection = new Connection(this, channel, server);
+            connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+    }
+
+    private void closeAll() {
+        IOException closed = new IOException("The SCA NIO transport is stopped");
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection)key.attachment()).close(closed);
+            } else {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        servers.clear();
+        connections.clear();
+        tasks.clear();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private static InetSocketAddress getAddress(URI uri) {
+        return new InetSocketAddress(uri.getHost(), uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort());
+    }
+
+    /**
+     * A listening socket and the services exposed on it
+     */
+    static class Server {
+        private ServerSocketChannel channel;
+        private final EndpointDispatcher dispatcher;
+
+        Server(InetSocketAddress address) {
+            this.dispatcher = new EndpointDispatcher(address.toString());
+        }
+    }
+
+}
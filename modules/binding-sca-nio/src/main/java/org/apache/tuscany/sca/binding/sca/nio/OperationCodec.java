@@ -0,0 +1,229 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuscany.sca.databinding.binary.BinaryCodec;
+import org.apache.tuscany.sca.databinding.binary.BinaryDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.oasisopen.sca.ServiceRuntimeException;
+
+/**
+ * Encodes the arguments, the result and the faults of an operation for the transports. The
+ * values are written with the binary databinding, using the types declared by the operation,
+ * so a peer can only make the other node instantiate the declared types and their subtypes,
+ * never an arbitrary class as Java serialization would. The arguments and results that the
+ * databinding interceptors have already encoded are passed as byte arrays.
+ * <p>
+ * A fault is written as the index of its declared fault type followed by the exception. Any
+ * other exception is sent as its description, in UTF-8 and preceded by its length, and raised
+ * as a ServiceRuntimeException. The description is truncated so that it always fits a frame.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class OperationCodec {
+    private static final int UNDECLARED_FAULT = -1;
+    // At most 3 bytes per char in UTF-8, well under any sensible frame size
+    private static final int MAX_ERROR_LENGTH = 8192;
+
+    private final String name;
+    private final BinaryCodec[] parameters;
+    private final BinaryCodec result;
+    private final Class<?>[] faultTypes;
+    private final BinaryCodec[] faults;
+
+    /**
+     * @param operation the operation of the binding interface contract
+     */
+    public OperationCodec(Operation operation) {
+        this(operation.getName(), getParameterTypes(operation), getResultType(operation), getFaultTypes(operation));
+    }
+
+    /**
+     * @param name the name of the operation
+     * @param parameterTypes the declared types of the parameters
+     * @param resultType the declared type of the result, void.class or null if there is none
+     * @param faultTypes the declared exceptions
+     */
+    public OperationCodec(String name, Type[] parameterTypes, Type resultType, Class<?>... faultTypes) {
+        this.name = name;
+        this.parameters = new BinaryCodec[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            parameters[i] = BinaryCodec.getCodec(parameterTypes[i]);
+        }
+        this.result = resultType == null || resultType == void.class ? null : BinaryCodec.getCodec(resultType);
+        this.faultTypes = faultTypes;
+        this.faults = new BinaryCodec[faultTypes.length];
+        for (int i = 0; i < faultTypes.length; i++) {
+            faults[i] = BinaryCodec.getCodec(faultTypes[i]);
+        }
+    }
+
+    private static Type[] getParameterTypes(Operation operation) {
+        DataType<List<DataType>> inputType = operation.getInputType();
+        if (inputType == null) {
+            return new Type[0];
+        }
+        List<DataType> logical = inputType.getLogical();
+        Type[] types = new Type[logical.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getType(logical.get(i));
+        }
+        return types;
+    }
+
+    private static Type getResultType(Operation operation) {
+        DataType<?> outputType = operation.getOutputType();
+        return outputType == null ? null : getType(outputType);
+    }
+
+    private static Class<?>[] getFaultTypes(Operation operation) {
+        List<Class<?>> types = new ArrayList<Class<?>>();
+        if (operation.getFaultTypes() != null) {
+            for (DataType<?> faultType : operation.getFaultTypes()) {
+                if (Throwable.class.isAssignableFrom(faultType.getPhysical())) {
+                    types.add(faultType.getPhysical());
+                }
+            }
+        }
+        return types.toArray(new Class<?>[types.size()]);
+    }
+
+    private static Type getType(DataType<?> dataType) {
+        if (BinaryDataBinding.NAME.equals(dataType.getDataBinding()) && dataType.getPhysical() != void.class) {
+            // Encoded by the databinding interceptor
+            return byte[].class;
+        }
+        return dataType.getGenericType() != null ? dataType.getGenericType() : dataType.getPhysical();
+    }
+
+    /**
+     * @return the name of the operation
+     */
+    public String getName() {
+        return name;
+    }
+
+    void writeArguments(DataOutputStream out, Object[] args) throws IOException {
+        int count = args == null ? 0 : args.length;
+        if (count != parameters.length) {
+            throw new IOException("Operation " + name + " expects " + parameters.length + " arguments, not " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            byte[] data = parameters[i].encode(args[i]);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    Object[] readArguments(DataInputStream in, ClassLoader classLoader) throws IOException {
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = parameters[i].decode(readBytes(in), classLoader);
+        }
+        if (in.available() != 0) {
+            throw new IOException("Unexpected data after the arguments of " + name);
+        }
+        return args;
+    }
+
+    byte[] encodeResult(Object value) throws IOException {
+        return result == null ? new byte[0] : result.encode(value);
+    }
+
+    Object decodeResult(byte[] data, ClassLoader classLoader) throws IOException {
+        return result == null ? null : result.decode(data, classLoader);
+    }
+
+    /**
+     * Encode an exception thrown by the operation, as one of its declared faults if possible
+     */
+    byte[] encodeFault(Throwable fault) throws IOException {
+        for (int i = 0; i < faultTypes.length; i++) {
+            if (faultTypes[i].isInstance(fault)) {
+                try {
+                    byte[] data = faults[i].encode(fault);
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length + 4);
+                    DataOutputStream out = new DataOutputStream(bos);
+                    out.writeInt(i);
+                    out.write(data);
+                    return bos.toByteArray();
+                } catch (IOException e) {
+                    // The fault isn't encodable, send its description
+                    break;
+                }
+            }
+        }
+        return encodeError(fault);
+    }
+
+    /**
+     * Encode an exception that isn't a declared fault, or that is raised before the operation
+     * is known
+     */
+    static byte[] encodeError(Throwable error) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        String description = String.valueOf(error);
+        if (description.length() > MAX_ERROR_LENGTH) {
+            description = description.substring(0, MAX_ERROR_LENGTH) + "...";
+        }
+        byte[] data = description.getBytes("UTF-8");
+        out.writeInt(UNDECLARED_FAULT);
+        out.writeInt(data.length);
+        out.write(data);
+        return bos.toByteArray();
+    }
+
+    Throwable decodeFault(byte[] data, ClassLoader classLoader) throws IOException {
+        DataInputStream in = Frame.body(data);
+        int index = in.readInt();
+        if (index == UNDECLARED_FAULT) {
+            return new ServiceRuntimeException(new String(readBytes(in), "UTF-8"));
+        }
+        if (index < 0 || index >= faults.length) {
+            throw new IOException("Invalid fault of " + name + ": " + index);
+        }
+        byte[] fault = new byte[data.length - 4];
+        in.readFully(fault);
+        return (Throwable)faults[index].decode(fault, classLoader);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        // Don't let a corrupted length cause a large allocation
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("Invalid length: " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+}
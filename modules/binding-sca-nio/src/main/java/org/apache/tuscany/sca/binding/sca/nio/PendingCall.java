@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.oasisopen.sca.ServiceRuntimeException;
+import org.oasisopen.sca.ServiceUnavailableException;
+
+/**
+ * A request waiting for its response
+ *
+ * @version $Rev$ $Date$
+ */
+class PendingCall {
+    private final long id;
+    private boolean done;
+    private boolean fault;
+    private byte[] body;
+    private Throwable failure;
+
+    PendingCall(long id) {
+        this.id = id;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    synchronized void complete(boolean fault, byte[] body) {
+        this.fault = fault;
+        this.body = body;
+        done = true;
+        notifyAll();
+    }
+
+    synchronized void fail(Throwable failure) {
+        this.failure = failure;
+        done = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the response
+     *
+     * @param timeout the timeout in milliseconds
+     * @return true if the response or a failure has arrived
+     */
+    synchronized boolean await(long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (!done) {
+            long wait = end - System.currentTimeMillis();
+            if (wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        return true;
+    }
+
+    synchronized boolean isFault() {
+        return fault;
+    }
+
+    synchronized byte[] getBody() {
+        return body;
+    }
+
+    synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Read the result of a completed call
+     *
+     * @param target the target of the call, for the error messages
+     * @param operation the codec of the operation
+     * @param classLoader the class loader used to load the subtypes named in the result
+     * @return the result
+     * @throws InvocationTargetException if the operation has thrown an exception
+     */
+    Object getResult(Object target, OperationCodec operation, ClassLoader classLoader)
+        throws InvocationTargetException {
+        if (getFailure() != null) {
+            throw new ServiceUnavailableException("The connection to " + target + " failed", getFailure());
+        }
+        if (isFault()) {
+            Throwable fault;
+            try {
+                fault = operation.decodeFault(getBody(), classLoader);
+            } catch (Exception e) {
+                throw new ServiceRuntimeException("Unable to read the response from " + target, e);
+            }
+            throw new InvocationTargetException(fault);
+        }
+        try {
+            return operation.decodeResult(getBody(), classLoader);
+        } catch (Exception e) {
+            throw new ServiceRuntimeException("Unable to read the response from " + target, e);
+        }
+    }
+
+}
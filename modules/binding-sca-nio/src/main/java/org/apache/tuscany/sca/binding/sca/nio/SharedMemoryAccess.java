@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Ordered access to the words of a region of a memory mapped file shared with another process.
+ * The plain accessors of a ByteBuffer give no guarantee about the order in which the other
+ * process sees the writes, so a word that publishes data, such as the write position of a ring,
+ * is written with release semantics, after the data, and read with acquire semantics, before
+ * the data. The words are in the native byte order and must be aligned on their size.
+ * <p>
+ * The accesses are made with sun.misc.Unsafe, which is looked up by reflection so that the
+ * module doesn't compile against a proprietary API and the transport is simply unavailable
+ * on a JVM without it.
+ *
+ * @version $Rev$ $Date$
+ */
+final class SharedMemoryAccess {
+    private static final Object UNSAFE;
+    private static final long ADDRESS_OFFSET;
+    private static final Method GET_LONG;
+    private static final Method GET_LONG_VOLATILE;
+    private static final Method PUT_ORDERED_LONG;
+    private static final Method GET_INT_VOLATILE;
+    private static final Method PUT_ORDERED_INT;
+    static {
+        Object unsafe = null;
+        long offset = -1;
+        Method getLong = null;
+        Method getLongVolatile = null;
+        Method putOrderedLong = null;
+        Method getIntVolatile = null;
+        Method putOrderedInt = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            Method objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+            offset = (Long)objectFieldOffset.invoke(unsafe, Buffer.class.getDeclaredField("address"));
+            getLong = unsafeClass.getMethod("getLong", Object.class, long.class);
+            getLongVolatile = unsafeClass.getMethod("getLongVolatile", Object.class, long.class);
+            putOrderedLong = unsafeClass.getMethod("putOrderedLong", Object.class, long.class, long.class);
+            getIntVolatile = unsafeClass.getMethod("getIntVolatile", Object.class, long.class);
+            putOrderedInt = unsafeClass.getMethod("putOrderedInt", Object.class, long.class, int.class);
+        } catch (Throwable e) {
+            unsafe = null;
+        }
+        UNSAFE = unsafe;
+        ADDRESS_OFFSET = offset;
+        GET_LONG = getLong;
+        GET_LONG_VOLATILE = getLongVolatile;
+        PUT_ORDERED_LONG = putOrderedLong;
+        GET_INT_VOLATILE = getIntVolatile;
+        PUT_ORDERED_INT = putOrderedInt;
+    }
+
+    // Keeps the file mapped as long as the region is used
+    private final ByteBuffer buffer;
+    private final long address;
+
+    /**
+     * @param buffer a direct buffer over the region
+     */
+    SharedMemoryAccess(ByteBuffer buffer) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("Ordered access to shared memory isn't supported by this JVM");
+        }
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("The buffer must be direct");
+        }
+        this.buffer = buffer;
+        this.address = (Long)invoke(GET_LONG, buffer, ADDRESS_OFFSET);
+    }
+
+    /**
+     * @return true if the JVM supports ordered access to the memory mapped files
+     */
+    static boolean isAvailable() {
+        return UNSAFE != null;
+    }
+
+    /**
+     * Read a long with acquire semantics
+     */
+    long getLongVolatile(int offset) {
+        return (Long)invoke(GET_LONG_VOLATILE, null, address(offset, 8));
+    }
+
+    /**
+     * Write a long with release semantics
+     */
+    void putLongOrdered(int offset, long value) {
+        invoke(PUT_ORDERED_LONG, null, address(offset, 8), value);
+    }
+
+    /**
+     * Read an int with acquire semantics
+     */
+    int getIntVolatile(int offset) {
+        return (Integer)invoke(GET_INT_VOLATILE, null, address(offset, 4));
+    }
+
+    /**
+     * Write an int with release semantics
+     */
+    void putIntOrdered(int offset, int value) {
+        invoke(PUT_ORDERED_INT, null, address(offset, 4), value);
+    }
+
+    private static Object invoke(Method method, Object... args) {
+        try {
+            return method.invoke(UNSAFE, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private long address(int offset, int size) {
+        if (offset < 0 || offset + size > buffer.capacity() || (address + offset) % size != 0) {
+            throw new IndexOutOfBoundsException("Invalid offset: " + offset);
+        }
+        return address + offset;
+    }
+
+}
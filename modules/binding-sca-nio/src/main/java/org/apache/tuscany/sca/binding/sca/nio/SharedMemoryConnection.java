@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection between two nodes on the same host over a memory mapped file. The file holds
+ * two rings, one for the requests and one for the responses, after a small header in the
+ * native byte order:
+ * <pre>
+ *   int  magic, written last by the client once the file is initialized, with release semantics
+ *   int  capacity of each ring, a multiple of 64
+ * </pre>
+ * The requests of many threads are multiplexed over the connection as frames, like on a
+ * socket connection, and a reader thread polls the incoming ring.
+ *
+ * @version $Rev$ $Date$
+ */
+class SharedMemoryConnection implements FrameChannel, Frame.Handler, Runnable {
+    private static final int MAGIC = 0x54534D31;
+    private static final int FILE_HEADER_SIZE = 64;
+    // Keeps the positions of both rings aligned on cache lines
+    static final int ALIGNMENT = 64;
+
+    private final SharedMemoryTransport transport;
+    private final File file;
+    private final RandomAccessFile raf;
+    private final SharedMemoryRing in;
+    private final SharedMemoryRing out;
+    private final EndpointDispatcher dispatcher;
+    private final Object writeLock = new Object();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(65536);
+
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, PendingCall> calls = new ConcurrentHashMap<Long, PendingCall>();
+    private volatile boolean closed;
+
+    private SharedMemoryConnection(SharedMemoryTransport transport,
+                                   File file,
+                                   RandomAccessFile raf,
+                                   MappedByteBuffer mapped,
+                                   int capacity,
+                                   EndpointDispatcher dispatcher) {
+        this.transport = transport;
+        this.file = file;
+        this.raf = raf;
+        this.dispatcher = dispatcher;
+        SharedMemoryRing requests = new SharedMemoryRing(slice(mapped, FILE_HEADER_SIZE, capacity));
+        SharedMemoryRing responses =
+            new SharedMemoryRing(slice(mapped, FILE_HEADER_SIZE + SharedMemoryRing.size(capacity), capacity));
+        if (dispatcher == null) {
+            this.out = requests;
+            this.in = responses;
+        } else {
+            this.in = requests;
+            this.out = responses;
+        }
+    }
+
+    /**
+     * Create the file of a new client connection
+     *
+     * @param transport the transport
+     * @param file the file, in the directory of the node to connect to
+     * @param capacity the capacity of the rings
+     */
+    static SharedMemoryConnection create(SharedMemoryTransport transport, File file, int capacity) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            MappedByteBuffer mapped = map(raf, FILE_HEADER_SIZE + 2 * SharedMemoryRing.size(capacity));
+            SharedMemoryAccess header = new SharedMemoryAccess(mapped);
+            header.putIntOrdered(4, capacity);
+            // Publish the file once it is initialized
+            header.putIntOrdered(0, MAGIC);
+            return new SharedMemoryConnection(transport, file, raf, mapped, capacity, null);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open the file of a connection created by a client
+     *
+     * @param transport the transport
+     * @param file the file
+     * @param dispatcher the services of the node
+     * @return the connection, or null if the client hasn't finished initializing the file
+     */
+    static SharedMemoryConnection open(SharedMemoryTransport transport, File file, EndpointDispatcher dispatcher)
+        throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() >= FILE_HEADER_SIZE) {
+                MappedByteBuffer mapped = map(raf, (int)raf.length());
+                SharedMemoryAccess header = new SharedMemoryAccess(mapped);
+                // Read the magic first, the capacity is only valid once it is set
+                if (header.getIntVolatile(0) == MAGIC) {
+                    int capacity = header.getIntVolatile(4);
+                    if (capacity > 0
+                        && capacity % ALIGNMENT == 0
+                        && raf.length() == FILE_HEADER_SIZE + 2L * SharedMemoryRing.size(capacity)) {
+                        return new SharedMemoryConnection(transport, file, raf, mapped, capacity, dispatcher);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        raf.close();
+        return null;
+    }
+
+    private static MappedByteBuffer map(RandomAccessFile raf, int size) throws IOException {
+        if (raf.length() < size) {
+            raf.setLength(size);
+        }
+        return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int capacity) {
+        ByteBuffer region = buffer.duplicate();
+        region.position(offset);
+        region.limit(offset + SharedMemoryRing.size(capacity));
+        return region.slice();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Send a request
+     *
+     * @return the call to wait on for the response
+     * @throws IOException if the connection is closed
+     * @throws ServiceRuntimeException if the request is larger than the maximum frame size
+     */
+    PendingCall call(String path, OperationCodec operation, Object[] args) throws IOException {
+        long id = ids.incrementAndGet();
+        // Build the frame first: a request that is too large fails before it is pending
+        ByteBuffer frame = Frame.request(id, path, operation, args, getMaxFrameSize());
+        PendingCall call = new PendingCall(id);
+        calls.put(id, call);
+        try {
+            send(frame);
+        } catch (IOException e) {
+            calls.remove(id);
+            throw e;
+        }
+        return call;
+    }
+
+    void cancel(PendingCall call) {
+        calls.remove(call.getId());
+    }
+
+    public int getMaxFrameSize() {
+        return transport.getMaxFrameSize();
+    }
+
+    public void send(ByteBuffer frame) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        synchronized (writeLock) {
+            out.write(frame);
+        }
+    }
+
+    /**
+     * Poll the incoming ring until the connection is closed
+     */
+    public void run() {
+        int idle = 0;
+        try {
+            while (!closed) {
+                int n = in.read(readBuffer);
+                if (n > 0) {
+                    readBuffer = Frame.parse(readBuffer, this, transport.getMaxFrameSize());
+                    idle = 0;
+                } else if (n == -1) {
+                    close(new IOException("Connection closed by the peer"));
+                } else {
+                    idle = SharedMemoryRing.idle(idle);
+                }
+            }
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    public void received(byte type, long id, byte[] body) throws IOException {
+        if (type == Frame.REQUEST) {
+            if (dispatcher == null) {
+                throw new IOException("Unexpected request on a client connection");
+            }
+            transport.dispatch(this, dispatcher, id, body);
+        } else {
+            PendingCall call = calls.remove(id);
+            if (call != null) {
+                call.complete(type == Frame.FAULT, body);
+            }
+        }
+    }
+
+    /**
+     * Close the connection and fail the pending calls. The rings are marked closed so that the
+     * other node closes its side too, and the server removes the file.
+     */
+    public void close(Throwable cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        out.close();
+        in.close();
+        for (PendingCall call : calls.values()) {
+            call.fail(cause);
+        }
+        calls.clear();
+        try {
+            raf.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        if (dispatcher != null) {
+            file.delete();
+        }
+    }
+
+}
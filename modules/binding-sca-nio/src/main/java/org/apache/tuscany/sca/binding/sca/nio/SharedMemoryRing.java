@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A single producer, single consumer ring of bytes in a region of a memory mapped file shared
+ * by two processes. The producer publishes the bytes it has copied into the ring by advancing
+ * the write position and the consumer frees them by advancing the read position, so no lock
+ * or system call is needed to exchange data. The positions are written with release semantics
+ * once the data is copied and read with acquire semantics before the data is, so the other
+ * process never sees a position ahead of the data it covers.
+ * <p>
+ * The positions are on their own cache lines at the start of the region, in the native byte
+ * order:
+ * <pre>
+ *   long write position, the total number of bytes written
+ *   long read position, the total number of bytes read
+ *   int  closed flag
+ *   ...  data
+ * </pre>
+ *
+ * @version $Rev$ $Date$
+ */
+final class SharedMemoryRing {
+    private static final int WRITE_POSITION = 0;
+    private static final int READ_POSITION = 64;
+    private static final int CLOSED = 128;
+    static final int HEADER_SIZE = 192;
+
+    private final ByteBuffer buffer;
+    private final SharedMemoryAccess header;
+    private final int capacity;
+
+    /**
+     * @param buffer the region of the mapped file, including the header
+     */
+    SharedMemoryRing(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.header = new SharedMemoryAccess(buffer);
+        this.capacity = buffer.capacity() - HEADER_SIZE;
+    }
+
+    /**
+     * @return the size of the region for a ring of the given capacity
+     */
+    static int size(int capacity) {
+        return HEADER_SIZE + capacity;
+    }
+
+    /**
+     * Write bytes, waiting for the consumer to make room if the ring is full
+     *
+     * @throws IOException if the ring is closed
+     */
+    void write(ByteBuffer source) throws IOException {
+        int idle = 0;
+        while (source.hasRemaining()) {
+            if (isClosed()) {
+                throw new IOException("The shared memory connection is closed");
+            }
+            long write = header.getLongVolatile(WRITE_POSITION);
+            long read = header.getLongVolatile(READ_POSITION);
+            int free = capacity - (int)(write - read);
+            if (free == 0) {
+                idle = idle(idle);
+                continue;
+            }
+            idle = 0;
+            int length = Math.min(free, source.remaining());
+            int index = (int)(write % capacity);
+            int first = Math.min(length, capacity - index);
+            copy(source, HEADER_SIZE + index, first);
+            if (length > first) {
+                copy(source, HEADER_SIZE, length - first);
+            }
+            // Publish the bytes once they are copied
+            header.putLongOrdered(WRITE_POSITION, write + length);
+        }
+    }
+
+    /**
+     * Read the bytes available without waiting
+     *
+     * @param target the buffer to read into
+     * @return the number of bytes read, or -1 if the ring is closed and empty
+     */
+    int read(ByteBuffer target) {
+        // Check the flag first, the producer closes the ring after its last write
+        boolean closed = isClosed();
+        long write = header.getLongVolatile(WRITE_POSITION);
+        long read = header.getLongVolatile(READ_POSITION);
+        int available = (int)(write - read);
+        if (available == 0) {
+            return closed ? -1 : 0;
+        }
+        int length = Math.min(available, target.remaining());
+        int index = (int)(read % capacity);
+        int first = Math.min(length, capacity - index);
+        ByteBuffer data = buffer.duplicate();
+        data.limit(HEADER_SIZE + index + first).position(HEADER_SIZE + index);
+        target.put(data);
+        if (length > first) {
+            data.limit(HEADER_SIZE + length - first).position(HEADER_SIZE);
+            target.put(data);
+        }
+        // Free the space once the bytes are copied out
+        header.putLongOrdered(READ_POSITION, read + length);
+        return length;
+    }
+
+    void close() {
+        header.putIntOrdered(CLOSED, 1);
+    }
+
+    boolean isClosed() {
+        return header.getIntVolatile(CLOSED) != 0;
+    }
+
+    private void copy(ByteBuffer source, int offset, int length) {
+        ByteBuffer data = buffer.duplicate();
+        data.position(offset);
+        ByteBuffer chunk = source.duplicate();
+        chunk.limit(chunk.position() + length);
+        data.put(chunk);
+        source.position(source.position() + length);
+    }
+
+    /**
+     * Wait a little for the other process: spin first, then yield and finally park for longer
+     * and longer, so that an idle connection doesn't keep a processor busy
+     *
+     * @param count the number of times the caller has waited so far
+     * @return the new count
+     */
+    static int idle(int count) {
+        if (count < 100) {
+            // Spin
+        } else if (count < 200) {
+            Thread.yield();
+        } else if (count < 1000) {
+            LockSupport.parkNanos(10000L);
+        } else {
+            LockSupport.parkNanos(1000000L);
+        }
+        return count + 1;
+    }
+
+}
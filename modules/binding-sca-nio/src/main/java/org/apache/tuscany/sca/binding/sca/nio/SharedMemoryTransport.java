@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.oasisopen.sca.ServiceRuntimeException;
+import org.oasisopen.sca.ServiceUnavailableException;
+
+/**
+ * A transport for the SCA calls between nodes on the same host over memory mapped files, which
+ * avoids the loopback TCP stack and its system calls. The services are addressed by URIs such
+ * as <code>shm://node1/Component/Service</code>: each node exposing services owns a directory
+ * named after the authority of the URI in a directory shared by the nodes of the host. A node
+ * calling another one creates a connection file in that directory, and the other node picks it
+ * up and serves the requests written into it.
+ * <p>
+ * The shared directory is set with the org.apache.tuscany.sca.binding.sca.nio.shm.directory
+ * system property and defaults to tuscany-shm-<i>user name</i> in the temporary directory. Any
+ * process that can write to the directory can call the services of the nodes, so the transport
+ * only uses a directory that it can make accessible to its owner alone. The nodes sharing it
+ * must run as the same user. The limits on the size of the frames and on the number of workers
+ * are the ones of the {@link NIOTransport}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class SharedMemoryTransport implements Transport {
+    private static final Logger logger = Logger.getLogger(SharedMemoryTransport.class.getName());
+
+    public static final String SCHEME = "shm";
+    public static final String DIRECTORY_PROPERTY = "org.apache.tuscany.sca.binding.sca.nio.shm.directory";
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+    private static final String NODE_FILE = "node";
+    private static final String CONNECTION_SUFFIX = ".ring";
+    private static final long SCAN_INTERVAL = 10L;
+
+    private final File directory;
+    private final int capacity;
+    private final long timeout;
+    private final int maxFrameSize;
+    private final int maxWorkers;
+
+    private ExecutorService workers;
+    private Thread acceptor;
+    private volatile boolean running;
+    private int users;
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    private final Map<String, SharedMemoryConnection> connections = new HashMap<String, SharedMemoryConnection>();
+
+    public SharedMemoryTransport() {
+        this(getDefaultDirectory(), DEFAULT_CAPACITY, NIOTransport.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param directory the directory shared by the nodes of the host
+     * @param capacity the capacity of the rings of each connection, in bytes, rounded up to a
+     *            multiple of 64
+     * @param timeout the time to wait for a response, in milliseconds
+     */
+    public SharedMemoryTransport(File directory, int capacity, long timeout) {
+        this.directory = directory;
+        int alignment = SharedMemoryConnection.ALIGNMENT;
+        this.capacity = (capacity + alignment - 1) / alignment * alignment;
+        this.timeout = timeout;
+        this.maxFrameSize = NIOTransport.getMaxFrameSizeProperty();
+        this.maxWorkers = NIOTransport.getMaxWorkersProperty();
+    }
+
+    private static File getDefaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory != null) {
+            return new File(directory);
+        }
+        return new File(System.getProperty("java.io.tmpdir"), "tuscany-shm-" + System.getProperty("user.name"));
+    }
+
+    public synchronized void start() {
+        if (users > 0) {
+            users++;
+            return;
+        }
+        if (!SharedMemoryAccess.isAvailable()) {
+            throw new ServiceRuntimeException("The SCA shared memory transport isn't supported by this JVM");
+        }
+        createDirectory(directory);
+        users++;
+        running = true;
+        workers = NIOTransport.createWorkers("Tuscany SCA shared memory worker", maxWorkers);
+        acceptor = new DaemonThreadFactory("Tuscany SCA shared memory acceptor").newThread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        });
+        acceptor.start();
+    }
+
+    public synchronized void stop() {
+        if (users == 0 || --users > 0) {
+            return;
+        }
+        running = false;
+        acceptor.interrupt();
+        try {
+            acceptor.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        IOException stopped = new IOException("The SCA shared memory transport is stopped");
+        synchronized (connections) {
+            for (SharedMemoryConnection connection : connections.values()) {
+                connection.close(stopped);
+            }
+            connections.clear();
+        }
+        for (Node node : nodes.values()) {
+            node.close(stopped);
+        }
+        nodes.clear();
+        workers.shutdown();
+        acceptor = null;
+        workers = null;
+    }
+
+    public void addEndpoint(URI uri, NIOEndpoint endpoint) {
+        String authority = uri.getAuthority();
+        synchronized (nodes) {
+            Node node = nodes.get(authority);
+            if (node == null) {
+                File nodeDirectory = getNodeDirectory(authority);
+                createDirectory(nodeDirectory);
+                try {
+                    new File(nodeDirectory, NODE_FILE).createNewFile();
+                } catch (IOException e) {
+                    throw new ServiceRuntimeException("Unable to create the shared memory node " + nodeDirectory, e);
+                }
+                node = new Node(nodeDirectory, new EndpointDispatcher(SCHEME + "://" + authority));
+                nodes.put(authority, node);
+            }
+            node.dispatcher.addEndpoint(uri.getPath(), endpoint);
+        }
+    }
+
+    public void removeEndpoint(URI uri) {
+        String authority = uri.getAuthority();
+        synchronized (nodes) {
+            Node node = nodes.get(authority);
+            if (node != null) {
+                node.dispatcher.removeEndpoint(uri.getPath());
+                if (node.dispatcher.isEmpty()) {
+                    nodes.remove(authority);
+                    node.close(new IOException("The node is stopped"));
+                }
+            }
+        }
+    }
+
+    public Object invoke(URI uri, OperationCodec operation, Object[] args, ClassLoader classLoader)
+        throws InvocationTargetException {
+        SharedMemoryConnection connection = getConnection(uri.getAuthority());
+        PendingCall call;
+        try {
+            call = connection.call(uri.getPath(), operation, args);
+        } catch (IOException e) {
+            throw new ServiceUnavailableException("Unable to send the request to " + uri, e);
+        }
+        try {
+            if (!call.await(timeout)) {
+                connection.cancel(call);
+                throw new ServiceUnavailableException("No response from " + uri + " after " + timeout + "ms");
+            }
+        } catch (InterruptedException e) {
+            connection.cancel(call);
+            Thread.currentThread().interrupt();
+            throw new ServiceRuntimeException(e);
+        }
+        return call.getResult(uri, operation, classLoader);
+    }
+
+    /**
+     * Get the connection to a node, all the calls to the node are multiplexed over it
+     */
+    private SharedMemoryConnection getConnection(String authority) {
+        if (!running) {
+            throw new ServiceUnavailableException("The SCA shared memory transport is not started");
+        }
+        synchronized (connections) {
+            SharedMemoryConnection connection = connections.get(authority);
+            if (connection == null || connection.isClosed()) {
+                File nodeDirectory = getNodeDirectory(authority);
+                if (!new File(nodeDirectory, NODE_FILE).exists()) {
+                    throw new ServiceUnavailableException("No node at " + SCHEME + "://" + authority);
+                }
+                try {
+                    File file = File.createTempFile("connection", CONNECTION_SUFFIX, nodeDirectory);
+                    connection = SharedMemoryConnection.create(this, file, capacity);
+                } catch (IOException e) {
+                    throw new ServiceUnavailableException("Unable to connect to " + SCHEME + "://" + authority, e);
+                }
+                startReader(connection);
+                connections.put(authority, connection);
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * Create a directory, or take an existing one, that only its owner can access. On the file
+     * systems with POSIX permissions, the permissions of a directory can only be changed by its
+     * owner, so a directory created by another user is refused.
+     */
+    private static void createDirectory(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new ServiceRuntimeException("Unable to create the shared memory directory " + directory);
+        }
+        if (File.separatorChar != '/') {
+            // The permissions are inherited from the parent directory
+            return;
+        }
+        // rwx------, java.io.File has no way to set the permissions of the group and the others
+        // before Java 6 so chmod is run
+        if (!chmod("700", directory)) {
+            throw new ServiceRuntimeException("Unable to restrict the access to the shared memory directory "
+                + directory
+                + " to its owner");
+        }
+    }
+
+    private static boolean chmod(String mode, File file) {
+        try {
+            ProcessBuilder builder = new ProcessBuilder("chmod", mode, file.getAbsolutePath());
+            Process process = builder.redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            InputStream output = process.getInputStream();
+            try {
+                byte[] buffer = new byte[256];
+                while (output.read(buffer) != -1) {
+                    // discard the messages of chmod
+                }
+            } finally {
+                output.close();
+            }
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    private File getNodeDirectory(String authority) {
+        return new File(directory, authority.replace(':', '_'));
+    }
+
+    private void startReader(SharedMemoryConnection connection) {
+        Thread reader = new Thread(connection, "Tuscany SCA shared memory " + connection.getFile().getName());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    void dispatch(SharedMemoryConnection connection, EndpointDispatcher dispatcher, long id, byte[] body) {
+        dispatcher.dispatch(workers, connection, id, body);
+    }
+
+    /**
+     * Pick up the connection files created by the clients of the nodes
+     */
+    private void accept() {
+        while (running) {
+            for (Node node : nodes.values()) {
+                node.prune();
+                File[] files = node.directory.listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    if (!file.getName().endsWith(CONNECTION_SUFFIX) || node.isAccepted(file)) {
+                        continue;
+                    }
+                    try {
+                        SharedMemoryConnection connection = SharedMemoryConnection.open(this, file, node.dispatcher);
+                        if (connection != null && node.accept(connection)) {
+                            startReader(connection);
+                        }
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, e.getMessage(), e);
+                    }
+                }
+            }
+            try {
+                Thread.sleep(SCAN_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A node exposing services, its directory and the connections of its clients
+     */
+    private static class Node {
+        private final File directory;
+        private final EndpointDispatcher dispatcher;
+        private final Set<SharedMemoryConnection> connections = new HashSet<SharedMemoryConnection>();
+        private final Set<String> accepted = new HashSet<String>();
+        private boolean closed;
+
+        Node(File directory, EndpointDispatcher dispatcher) {
+            this.directory = directory;
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * Forget the connections closed by their clients, their files have been removed
+         */
+        synchronized void prune() {
+            for (Iterator<SharedMemoryConnection> i = connections.iterator(); i.hasNext();) {
+                SharedMemoryConnection connection = i.next();
+                if (connection.isClosed()) {
+                    accepted.remove(connection.getFile().getName());
+                    i.remove();
+                }
+            }
+        }
+
+        synchronized boolean isAccepted(File file) {
+            return accepted.contains(file.getName());
+        }
+
+        synchronized boolean accept(SharedMemoryConnection connection) {
+            if (closed) {
+                connection.close(new IOException("The node is stopped"));
+                return false;
+            }
+            accepted.add(connection.getFile().getName());
+            connections.add(connection);
+            return true;
+        }
+
+        synchronized void close(IOException cause) {
+            closed = true;
+            new File(directory, NODE_FILE).delete();
+            for (SharedMemoryConnection connection : connections) {
+                connection.close(cause);
+            }
+            connections.clear();
+        }
+    }
+
+}
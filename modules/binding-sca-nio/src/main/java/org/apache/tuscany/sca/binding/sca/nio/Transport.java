@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+
+/**
+ * A transport for the calls of the distributed SCA binding. The requests of many threads are
+ * multiplexed over the connections of the transport and correlated with their responses by
+ * request id.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface Transport {
+
+    /**
+     * Start the transport for a new user
+     */
+    void start();
+
+    /**
+     * Stop the transport for a user, it is shut down when its last user stops
+     */
+    void stop();
+
+    /**
+     * Expose a service
+     *
+     * @param uri the URI of the service
+     * @param endpoint the service
+     */
+    void addEndpoint(URI uri, NIOEndpoint endpoint);
+
+    /**
+     * Remove a service
+     *
+     * @param uri the URI of the service
+     */
+    void removeEndpoint(URI uri);
+
+    /**
+     * Invoke a remote service
+     *
+     * @param uri the URI of the service
+     * @param operation the codec of the operation
+     * @param args the arguments
+     * @param classLoader the class loader used to load the subtypes named in the result
+     * @return the result
+     * @throws InvocationTargetException if the operation has thrown an exception
+     */
+    Object invoke(URI uri, OperationCodec operation, Object[] args, ClassLoader classLoader)
+        throws InvocationTargetException;
+
+}
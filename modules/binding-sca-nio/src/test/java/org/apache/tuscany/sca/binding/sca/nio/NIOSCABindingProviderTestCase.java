@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.tuscany.sca.assembly.SCABinding;
+import org.apache.tuscany.sca.binding.sca.DistributedSCABinding;
+import org.apache.tuscany.sca.binding.sca.impl.DistributedSCABindingImpl;
+import org.apache.tuscany.sca.binding.sca.impl.SCABindingFactoryImpl;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.java.DefaultJavaInterfaceFactory;
+import org.apache.tuscany.sca.interfacedef.java.JavaInterfaceContract;
+import org.apache.tuscany.sca.interfacedef.java.JavaInterfaceFactory;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.invocation.Message;
+import org.apache.tuscany.sca.runtime.EndpointReference;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+import org.apache.tuscany.sca.runtime.RuntimeComponentReference;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oasisopen.sca.ServiceRuntimeException;
+import org.oasisopen.sca.annotation.Remotable;
+
+/**
+ * Wires a reference of one node to a service of another node through the binding providers,
+ * each node having its own transport.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOSCABindingProviderTestCase {
+    private static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    private NIOTransport serviceTransport;
+    private NIOTransport referenceTransport;
+    private NIOSCAServiceBindingProvider serviceProvider;
+    private NIOSCAReferenceBindingProvider referenceProvider;
+    private InterfaceContract contract;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        JavaInterfaceFactory factory = new DefaultJavaInterfaceFactory();
+        JavaInterfaceContract javaContract = factory.createJavaInterfaceContract();
+        javaContract.setInterface(factory.createJavaInterface(Echo.class));
+        contract = javaContract;
+
+        SCABinding scaBinding = new SCABindingFactoryImpl().createSCABinding();
+        scaBinding.setURI("tuscany://localhost:" + port + "/EchoComponent/Echo");
+        DistributedSCABinding binding = new DistributedSCABindingImpl();
+        binding.setSCABinding(scaBinding);
+
+        // One connection, so that the calls after a failure reuse the same connection
+        serviceTransport = new NIOTransport(1, 10000, MAX_FRAME_SIZE, 4);
+        referenceTransport = new NIOTransport(1, 10000, MAX_FRAME_SIZE, 4);
+
+        RuntimeComponent component = stub(RuntimeComponent.class, "getURI", "EchoComponent");
+        serviceProvider =
+            new NIOSCAServiceBindingProvider(component, stub(RuntimeComponentService.class, null, null), binding,
+                                             serviceTransport);
+        referenceProvider =
+            new NIOSCAReferenceBindingProvider(component, stub(RuntimeComponentReference.class, null, null), binding,
+                                               referenceTransport);
+        serviceProvider.start();
+        referenceProvider.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        referenceProvider.stop();
+        serviceProvider.stop();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        assertEquals("Hello", invoke("echo", "Hello"));
+        assertEquals("abcabcabc", invoke("repeat", "abc", 3));
+    }
+
+    @Test
+    public void testFault() throws Exception {
+        Object fault = invokeFault("fail", "Boom");
+        assertTrue(fault instanceof IOException);
+        assertEquals("Boom", ((IOException)fault).getMessage());
+    }
+
+    @Test
+    public void testLargeRequestFailsAlone() throws Exception {
+        char[] large = new char[MAX_FRAME_SIZE];
+        Arrays.fill(large, 'a');
+        Object fault = invokeFault("echo", new String(large));
+        assertTrue(fault instanceof ServiceRuntimeException);
+        assertTrue(((Throwable)fault).getMessage().contains("maximum frame size"));
+
+        // The connection is still open
+        assertEquals(1, referenceTransport.getConnectionCount());
+        assertEquals("Hello", invoke("echo", "Hello"));
+        assertEquals(1, referenceTransport.getConnectionCount());
+    }
+
+    @Test
+    public void testLargeResponseFailsAlone() throws Exception {
+        assertEquals("Hello", invoke("echo", "Hello"));
+        Object fault = invokeFault("repeat", "abcd", MAX_FRAME_SIZE);
+        assertTrue(fault instanceof ServiceRuntimeException);
+        assertTrue(((Throwable)fault).getMessage().contains("maximum frame size"));
+
+        assertEquals("Hello", invoke("echo", "Hello"));
+        assertEquals(1, referenceTransport.getConnectionCount());
+    }
+
+    @Test
+    public void testLongErrorMessage() throws Exception {
+        assertEquals("Hello", invoke("echo", "Hello"));
+        // Longer than the 64KB that DataOutput.writeUTF() accepts
+        Object fault = invokeFault("crash", "\u00e9", 100000);
+        assertTrue(fault instanceof ServiceRuntimeException);
+
+        assertEquals("Hello", invoke("echo", "Hello"));
+        assertEquals(1, referenceTransport.getConnectionCount());
+    }
+
+    private Object invoke(String operationName, Object... args) {
+        Message msg = send(operationName, args);
+        if (msg.isFault()) {
+            throw new AssertionError(msg.getBody());
+        }
+        return msg.getBody();
+    }
+
+    private Object invokeFault(String operationName, Object... args) {
+        Message msg = send(operationName, args);
+        assertTrue(msg.isFault());
+        return msg.getBody();
+    }
+
+    private Message send(String operationName, Object[] args) {
+        Invoker invoker = referenceProvider.createInvoker(getOperation(operationName));
+        Message msg = new TestMessage();
+        msg.setBody(args);
+        return invoker.invoke(msg);
+    }
+
+    private Operation getOperation(String name) {
+        for (Operation operation : contract.getInterface().getOperations()) {
+            if (operation.getName().equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * Stub the runtime model: the services and the references return the interface contract,
+     * and the wire of the service invokes an EchoImpl
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T stub(Class<T> type, final String name, final Object value) {
+        return (T)Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String methodName = method.getName();
+                if (methodName.equals(name)) {
+                    return value;
+                } else if (methodName.equals("getInterfaceContract")) {
+                    return contract;
+                } else if (methodName.equals("getName")) {
+                    return "Echo";
+                } else if (methodName.equals("getRuntimeWire")) {
+                    return createWire();
+                }
+                return null;
+            }
+        });
+    }
+
+    private RuntimeWire createWire() {
+        return (RuntimeWire)Proxy.newProxyInstance(RuntimeWire.class.getClassLoader(),
+                                                   new Class<?>[] {RuntimeWire.class},
+                                                   new InvocationHandler() {
+                                                       public Object invoke(Object proxy, Method method, Object[] args)
+                                                           throws Throwable {
+                                                           if (method.getName().equals("invoke")) {
+                                                               return invokeEcho((Operation)args[0], (Object[])args[1]);
+                                                           }
+                                                           return null;
+                                                       }
+                                                   });
+    }
+
+    private static Object invokeEcho(Operation operation, Object[] args) throws InvocationTargetException {
+        for (Method method : Echo.class.getMethods()) {
+            if (method.getName().equals(operation.getName())) {
+                try {
+                    return method.invoke(new EchoImpl(), args);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        throw new IllegalArgumentException(operation.getName());
+    }
+
+    @Remotable
+    public static interface Echo {
+        String echo(String message);
+
+        String repeat(String message, int count);
+
+        String fail(String message) throws IOException;
+
+        String crash(String message, int count);
+    }
+
+    public static class EchoImpl implements Echo {
+        public String echo(String message) {
+            return message;
+        }
+
+        public String repeat(String message, int count) {
+            StringBuilder builder = new StringBuilder(message.length() * count);
+            for (int i = 0; i < count; i++) {
+                builder.append(message);
+            }
+            return builder.toString();
+        }
+
+        public String fail(String message) throws IOException {
+            throw new IOException(message);
+        }
+
+        public String crash(String message, int count) {
+            throw new IllegalStateException(repeat(message, count));
+        }
+    }
+
+    private static class TestMessage implements Message {
+        private Object body;
+        private boolean fault;
+        private Operation operation;
+        private Object messageID;
+        private EndpointReference from;
+        private EndpointReference to;
+
+        @SuppressWarnings("unchecked")
+        public <T> T getBody() {
+            return (T)body;
+        }
+
+        public <T> void setBody(T body) {
+            this.body = body;
+            this.fault = false;
+        }
+
+        public <T> void setFaultBody(T fault) {
+            this.body = fault;
+            this.fault = true;
+        }
+
+        public boolean isFault() {
+            return fault;
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public void setOperation(Operation op) {
+            this.operation = op;
+        }
+
+        public Object getMessageID() {
+            return messageID;
+        }
+
+        public void setMessageID(Object messageId) {
+            this.messageID = messageId;
+        }
+
+        public EndpointReference getFrom() {
+            return from;
+        }
+
+        public void setFrom(EndpointReference from) {
+            this.from = from;
+        }
+
+        public EndpointReference getTo() {
+            return to;
+        }
+
+        public void setTo(EndpointReference to) {
+            this.to = to;
+        }
+
+        public List<Object> getHeaders() {
+            return null;
+        }
+    }
+
+}
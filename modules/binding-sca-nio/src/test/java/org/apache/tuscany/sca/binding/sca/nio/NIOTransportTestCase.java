@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oasisopen.sca.ServiceRuntimeException;
+
+/**
+ * Runs two transports on localhost, one for the services and one for the references.
+ *
+ * @version $Rev$ $Date$
+ */
+public class NIOTransportTestCase {
+    static final OperationCodec ECHO = new OperationCodec("echo", new Type[] {String.class}, String.class);
+    static final OperationCodec FAIL =
+        new OperationCodec("fail", new Type[] {String.class}, String.class, IOException.class);
+
+    private NIOTransport server;
+    private NIOTransport client;
+    private URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        uri = URI.create("tuscany://localhost:" + port + "/EchoComponent/EchoService");
+
+        server = new NIOTransport();
+        server.start();
+        server.addEndpoint(uri, new EchoEndpoint());
+        client = new NIOTransport(2, 10000);
+        client.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        server.removeEndpoint(uri);
+        server.stop();
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+        assertEquals("Hello", client.invoke(uri, ECHO, new Object[] {"Hello"}, cl));
+        assertEquals(null, client.invoke(uri, ECHO, new Object[] {null}, cl));
+
+        // a large payload spans several reads
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            large.append(i);
+        }
+        assertEquals(large.toString(), client.invoke(uri, ECHO, new Object[] {large.toString()}, cl));
+
+        try {
+            client.invoke(uri, FAIL, new Object[] {"Boom"}, cl);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IOException);
+            assertEquals("Boom", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testUndeclaredTypes() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+
+        // Only the declared types can be sent
+        OperationCodec objectEcho = new OperationCodec("echo", new Type[] {Object.class}, Object.class);
+        try {
+            client.invoke(uri, objectEcho, new Object[] {new Bean()}, cl);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof ServiceRuntimeException);
+        }
+
+        // An undeclared exception is reported without being sent
+        try {
+            client.invoke(uri, ECHO, new Object[] {"fail"}, cl);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof ServiceRuntimeException);
+            assertTrue(e.getCause().getMessage().contains("IllegalStateException"));
+        }
+
+        // The transport is still usable
+        assertEquals("Hello", client.invoke(uri, ECHO, new Object[] {"Hello"}, cl));
+    }
+
+    @Test
+    public void testFrameLimit() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        URI smallUri = URI.create("tuscany://localhost:" + port + "/EchoComponent/EchoService");
+        NIOTransport small = new NIOTransport(1, 10000, 1024, 4);
+        small.start();
+        try {
+            small.addEndpoint(smallUri, new EchoEndpoint());
+            ClassLoader cl = getClass().getClassLoader();
+            assertEquals("Hello", client.invoke(smallUri, ECHO, new Object[] {"Hello"}, cl));
+            StringBuilder large = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                large.append(i);
+            }
+            try {
+                client.invoke(smallUri, ECHO, new Object[] {large.toString()}, cl);
+                fail("ServiceUnavailableException expected");
+            } catch (ServiceRuntimeException e) {
+                // The server has closed the connection
+            }
+        } finally {
+            small.removeEndpoint(smallUri);
+            small.stop();
+        }
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        final ClassLoader cl = getClass().getClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 500; i++) {
+            final String value = "Request " + i;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    // the responses come back out of order, each must match its request
+                    return value.equals(client.invoke(uri, ECHO, new Object[] {value}, cl));
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+
+        // the calls are multiplexed over the pooled connections
+        assertEquals(2, client.getConnectionCount());
+    }
+
+    public static class Bean {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class EchoEndpoint implements NIOEndpoint {
+
+        public ClassLoader getClassLoader() {
+            return getClass().getClassLoader();
+        }
+
+        public OperationCodec getOperationCodec(String operationName) {
+            return "echo".equals(operationName) ? ECHO : "fail".equals(operationName) ? FAIL : null;
+        }
+
+        public Object invoke(String operationName, Object[] args) throws InvocationTargetException {
+            String value = (String)args[0];
+            if ("fail".equals(operationName)) {
+                throw new InvocationTargetException(new IOException(value));
+            } else if ("fail".equals(value)) {
+                throw new InvocationTargetException(new IllegalStateException(value));
+            }
+            if (value != null && value.hashCode() % 3 == 0) {
+                try {
+                    // delay some of the responses
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return value;
+        }
+    }
+
+}
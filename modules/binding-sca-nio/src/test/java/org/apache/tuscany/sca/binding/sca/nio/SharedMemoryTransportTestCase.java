@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.sca.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.oasisopen.sca.ServiceUnavailableException;
+
+/**
+ * Runs two shared memory transports sharing a directory, one for the services and one for the
+ * references.
+ *
+ * @version $Rev$ $Date$
+ */
+public class SharedMemoryTransportTestCase {
+    private static final OperationCodec ECHO = NIOTransportTestCase.ECHO;
+    private static final OperationCodec FAIL = NIOTransportTestCase.FAIL;
+
+    private File directory;
+    private SharedMemoryTransport server;
+    private SharedMemoryTransport client;
+    private URI uri;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("tuscany-shm", "");
+        directory.delete();
+        directory.mkdirs();
+        uri = URI.create("shm://node1/EchoComponent/EchoService");
+
+        // Small rings so that the large messages wrap around them
+        server = new SharedMemoryTransport(directory, 4096, 10000);
+        server.start();
+        server.addEndpoint(uri, new EchoEndpoint());
+        client = new SharedMemoryTransport(directory, 4096, 10000);
+        client.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        server.removeEndpoint(uri);
+        server.stop();
+        for (File file : new File(directory, "node1").listFiles()) {
+            file.delete();
+        }
+        new File(directory, "node1").delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        ClassLoader cl = getClass().getClassLoader();
+        assertEquals("Hello", client.invoke(uri, ECHO, new Object[] {"Hello"}, cl));
+
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            large.append(i);
+        }
+        assertEquals(large.toString(), client.invoke(uri, ECHO, new Object[] {large.toString()}, cl));
+
+        try {
+            client.invoke(uri, FAIL, new Object[] {"Boom"}, cl);
+            fail("InvocationTargetException expected");
+        } catch (InvocationTargetException e) {
+            assertEquals("Boom", e.getCause().getMessage());
+        }
+
+        try {
+            client.invoke(URI.create("shm://node2/EchoComponent/EchoService"), ECHO, new Object[] {"Hello"}, cl);
+            fail("ServiceUnavailableException expected");
+        } catch (ServiceUnavailableException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentCalls() throws Exception {
+        final ClassLoader cl = getClass().getClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 200; i++) {
+            final String value = "Request " + i;
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() throws Exception {
+                    return value.equals(client.invoke(uri, ECHO, new Object[] {value}, cl));
+                }
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+    }
+
+    private static class EchoEndpoint implements NIOEndpoint {
+
+        public ClassLoader getClassLoader() {
+            return getClass().getClassLoader();
+        }
+
+        public OperationCodec getOperationCodec(String operationName) {
+            return "echo".equals(operationName) ? ECHO : "fail".equals(operationName) ? FAIL : null;
+        }
+
+        public Object invoke(String operationName, Object[] args) throws InvocationTargetException {
+            if ("fail".equals(operationName)) {
+                throw new InvocationTargetException(new IOException((String)args[0]));
+            }
+            return args[0];
+        }
+    }
+
+}
@@ -22,11 +22,17 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.xml.namespace.QName;
 
+import org.apache.axiom.om.OMContainer;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
 import org.apache.axiom.soap.SOAPBody;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
@@ -39,6 +45,7 @@ import org.apache.axis2.client.OperationClient;
 import org.apache.axis2.client.Options;
 import org.apache.axis2.context.MessageContext;
 import org.apache.axis2.transport.http.HTTPConstants;
+import org.apache.commons.httpclient.HttpMethodBase;
 import org.apache.tuscany.sca.binding.ws.WebServiceBinding;
 import org.apache.tuscany.sca.binding.ws.axis2.policy.authentication.token.Axis2TokenAuthenticationPolicy;
 import org.apache.tuscany.sca.binding.ws.axis2.policy.configurator.Axis2BindingBasicAuthenticationConfigurator;
@@ -58,6 +65,7 @@ import org.apache.tuscany.sca.runtime.ReferenceParameters;
  * @version $Rev$ $Date$
  */
 public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
+    private static final Logger logger = Logger.getLogger(Axis2BindingInvoker.class.getName());
     private final static String SCA11_TUSCANY_NS = "http://tuscany.apache.org/xmlns/sca/1.1";
 
     public static final QName QNAME_WSA_FROM =
@@ -74,6 +82,7 @@ public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
     private Options options;
     private SOAPFactory soapFactory;    
     private WebServiceBinding wsBinding;
+    private long streamingThreshold = -1;
     
     private BasicAuthenticationPolicy basicAuthenticationPolicy = null;
     private Axis2TokenAuthenticationPolicy axis2TokenAuthenticationPolicy = null;
@@ -137,9 +146,9 @@ public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
         final OperationClient operationClient = createOperationClient(msg);
 
         // ensure connections are tracked so that they can be closed by the reference binding
-        MessageContext requestMC = operationClient.getMessageContext("Out");
+        final MessageContext requestMC = operationClient.getMessageContext("Out");
         requestMC.getOptions().setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Boolean.TRUE);
-        requestMC.getOptions().setTimeOutInMilliSeconds(240000L);
+        requestMC.getOptions().setTimeOutInMilliSeconds(serviceClient.getPoolConfiguration().getReadTimeout());
 
         /*
         for ( PolicyHandler policyHandler : policyHandlerList ) {
@@ -184,6 +193,22 @@ public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
         
         OMElement response = responseMC.getEnvelope().getBody().getFirstElement();
 
+        if (response != null && isStreaming(requestMC)) {
+            StreamingResponseReader reader = new StreamingResponseReader(response.getXMLStreamReaderWithoutCaching()) {
+                @Override
+                protected void release() {
+                    try {
+                        operationClient.complete(requestMC);
+                    } catch (AxisFault e) {
+                        logger.log(Level.WARNING, e.getMessage(), e);
+                    }
+                }
+            };
+            // The interceptor closes the reader once the databinding interceptor has returned
+            StreamingResponseInterceptor.register(reader);
+            return createStreamingResponse(response, reader);
+        }
+
         // FIXME: [rfeng] We have to pay performance penalty to build the complete OM as the operationClient.complete() will
         // release the underlying HTTP connection. 
         // Force the response to be populated, see https://issues.apache.org/jira/browse/TUSCANY-1541
@@ -196,6 +221,53 @@ public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
         return response;
     }
 
+    /**
+     * A response is streamed if its length is known and larger than the threshold, and the
+     * invocation is made through a StreamingResponseInterceptor that will release the
+     * connection. Chunked responses of unknown length are buffered.
+     */
+    private boolean isStreaming(MessageContext requestMC) {
+        if (!isStreamingEnabled() || !StreamingResponseInterceptor.isActive()) {
+            return false;
+        }
+        Object method = requestMC.getProperty(HTTPConstants.HTTP_METHOD);
+        if (!(method instanceof HttpMethodBase)) {
+            return false;
+        }
+        long length = ((HttpMethodBase)method).getResponseContentLength();
+        return length > streamingThreshold;
+    }
+
+    /**
+     * Create an OMElement that is built from the HTTP stream as the databinding pulls it.
+     * The reader releases the connection once the payload has been read or it's closed.
+     *
+     * @param response the payload in the SOAP body
+     * @param reader the reader over the payload
+     * @return the payload built from the reader
+     */
+    static OMElement createStreamingResponse(OMElement response, StreamingResponseReader reader) {
+        try {
+            OMElement element = new StAXOMBuilder(reader).getDocumentElement();
+            // Keep the namespaces declared on the SOAP envelope and body in scope
+            OMContainer parent = response.getParent();
+            while (parent instanceof OMElement) {
+                OMElement parentElement = (OMElement)parent;
+                for (Iterator<?> i = parentElement.getAllDeclaredNamespaces(); i.hasNext();) {
+                    OMNamespace ns = (OMNamespace)i.next();
+                    if (element.findNamespaceURI(ns.getPrefix()) == null) {
+                        element.declareNamespace(ns);
+                    }
+                }
+                parent = parentElement.getParent();
+            }
+            return element;
+        } catch (RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
     @SuppressWarnings("deprecation")
     protected OperationClient createOperationClient(Message msg) throws AxisFault {
         SOAPEnvelope env = soapFactory.getDefaultEnvelope();
@@ -289,9 +361,27 @@ public class Axis2BindingInvoker implements Invoker, DataExchangeSemantics {
         } catch (PrivilegedActionException e) {
             throw (AxisFault)e.getException();
         }
+        serviceClient.setConnectionHeader(requestMC.getOptions());
         return operationClient;
     }
     
+    /**
+     * Set the size above which the responses are streamed from the HTTP connection to the
+     * databinding instead of being buffered
+     *
+     * @param streamingThreshold the size in bytes, a negative value always buffers the responses
+     */
+    public void setStreamingThreshold(long streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * @return true if the responses larger than the threshold can be streamed
+     */
+    public boolean isStreamingEnabled() {
+        return streamingThreshold >= 0;
+    }
+
     public boolean allowsPassByReference() {
         return true;
     }
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import org.apache.tuscany.sca.core.ExtensionPointRegistry;
+import org.apache.tuscany.sca.core.ModuleActivator;
+import org.apache.tuscany.sca.runtime.RuntimeWireProcessorExtensionPoint;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class Axis2BindingModuleActivator implements ModuleActivator {
+    private StreamingResponseWireProcessor wireProcessor;
+
+    public void start(ExtensionPointRegistry registry) {
+        RuntimeWireProcessorExtensionPoint wireProcessors =
+            registry.getExtensionPoint(RuntimeWireProcessorExtensionPoint.class);
+        if (wireProcessors != null) {
+            wireProcessor = new StreamingResponseWireProcessor();
+            wireProcessors.addWireProcessor(wireProcessor);
+        }
+    }
+
+    public void stop(ExtensionPointRegistry registry) {
+        if (wireProcessor != null) {
+            RuntimeWireProcessorExtensionPoint wireProcessors =
+                registry.getExtensionPoint(RuntimeWireProcessorExtensionPoint.class);
+            wireProcessors.removeWireProcessor(wireProcessor);
+            wireProcessor = null;
+        }
+    }
+
+}
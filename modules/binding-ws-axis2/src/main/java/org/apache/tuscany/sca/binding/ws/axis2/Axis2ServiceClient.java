@@ -27,9 +27,15 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.wsdl.Binding;
 import javax.wsdl.BindingOperation;
@@ -63,12 +69,21 @@ import org.apache.axis2.description.WSDL11ToAxisServiceBuilder;
 import org.apache.axis2.description.WSDL2Constants;
 import org.apache.axis2.transport.http.HTTPConstants;
 import org.apache.axis2.util.threadpool.ThreadPool;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
-import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.tuscany.sca.assembly.AbstractContract;
 import org.apache.tuscany.sca.binding.ws.WebServiceBinding;
 import org.apache.tuscany.sca.binding.ws.axis2.policy.configuration.Axis2ConfigParamPolicy;
+import org.apache.tuscany.sca.databinding.binary.BinaryDataBinding;
+import org.apache.tuscany.sca.databinding.javabeans.JavaBeansDataBinding;
+import org.apache.tuscany.sca.databinding.javabeans.SimpleJavaDataBinding;
+import org.apache.tuscany.sca.databinding.jaxb.JAXBDataBinding;
+import org.apache.tuscany.sca.databinding.xml.DOMDataBinding;
+import org.apache.tuscany.sca.databinding.xml.XMLBufferDataBinding;
+import org.apache.tuscany.sca.databinding.xml.XMLStringDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
 import org.apache.tuscany.sca.interfacedef.Operation;
 import org.apache.tuscany.sca.invocation.Invoker;
 import org.apache.tuscany.sca.invocation.MessageFactory;
@@ -80,11 +95,20 @@ import org.apache.ws.commons.schema.resolver.URIResolver;
 import org.oasisopen.sca.ServiceRuntimeException;
 
 public class Axis2ServiceClient {
+    private static final Logger logger = Logger.getLogger(Axis2ServiceClient.class.getName());
+
+    // The databindings whose transformers read the whole response
+    private static final Set<String> CONSUMING_DATABINDINGS =
+        new HashSet<String>(Arrays.asList(SimpleJavaDataBinding.NAME, JavaBeansDataBinding.NAME,
+                                          JAXBDataBinding.NAME, DOMDataBinding.NAME, XMLStringDataBinding.NAME,
+                                          XMLBufferDataBinding.NAME, BinaryDataBinding.NAME));
 
     private RuntimeComponent component;
     private AbstractContract contract;
     private WebServiceBinding wsBinding;
     private ServiceClient serviceClient;
+    private HttpClientPoolConfiguration poolConfiguration;
+    private PooledHttpConnectionManager connectionManager;
 
     public Axis2ServiceClient(RuntimeComponent component,
                               AbstractContract contract,
@@ -94,6 +118,7 @@ public class Axis2ServiceClient {
         this.component = component;
         this.contract = contract;
         this.wsBinding = wsBinding;
+        this.poolConfiguration = HttpClientPoolConfiguration.getConfiguration(wsBinding);
     }
 
     protected void start() {
@@ -105,6 +130,18 @@ public class Axis2ServiceClient {
     public ServiceClient getServiceClient() {
         return serviceClient;
     }
+
+    public HttpClientPoolConfiguration getPoolConfiguration() {
+        return poolConfiguration;
+    }
+
+    /**
+     * @return the pool of HTTP connections of the reference, its statistics are published
+     *         through its getters
+     */
+    public PooledHttpConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
     
     protected void configurePolicy(ConfigurationContext context, PolicySet ps) throws AxisFault {
         if (ps == null) {
@@ -177,14 +214,9 @@ public class Axis2ServiceClient {
 
             HttpClient httpClient = (HttpClient)configContext.getProperty(HTTPConstants.CACHED_HTTP_CLIENT);
             if (httpClient == null) {
-                MultiThreadedHttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
-                HttpConnectionManagerParams connectionManagerParams = new HttpConnectionManagerParams();
-                connectionManagerParams.setDefaultMaxConnectionsPerHost(2);
-                connectionManagerParams.setTcpNoDelay(true);
-                connectionManagerParams.setStaleCheckingEnabled(true);
-                connectionManagerParams.setLinger(0);
-                connectionManager.setParams(connectionManagerParams);
+                connectionManager = new PooledHttpConnectionManager(poolConfiguration);
                 httpClient = new HttpClient(connectionManager);
+                httpClient.getParams().setConnectionManagerTimeout(poolConfiguration.getConnectionManagerTimeout());
                 configContext.setThreadPool(new ThreadPool(1, 5));
                 configContext.setProperty(HTTPConstants.REUSE_HTTP_CLIENT, Boolean.TRUE);
                 configContext.setProperty(HTTPConstants.CACHED_HTTP_CLIENT, httpClient);
@@ -323,10 +355,38 @@ public class Axis2ServiceClient {
             if (httpClient != null)
                 ((MultiThreadedHttpConnectionManager)httpClient.getHttpConnectionManager()).shutdown();
 
+            if (connectionManager != null && logger.isLoggable(Level.FINE)) {
+                logger.fine("HTTP connection pool of " + wsBinding.getURI() + ": " + connectionManager);
+            }
+            connectionManager = null;
             serviceClient = null;
         }
     }
 
+    /**
+     * Ask the server to close the connection after the response if keep-alive is disabled. The
+     * Connection header is added to the HTTP headers already set for the request.
+     *
+     * @param options the options of the request message context
+     */
+    void setConnectionHeader(Options options) {
+        if (poolConfiguration.isKeepAlive()) {
+            return;
+        }
+        List<Object> headers = new ArrayList<Object>();
+        Object existing = options.getProperty(HTTPConstants.HTTP_HEADERS);
+        if (existing instanceof List) {
+            for (Object header : (List<?>)existing) {
+                if (!(header instanceof Header)
+                    || !HTTPConstants.HEADER_CONNECTION.equalsIgnoreCase(((Header)header).getName())) {
+                    headers.add(header);
+                }
+            }
+        }
+        headers.add(new Header(HTTPConstants.HEADER_CONNECTION, "close"));
+        options.setProperty(HTTPConstants.HTTP_HEADERS, headers);
+    }
+
     /**
      * Create and configure an Axis2BindingInvoker for each operation
      */
@@ -345,7 +405,9 @@ public class Axis2ServiceClient {
             options.setAction(soapAction);
         }
 
-        options.setTimeOutInMilliSeconds(30 * 1000); // 30 seconds
+        options.setTimeOutInMilliSeconds(poolConfiguration.getReadTimeout());
+        options.setProperty(HTTPConstants.SO_TIMEOUT, poolConfiguration.getReadTimeout());
+        options.setProperty(HTTPConstants.CONNECTION_TIMEOUT, poolConfiguration.getConnectTimeout());
 
         // Allow privileged access to read properties. Requires PropertiesPermission read in
         // security policy.
@@ -368,11 +430,37 @@ public class Axis2ServiceClient {
             invoker = new Axis2OneWayBindingInvoker(this, wsdlOperationQName, options, soapFactory, wsBinding);
         } else {
             invoker = new Axis2BindingInvoker(this, wsdlOperationQName, options, soapFactory, wsBinding);
+            if (isResponseTransformed(contract.getInterfaceContract(), operation)) {
+                invoker.setStreamingThreshold(poolConfiguration.getStreamingThreshold());
+            }
         }
         
         return invoker;
     }
 
+    /**
+     * The response can only be streamed from the connection if the databinding interceptor
+     * reads it completely into another databinding before the invocation returns. An OMElement
+     * handed over to the application as is, or a lazy view of it such as an XMLStreamReader or
+     * a Source, would be read after the stream is closed.
+     *
+     * @param interfaceContract the interface contract of the reference
+     * @param operation the operation of the binding
+     * @return true if the response is fully consumed by its transformation
+     */
+    static boolean isResponseTransformed(InterfaceContract interfaceContract, Operation operation) {
+        if (interfaceContract == null || interfaceContract.getInterface() == null) {
+            return false;
+        }
+        for (Operation op : interfaceContract.getInterface().getOperations()) {
+            if (op.getName().equals(operation.getName())) {
+                DataType<?> outputType = op.getOutputType();
+                return outputType != null && CONSUMING_DATABINDINGS.contains(outputType.getDataBinding());
+            }
+        }
+        return false;
+    }
+
     private boolean requiresSOAP12() {
         return isIntentRequired(wsBinding, SOAP12_INTENT);
     }
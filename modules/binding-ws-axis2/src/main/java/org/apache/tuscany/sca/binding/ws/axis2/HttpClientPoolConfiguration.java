@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import java.net.URI;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.tuscany.sca.assembly.Binding;
+import org.apache.tuscany.sca.binding.ws.axis2.policy.configuration.Axis2ConfigParamPolicy;
+import org.apache.tuscany.sca.policy.PolicySet;
+import org.apache.tuscany.sca.policy.PolicySubject;
+
+/**
+ * The configuration of the pool of HTTP connections used by a binding.ws reference and of
+ * the way it reads the responses.
+ * <p>
+ * The defaults can be changed with system properties named after the parameters with the
+ * <code>org.apache.tuscany.sca.binding.ws.axis2.</code> prefix. Each reference can override
+ * them with a wsConfigParam policy in a policy set attached to its binding, for example:
+ * <pre>
+ * &lt;tuscany:wsConfigParam&gt;
+ *     &lt;parameter name="http.maxConnectionsPerHost"&gt;20&lt;/parameter&gt;
+ *     &lt;parameter name="http.maxConnectionsPerHost.example.com:8080"&gt;50&lt;/parameter&gt;
+ *     &lt;parameter name="http.readTimeout"&gt;60000&lt;/parameter&gt;
+ * &lt;/tuscany:wsConfigParam&gt;
+ * </pre>
+ * The host specific limits are given as host, host:port or scheme://host:port after the
+ * parameter name. The timeouts are in milliseconds.
+ *
+ * @version $Rev$ $Date$
+ */
+public class HttpClientPoolConfiguration {
+    public static final String MAX_CONNECTIONS_PER_HOST = "http.maxConnectionsPerHost";
+    public static final String MAX_TOTAL_CONNECTIONS = "http.maxTotalConnections";
+    public static final String IDLE_CONNECTION_TIMEOUT = "http.idleConnectionTimeout";
+    public static final String CONNECT_TIMEOUT = "http.connectTimeout";
+    public static final String READ_TIMEOUT = "http.readTimeout";
+    public static final String CONNECTION_MANAGER_TIMEOUT = "http.connectionManagerTimeout";
+    public static final String KEEP_ALIVE = "http.keepAlive";
+    public static final String STREAMING_THRESHOLD = "http.streamingThreshold";
+
+    private static final String SYSTEM_PROPERTY_PREFIX = "org.apache.tuscany.sca.binding.ws.axis2.";
+    private static final String[] PARAMETERS =
+        {MAX_CONNECTIONS_PER_HOST, MAX_TOTAL_CONNECTIONS, IDLE_CONNECTION_TIMEOUT, CONNECT_TIMEOUT, READ_TIMEOUT,
+         CONNECTION_MANAGER_TIMEOUT, KEEP_ALIVE, STREAMING_THRESHOLD};
+
+    private int maxConnectionsPerHost = 10;
+    private int maxTotalConnections = 100;
+    private Map<URI, Integer> hostMaxConnections = new LinkedHashMap<URI, Integer>();
+    private long idleConnectionTimeout = 60000L;
+    private int connectTimeout = 30000;
+    private int readTimeout = 240000;
+    private long connectionManagerTimeout = 0L;
+    private boolean keepAlive = true;
+    private long streamingThreshold = 65536L;
+
+    /**
+     * Create the configuration for a binding from the system properties and the wsConfigParam
+     * policies attached to the binding
+     *
+     * @param binding the binding.ws of a reference
+     * @return the configuration
+     */
+    public static HttpClientPoolConfiguration getConfiguration(Binding binding) {
+        HttpClientPoolConfiguration configuration = new HttpClientPoolConfiguration();
+        configuration.setSystemProperties();
+        if (binding instanceof PolicySubject) {
+            for (PolicySet policySet : ((PolicySubject)binding).getPolicySets()) {
+                for (Object policy : policySet.getPolicies()) {
+                    if (policy instanceof Axis2ConfigParamPolicy) {
+                        for (Map.Entry<String, OMElement> param : ((Axis2ConfigParamPolicy)policy).getParamElements()
+                            .entrySet()) {
+                            configuration.setParameter(param.getKey(), param.getValue().getText());
+                        }
+                    }
+                }
+            }
+        }
+        return configuration;
+    }
+
+    private void setSystemProperties() {
+        // Allow privileged access to read properties. Requires PropertyPermission read in
+        // security policy.
+        Map<String, String> properties = AccessController.doPrivileged(new PrivilegedAction<Map<String, String>>() {
+            public Map<String, String> run() {
+                Map<String, String> properties = new LinkedHashMap<String, String>();
+                for (String name : PARAMETERS) {
+                    String value = System.getProperty(SYSTEM_PROPERTY_PREFIX + name);
+                    if (value != null) {
+                        properties.put(name, value);
+                    }
+                }
+                return properties;
+            }
+        });
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            setParameter(property.getKey(), property.getValue());
+        }
+    }
+
+    /**
+     * Set a parameter of the configuration. The parameters that are not HTTP connection pool
+     * parameters are ignored as they configure Axis2 itself.
+     *
+     * @param name the parameter name
+     * @param value the parameter value
+     * @throws IllegalArgumentException if the value of a pool parameter is invalid
+     */
+    public void setParameter(String name, String value) {
+        if (name == null || !name.startsWith("http.") || value == null) {
+            return;
+        }
+        value = value.trim();
+        try {
+            if (MAX_CONNECTIONS_PER_HOST.equals(name)) {
+                maxConnectionsPerHost = toPositiveInt(value);
+            } else if (name.startsWith(MAX_CONNECTIONS_PER_HOST + ".")) {
+                setMaxConnectionsPerHost(name.substring(MAX_CONNECTIONS_PER_HOST.length() + 1), toPositiveInt(value));
+            } else if (MAX_TOTAL_CONNECTIONS.equals(name)) {
+                maxTotalConnections = toPositiveInt(value);
+            } else if (IDLE_CONNECTION_TIMEOUT.equals(name)) {
+                idleConnectionTimeout = Long.parseLong(value);
+            } else if (CONNECT_TIMEOUT.equals(name)) {
+                connectTimeout = Integer.parseInt(value);
+            } else if (READ_TIMEOUT.equals(name)) {
+                readTimeout = Integer.parseInt(value);
+            } else if (CONNECTION_MANAGER_TIMEOUT.equals(name)) {
+                connectionManagerTimeout = Long.parseLong(value);
+            } else if (KEEP_ALIVE.equals(name)) {
+                keepAlive = Boolean.valueOf(value);
+            } else if (STREAMING_THRESHOLD.equals(name)) {
+                streamingThreshold = Long.parseLong(value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+        }
+    }
+
+    private static int toPositiveInt(String value) {
+        int i = Integer.parseInt(value);
+        if (i <= 0) {
+            throw new IllegalArgumentException(value);
+        }
+        return i;
+    }
+
+    /**
+     * Set the maximum number of connections to one host
+     *
+     * @param host host, host:port or scheme://host:port, the scheme defaults to http and the
+     *            port to the default port of the scheme
+     * @param max the maximum number of connections
+     */
+    public void setMaxConnectionsPerHost(String host, int max) {
+        URI uri = URI.create(host.indexOf("://") == -1 ? "http://" + host : host);
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("Invalid host: " + host);
+        }
+        String scheme = uri.getScheme().toLowerCase();
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equals(scheme) ? 443 : 80;
+        }
+        hostMaxConnections.put(URI.create(scheme + "://" + uri.getHost().toLowerCase() + ":" + port), max);
+    }
+
+    /**
+     * @return the host specific connection limits, keyed by scheme://host:port
+     */
+    public Map<URI, Integer> getHostMaxConnections() {
+        return hostMaxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    /**
+     * @return the time after which an unused pooled connection is closed, 0 keeps the
+     *         connections until the server closes them
+     */
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * @return the time a request waits for a pooled connection, 0 waits until one is free
+     */
+    public long getConnectionManagerTimeout() {
+        return connectionManagerTimeout;
+    }
+
+    public void setConnectionManagerTimeout(long connectionManagerTimeout) {
+        this.connectionManagerTimeout = connectionManagerTimeout;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return the size in bytes above which a response is read directly from the connection
+     *         by the databinding instead of being buffered, chunked responses of unknown size
+     *         are always buffered, and so are all the responses if the value is negative
+     */
+    public long getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    public void setStreamingThreshold(long streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+
+/**
+ * A pool of HTTP connections configured by a HttpClientPoolConfiguration. It closes the
+ * connections that stay idle for too long and keeps the utilization and wait time statistics
+ * of the pool.
+ *
+ * @version $Rev$ $Date$
+ */
+public class PooledHttpConnectionManager extends MultiThreadedHttpConnectionManager {
+    // The connections handed out by the pool. A connection that is released no longer has a
+    // host, and one that is lost without being released is garbage collected and reclaimed by
+    // the pool, so neither is counted as leased.
+    private final Map<HttpConnection, Boolean> leasedConnections = new WeakHashMap<HttpConnection, Boolean>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private IdleConnectionTimeoutThread idleConnectionTimeoutThread;
+
+    public PooledHttpConnectionManager(HttpClientPoolConfiguration configuration) {
+        HttpConnectionManagerParams params = new HttpConnectionManagerParams();
+        params.setDefaultMaxConnectionsPerHost(configuration.getMaxConnectionsPerHost());
+        params.setMaxTotalConnections(configuration.getMaxTotalConnections());
+        for (Map.Entry<URI, Integer> host : configuration.getHostMaxConnections().entrySet()) {
+            HostConfiguration hostConfiguration = new HostConfiguration();
+            URI uri = host.getKey();
+            hostConfiguration.setHost(uri.getHost(), uri.getPort(), uri.getScheme());
+            params.setMaxConnectionsPerHost(hostConfiguration, host.getValue());
+        }
+        params.setConnectionTimeout(configuration.getConnectTimeout());
+        params.setSoTimeout(configuration.getReadTimeout());
+        params.setTcpNoDelay(true);
+        params.setStaleCheckingEnabled(true);
+        params.setLinger(0);
+        setParams(params);
+
+        long idleConnectionTimeout = configuration.getIdleConnectionTimeout();
+        if (idleConnectionTimeout > 0) {
+            idleConnectionTimeoutThread = new IdleConnectionTimeoutThread();
+            idleConnectionTimeoutThread.setConnectionTimeout(idleConnectionTimeout);
+            idleConnectionTimeoutThread.setTimeoutInterval(Math.max(idleConnectionTimeout / 2, 1000L));
+            idleConnectionTimeoutThread.addConnectionManager(this);
+            idleConnectionTimeoutThread.start();
+        }
+    }
+
+    @Override
+    public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration, long timeout)
+        throws ConnectionPoolTimeoutException {
+        long start = System.nanoTime();
+        try {
+            HttpConnection connection = super.getConnectionWithTimeout(hostConfiguration, timeout);
+            synchronized (leasedConnections) {
+                if (leasedConnections.size() >= getParams().getMaxTotalConnections()) {
+                    pruneReleasedConnections();
+                }
+                leasedConnections.put(connection, Boolean.TRUE);
+            }
+            return connection;
+        } catch (ConnectionPoolTimeoutException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        } finally {
+            long waitTime = System.nanoTime() - start;
+            requests.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            for (long max = maxWaitTime.get(); waitTime > max; max = maxWaitTime.get()) {
+                if (maxWaitTime.compareAndSet(max, waitTime)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void pruneReleasedConnections() {
+        for (Iterator<HttpConnection> i = leasedConnections.keySet().iterator(); i.hasNext();) {
+            if (i.next().getHost() == null) {
+                i.remove();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (idleConnectionTimeoutThread != null) {
+            idleConnectionTimeoutThread.shutdown();
+            idleConnectionTimeoutThread = null;
+        }
+        super.shutdown();
+    }
+
+    /**
+     * @return the number of connections in use by the requests
+     */
+    public int getLeasedConnections() {
+        int leased;
+        synchronized (leasedConnections) {
+            pruneReleasedConnections();
+            leased = leasedConnections.size();
+        }
+        // A leased connection is always one of the connections of the pool
+        return Math.min(leased, getConnectionsInPool());
+    }
+
+    /**
+     * @return the number of open connections, in use or idle
+     */
+    public int getOpenConnections() {
+        return getConnectionsInPool();
+    }
+
+    /**
+     * @return the ratio of the connections in use to the maximum number of connections
+     */
+    public double getUtilization() {
+        return (double)getLeasedConnections() / getParams().getMaxTotalConnections();
+    }
+
+    /**
+     * @return the number of requests for a connection
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests that timed out waiting for a connection
+     */
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return the average time in milliseconds the requests waited for a connection
+     */
+    public double getAverageWaitTime() {
+        long count = requests.get();
+        return count == 0 ? 0.0 : totalWaitTime.get() / 1000000.0 / count;
+    }
+
+    /**
+     * @return the longest time in milliseconds a request waited for a connection
+     */
+    public double getMaxWaitTime() {
+        return maxWaitTime.get() / 1000000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "leased=" + getLeasedConnections()
+            + ", open="
+            + getOpenConnections()
+            + ", max="
+            + getParams().getMaxTotalConnections()
+            + ", requests="
+            + getRequestCount()
+            + ", timeouts="
+            + getTimeoutCount()
+            + ", averageWait="
+            + getAverageWaitTime()
+            + "ms, maxWait="
+            + getMaxWaitTime()
+            + "ms";
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.tuscany.sca.invocation.Interceptor;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.invocation.Message;
+
+/**
+ * An interceptor placed in front of the databinding interceptor on the reference chains
+ * whose responses can be streamed. The responses streamed by the binding invoker during
+ * the invocation are closed once the rest of the chain has returned, so the connection is
+ * released whether or not the databinding has read the payload to its end.
+ *
+ * @version $Rev$ $Date$
+ */
+public class StreamingResponseInterceptor implements Interceptor {
+    private static final Logger logger = Logger.getLogger(StreamingResponseInterceptor.class.getName());
+    private static final ThreadLocal<List<StreamingResponseReader>> responses =
+        new ThreadLocal<List<StreamingResponseReader>>();
+
+    private Invoker next;
+
+    public Message invoke(Message msg) {
+        List<StreamingResponseReader> outer = responses.get();
+        List<StreamingResponseReader> current = new ArrayList<StreamingResponseReader>(1);
+        responses.set(current);
+        try {
+            return next.invoke(msg);
+        } finally {
+            if (outer != null) {
+                responses.set(outer);
+            } else {
+                responses.remove();
+            }
+            for (StreamingResponseReader reader : current) {
+                try {
+                    reader.close();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the current invocation is made through this interceptor, a response
+     *         can only be streamed then
+     */
+    static boolean isActive() {
+        return responses.get() != null;
+    }
+
+    /**
+     * Register a streamed response to be closed when the invocation returns.
+     *
+     * @param reader the reader of the response
+     */
+    static void register(StreamingResponseReader reader) {
+        List<StreamingResponseReader> current = responses.get();
+        if (current == null) {
+            throw new IllegalStateException("The invocation isn't made through a StreamingResponseInterceptor");
+        }
+        current.add(reader);
+    }
+
+    public void setNext(Invoker next) {
+        this.next = next;
+    }
+
+    public Invoker getNext() {
+        return next;
+    }
+
+}
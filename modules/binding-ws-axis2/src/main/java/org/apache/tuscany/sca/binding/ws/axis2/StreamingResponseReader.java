@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * An XMLStreamReader over the payload of a response that is still being read from the
+ * connection. The connection is released as soon as the end of the payload has been read,
+ * the reader is closed or it fails, whichever comes first. Once the payload has been read
+ * the reader reports the end of the document without touching the connection again.
+ *
+ * @version $Rev$ $Date$
+ */
+public abstract class StreamingResponseReader extends StreamReaderDelegate {
+    private int depth;
+    private boolean released;
+    private boolean ended;
+
+    public StreamingResponseReader(XMLStreamReader reader) {
+        super(reader);
+        if (reader.getEventType() == START_ELEMENT) {
+            depth = 1;
+        }
+    }
+
+    /**
+     * Release the connection the payload is read from. It's called once.
+     */
+    protected abstract void release();
+
+    private void releaseOnce() {
+        if (!released) {
+            released = true;
+            release();
+        }
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (released) {
+            ended = true;
+            return END_DOCUMENT;
+        }
+        try {
+            int event = super.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if ((event == END_ELEMENT && --depth == 0) || event == END_DOCUMENT) {
+                releaseOnce();
+            }
+            return event;
+        } catch (XMLStreamException e) {
+            releaseOnce();
+            throw e;
+        } catch (RuntimeException e) {
+            releaseOnce();
+            throw e;
+        }
+    }
+
+    // The following methods are implemented with next() as the delegate would bypass it
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int event = next();
+        while ((event == CHARACTERS && isWhiteSpace()) || (event == CDATA && isWhiteSpace())
+            || event == SPACE
+            || event == COMMENT
+            || event == PROCESSING_INSTRUCTION) {
+            event = next();
+        }
+        if (event != START_ELEMENT && event != END_ELEMENT) {
+            throw new XMLStreamException("Expected start or end tag", getLocation());
+        }
+        return event;
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if (getEventType() != START_ELEMENT) {
+            throw new XMLStreamException("Expected start tag", getLocation());
+        }
+        StringBuilder text = new StringBuilder();
+        for (int event = next(); event != END_ELEMENT; event = next()) {
+            if (event == CHARACTERS || event == CDATA || event == SPACE || event == ENTITY_REFERENCE) {
+                text.append(getText());
+            } else if (event == START_ELEMENT || event == END_DOCUMENT) {
+                throw new XMLStreamException("Unexpected event in a text only element", getLocation());
+            }
+        }
+        return text.toString();
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return !ended && (released || super.hasNext());
+    }
+
+    @Override
+    public int getEventType() {
+        return ended ? END_DOCUMENT : super.getEventType();
+    }
+
+    @Override
+    public void close() {
+        releaseOnce();
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import org.apache.tuscany.sca.invocation.InvocationChain;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.invocation.Phase;
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+import org.apache.tuscany.sca.runtime.RuntimeWireProcessor;
+
+/**
+ * Adds a StreamingResponseInterceptor to the reference chains that end with an
+ * Axis2BindingInvoker allowed to stream its responses.
+ *
+ * @version $Rev$ $Date$
+ */
+public class StreamingResponseWireProcessor implements RuntimeWireProcessor {
+
+    public void process(RuntimeWire wire) {
+        for (InvocationChain chain : wire.getInvocationChains()) {
+            Invoker invoker = chain.getTailInvoker();
+            if (invoker instanceof Axis2BindingInvoker && ((Axis2BindingInvoker)invoker).isStreamingEnabled()) {
+                chain.addInterceptor(Phase.REFERENCE, new StreamingResponseInterceptor());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.impl.builder.StAXOMBuilder;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class Axis2BindingInvokerTestCase {
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+    private static final String RESPONSE =
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:t=\"urn:t\">"
+            + "<soapenv:Body xmlns:u=\"urn:u\">"
+            + "<t:response><u:value>x</u:value><type>u:item</type><last/></t:response>"
+            + "</soapenv:Body></soapenv:Envelope>";
+
+    @Test
+    public void testCreateStreamingResponse() throws Exception {
+        OMElement response = getPayload();
+        TestReader reader = new TestReader(response);
+        OMElement element = Axis2BindingInvoker.createStreamingResponse(response, reader);
+        assertEquals(new QName("urn:t", "response"), element.getQName());
+
+        // the namespaces declared on the envelope and the body stay in scope
+        assertEquals("urn:t", element.findNamespaceURI("t").getNamespaceURI());
+        assertEquals("urn:u", element.findNamespaceURI("u").getNamespaceURI());
+        assertEquals(0, reader.released);
+
+        OMElement value = element.getFirstElement();
+        assertEquals(new QName("urn:u", "value"), value.getQName());
+        assertEquals("x", value.getText());
+        assertEquals(0, reader.released);
+
+        // the connection is released once the payload has been read
+        element.build();
+        assertEquals(1, reader.released);
+        assertEquals("u:item", element.getFirstChildWithName(new QName("type")).getText());
+    }
+
+    @Test
+    public void testCloseUnreadResponse() throws Exception {
+        OMElement response = getPayload();
+        TestReader reader = new TestReader(response);
+        OMElement element = Axis2BindingInvoker.createStreamingResponse(response, reader);
+        element.getFirstElement();
+        reader.close();
+        assertEquals(1, reader.released);
+    }
+
+    private static OMElement getPayload() throws Exception {
+        StAXOMBuilder builder = new StAXOMBuilder(factory.createXMLStreamReader(new StringReader(RESPONSE)));
+        return builder.getDocumentElement().getFirstElement().getFirstElement();
+    }
+
+    private static class TestReader extends StreamingResponseReader {
+        private int released;
+
+        TestReader(OMElement response) {
+            super(response.getXMLStreamReaderWithoutCaching());
+        }
+
+        @Override
+        protected void release() {
+            released++;
+        }
+    }
+}
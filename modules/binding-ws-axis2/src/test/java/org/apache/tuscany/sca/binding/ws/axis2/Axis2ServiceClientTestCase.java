@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.tuscany.sca.databinding.DataBinding;
+import org.apache.tuscany.sca.databinding.jaxb.JAXBDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Interface;
+import org.apache.tuscany.sca.interfacedef.InterfaceContract;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.apache.tuscany.sca.interfacedef.impl.InterfaceImpl;
+import org.apache.tuscany.sca.interfacedef.impl.OperationImpl;
+import org.apache.tuscany.sca.interfacedef.java.impl.JavaInterfaceContractImpl;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class Axis2ServiceClientTestCase {
+
+    @Test
+    public void testIsResponseTransformed() {
+        Operation operation = newOperation("call", OMElement.class.getName());
+        InterfaceContract contract = new JavaInterfaceContractImpl();
+        assertFalse(Axis2ServiceClient.isResponseTransformed(null, operation));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, operation));
+
+        Interface iface = new InterfaceImpl();
+        contract.setInterface(iface);
+        iface.getOperations().add(newOperation("call", "java:simpleType"));
+        iface.getOperations().add(newOperation("callJAXB", JAXBDataBinding.NAME));
+        iface.getOperations().add(newOperation("callOM", OMElement.class.getName()));
+        iface.getOperations().add(newOperation("callStAX", XMLStreamReader.class.getName()));
+        iface.getOperations().add(newOperation("callSource", Source.class.getName()));
+        iface.getOperations().add(newOperation("callUnknown", null));
+        Operation oneWay = newOperation("callOneWay", null);
+        oneWay.setOutputType(null);
+        iface.getOperations().add(oneWay);
+
+        // the response is only streamed if its transformation reads it completely
+        assertTrue(Axis2ServiceClient.isResponseTransformed(contract, operation));
+        assertTrue(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callJAXB", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callOM", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callStAX", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callSource", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callUnknown", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callOneWay", null)));
+        assertFalse(Axis2ServiceClient.isResponseTransformed(contract, newOperation("callMissing", null)));
+    }
+
+    private static Operation newOperation(String name, String outputDataBinding) {
+        Operation operation = new OperationImpl();
+        operation.setName(name);
+        List<DataType> inputs = new ArrayList<DataType>();
+        operation.setInputType(new DataTypeImpl<List<DataType>>(DataBinding.IDL_INPUT, Object[].class, inputs));
+        operation.setOutputType(new DataTypeImpl<Class>(outputDataBinding, Object.class, Object.class));
+        return operation;
+    }
+}
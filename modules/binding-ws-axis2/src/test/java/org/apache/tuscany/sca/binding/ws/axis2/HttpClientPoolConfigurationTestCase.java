@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class HttpClientPoolConfigurationTestCase {
+
+    @Test
+    public void testParameters() {
+        HttpClientPoolConfiguration configuration = new HttpClientPoolConfiguration();
+        configuration.setParameter(HttpClientPoolConfiguration.MAX_CONNECTIONS_PER_HOST, " 20 ");
+        configuration.setParameter(HttpClientPoolConfiguration.MAX_TOTAL_CONNECTIONS, "200");
+        configuration.setParameter(HttpClientPoolConfiguration.READ_TIMEOUT, "60000");
+        configuration.setParameter(HttpClientPoolConfiguration.CONNECT_TIMEOUT, "5000");
+        configuration.setParameter(HttpClientPoolConfiguration.IDLE_CONNECTION_TIMEOUT, "0");
+        configuration.setParameter(HttpClientPoolConfiguration.KEEP_ALIVE, "false");
+        configuration.setParameter(HttpClientPoolConfiguration.STREAMING_THRESHOLD, "-1");
+        configuration.setParameter("http.maxConnectionsPerHost.Example.com", "50");
+        configuration.setParameter("http.maxConnectionsPerHost.https://example.com", "30");
+        configuration.setParameter("http.maxConnectionsPerHost.localhost:8085", "5");
+        // Axis2 parameters are left alone
+        configuration.setParameter("OutflowSecurity", "x");
+
+        assertEquals(20, configuration.getMaxConnectionsPerHost());
+        assertEquals(200, configuration.getMaxTotalConnections());
+        assertEquals(60000, configuration.getReadTimeout());
+        assertEquals(5000, configuration.getConnectTimeout());
+        assertEquals(0L, configuration.getIdleConnectionTimeout());
+        assertFalse(configuration.isKeepAlive());
+        assertEquals(-1L, configuration.getStreamingThreshold());
+
+        Map<URI, Integer> hosts = configuration.getHostMaxConnections();
+        assertEquals(3, hosts.size());
+        assertEquals(Integer.valueOf(50), hosts.get(URI.create("http://example.com:80")));
+        assertEquals(Integer.valueOf(30), hosts.get(URI.create("https://example.com:443")));
+        assertEquals(Integer.valueOf(5), hosts.get(URI.create("http://localhost:8085")));
+    }
+
+    @Test
+    public void testInvalidParameters() {
+        HttpClientPoolConfiguration configuration = new HttpClientPoolConfiguration();
+        String[][] parameters = { {HttpClientPoolConfiguration.MAX_CONNECTIONS_PER_HOST, "0"},
+                                 {HttpClientPoolConfiguration.READ_TIMEOUT, "1m"},
+                                 {"http.maxConnectionsPerHost.:8080", "2"}};
+        for (String[] parameter : parameters) {
+            try {
+                configuration.setParameter(parameter[0], parameter[1]);
+                fail("IllegalArgumentException expected for " + parameter[0]);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(10, configuration.getMaxConnectionsPerHost());
+    }
+
+    @Test
+    public void testSystemProperties() {
+        String name = "org.apache.tuscany.sca.binding.ws.axis2." + HttpClientPoolConfiguration.MAX_TOTAL_CONNECTIONS;
+        System.setProperty(name, "64");
+        try {
+            assertEquals(64, HttpClientPoolConfiguration.getConfiguration(null).getMaxTotalConnections());
+        } finally {
+            System.getProperties().remove(name);
+        }
+        assertEquals(100, HttpClientPoolConfiguration.getConfiguration(null).getMaxTotalConnections());
+    }
+}
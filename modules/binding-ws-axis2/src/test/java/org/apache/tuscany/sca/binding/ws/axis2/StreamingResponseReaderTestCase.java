@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.binding.ws.axis2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.invocation.Message;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class StreamingResponseReaderTestCase {
+    private static final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    @Test
+    public void testReleaseAtEndOfPayload() throws Exception {
+        TestReader reader = new TestReader("<a><b>x</b><c/></a>");
+        assertEquals(XMLStreamReader.START_ELEMENT, reader.nextTag());
+        assertEquals("a", reader.getLocalName());
+        reader.nextTag();
+        assertEquals("x", reader.getElementText());
+        reader.nextTag();
+        assertEquals("c", reader.getLocalName());
+        reader.nextTag();
+        assertEquals(0, reader.released);
+        assertEquals(XMLStreamReader.END_ELEMENT, reader.nextTag());
+        assertEquals("a", reader.getLocalName());
+        assertEquals(1, reader.released);
+
+        // the connection isn't read again
+        assertEquals(XMLStreamReader.END_DOCUMENT, reader.next());
+        assertEquals(XMLStreamReader.END_DOCUMENT, reader.getEventType());
+        assertFalse(reader.hasNext());
+        reader.close();
+        assertEquals(1, reader.released);
+    }
+
+    @Test
+    public void testReleaseOnCloseAndFailure() throws Exception {
+        TestReader reader = new TestReader("<a><b>x</b></a>");
+        reader.nextTag();
+        reader.close();
+        reader.close();
+        assertEquals(1, reader.released);
+
+        reader = new TestReader("<a><b>x</a>");
+        try {
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            fail("XMLStreamException expected");
+        } catch (XMLStreamException e) {
+            // expected
+        }
+        assertEquals(1, reader.released);
+    }
+
+    @Test
+    public void testReleaseAfterInvocation() throws Exception {
+        assertFalse(StreamingResponseInterceptor.isActive());
+        final TestReader reader = new TestReader("<a><b>x</b></a>");
+        StreamingResponseInterceptor interceptor = new StreamingResponseInterceptor();
+        interceptor.setNext(new Invoker() {
+            public Message invoke(Message msg) {
+                assertTrue(StreamingResponseInterceptor.isActive());
+                StreamingResponseInterceptor.register(reader);
+                try {
+                    reader.nextTag();
+                } catch (XMLStreamException e) {
+                    fail(e.getMessage());
+                }
+                return msg;
+            }
+        });
+
+        // the payload isn't read to the end but the connection is released
+        interceptor.invoke(null);
+        assertEquals(1, reader.released);
+        assertFalse(StreamingResponseInterceptor.isActive());
+    }
+
+    private static class TestReader extends StreamingResponseReader {
+        private int released;
+
+        TestReader(String xml) throws XMLStreamException {
+            super(factory.createXMLStreamReader(new StringReader(xml)));
+        }
+
+        @Override
+        protected void release() {
+            released++;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.core.databinding.copier;
+
+/**
+ * Makes a deep copy of the instances of one class
+ *
+ * @version $Rev$ $Date$
+ */
+public interface Copier {
+
+    /**
+     * Copy an instance
+     *
+     * @param source the instance to copy
+     * @param context the context of the copy, used to copy the objects the instance refers to
+     * @return the copy
+     * @throws CopyNotSupportedException if part of the object graph can't be copied
+     */
+    Object copy(Object source, CopyContext context) throws CopyNotSupportedException;
+
+}
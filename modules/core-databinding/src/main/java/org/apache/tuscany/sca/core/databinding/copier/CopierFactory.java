@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.databinding.copier;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.tuscany.sca.databinding.DefaultImmutableTypeExtensionPoint;
+import org.apache.tuscany.sca.databinding.ImmutableTypeExtensionPoint;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Creates {@link Copier}s for beans. The state of a bean is copied through its properties, so a
+ * copier is only created for a class whose fields are all exposed as read/write properties (or
+ * as collection properties with a getter only, as generated by JAXB) and which has a no-arg
+ * constructor. For public beans a class is generated that calls the accessors directly, other
+ * beans are copied reflectively. Copiers are cached by class name under the class loader of the
+ * class, and the generated classes of a class loader are defined together.
+ *
+ * @version $Rev$ $Date$
+ */
+public class CopierFactory {
+    private static final Logger logger = Logger.getLogger(CopierFactory.class.getName());
+
+    private static final String COPIER = Type.getInternalName(Copier.class);
+    private static final String COPY_CONTEXT = Type.getInternalName(CopyContext.class);
+    private static final String COPY_DESC = "(Ljava/lang/Object;L" + COPY_CONTEXT + ";)Ljava/lang/Object;";
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    // marks the classes that can't be copied through their properties
+    private static final Copier NO_COPIER = new Copier() {
+        public Object copy(Object source, CopyContext context) throws CopyNotSupportedException {
+            throw new CopyNotSupportedException("No copier for " + source.getClass().getName());
+        }
+    };
+
+    // The class loaders are weakly referenced and the copiers softly, as they refer to the
+    // classes, so the cache doesn't keep the contributions alive
+    private final static Map<ClassLoader, LoaderCopiers> copiers =
+        Collections.synchronizedMap(new WeakHashMap<ClassLoader, LoaderCopiers>());
+
+    private CopierFactory() {
+    }
+
+    /**
+     * Make a deep copy of an object graph
+     *
+     * @param source the root of the graph
+     * @return the copy
+     * @throws CopyNotSupportedException if part of the graph can't be copied by the copiers
+     */
+    public static Object copy(Object source) throws CopyNotSupportedException {
+        return new CopyContext().copy(source);
+    }
+
+    /**
+     * Make a deep copy of an object graph, sharing the objects of the registered immutable types
+     *
+     * @param source the root of the graph
+     * @param immutableTypes the registry of immutable types
+     * @return the copy
+     * @throws CopyNotSupportedException if part of the graph can't be copied by the copiers
+     */
+    public static Object copy(Object source, ImmutableTypeExtensionPoint immutableTypes)
+        throws CopyNotSupportedException {
+        return new CopyContext(immutableTypes).copy(source);
+    }
+
+    /**
+     * @param type a class
+     * @return true if the instances of the class may be copied by the copiers. The copy can
+     * still fail if it reaches objects that can't be copied
+     */
+    public static boolean isCopyable(Class<?> type) {
+        if (type.isArray() || Collection.class.isAssignableFrom(type)
+            || Map.class.isAssignableFrom(type)
+            || Date.class.isAssignableFrom(type)) {
+            return true;
+        }
+        return isImmutable(type) || getCopier(type) != null;
+    }
+
+    /**
+     * @param type a class
+     * @return true if the instances of the class can be shared instead of copied
+     * @see DefaultImmutableTypeExtensionPoint#isBuiltinImmutable(Class)
+     */
+    public static boolean isImmutable(Class<?> type) {
+        return DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(type);
+    }
+
+    /**
+     * Get the copier for a bean class
+     *
+     * @param type the class
+     * @return the copier, or null if the instances of the class can't be copied through their properties
+     */
+    public static Copier getCopier(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            // The bootstrap classes aren't beans
+            return null;
+        }
+        LoaderCopiers loaderCopiers;
+        synchronized (copiers) {
+            loaderCopiers = copiers.get(classLoader);
+            if (loaderCopiers == null) {
+                loaderCopiers = new LoaderCopiers();
+                copiers.put(classLoader, loaderCopiers);
+            }
+        }
+        Reference<Copier> ref = loaderCopiers.copiers.get(type.getName());
+        Copier copier = ref != null ? ref.get() : null;
+        if (copier == null) {
+            copier = createCopier(type, loaderCopiers);
+            loaderCopiers.copiers.put(type.getName(), new SoftReference<Copier>(copier));
+        }
+        return copier == NO_COPIER ? null : copier;
+    }
+
+    private static Copier createCopier(Class<?> type, LoaderCopiers loaderCopiers) {
+        List<BeanProperty> properties = getProperties(type);
+        if (properties == null) {
+            return NO_COPIER;
+        }
+        if (isAccessible(type, properties)) {
+            try {
+                String name = type.getName() + "$$TuscanyCopier" + counter.incrementAndGet();
+                CopierClassLoader classLoader = loaderCopiers.getClassLoader(type.getClassLoader());
+                Class<?> copierClass = classLoader.defineClass(name, generateCopierClass(name, type, properties));
+                return (Copier)copierClass.newInstance();
+            } catch (Throwable e) {
+                // Never fail the copy because of the optimization
+                logger.log(Level.FINE, "Unable to generate a copier for " + type, e);
+            }
+        }
+        return new ReflectiveCopier(type, properties);
+    }
+
+    /**
+     * Work out how to copy the state of a bean
+     *
+     * @param type the bean class
+     * @return the properties to copy, or null if the class can't be copied through its properties
+     */
+    private static List<BeanProperty> getProperties(Class<?> type) {
+        if (type.isInterface() || type.isArray()
+            || Modifier.isAbstract(type.getModifiers())
+            || type.getName().startsWith("java.")
+            || type.getName().startsWith("javax.")) {
+            return null;
+        }
+        try {
+            type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+
+        // Collect the state of the bean
+        Set<String> fieldNames = new HashSet<String>();
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            if (Serializable.class.isAssignableFrom(c) && hasCustomSerialization(c)) {
+                return null;
+            }
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                    continue;
+                }
+                if (field.isSynthetic() || !fieldNames.add(field.getName())) {
+                    // Inner class or a field hiding another one
+                    return null;
+                }
+            }
+        }
+
+        BeanInfo beanInfo;
+        try {
+            beanInfo = Introspector.getBeanInfo(type, Object.class);
+        } catch (IntrospectionException e) {
+            return null;
+        }
+        Map<String, PropertyDescriptor> descriptors = new HashMap<String, PropertyDescriptor>();
+        for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+            descriptors.put(descriptor.getName(), descriptor);
+        }
+
+        // Every field must be reachable through a property
+        List<BeanProperty> properties = new ArrayList<BeanProperty>();
+        for (String fieldName : fieldNames) {
+            PropertyDescriptor descriptor = descriptors.get(fieldName);
+            if (descriptor == null || descriptor.getReadMethod() == null) {
+                return null;
+            }
+            Method getter = descriptor.getReadMethod();
+            Method setter = descriptor.getWriteMethod();
+            Class<?> propertyType = getter.getReturnType();
+            if (setter == null) {
+                if (Collection.class.isAssignableFrom(propertyType) || Map.class.isAssignableFrom(propertyType)) {
+                    properties.add(new BeanProperty(getter, null, BeanProperty.GETTER_ONLY));
+                } else {
+                    return null;
+                }
+            } else if (isImmutable(propertyType)) {
+                properties.add(new BeanProperty(getter, setter, BeanProperty.SHARED));
+            } else {
+                properties.add(new BeanProperty(getter, setter, BeanProperty.COPIED));
+            }
+        }
+        return properties;
+    }
+
+    private static boolean hasCustomSerialization(Class<?> type) {
+        for (Method method : type.getDeclaredMethods()) {
+            String name = method.getName();
+            if (name.equals("writeObject") || name.equals("readObject")
+                || name.equals("writeReplace")
+                || name.equals("readResolve")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccessible(Class<?> type, List<BeanProperty> properties) {
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            if (!Modifier.isPublic(type.getDeclaredConstructor().getModifiers())) {
+                return false;
+            }
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+        for (BeanProperty property : properties) {
+            if (!isAccessible(property.getter) || (property.setter != null && !isAccessible(property.setter))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Method method) {
+        return Modifier.isPublic(method.getModifiers()) && Modifier.isPublic(method.getDeclaringClass().getModifiers());
+    }
+
+    private static byte[] generateCopierClass(String name, Class<?> type, List<BeanProperty> properties) {
+        String className = name.replace('.', '/');
+        String owner = Type.getInternalName(type);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_5,
+                 Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER,
+                 className,
+                 null,
+                 "java/lang/Object",
+                 new String[] {COPIER});
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // Object copy(Object source, CopyContext context) {
+        //     Owner s = (Owner)source; Owner t = new Owner(); context.register(source, t); ...; return t; }
+        mv =
+            cw.visitMethod(Opcodes.ACC_PUBLIC, "copy", COPY_DESC, null, new String[] {Type
+                .getInternalName(CopyNotSupportedException.class)});
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitTypeInsn(Opcodes.NEW, owner);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", "()V");
+        mv.visitVarInsn(Opcodes.ASTORE, 4);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitVarInsn(Opcodes.ALOAD, 4);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COPY_CONTEXT, "register", "(Ljava/lang/Object;Ljava/lang/Object;)V");
+
+        for (BeanProperty property : properties) {
+            Method getter = property.getter;
+            Method setter = property.setter;
+            switch (property.kind) {
+                case BeanProperty.SHARED:
+                    // t.setX(s.getX());
+                    mv.visitVarInsn(Opcodes.ALOAD, 4);
+                    mv.visitVarInsn(Opcodes.ALOAD, 3);
+                    invoke(mv, owner, getter);
+                    invoke(mv, owner, setter);
+                    pop(mv, setter);
+                    break;
+                case BeanProperty.COPIED:
+                    // t.setX((X)context.copy(s.getX()));
+                    mv.visitVarInsn(Opcodes.ALOAD, 4);
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    mv.visitVarInsn(Opcodes.ALOAD, 3);
+                    invoke(mv, owner, getter);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                                       COPY_CONTEXT,
+                                       "copy",
+                                       "(Ljava/lang/Object;)Ljava/lang/Object;");
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(setter.getParameterTypes()[0]));
+                    invoke(mv, owner, setter);
+                    pop(mv, setter);
+                    break;
+                default:
+                    // context.copyInto(s.getX(), t.getX(), t.getX());
+                    mv.visitVarInsn(Opcodes.ALOAD, 2);
+                    mv.visitVarInsn(Opcodes.ALOAD, 3);
+                    invoke(mv, owner, getter);
+                    mv.visitVarInsn(Opcodes.ALOAD, 4);
+                    invoke(mv, owner, getter);
+                    mv.visitVarInsn(Opcodes.ALOAD, 4);
+                    invoke(mv, owner, getter);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                                       COPY_CONTEXT,
+                                       "copyInto",
+                                       "(Ljava/lang/Object;Ljava/lang/Object;Ljava/lang/Object;)V");
+            }
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 4);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void invoke(MethodVisitor mv, String owner, Method method) {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+    }
+
+    // Setters returning a value, as in fluent APIs, leave it on the stack
+    private static void pop(MethodVisitor mv, Method setter) {
+        Class<?> returnType = setter.getReturnType();
+        if (returnType == long.class || returnType == double.class) {
+            mv.visitInsn(Opcodes.POP2);
+        } else if (returnType != void.class) {
+            mv.visitInsn(Opcodes.POP);
+        }
+    }
+
+    /**
+     * A property of a bean and how to copy it
+     */
+    private static class BeanProperty {
+        // the value is immutable and is shared by the copy
+        private static final int SHARED = 0;
+        // the value is copied
+        private static final int COPIED = 1;
+        // the collection or map returned by the getter is filled with copies
+        private static final int GETTER_ONLY = 2;
+
+        private final Method getter;
+        private final Method setter;
+        private final int kind;
+
+        private BeanProperty(Method getter, Method setter, int kind) {
+            this.getter = getter;
+            this.setter = setter;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Copies a bean through reflection, for the beans whose constructor or accessors aren't public
+     */
+    private static class ReflectiveCopier implements Copier {
+        private final Constructor<?> constructor;
+        private final List<BeanProperty> properties;
+
+        private ReflectiveCopier(Class<?> type, List<BeanProperty> properties) {
+            Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                // Checked when the properties were collected
+                throw new IllegalStateException(e);
+            }
+            this.constructor = constructor;
+            this.properties = properties;
+            // Allow privileged access to call non public accessors. Requires ReflectPermission in security policy.
+            AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    ReflectiveCopier.this.constructor.setAccessible(true);
+                    for (BeanProperty property : ReflectiveCopier.this.properties) {
+                        property.getter.setAccessible(true);
+                        if (property.setter != null) {
+                            property.setter.setAccessible(true);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        public Object copy(Object source, CopyContext context) throws CopyNotSupportedException {
+            try {
+                Object target = constructor.newInstance();
+                context.register(source, target);
+                for (BeanProperty property : properties) {
+                    Object value = property.getter.invoke(source);
+                    switch (property.kind) {
+                        case BeanProperty.SHARED:
+                            property.setter.invoke(target, value);
+                            break;
+                        case BeanProperty.COPIED:
+                            property.setter.invoke(target, context.copy(value));
+                            break;
+                        default:
+                            context.copyInto(value, property.getter.invoke(target), property.getter.invoke(target));
+                    }
+                }
+                return target;
+            } catch (InvocationTargetException e) {
+                throw new CopyNotSupportedException("Unable to copy " + source.getClass().getName()
+                    + ": "
+                    + e.getTargetException());
+            } catch (InstantiationException e) {
+                throw new CopyNotSupportedException("Unable to copy " + source.getClass().getName() + ": " + e);
+            } catch (IllegalAccessException e) {
+                throw new CopyNotSupportedException("Unable to copy " + source.getClass().getName() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * The copiers for the classes of one class loader, by class name, and the class loader
+     * defining their generated classes. Nothing here refers to the class loader strongly: the
+     * copiers are softly referenced and the generated classes keep their class loader alive.
+     */
+    private static class LoaderCopiers {
+        private final Map<String, Reference<Copier>> copiers = new ConcurrentHashMap<String, Reference<Copier>>();
+        private WeakReference<CopierClassLoader> classLoader;
+
+        private synchronized CopierClassLoader getClassLoader(final ClassLoader parent) {
+            CopierClassLoader loader = classLoader != null ? classLoader.get() : null;
+            if (loader == null) {
+                // Allow privileged access to create the class loader. Requires RuntimePermission in security policy.
+                loader = AccessController.doPrivileged(new PrivilegedAction<CopierClassLoader>() {
+                    public CopierClassLoader run() {
+                        return new CopierClassLoader(parent);
+                    }
+                });
+                classLoader = new WeakReference<CopierClassLoader>(loader);
+            }
+            return loader;
+        }
+    }
+
+    /**
+     * Defines the generated copier classes. The copier classes are always resolved from this
+     * factory's class loader, everything else from the class loader of the beans.
+     */
+    private static class CopierClassLoader extends ClassLoader {
+        private CopierClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private synchronized Class<?> defineClass(String name, byte[] byteArray) {
+            return defineClass(name, byteArray, 0, byteArray.length);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(Copier.class.getName())) {
+                return Copier.class;
+            } else if (name.equals(CopyContext.class.getName())) {
+                return CopyContext.class;
+            } else if (name.equals(CopyNotSupportedException.class.getName())) {
+                return CopyNotSupportedException.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.databinding.copier;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.apache.tuscany.sca.databinding.ImmutableTypeExtensionPoint;
+
+/**
+ * The state of one deep copy. It remembers the copy of every object it has copied so that
+ * shared references and cycles in the source graph are reproduced in the copy.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class CopyContext {
+    private final Map<Object, Object> copies = new IdentityHashMap<Object, Object>();
+    private final ImmutableTypeExtensionPoint immutableTypes;
+
+    public CopyContext() {
+        this(null);
+    }
+
+    /**
+     * @param immutableTypes the registry of the types that are shared instead of copied, can be null
+     */
+    public CopyContext(ImmutableTypeExtensionPoint immutableTypes) {
+        this.immutableTypes = immutableTypes;
+    }
+
+    /**
+     * Record the copy of an object. A copier calls this before copying the objects the source
+     * refers to so that references back to the source resolve to the copy.
+     *
+     * @param source the source object
+     * @param copy its copy
+     */
+    public void register(Object source, Object copy) {
+        copies.put(source, copy);
+    }
+
+    /**
+     * Copy an object
+     *
+     * @param source the object, can be null
+     * @return the copy, or the object itself if it is immutable
+     * @throws CopyNotSupportedException if the object can't be copied
+     */
+    @SuppressWarnings("unchecked")
+    public Object copy(Object source) throws CopyNotSupportedException {
+        if (source == null) {
+            return null;
+        }
+        Class<?> type = source.getClass();
+        if (CopierFactory.isImmutable(type) || (immutableTypes != null && immutableTypes.isImmutable(type))) {
+            return source;
+        }
+        Object copy = copies.get(source);
+        if (copy != null) {
+            return copy;
+        }
+
+        if (type.isArray()) {
+            int length = Array.getLength(source);
+            Class<?> componentType = type.getComponentType();
+            copy = Array.newInstance(componentType, length);
+            copies.put(source, copy);
+            if (componentType.isPrimitive()) {
+                System.arraycopy(source, 0, copy, 0, length);
+            } else {
+                Object[] sourceArray = (Object[])source;
+                Object[] copyArray = (Object[])copy;
+                for (int i = 0; i < length; i++) {
+                    copyArray[i] = copy(sourceArray[i]);
+                }
+            }
+            return copy;
+        }
+
+        if (source instanceof Collection) {
+            Collection<Object> collection = newCollection(type);
+            copies.put(source, collection);
+            for (Object element : (Collection<Object>)source) {
+                collection.add(copy(element));
+            }
+            return collection;
+        }
+
+        if (source instanceof Map) {
+            Map<Object, Object> map = newMap(type);
+            copies.put(source, map);
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>)source).entrySet()) {
+                map.put(copy(entry.getKey()), copy(entry.getValue()));
+            }
+            return map;
+        }
+
+        if (source instanceof Date) {
+            copy = ((Date)source).clone();
+            copies.put(source, copy);
+            return copy;
+        }
+        if (source instanceof XMLGregorianCalendar) {
+            copy = ((XMLGregorianCalendar)source).clone();
+            copies.put(source, copy);
+            return copy;
+        }
+
+        Copier copier = CopierFactory.getCopier(type);
+        if (copier == null) {
+            throw new CopyNotSupportedException("No copier for " + type.getName());
+        }
+        return copier.copy(source, this);
+    }
+
+    /**
+     * Copy the elements of a collection or the entries of a map into the collection or map
+     * of the copy. This is used for the list properties that only have a getter, as generated
+     * by JAXB.
+     *
+     * @param source the collection or map of the source bean, can be null
+     * @param target the collection or map returned by the getter of the copy
+     * @param check the collection or map returned by the getter of the copy when called again
+     * @throws CopyNotSupportedException if the getter of the copy doesn't give access to the
+     * state of the copy, or if an element can't be copied
+     */
+    @SuppressWarnings("unchecked")
+    public void copyInto(Object source, Object target, Object check) throws CopyNotSupportedException {
+        if (source == null) {
+            return;
+        }
+        if (target == null) {
+            throw new CopyNotSupportedException("The getter returns null for " + source.getClass().getName());
+        }
+        if (target != check || target == source) {
+            // a defensive copy or a shared collection, filling it wouldn't set the state of the copy
+            throw new CopyNotSupportedException("The getter doesn't return the state of the bean for "
+                + source.getClass().getName());
+        }
+        try {
+            if (source instanceof Collection) {
+                Collection<Object> collection = (Collection<Object>)target;
+                collection.clear();
+                for (Object element : (Collection<Object>)source) {
+                    collection.add(copy(element));
+                }
+            } else {
+                Map<Object, Object> map = (Map<Object, Object>)target;
+                map.clear();
+                for (Map.Entry<Object, Object> entry : ((Map<Object, Object>)source).entrySet()) {
+                    map.put(copy(entry.getKey()), copy(entry.getValue()));
+                }
+            }
+        } catch (UnsupportedOperationException e) {
+            throw new CopyNotSupportedException("The getter returns an unmodifiable "
+                + target.getClass().getName());
+        }
+    }
+
+    // Only the plain java.util collections are rebuilt, the others may carry state such as a
+    // comparator or be views of other objects
+    private static Collection<Object> newCollection(Class<?> type) throws CopyNotSupportedException {
+        if (type == ArrayList.class) {
+            return new ArrayList<Object>();
+        } else if (type == LinkedList.class) {
+            return new LinkedList<Object>();
+        } else if (type == HashSet.class) {
+            return new HashSet<Object>();
+        } else if (type == LinkedHashSet.class) {
+            return new LinkedHashSet<Object>();
+        }
+        throw new CopyNotSupportedException("Unsupported collection " + type.getName());
+    }
+
+    private static Map<Object, Object> newMap(Class<?> type) throws CopyNotSupportedException {
+        if (type == HashMap.class) {
+            return new HashMap<Object, Object>();
+        } else if (type == LinkedHashMap.class) {
+            return new LinkedHashMap<Object, Object>();
+        }
+        throw new CopyNotSupportedException("Unsupported map " + type.getName());
+    }
+
+}
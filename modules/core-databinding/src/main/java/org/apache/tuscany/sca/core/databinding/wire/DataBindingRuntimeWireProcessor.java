@@ -23,6 +23,8 @@ import java.util.List;
 
 import org.apache.tuscany.sca.assembly.ComponentReference;
 import org.apache.tuscany.sca.databinding.DataBindingExtensionPoint;
+import org.apache.tuscany.sca.databinding.DefaultImmutableTypeExtensionPoint;
+import org.apache.tuscany.sca.databinding.ImmutableTypeExtensionPoint;
 import org.apache.tuscany.sca.databinding.Mediator;
 import org.apache.tuscany.sca.interfacedef.DataType;
 import org.apache.tuscany.sca.interfacedef.FaultExceptionMapper;
@@ -44,13 +46,22 @@ public class DataBindingRuntimeWireProcessor implements RuntimeWireProcessor {
     private Mediator mediator;
     private DataBindingExtensionPoint dataBindings;
     private FaultExceptionMapper faultExceptionMapper;
+    private ImmutableTypeExtensionPoint immutableTypes;
 
     public DataBindingRuntimeWireProcessor(Mediator mediator,
                                            DataBindingExtensionPoint dataBindings,
                                            FaultExceptionMapper faultExceptionMapper) {
+        this(mediator, dataBindings, new DefaultImmutableTypeExtensionPoint(), faultExceptionMapper);
+    }
+
+    public DataBindingRuntimeWireProcessor(Mediator mediator,
+                                           DataBindingExtensionPoint dataBindings,
+                                           ImmutableTypeExtensionPoint immutableTypes,
+                                           FaultExceptionMapper faultExceptionMapper) {
         super();
         this.mediator = mediator;
         this.dataBindings = dataBindings;
+        this.immutableTypes = immutableTypes;
         this.faultExceptionMapper = faultExceptionMapper;
     }
 
@@ -84,6 +95,16 @@ public class DataBindingRuntimeWireProcessor implements RuntimeWireProcessor {
         if (source == target) {
             return false;
         }
+        return isOutputTransformationRequired(source, target) || isInputTransformationRequired(source, target);
+    }
+
+    /**
+     * @return true if the output of the target operation has to be transformed for the source operation
+     */
+    public boolean isOutputTransformationRequired(Operation source, Operation target) {
+        if (source == target) {
+            return false;
+        }
 
         if (source.isWrapperStyle() != target.isWrapperStyle()) {
             return true;
@@ -95,7 +116,18 @@ public class DataBindingRuntimeWireProcessor implements RuntimeWireProcessor {
 
         // Note the target output type is now the source for checking
         // compatibility
-        if (isTransformationRequired(targetOutputType, sourceOutputType)) {
+        return isTransformationRequired(targetOutputType, sourceOutputType);
+    }
+
+    /**
+     * @return true if the input of the source operation has to be transformed for the target operation
+     */
+    public boolean isInputTransformationRequired(Operation source, Operation target) {
+        if (source == target) {
+            return false;
+        }
+
+        if (source.isWrapperStyle() != target.isWrapperStyle()) {
             return true;
         }
 
@@ -147,16 +179,20 @@ public class DataBindingRuntimeWireProcessor implements RuntimeWireProcessor {
             Interceptor interceptor = null;
             if (isTransformationRequired(sourceContract, sourceOperation, targetContract, targetOperation)) {
                 // Add the interceptor to the source side because multiple
-                // references can be wired to the same service
+                // references can be wired to the same service. The request or the
+                // response are passed through as is if their databindings match
                 interceptor =
                     new DataTransformationInterceptor(wire, sourceOperation, targetOperation, mediator,
-                                                      faultExceptionMapper);
+                                                      faultExceptionMapper,
+                                                      isInputTransformationRequired(sourceOperation, targetOperation),
+                                                      isOutputTransformationRequired(sourceOperation, targetOperation));
             } else {
                 // assume pass-by-values copies are required if interfaces are remotable and there is no data binding
                 // transformation, i.e. a transformation will result in a copy so another pass-by-value copy is unnecessary
                 if (!isOnMessage(targetOperation) && isRemotable(chain, sourceOperation, targetOperation)) {
                     interceptor =
-                        new PassByValueInterceptor(dataBindings, faultExceptionMapper, chain, targetOperation);
+                        new PassByValueInterceptor(dataBindings, immutableTypes, faultExceptionMapper, chain,
+                                                   targetOperation);
                 }
             }
             if (interceptor != null) {
@@ -20,6 +20,7 @@
 package org.apache.tuscany.sca.core.databinding.wire;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,17 +56,61 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
     private Mediator mediator;
     private FaultExceptionMapper faultExceptionMapper;
 
+    // whether the request and the response need to be transformed, worked out when the wire is built
+    private final boolean transformInput;
+    private final boolean transformOutput;
+
+    // the data types and metadata of the transformations don't change from one invocation to
+    // the next so they are set up once and the mediator can reuse its transformation contexts
+    private final DataType<DataType> sourceOutputType;
+    private final DataType<DataType> targetOutputType;
+    private final Map<String, Object> requestMetadata;
+    private final Map<String, Object> responseMetadata;
+
     public DataTransformationInterceptor(RuntimeWire wire,
                                          Operation sourceOperation,
                                          Operation targetOperation,
                                          Mediator mediator,
                                          FaultExceptionMapper faultExceptionMapper) {
+        this(wire, sourceOperation, targetOperation, mediator, faultExceptionMapper, true, true);
+    }
+
+    /**
+     * @param transformInput false if the input of the source operation can be passed to the target operation as is
+     * @param transformOutput false if the output of the target operation can be returned to the source operation as is
+     */
+    public DataTransformationInterceptor(RuntimeWire wire,
+                                         Operation sourceOperation,
+                                         Operation targetOperation,
+                                         Mediator mediator,
+                                         FaultExceptionMapper faultExceptionMapper,
+                                         boolean transformInput,
+                                         boolean transformOutput) {
         super();
         this.sourceOperation = sourceOperation;
         this.targetOperation = targetOperation;
         this.mediator = mediator;
         this.wire = wire;
         this.faultExceptionMapper = faultExceptionMapper;
+        this.transformInput = transformInput;
+        this.transformOutput = transformOutput;
+
+        // FIXME: Should we fix the Operation model so that getOutputType
+        // returns DataType<DataType<T>>?
+        this.targetOutputType =
+            new DataTypeImpl<DataType>(DataBinding.IDL_OUTPUT, Object.class, targetOperation.getOutputType());
+        this.sourceOutputType =
+            new DataTypeImpl<DataType>(DataBinding.IDL_OUTPUT, Object.class, sourceOperation.getOutputType());
+        this.requestMetadata = createMetadata(sourceOperation, targetOperation);
+        this.responseMetadata = createMetadata(targetOperation, sourceOperation);
+    }
+
+    private Map<String, Object> createMetadata(Operation source, Operation target) {
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put("source.operation", source);
+        metadata.put("target.operation", target);
+        metadata.put("wire", wire);
+        return Collections.unmodifiableMap(metadata);
     }
 
     public Invoker getNext() {
@@ -73,8 +118,11 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
     }
 
     public Message invoke(Message msg) {
-        Object input = transform(msg.getBody(), sourceOperation.getInputType(), targetOperation.getInputType(), false);
-        msg.setBody(input);
+        if (transformInput) {
+            Object input =
+                transform(msg.getBody(), sourceOperation.getInputType(), targetOperation.getInputType(), false);
+            msg.setBody(input);
+        }
         Message resultMsg = next.invoke(msg);
         Object result = resultMsg.getBody();
         if (sourceOperation.isNonBlocking()) {
@@ -82,14 +130,6 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
             return resultMsg;
         }
 
-        // FIXME: Should we fix the Operation model so that getOutputType
-        // returns DataType<DataType<T>>?
-        DataType<DataType> targetType =
-            new DataTypeImpl<DataType>(DataBinding.IDL_OUTPUT, Object.class, targetOperation.getOutputType());
-
-        DataType<DataType> sourceType =
-            new DataTypeImpl<DataType>(DataBinding.IDL_OUTPUT, Object.class, sourceOperation.getOutputType());
-
         if (resultMsg.isFault()) {
 
             // FIXME: We need to figure out what fault type it is and then
@@ -163,10 +203,10 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
                 }
             }
 
-        } else {
+        } else if (transformOutput) {
             assert !(result instanceof Throwable) : "Expected messages that are not throwable " + result;
 
-            Object newResult = transform(result, targetType, sourceType, true);
+            Object newResult = transform(result, targetOutputType, sourceOutputType, true);
             if (newResult != result) {
                 resultMsg.setBody(newResult);
             }
@@ -179,11 +219,7 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
         if (sourceType == targetType || (sourceType != null && sourceType.equals(targetType))) {
             return source;
         }
-        Map<String, Object> metadata = new HashMap<String, Object>();
-        metadata.put("source.operation", isResponse ? targetOperation : sourceOperation);
-        metadata.put("target.operation", isResponse ? sourceOperation : targetOperation);
-        metadata.put("wire", wire);
-        return mediator.mediate(source, sourceType, targetType, metadata);
+        return mediator.mediate(source, sourceType, targetType, isResponse ? responseMetadata : requestMetadata);
     }
 
     private DataType getFaultType(DataType exceptionType) {
@@ -241,16 +277,12 @@ public class DataTransformationInterceptor implements Interceptor, DataExchangeS
         if (sourceType == targetType || (sourceType != null && sourceType.equals(targetType))) {
             return source;
         }
-        Map<String, Object> metadata = new HashMap<String, Object>();
-        metadata.put("source.operation", targetOperation);
-        metadata.put("target.operation", sourceOperation);
-        metadata.put("wire", wire);
         DataType<DataType> eSourceDataType =
             new DataTypeImpl<DataType>("idl:fault", sourceExType.getPhysical(), sourceType);
         DataType<DataType> eTargetDataType =
             new DataTypeImpl<DataType>("idl:fault", targetExType.getPhysical(), targetType);
 
-        return mediator.mediate(source, eSourceDataType, eTargetDataType, metadata);
+        return mediator.mediate(source, eSourceDataType, eTargetDataType, responseMetadata);
     }
 
     public void setNext(Invoker next) {
@@ -23,16 +23,17 @@ import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.net.URI;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-
-import javax.xml.namespace.QName;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.tuscany.sca.core.databinding.copier.CopierFactory;
+import org.apache.tuscany.sca.core.databinding.copier.CopyNotSupportedException;
 import org.apache.tuscany.sca.databinding.DataBinding;
 import org.apache.tuscany.sca.databinding.DataBindingExtensionPoint;
+import org.apache.tuscany.sca.databinding.DefaultImmutableTypeExtensionPoint;
+import org.apache.tuscany.sca.databinding.ImmutableTypeExtensionPoint;
 import org.apache.tuscany.sca.databinding.javabeans.JavaBeansDataBinding;
 import org.apache.tuscany.sca.databinding.jaxb.JAXBDataBinding;
 import org.apache.tuscany.sca.interfacedef.DataType;
@@ -56,12 +57,15 @@ public class PassByValueInterceptor implements Interceptor {
 
     private DataBindingExtensionPoint dataBindings;
     private FaultExceptionMapper faultExceptionMapper;
+    private ImmutableTypeExtensionPoint immutableTypes;
 
     private DataBinding[] inputDataBindings;
     private DataBinding outputDataBinding;
     private DataBinding javaBeanDataBinding;
     private DataBinding jaxbDataBinding;
     private Operation operation;
+    // Resolved once, the invocations only increment it
+    private AtomicLong copiesAvoided;
     private Invoker nextInvoker;
     private InvocationChain chain;
 
@@ -74,12 +78,28 @@ public class PassByValueInterceptor implements Interceptor {
                                   FaultExceptionMapper faultExceptionMapper,
                                   InvocationChain chain,
                                   Operation operation) {
+        this(dataBindings, new DefaultImmutableTypeExtensionPoint(), faultExceptionMapper, chain, operation);
+    }
+
+    /**
+     * Constructs a new PassByValueInterceptor.
+     * @param dataBindings databinding extension point
+     * @param immutableTypes the registry of the types passed by reference
+     * @param operation the intercepted operation
+     */
+    public PassByValueInterceptor(DataBindingExtensionPoint dataBindings,
+                                  ImmutableTypeExtensionPoint immutableTypes,
+                                  FaultExceptionMapper faultExceptionMapper,
+                                  InvocationChain chain,
+                                  Operation operation) {
         this.chain = chain;
         this.operation = operation;
 
         // Cache data bindings to use
         this.dataBindings = dataBindings;
+        this.immutableTypes = immutableTypes;
         this.faultExceptionMapper = faultExceptionMapper;
+        this.copiesAvoided = immutableTypes.getCopiesAvoidedCounter(operation);
 
         jaxbDataBinding = dataBindings.getDataBinding(JAXBDataBinding.NAME);
         javaBeanDataBinding = dataBindings.getDataBinding(JavaBeansDataBinding.NAME);
@@ -112,7 +132,12 @@ public class PassByValueInterceptor implements Interceptor {
         Message resultMsg = nextInvoker.invoke(msg);
 
         if (!msg.isFault() && operation.getOutputType() != null) {
-            resultMsg.setBody(copy(resultMsg.getBody(), outputDataBinding, operation.getOutputType()));
+            Object result = resultMsg.getBody();
+            if (result != null && immutableTypes.isImmutable(result.getClass())) {
+                copiesAvoided.incrementAndGet();
+            } else {
+                resultMsg.setBody(copy(result, outputDataBinding, operation.getOutputType()));
+            }
         }
 
         if (msg.isFault()) {
@@ -152,10 +177,15 @@ public class PassByValueInterceptor implements Interceptor {
         }
         Object[] copy = new Object[data.length];
         Map<Object, Object> map = new IdentityHashMap<Object, Object>();
+        int avoided = 0;
         for (int i = 0; i < data.length; i++) {
             Object arg = data[i];
             if (arg == null) {
                 copy[i] = null;
+            } else if (immutableTypes.isImmutable(arg.getClass())) {
+                // Immutable data is passed by reference
+                copy[i] = arg;
+                avoided++;
             } else {
                 Object copiedArg = map.get(arg);
                 if (copiedArg != null) {
@@ -167,6 +197,9 @@ public class PassByValueInterceptor implements Interceptor {
                 }
             }
         }
+        if (avoided > 0) {
+            copiesAvoided.addAndGet(avoided);
+        }
         return copy;
     }
 
@@ -182,14 +215,7 @@ public class PassByValueInterceptor implements Interceptor {
             return null;
         }
         Class<?> clazz = data.getClass();
-        if (String.class == clazz || clazz.isPrimitive()
-            || Number.class.isAssignableFrom(clazz)
-            || Boolean.class.isAssignableFrom(clazz)
-            || Character.class.isAssignableFrom(clazz)
-            || Byte.class.isAssignableFrom(clazz)
-            || URI.class == clazz
-            || UUID.class == clazz
-            || QName.class == clazz) {
+        if (immutableTypes.isImmutable(clazz)) {
             // Immutable classes
             return data;
         }
@@ -211,6 +237,16 @@ public class PassByValueInterceptor implements Interceptor {
             }
         }
 
+        // Copy beans through the copiers generated for their classes, the databindings are
+        // much slower as they go through serialization or XML
+        if ((dataBinding == javaBeanDataBinding || dataBinding == jaxbDataBinding) && CopierFactory.isCopyable(clazz)) {
+            try {
+                return CopierFactory.copy(data, immutableTypes);
+            } catch (CopyNotSupportedException e) {
+                // Fall back to the databinding
+            }
+        }
+
         // Use the JAXB databinding to copy non-Serializable data
         if (dataBinding == javaBeanDataBinding) {
 
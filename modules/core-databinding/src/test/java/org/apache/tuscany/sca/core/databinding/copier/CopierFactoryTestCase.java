@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.databinding.copier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class CopierFactoryTestCase {
+
+    @Test
+    public void testCopyGraph() throws Exception {
+        Node root = new Node();
+        root.setName("root");
+        root.setWeight(3);
+        root.setData(new int[] {1, 2, 3});
+        Node child = new Node();
+        child.setName("child");
+        child.setParent(root);
+        root.getChildren().add(child);
+
+        Node copy = (Node)CopierFactory.copy(root);
+        assertNotSame(root, copy);
+        assertEquals("root", copy.getName());
+        assertEquals(3, copy.getWeight());
+        assertNotSame(root.getData(), copy.getData());
+        assertTrue(Arrays.equals(root.getData(), copy.getData()));
+        assertEquals(1, copy.getChildren().size());
+        Node childCopy = copy.getChildren().get(0);
+        assertNotSame(child, childCopy);
+        assertEquals("child", childCopy.getName());
+        // the cycle is reproduced in the copy
+        assertSame(copy, childCopy.getParent());
+
+        // the copier is generated once per class
+        assertSame(CopierFactory.getCopier(Node.class), CopierFactory.getCopier(Node.class));
+    }
+
+    @Test
+    public void testNotCopyable() throws Exception {
+        assertNull(CopierFactory.getCopier(Opaque.class));
+        Node node = new Node();
+        node.setParent(new Opaque());
+        try {
+            CopierFactory.copy(new Node[] {node});
+            fail("CopyNotSupportedException expected");
+        } catch (CopyNotSupportedException e) {
+            // expected
+        }
+        assertNotNull(CopierFactory.getCopier(Node.class));
+    }
+
+    @Test
+    public void testGetterOnlyCollections() throws Exception {
+        NullList nullList = new NullList();
+        nullList.items = new ArrayList<String>(Arrays.asList("a"));
+        assertNotCopied(nullList);
+        DefensiveList defensiveList = new DefensiveList();
+        defensiveList.items.add("a");
+        assertNotCopied(defensiveList);
+        assertNotCopied(new UnmodifiableList());
+    }
+
+    private static void assertNotCopied(Object bean) {
+        try {
+            CopierFactory.copy(bean);
+            fail("CopyNotSupportedException expected");
+        } catch (CopyNotSupportedException e) {
+            // expected, the interceptor falls back to the other copy paths
+        }
+    }
+
+    public static class Node {
+        private String name;
+        private int weight;
+        private int[] data;
+        private Object parent;
+        private List<Node> children;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public int[] getData() {
+            return data;
+        }
+
+        public void setData(int[] data) {
+            this.data = data;
+        }
+
+        public Object getParent() {
+            return parent;
+        }
+
+        public void setParent(Object parent) {
+            this.parent = parent;
+        }
+
+        public List<Node> getChildren() {
+            if (children == null) {
+                children = new ArrayList<Node>();
+            }
+            return children;
+        }
+    }
+
+    public static class NullList {
+        private List<String> items;
+
+        public List<String> getItems() {
+            return items;
+        }
+    }
+
+    public static class DefensiveList {
+        private List<String> items = new ArrayList<String>();
+
+        public List<String> getItems() {
+            return new ArrayList<String>(items);
+        }
+    }
+
+    public static class UnmodifiableList {
+        private List<String> items = Collections.unmodifiableList(Arrays.asList("a"));
+
+        public List<String> getItems() {
+            return items;
+        }
+    }
+
+    public static class Opaque {
+        private int state;
+
+        public int size() {
+            return state;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.databinding.wire;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuscany.sca.databinding.DataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.apache.tuscany.sca.interfacedef.impl.OperationImpl;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class DataBindingRuntimeWireProcessorTestCase {
+
+    @Test
+    public void testTransformationRequired() {
+        DataBindingRuntimeWireProcessor processor = new DataBindingRuntimeWireProcessor(null, null, null);
+        Operation javaOperation = newOperation("java:simpleType", "java:simpleType");
+        Operation sameOperation = newOperation("java:simpleType", "java:simpleType");
+        Operation xmlInputOperation = newOperation("org.w3c.dom.Node", "java:simpleType");
+        Operation xmlOutputOperation = newOperation("java:simpleType", "org.w3c.dom.Node");
+
+        assertFalse(processor.isTransformationRequired(javaOperation, sameOperation));
+
+        assertTrue(processor.isTransformationRequired(javaOperation, xmlInputOperation));
+        assertTrue(processor.isInputTransformationRequired(javaOperation, xmlInputOperation));
+        assertFalse(processor.isOutputTransformationRequired(javaOperation, xmlInputOperation));
+
+        assertTrue(processor.isTransformationRequired(javaOperation, xmlOutputOperation));
+        assertFalse(processor.isInputTransformationRequired(javaOperation, xmlOutputOperation));
+        assertTrue(processor.isOutputTransformationRequired(javaOperation, xmlOutputOperation));
+
+        // the wrapper style affects both the request and the response
+        sameOperation.setWrapperStyle(true);
+        assertTrue(processor.isInputTransformationRequired(javaOperation, sameOperation));
+        assertTrue(processor.isOutputTransformationRequired(javaOperation, sameOperation));
+    }
+
+    private static Operation newOperation(String inputDataBinding, String outputDataBinding) {
+        Operation operation = new OperationImpl();
+        operation.setName("call");
+        List<DataType> inputs = new ArrayList<DataType>();
+        inputs.add(new DataTypeImpl<Class>(inputDataBinding, String.class, String.class));
+        operation.setInputType(new DataTypeImpl<List<DataType>>(DataBinding.IDL_INPUT, Object[].class, inputs));
+        operation.setOutputType(new DataTypeImpl<Class>(outputDataBinding, String.class, String.class));
+        return operation;
+    }
+}
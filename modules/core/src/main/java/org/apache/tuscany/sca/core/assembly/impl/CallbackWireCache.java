@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.assembly.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+
+/**
+ * A bounded cache of the wires bound to callback endpoints, keyed by the URI of the callback
+ * endpoint. A wire is taken out of the cache while a callback uses it and put back when the
+ * callback completes, so concurrent callbacks to the same endpoint each get their own wire.
+ * When the cache holds more than its maximum number of idle wires, the wires of the least
+ * recently used endpoint are dropped.
+ *
+ * @version $Rev$ $Date$
+ */
+public class CallbackWireCache {
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxSize the maximum number of idle wires held by the cache
+     */
+    public CallbackWireCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Take an idle wire bound to the given callback endpoint out of the cache
+     *
+     * @param uri the URI of the callback endpoint
+     * @return the wire or null if there is no idle wire for the endpoint
+     */
+    public RuntimeWire acquire(String uri) {
+        Entry entry = entries.get(uri);
+        if (entry != null) {
+            RuntimeWire wire = entry.wires.poll();
+            if (wire != null) {
+                size.decrementAndGet();
+                entry.lastUsed = clock.incrementAndGet();
+                hits.incrementAndGet();
+                return wire;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Put a wire back in the cache once the callback using it has completed
+     *
+     * @param uri the URI of the callback endpoint the wire is bound to
+     * @param wire the wire
+     */
+    public void release(String uri, RuntimeWire wire) {
+        if (maxSize <= 0) {
+            return;
+        }
+        Entry entry = entries.get(uri);
+        if (entry == null) {
+            Entry newEntry = new Entry();
+            entry = entries.putIfAbsent(uri, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        entry.wires.offer(wire);
+        size.incrementAndGet();
+        if (entries.get(uri) != entry) {
+            // the entry has been evicted concurrently, don't leave wires behind in it
+            for (RuntimeWire w = entry.wires.poll(); w != null; w = entry.wires.poll()) {
+                size.decrementAndGet();
+                evictions.incrementAndGet();
+            }
+        }
+        if (size.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Drop the wires of the least recently used endpoints until the cache is back within its bound
+     */
+    private void evict() {
+        while (size.get() > maxSize) {
+            String lruKey = null;
+            long lruTime = Long.MAX_VALUE;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().lastUsed < lruTime) {
+                    lruTime = e.getValue().lastUsed;
+                    lruKey = e.getKey();
+                }
+            }
+            if (lruKey == null) {
+                return;
+            }
+            Entry entry = entries.remove(lruKey);
+            if (entry == null) {
+                continue;
+            }
+            for (RuntimeWire wire = entry.wires.poll(); wire != null; wire = entry.wires.poll()) {
+                size.decrementAndGet();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the number of idle wires in the cache
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the maximum number of idle wires held by the cache
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of callbacks that found an idle wire in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of callbacks that had to bind a new wire
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of wires dropped from the cache to keep it within its bound
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private static class Entry {
+        private final ConcurrentLinkedQueue<RuntimeWire> wires = new ConcurrentLinkedQueue<RuntimeWire>();
+        private volatile long lastUsed;
+    }
+}
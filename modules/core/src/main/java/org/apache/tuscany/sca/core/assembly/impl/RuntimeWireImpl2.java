@@ -20,8 +20,11 @@
 package org.apache.tuscany.sca.core.assembly.impl;
 
 import java.lang.reflect.InvocationTargetException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.tuscany.sca.assembly.Binding;
 import org.apache.tuscany.sca.assembly.Component;
@@ -62,6 +65,8 @@ import org.oasisopen.sca.ServiceRuntimeException;
  * @version $Rev$ $Date$
  */
 public class RuntimeWireImpl2 implements RuntimeWire {
+    private static final int CALLBACK_WIRE_CACHE_SIZE = getCallbackWireCacheSize();
+
     private Boolean isReferenceWire = false;
     private EndpointReference2 endpointReference;
     private Endpoint2 endpoint;
@@ -73,14 +78,17 @@ public class RuntimeWireImpl2 implements RuntimeWire {
     private transient ConversationManager conversationManager;
     private transient RuntimeWireInvoker invoker;
 
-    // the following is a very simple cache that avoids re-cloning a wire
-    // when consecutive callbacks to the same endpoint are made
-    private EndpointReference lastCallback;
-    private RuntimeWire cachedWire;
-    private boolean wireReserved;
+    // the wires bound to callback endpoints, created on the first callback
+    private volatile CallbackWireCache callbackWireCache;
+    // the wire whose callback wire cache this wire goes back to, and the key it goes back under
     private RuntimeWireImpl2 clonedFrom;
+    private String callbackURI;
+    private AtomicBoolean cached = new AtomicBoolean();
 
-    private List<InvocationChain> chains;
+    // published only once fully built so that readers don't need to lock the wire
+    private volatile List<InvocationChain> chains;
+    // the chains being built, only visible to the thread holding the wire's monitor
+    private List<InvocationChain> pendingChains;
     private InvocationChain bindingInvocationChain;
 
     /**
@@ -112,11 +120,21 @@ public class RuntimeWireImpl2 implements RuntimeWire {
         this.invoker = new RuntimeWireInvoker(this.messageFactory, this.conversationManager, this);
     }
 
-    public synchronized List<InvocationChain> getInvocationChains() {
-        if (chains == null) {
-            initInvocationChains();
+    public List<InvocationChain> getInvocationChains() {
+        List<InvocationChain> result = chains;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (chains == null) {
+                if (pendingChains != null) {
+                    // Re-entrant call from a wire processor while the chains are being built
+                    return pendingChains;
+                }
+                initInvocationChains();
+            }
+            return chains;
         }
-        return chains;
     }
     
     public synchronized InvocationChain getBindingInvocationChain() {
@@ -164,7 +182,18 @@ public class RuntimeWireImpl2 implements RuntimeWire {
      * Initialize the invocation chains
      */
     private void initInvocationChains() {
-        chains = new ArrayList<InvocationChain>();
+        List<InvocationChain> chains = new ArrayList<InvocationChain>();
+        pendingChains = chains;
+        try {
+            buildInvocationChains(chains);
+            wireProcessor.process(this);
+            this.chains = chains;
+        } finally {
+            pendingChains = null;
+        }
+    }
+
+    private void buildInvocationChains(List<InvocationChain> chains) {
         InterfaceContract sourceContract = endpointReference.getInterfaceContract();
         InterfaceContract targetContract = endpoint.getInterfaceContract();
 
@@ -213,7 +242,6 @@ public class RuntimeWireImpl2 implements RuntimeWire {
             }
             
         }
-        wireProcessor.process(this);
     }
     
     private void initReferenceBindingInvocationChains() {
@@ -464,7 +492,10 @@ public class RuntimeWireImpl2 implements RuntimeWire {
         copy.endpointReference = (EndpointReference2)endpointReference.clone();
         copy.endpoint = copy.endpointReference.getTargetEndpoint();
         copy.invoker = new RuntimeWireInvoker(copy.messageFactory, copy.conversationManager, copy);
-        copy.cachedWire = null; // TUSCANY-2630
+        copy.callbackWireCache = null; // TUSCANY-2630
+        copy.clonedFrom = null;
+        copy.callbackURI = null;
+        copy.cached = new AtomicBoolean();
         return copy;
     }
 
@@ -475,33 +506,89 @@ public class RuntimeWireImpl2 implements RuntimeWire {
         return conversationManager;
     }
 
-    public synchronized RuntimeWire lookupCache(EndpointReference callback) {
-        if (lastCallback != null && callback.getURI().equals(lastCallback.getURI()) && !wireReserved) {
-            wireReserved = true;
-            return cachedWire;
-        } else {
+    /**
+     * Take an idle wire bound to the given callback endpoint out of the cache. The wire must be
+     * released with {@link #releaseWire()} when the callback completes.
+     * @param callback the callback endpoint
+     * @return the wire or null if a new one has to be bound
+     */
+    public RuntimeWire lookupCache(EndpointReference callback) {
+        String uri = callback.getURI();
+        if (uri == null) {
             return null;
         }
+        RuntimeWire wire = getCallbackWireCache().acquire(uri);
+        if (wire != null) {
+            ((RuntimeWireImpl2)wire).cached.set(false);
+        }
+        return wire;
     }
 
-    public synchronized void addToCache(EndpointReference callback, RuntimeWire clonedWire) {
-        ((RuntimeWireImpl2)clonedWire).setClonedFrom(this);
-        lastCallback = callback;
-        cachedWire = clonedWire;
-        wireReserved = true;
+    /**
+     * Associate a wire newly bound to a callback endpoint with this wire. The wire is in use by
+     * the current callback and goes into the cache when it is released.
+     * @param callback the callback endpoint
+     * @param clonedWire the wire bound to the endpoint
+     */
+    public void addToCache(EndpointReference callback, RuntimeWire clonedWire) {
+        String uri = callback.getURI();
+        if (uri != null) {
+            ((RuntimeWireImpl2)clonedWire).setClonedFrom(this, uri);
+        }
     }
 
-    public synchronized void releaseClonedWire(RuntimeWire wire) {
-        if (cachedWire == wire) {
-            wireReserved = false;
+    public void releaseClonedWire(RuntimeWire wire) {
+        RuntimeWireImpl2 clonedWire = (RuntimeWireImpl2)wire;
+        // a wire shared by concurrent callbacks only goes back into the cache once
+        if (clonedWire.callbackURI != null && clonedWire.cached.compareAndSet(false, true)) {
+            getCallbackWireCache().release(clonedWire.callbackURI, clonedWire);
         }
     }
 
-    public synchronized void releaseWire() {
-        clonedFrom.releaseClonedWire(this);
+    public void releaseWire() {
+        RuntimeWireImpl2 from = clonedFrom;
+        if (from != null) {
+            from.releaseClonedWire(this);
+        }
+    }
+
+    /**
+     * @return the cache of the wires bound to callback endpoints
+     */
+    public CallbackWireCache getCallbackWireCache() {
+        CallbackWireCache cache = callbackWireCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = callbackWireCache;
+                if (cache == null) {
+                    cache = new CallbackWireCache(CALLBACK_WIRE_CACHE_SIZE);
+                    callbackWireCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static int getCallbackWireCacheSize() {
+        // Allow privileged access to read system property. Requires PropertyPermission in security
+        // policy.
+        String aProperty = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(RuntimeWire.class.getName() + ".CallbackWireCacheSize");
+            }
+        });
+        if (aProperty != null) {
+            try {
+                return Integer.parseInt(aProperty);
+            } catch (NumberFormatException nfe) {
+                // Ignore
+            }
+        }
+        return 32;
     }
 
-    private void setClonedFrom(RuntimeWireImpl2 wire) {
+    private void setClonedFrom(RuntimeWireImpl2 wire, String uri) {
         clonedFrom = wire;
+        callbackURI = uri;
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.conversation;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the IDs of the conversations started by the runtime. By default an ID is made of a
+ * random prefix chosen once per runtime and a scrambled sequence number, which is unique and
+ * cheap to compute but can be guessed from a previous ID. Set the
+ * org.apache.tuscany.sca.core.conversation.ConversationManager.SecureConversationIDs system
+ * property to true to use random UUIDs instead.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class ConversationIDGenerator {
+    private static final boolean SECURE;
+    private static final long PREFIX;
+    private static final AtomicLong SEQUENCE;
+
+    static {
+        String aProperty = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(ConversationManager.class.getName() + ".SecureConversationIDs");
+            }
+        });
+        SECURE = Boolean.valueOf(aProperty);
+        SecureRandom random = new SecureRandom();
+        PREFIX = random.nextLong();
+        SEQUENCE = new AtomicLong(random.nextLong());
+    }
+
+    private ConversationIDGenerator() {
+    }
+
+    /**
+     * @return a new conversation ID, in the same format as a UUID
+     */
+    public static String generate() {
+        if (SECURE) {
+            return UUID.randomUUID().toString();
+        }
+        return new UUID(PREFIX, scramble(SEQUENCE.getAndIncrement())).toString();
+    }
+
+    /**
+     * @return true if the IDs are random UUIDs
+     */
+    public static boolean isSecure() {
+        return SECURE;
+    }
+
+    /**
+     * A bijective 64 bit mix so that consecutive IDs don't look consecutive. Distinct sequence
+     * numbers always give distinct results.
+     */
+    private static long scramble(long n) {
+        n = (n ^ (n >>> 30)) * 0xbf58476d1ce4e5b9L;
+        n = (n ^ (n >>> 27)) * 0x94d049bb133111ebL;
+        return n ^ (n >>> 31);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.conversation.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A hashed timing wheel holding the conversations waiting to expire. Each bucket covers one tick
+ * and holds an intrusive doubly linked list of conversations linked through the conversation
+ * objects themselves, so scheduling a conversation doesn't allocate and an ended conversation is
+ * unlinked in constant time. A conversation sits in the wheel once; when its bucket comes due the
+ * reaper checks the actual deadline and re-inserts it if it has been referenced in the meantime.
+ *
+ * @version $Rev$ $Date$
+ */
+class ConversationExpiryWheel {
+    private final long tickDuration;
+    private final long startTime;
+    private final ExtendedConversationImpl[] buckets;
+    private final int mask;
+
+    /**
+     * the last tick that has been processed
+     */
+    private long currentTick;
+
+    /**
+     * the number of conversations in the wheel
+     */
+    private int size;
+
+    /**
+     * @param tickDuration the duration of a tick in milliseconds
+     * @param wheelSize the number of buckets, rounded up to a power of 2
+     * @param startTime the time of tick 0
+     */
+    ConversationExpiryWheel(long tickDuration, int wheelSize, long startTime) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Invalid tick duration: " + tickDuration);
+        }
+        int n = 1;
+        while (n < wheelSize) {
+            n <<= 1;
+        }
+        this.tickDuration = tickDuration;
+        this.startTime = startTime;
+        this.buckets = new ExtendedConversationImpl[n];
+        this.mask = n - 1;
+    }
+
+    /**
+     * Insert a conversation into the bucket of the tick its deadline falls into. A deadline that
+     * has already passed is processed on the next tick.
+     *
+     * @param conversation the conversation
+     * @param deadline the time at which the conversation expires
+     */
+    synchronized void schedule(ExtendedConversationImpl conversation, long deadline) {
+        if (conversation.wheelScheduled) {
+            unlink(conversation);
+        }
+        long tick = deadline <= startTime ? 0 : (deadline - startTime + tickDuration - 1) / tickDuration;
+        if (tick <= currentTick) {
+            tick = currentTick + 1;
+        }
+        int index = (int)(tick & mask);
+        ExtendedConversationImpl head = buckets[index];
+        conversation.wheelTick = tick;
+        conversation.wheelPrev = null;
+        conversation.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = conversation;
+        }
+        buckets[index] = conversation;
+        conversation.wheelScheduled = true;
+        size++;
+    }
+
+    /**
+     * Remove a conversation from the wheel, if it is in it
+     *
+     * @param conversation the conversation
+     */
+    synchronized void cancel(ExtendedConversationImpl conversation) {
+        if (conversation.wheelScheduled) {
+            unlink(conversation);
+        }
+    }
+
+    private void unlink(ExtendedConversationImpl conversation) {
+        ExtendedConversationImpl prev = conversation.wheelPrev;
+        ExtendedConversationImpl next = conversation.wheelNext;
+        if (prev == null) {
+            buckets[(int)(conversation.wheelTick & mask)] = next;
+        } else {
+            prev.wheelNext = next;
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        conversation.wheelPrev = null;
+        conversation.wheelNext = null;
+        conversation.wheelScheduled = false;
+        size--;
+    }
+
+    /**
+     * Advance the wheel to the given time and remove the conversations whose tick has passed
+     *
+     * @param now the current time
+     * @return the conversations that are due, in no particular order
+     */
+    List<ExtendedConversationImpl> advance(long now) {
+        List<ExtendedConversationImpl> due = null;
+        synchronized (this) {
+            long target = (now - startTime) / tickDuration;
+            if (target <= currentTick) {
+                return Collections.emptyList();
+            }
+            // after a long pause every bucket is visited once rather than every elapsed tick
+            long steps = Math.min(target - currentTick, buckets.length);
+            for (long i = 1; i <= steps; i++) {
+                int index = (int)((currentTick + i) & mask);
+                ExtendedConversationImpl conversation = buckets[index];
+                while (conversation != null) {
+                    ExtendedConversationImpl next = conversation.wheelNext;
+                    // the others are due in a later round of the wheel
+                    if (conversation.wheelTick <= target) {
+                        unlink(conversation);
+                        if (due == null) {
+                            due = new ArrayList<ExtendedConversationImpl>();
+                        }
+                        due.add(conversation);
+                    }
+                    conversation = next;
+                }
+            }
+            currentTick = target;
+        }
+        if (due == null) {
+            return Collections.emptyList();
+        }
+        return due;
+    }
+
+    /**
+     * @return the number of conversations in the wheel
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the duration of a tick in milliseconds
+     */
+    long getTickDuration() {
+        return tickDuration;
+    }
+}
@@ -21,17 +21,21 @@ package org.apache.tuscany.sca.core.conversation.impl;
 
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.tuscany.sca.core.conversation.ConversationExt;
+import org.apache.tuscany.sca.core.conversation.ConversationIDGenerator;
 import org.apache.tuscany.sca.core.conversation.ConversationListener;
 import org.apache.tuscany.sca.core.conversation.ConversationManager;
 import org.apache.tuscany.sca.core.conversation.ConversationState;
@@ -40,9 +44,26 @@ import org.apache.tuscany.sca.core.conversation.ConversationState;
  * @version $Rev$ $Date$
  */
 public class ConversationManagerImpl implements ConversationManager {
+    private static final Logger LOGGER = Logger.getLogger(ConversationManagerImpl.class.getName());
 
-    private List<ConversationListener> listeners = Collections.synchronizedList(new ArrayList<ConversationListener>());
-    private Map<Object, ConversationExt> conversations = new ConcurrentHashMap<Object, ConversationExt>();
+    /**
+     * listeners are added once and notified on every start, end and expiry so they are
+     * dispatched from a copy-on-write list
+     */
+    private List<ConversationListener> listeners = new CopyOnWriteArrayList<ConversationListener>();
+
+    /**
+     * the registry of live conversations, split into enough segments for many threads to
+     * start and end conversations without contending on the same lock
+     */
+    private Map<Object, ConversationExt> conversations =
+        new ConcurrentHashMap<Object, ConversationExt>(1024, 0.75f, 64);
+
+    /**
+     * the number of live conversations per target component URI
+     */
+    private final ConcurrentHashMap<String, AtomicInteger> componentConversations =
+        new ConcurrentHashMap<String, AtomicInteger>();
 
     /**
      * the default max age. this is set to 1 hour
@@ -54,6 +75,16 @@ public class ConversationManagerImpl implements ConversationManager {
      */
     private static final long DEFAULT_MAX_IDLE_TIME = 60 * 60 * 1000;
 
+    /**
+     * the default resolution of the expiry wheel. this is set to 1 second
+     */
+    private static final long DEFAULT_EXPIRY_TICK = 1000;
+
+    /**
+     * the number of buckets of the expiry wheel
+     */
+    private static final int EXPIRY_WHEEL_SIZE = 512;
+
     /**
      * the globally used max age
      */
@@ -69,6 +100,19 @@ public class ConversationManagerImpl implements ConversationManager {
      */
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
 
+    /**
+     * the conversations waiting to expire
+     */
+    private final ConversationExpiryWheel expiryWheel;
+
+    /**
+     * whether the reaper has been started
+     */
+    private boolean reaperStarted;
+
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong endedCount = new AtomicLong();
+
     /**
      * constructor
      */
@@ -106,8 +150,26 @@ public class ConversationManagerImpl implements ConversationManager {
             }
         }
 
+        long tick = DEFAULT_EXPIRY_TICK;
+
+        // Allow privileged access to read system property. Requires PropertyPermission in security
+        // policy.
+        aProperty = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(ConversationManager.class.getName() + ".ExpiryTick");
+            }
+        });
+        if (aProperty != null) {
+            try {
+                tick = Math.max(1, Long.parseLong(aProperty));
+            } catch (NumberFormatException nfe) {
+                // Ignore
+            }
+        }
+
         maxAge = ma;
         maxIdleTime = mit;
+        expiryWheel = new ConversationExpiryWheel(tick, EXPIRY_WHEEL_SIZE, System.currentTimeMillis());
     }
 
     /**
@@ -129,6 +191,9 @@ public class ConversationManagerImpl implements ConversationManager {
             }
             conv.setConversationID(null);
             conversations.remove(conversationID);
+            conversationRemoved(conv);
+            unschedule(conv);
+            endedCount.incrementAndGet();
         } else {
             throw new IllegalStateException("Conversation " + conversationID + " doesn't exist.");
         }
@@ -141,6 +206,9 @@ public class ConversationManagerImpl implements ConversationManager {
                 listener.conversationExpired(conv);
             }
             conversations.remove(conversationID);
+            conversationRemoved(conv);
+            unschedule(conv);
+            expiredCount.incrementAndGet();
         } else {
             throw new IllegalStateException("Conversation " + conversationID + " doesn't exist.");
         }
@@ -163,10 +231,59 @@ public class ConversationManagerImpl implements ConversationManager {
     }
 
     /**
-     * starts the reaper thread
+     * adds a conversation to the expiry wheel and starts the reaper thread if needed
+     * @param aConversation the conversation
+     * @param expiryTime the time at which the conversation expires unless it is referenced again
+     */
+    public void scheduleConversation(ExtendedConversationImpl aConversation, long expiryTime) {
+        expiryWheel.schedule(aConversation, expiryTime);
+        if (aConversation.getState() == ConversationState.ENDED) {
+            // ended while it was being scheduled, endConversation may have missed it
+            expiryWheel.cancel(aConversation);
+            return;
+        }
+        startReaper();
+    }
+
+    private void unschedule(ConversationExt conv) {
+        if (conv instanceof ExtendedConversationImpl) {
+            expiryWheel.cancel((ExtendedConversationImpl)conv);
+        }
+    }
+
+    private synchronized void startReaper() {
+        if (reaperStarted || scheduler.isShutdown()) {
+            return;
+        }
+        reaperStarted = true;
+        long tick = expiryWheel.getTickDuration();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                reapConversations();
+            }
+        }, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * expires the conversations whose bucket of the expiry wheel has come due. conversations
+     * that were referenced since they were scheduled go back into the wheel with their new
+     * expiry time and ended conversations are dropped
      */
-    public void scheduleConversation(ExtendedConversationImpl aConversation, long time) {
-        this.scheduler.schedule(aConversation, time, TimeUnit.MILLISECONDS);
+    void reapConversations() {
+        for (ExtendedConversationImpl conversation : expiryWheel.advance(System.currentTimeMillis())) {
+            try {
+                if (conversation.getState() == ConversationState.ENDED) {
+                    continue;
+                }
+                conversation.run();
+                if (conversation.getState() == ConversationState.STARTED) {
+                    expiryWheel.schedule(conversation, conversation.getExpiryTime());
+                }
+            } catch (RuntimeException e) {
+                // a failing listener must not stop the reaper from processing the other conversations
+                LOGGER.log(Level.SEVERE, "Exception while expiring conversation", e);
+            }
+        }
     }
 
     /**
@@ -185,7 +302,7 @@ public class ConversationManagerImpl implements ConversationManager {
     public ConversationExt startConversation(Object conversationID) {
 
         if (conversationID == null) {
-            conversationID = UUID.randomUUID().toString();
+            conversationID = ConversationIDGenerator.generate();
         }
         ConversationExt conversation = getConversation(conversationID);
         if (conversation != null && conversation.getState() != ConversationState.ENDED) {
@@ -200,6 +317,77 @@ public class ConversationManagerImpl implements ConversationManager {
         return conversation;
     }
 
+    /**
+     * @return the number of conversations that have been started and are neither ended nor expired
+     */
+    public int getLiveConversationCount() {
+        return conversations.size();
+    }
+
+    /**
+     * @return the number of live conversations for each target component URI. Conversations
+     * whose target component isn't known yet are not counted
+     */
+    public Map<String, Integer> getLiveConversationCountsByComponent() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<String, AtomicInteger> entry : componentConversations.entrySet()) {
+            int count = entry.getValue().get();
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * account for a conversation that targets the given component
+     * @param componentURI the URI of the component
+     */
+    void conversationAttached(String componentURI) {
+        AtomicInteger count = componentConversations.get(componentURI);
+        if (count == null) {
+            AtomicInteger newCount = new AtomicInteger();
+            count = componentConversations.putIfAbsent(componentURI, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private void conversationRemoved(ConversationExt conv) {
+        if (conv instanceof ExtendedConversationImpl) {
+            String componentURI = ((ExtendedConversationImpl)conv).detachComponent();
+            if (componentURI != null) {
+                AtomicInteger count = componentConversations.get(componentURI);
+                if (count != null) {
+                    count.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of conversations that have expired
+     */
+    public long getExpiredConversationCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * @return the number of conversations that have been ended
+     */
+    public long getEndedConversationCount() {
+        return endedCount.get();
+    }
+
+    /**
+     * @return the number of live conversations waiting in the expiry wheel
+     */
+    public int getScheduledConversationCount() {
+        return expiryWheel.size();
+    }
+
     /**
      * return the default max idle time
      * @param impProvider the implementation Provider to extract any ConversationAttribute details
@@ -63,7 +63,7 @@ public class ExtendedConversationImpl implements ConversationExt, Runnable {
     /**
      * the time that this object was last referenced 
      */
-    private long lastReferencedTime;
+    private volatile long lastReferencedTime;
     
     /**
      * boolean to ensure expiry only occurs once
@@ -77,7 +77,32 @@ public class ExtendedConversationImpl implements ConversationExt, Runnable {
      * conversation but the conversationAttributes are not available
      * until the conversation is retrieved by the RuntimeWireInvoker
      */
-    private boolean conversationAttributesInitialized = false;    
+    private volatile boolean conversationAttributesInitialized = false;    
+
+    /**
+     * the URI of the target component this conversation is accounted against, guarded by stateSync
+     */
+    private String componentURI;
+
+    /**
+     * the next conversation in the same bucket of the expiry wheel, guarded by the wheel
+     */
+    ExtendedConversationImpl wheelNext;
+
+    /**
+     * the previous conversation in the same bucket of the expiry wheel, guarded by the wheel
+     */
+    ExtendedConversationImpl wheelPrev;
+
+    /**
+     * whether this conversation is in the expiry wheel, guarded by the wheel
+     */
+    boolean wheelScheduled;
+
+    /**
+     * the tick of the expiry wheel this conversation is scheduled for, guarded by the wheel
+     */
+    long wheelTick;
     
     /**
      * Constructor
@@ -119,34 +144,29 @@ public class ExtendedConversationImpl implements ConversationExt, Runnable {
 
             // check whether the time is finished
             currentTime = System.currentTimeMillis();
-            if (((this.lastReferencedTime + this.maxIdleTime) <= currentTime)
-                    || (this.expirationTime <= currentTime)) {
+            if (getExpiryTime() <= currentTime) {
                 setState(ConversationState.EXPIRED);
                 return true;
             }
         }
-        scheduleNextExpiryTime(currentTime);
         return false;
     }
 
     /**
-     * schedule next expiry time
+     * @return the time at which this conversation expires unless it is referenced again
      */
-    public void scheduleNextExpiryTime(long currentTime) {
-    	if ((lastReferencedTime + maxIdleTime) < expirationTime){ 
-    		manager.scheduleConversation(this, (lastReferencedTime + maxIdleTime) - currentTime);
-        } else {
-    		manager.scheduleConversation(this, expirationTime - currentTime);
-    	}
+    long getExpiryTime() {
+        long idleExpiryTime = lastReferencedTime + maxIdleTime;
+        return idleExpiryTime < expirationTime ? idleExpiryTime : expirationTime;
     }
+
     /**
-     * updates the last time this conversation was referenced
+     * updates the last time this conversation was referenced. The expiry wheel
+     * picks up the new deadline when the current one comes due so nothing is
+     * rescheduled here
      */
     public void updateLastReferencedTime() {
         this.lastReferencedTime = System.currentTimeMillis();
-        if (conversationAttributesInitialized == true){
-            scheduleNextExpiryTime(lastReferencedTime);
-        }
     }
     
     public ConversationState getState() {
@@ -189,13 +209,36 @@ public class ExtendedConversationImpl implements ConversationExt, Runnable {
      */
     public void initializeConversationAttributes(RuntimeComponent targetComponent){
         if (targetComponent != null){ 
-            this.maxAge = getMaxIdleTime(targetComponent.getImplementationProvider());
-            this.maxIdleTime = getMaxAge(targetComponent.getImplementationProvider());
-            this.expirationTime = creationTime + maxAge;
-            this.conversationAttributesInitialized = true;
+            synchronized (stateSync) {
+                if (conversationAttributesInitialized) {
+                    return;
+                }
+                this.maxAge = getMaxIdleTime(targetComponent.getImplementationProvider());
+                this.maxIdleTime = getMaxAge(targetComponent.getImplementationProvider());
+                this.expirationTime = creationTime + maxAge;
+                this.conversationAttributesInitialized = true;
+                this.componentURI = targetComponent.getURI();
+                if (componentURI != null) {
+                    // account while holding the lock so an end can't detach the conversation first
+                    manager.conversationAttached(componentURI);
+                }
+            }
+            manager.scheduleConversation(this, getExpiryTime());
         }        
     }
     
+    /**
+     * stops accounting this conversation against its target component
+     * @return the URI of the component, null if it was not accounted or has already been detached
+     */
+    String detachComponent() {
+        synchronized (stateSync) {
+            String uri = componentURI;
+            componentURI = null;
+            return uri;
+        }
+    }
+
     /**
      * @return true if the conversational attributes have been initialized
      */
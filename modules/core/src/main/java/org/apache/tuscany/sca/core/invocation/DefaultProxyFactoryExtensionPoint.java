@@ -19,6 +19,9 @@
 
 package org.apache.tuscany.sca.core.invocation;
 
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
 import org.apache.tuscany.sca.core.ExtensionPointRegistry;
 import org.apache.tuscany.sca.core.FactoryExtensionPoint;
 import org.apache.tuscany.sca.core.UtilityExtensionPoint;
@@ -45,13 +48,33 @@ public class DefaultProxyFactoryExtensionPoint implements ProxyFactoryExtensionP
         FactoryExtensionPoint modelFactories = extensionPoints.getExtensionPoint(FactoryExtensionPoint.class);
         this.messageFactory = modelFactories.getFactory(MessageFactory.class);
         
-        interfaceFactory = new JDKProxyFactory(messageFactory, interfaceContractMapper);
+        interfaceFactory = createInterfaceProxyFactory(messageFactory, interfaceContractMapper);
     }
 
     public DefaultProxyFactoryExtensionPoint(MessageFactory messageFactory, InterfaceContractMapper mapper) {
         this.interfaceContractMapper = mapper;
         this.messageFactory = messageFactory;
-        interfaceFactory = new JDKProxyFactory(messageFactory, mapper);
+        interfaceFactory = createInterfaceProxyFactory(messageFactory, mapper);
+    }
+
+    /**
+     * Use the generated proxy factory for interfaces if the
+     * org.apache.tuscany.sca.core.invocation.ProxyFactory.Generated system property is set to true,
+     * otherwise use JDK dynamic proxies
+     */
+    private static ProxyFactory createInterfaceProxyFactory(MessageFactory messageFactory,
+                                                            InterfaceContractMapper mapper) {
+        // Allow privileged access to read system property. Requires PropertyPermission in security
+        // policy.
+        String generated = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(ProxyFactory.class.getName() + ".Generated");
+            }
+        });
+        if (Boolean.parseBoolean(generated)) {
+            return new GeneratedProxyFactory(messageFactory, mapper);
+        }
+        return new JDKProxyFactory(messageFactory, mapper);
     }
 
     public ProxyFactory getClassProxyFactory() {
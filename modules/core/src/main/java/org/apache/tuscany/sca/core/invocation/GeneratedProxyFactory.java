@@ -0,0 +1,507 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.invocation;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.tuscany.sca.core.context.impl.CallableReferenceImpl;
+import org.apache.tuscany.sca.core.context.impl.ServiceReferenceImpl;
+import org.apache.tuscany.sca.core.invocation.impl.CallbackReferenceImpl;
+import org.apache.tuscany.sca.core.invocation.impl.JDKCallbackInvocationHandler;
+import org.apache.tuscany.sca.core.invocation.impl.JDKInvocationHandler;
+import org.apache.tuscany.sca.core.invocation.impl.JDKProxyFactory;
+import org.apache.tuscany.sca.interfacedef.InterfaceContractMapper;
+import org.apache.tuscany.sca.invocation.MessageFactory;
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.oasisopen.sca.CallableReference;
+import org.oasisopen.sca.ServiceReference;
+
+/**
+ * The implementation of a wire service that generates one proxy class per business interface.
+ * Each method of the generated class passes its arguments and its index straight to the
+ * {@link JDKInvocationHandler}, which dispatches to the invocation chain without a reflective
+ * method lookup. Interfaces that can't be implemented by a generated class (for example,
+ * non-public ones, or ones whose methods use non-public types) are proxied with JDK dynamic
+ * proxies.
+ * <p>
+ * A generated proxy is serialized as a {@link SerializedProxy} holding the business interface
+ * and the invocation handler, the state a JDK proxy serializes, and it is read back as a new
+ * proxy of the interface.
+ *
+ * @version $Rev$ $Date$
+ */
+public class GeneratedProxyFactory implements ProxyFactory {
+    private static final String PROXY_SUFFIX = "$$TuscanyProxy";
+    private static final String HANDLER = Type.getInternalName(JDKInvocationHandler.class);
+    private static final String HANDLER_DESC = Type.getDescriptor(JDKInvocationHandler.class);
+
+    private static final String SERIALIZED_PROXY = Type.getInternalName(SerializedProxy.class);
+
+    private static final Set<String> OBJECT_METHODS =
+        new HashSet<String>(Arrays.asList("toString()Ljava/lang/String;", "hashCode()I", "equals(Ljava/lang/Object;)Z"));
+
+    // This is a cache containing the class loader that defines the proxy classes for each class loader of
+    // the business interfaces. The values are weak as a proxy class loader refers to its parent, it stays
+    // around as long as one of its proxy classes is in use
+    private final static Map<ClassLoader, WeakReference<ProxyClassLoader>> proxyClassLoaders =
+        Collections.synchronizedMap(new WeakHashMap<ClassLoader, WeakReference<ProxyClassLoader>>());
+
+    // Whether a proxy class can be generated for each business interface seen so far
+    private final static Map<Class<?>, Boolean> generatable =
+        Collections.synchronizedMap(new WeakHashMap<Class<?>, Boolean>());
+
+    private MessageFactory messageFactory;
+    private JDKProxyFactory jdkProxyFactory;
+
+    /**
+     * The interface implemented by all generated proxies
+     */
+    public static interface GeneratedProxy {
+        JDKInvocationHandler getInvocationHandler();
+    }
+
+    /**
+     * The serialized form of a generated proxy
+     */
+    public static final class SerializedProxy implements Serializable {
+        private static final long serialVersionUID = 4512830254617355261L;
+
+        private final Class<?> businessInterface;
+        private final JDKInvocationHandler handler;
+
+        public SerializedProxy(Class<?> businessInterface, JDKInvocationHandler handler) {
+            this.businessInterface = businessInterface;
+            this.handler = handler;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            if (isGeneratable(businessInterface)) {
+                try {
+                    return newProxyInstance(businessInterface, handler);
+                } catch (ProxyCreationException e) {
+                    // Fall back to a JDK proxy
+                }
+            }
+            return Proxy.newProxyInstance(businessInterface.getClassLoader(),
+                                          new Class<?>[] {businessInterface},
+                                          handler);
+        }
+    }
+
+    public GeneratedProxyFactory(MessageFactory messageFactory, InterfaceContractMapper mapper) {
+        this.messageFactory = messageFactory;
+        this.jdkProxyFactory = new JDKProxyFactory(messageFactory, mapper);
+    }
+
+    public <T> T createProxy(Class<T> interfaze, RuntimeWire wire) throws ProxyCreationException {
+        ServiceReference<T> serviceReference = new ServiceReferenceImpl(interfaze, wire, this);
+        return createProxy(serviceReference);
+    }
+
+    public <T> T createProxy(CallableReference<T> callableReference) throws ProxyCreationException {
+        assert callableReference != null;
+        Class<T> interfaze = callableReference.getBusinessInterface();
+        if (!isGeneratable(interfaze)) {
+            return jdkProxyFactory.createProxy(callableReference);
+        }
+        JDKInvocationHandler handler = new JDKInvocationHandler(messageFactory, callableReference);
+        Object proxy = newProxyInstance(interfaze, handler);
+        ((CallableReferenceImpl)callableReference).setProxy(proxy);
+        return interfaze.cast(proxy);
+    }
+
+    public <T> T createCallbackProxy(Class<T> interfaze, List<RuntimeWire> wires) throws ProxyCreationException {
+        CallbackReferenceImpl<T> callbackReference = CallbackReferenceImpl.newInstance(interfaze, this, wires);
+        return callbackReference != null ? createCallbackProxy(callbackReference) : null;
+    }
+
+    public <T> T createCallbackProxy(CallbackReferenceImpl<T> callbackReference) throws ProxyCreationException {
+        assert callbackReference != null;
+        Class<T> interfaze = callbackReference.getBusinessInterface();
+        if (!isGeneratable(interfaze)) {
+            return jdkProxyFactory.createCallbackProxy(callbackReference);
+        }
+        JDKInvocationHandler handler = new JDKCallbackInvocationHandler(messageFactory, callbackReference);
+        Object proxy = newProxyInstance(interfaze, handler);
+        callbackReference.setProxy(proxy);
+        return interfaze.cast(proxy);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <B, R extends CallableReference<B>> R cast(B target) throws IllegalArgumentException {
+        if (target instanceof GeneratedProxy) {
+            return (R)((GeneratedProxy)target).getInvocationHandler().getCallableReference();
+        }
+        return (R)jdkProxyFactory.cast(target);
+    }
+
+    /**
+     * @see org.apache.tuscany.sca.core.invocation.ProxyFactory#isProxyClass(java.lang.Class)
+     */
+    public boolean isProxyClass(Class<?> clazz) {
+        return GeneratedProxy.class.isAssignableFrom(clazz) || jdkProxyFactory.isProxyClass(clazz);
+    }
+
+    /**
+     * The generated class lives in another class loader, so it can only link against public
+     * types
+     */
+    static boolean isGeneratable(Class<?> interfaze) {
+        Boolean result = generatable.get(interfaze);
+        if (result == null) {
+            result = Boolean.valueOf(checkGeneratable(interfaze));
+            generatable.put(interfaze, result);
+        }
+        return result.booleanValue();
+    }
+
+    private static boolean checkGeneratable(Class<?> interfaze) {
+        if (!interfaze.isInterface() || !isPublic(interfaze) || interfaze.getName().startsWith("java.")) {
+            return false;
+        }
+        for (Method method : JDKInvocationHandler.getBusinessMethods(interfaze)) {
+            if (!isPublic(method.getDeclaringClass()) || !isPublic(method.getReturnType())) {
+                return false;
+            }
+            // The proxy implements writeReplace() for the serialization
+            if (method.getName().equals("writeReplace") && method.getParameterTypes().length == 0) {
+                return false;
+            }
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (!isPublic(parameterType)) {
+                    return false;
+                }
+            }
+            for (Class<?> exceptionType : method.getExceptionTypes()) {
+                if (!isPublic(exceptionType)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static Object newProxyInstance(final Class<?> interfaze, JDKInvocationHandler handler)
+        throws ProxyCreationException {
+        try {
+            return getProxyClassLoader(interfaze).getConstructor(interfaze).newInstance(handler);
+        } catch (NoSuchMethodException e) {
+            throw new ProxyCreationException(e);
+        } catch (IllegalAccessException e) {
+            throw new ProxyCreationException(e);
+        } catch (InstantiationException e) {
+            throw new ProxyCreationException(e);
+        } catch (InvocationTargetException e) {
+            throw new ProxyCreationException(e.getCause());
+        } catch (LinkageError e) {
+            throw new ProxyCreationException(e);
+        }
+    }
+
+    private static ProxyClassLoader getProxyClassLoader(final Class<?> interfaze) {
+        ClassLoader parent = interfaze.getClassLoader();
+        synchronized (proxyClassLoaders) {
+            WeakReference<ProxyClassLoader> ref = proxyClassLoaders.get(parent);
+            ProxyClassLoader classLoader = ref != null ? ref.get() : null;
+            if (classLoader == null) {
+                // Allow privileged access to create the class loader. Requires RuntimePermission in security policy.
+                classLoader = AccessController.doPrivileged(new PrivilegedAction<ProxyClassLoader>() {
+                    public ProxyClassLoader run() {
+                        return new ProxyClassLoader(interfaze.getClassLoader());
+                    }
+                });
+                proxyClassLoaders.put(parent, new WeakReference<ProxyClassLoader>(classLoader));
+            }
+            return classLoader;
+        }
+    }
+
+    /**
+     * Generate the bytecode of a final class that implements the business interface,
+     * {@link GeneratedProxy} and Serializable, with one field holding the invocation handler.
+     */
+    private static byte[] generateProxyClass(String name, Class<?> interfaze) {
+        String className = name.replace('.', '/');
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_5,
+                 Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER,
+                 className,
+                 null,
+                 "java/lang/Object",
+                 new String[] {Type.getInternalName(interfaze), Type.getInternalName(GeneratedProxy.class),
+                               "java/io/Serializable"});
+        cw.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "handler", HANDLER_DESC, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + HANDLER_DESC + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, className, "handler", HANDLER_DESC);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "getInvocationHandler", "()" + HANDLER_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "handler", HANDLER_DESC);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // Object writeReplace() { return new SerializedProxy(Interface.class, handler); }
+        mv = cw.visitMethod(Opcodes.ACC_PROTECTED,
+                            "writeReplace",
+                            "()Ljava/lang/Object;",
+                            null,
+                            new String[] {"java/io/ObjectStreamException"});
+        mv.visitCode();
+        mv.visitTypeInsn(Opcodes.NEW, SERIALIZED_PROXY);
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn(Type.getType(interfaze));
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "handler", HANDLER_DESC);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, SERIALIZED_PROXY, "<init>", "(Ljava/lang/Class;" + HANDLER_DESC
+            + ")V");
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // Like a JDK proxy, toString, hashCode and equals are handled by the invocation handler
+        // even if the interface declares them
+        generateObjectMethod(cw, className, "toString", "()Ljava/lang/String;");
+        generateObjectMethod(cw, className, "hashCode", "()I");
+        generateObjectMethod(cw, className, "equals", "(Ljava/lang/Object;)Z");
+
+        // The index passed to the handler is the position of the method in the stable ordering
+        // used by the handler's dispatch table
+        Method[] methods = JDKInvocationHandler.getBusinessMethods(interfaze);
+        Set<String> generated = new HashSet<String>();
+        for (int i = 0; i < methods.length; i++) {
+            String signature = methods[i].getName() + Type.getMethodDescriptor(methods[i]);
+            if (!OBJECT_METHODS.contains(signature) && generated.add(signature)) {
+                generateMethod(cw, className, methods[i], Type.getMethodDescriptor(methods[i]), i);
+            }
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateMethod(ClassWriter cw, String className, Method method, String descriptor, int index) {
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        String[] exceptions = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), descriptor, null, exceptions);
+        mv.visitCode();
+
+        // handler.invoke(index, new Object[] {args...})
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "handler", HANDLER_DESC);
+        pushInt(mv, index);
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        pushInt(mv, parameterTypes.length);
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+        int slot = 1;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Type type = Type.getType(parameterTypes[i]);
+            mv.visitInsn(Opcodes.DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(type.getOpcode(Opcodes.ILOAD), slot);
+            box(mv, type);
+            mv.visitInsn(Opcodes.AASTORE);
+            slot += type.getSize();
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, HANDLER, "invoke", "(I[Ljava/lang/Object;)Ljava/lang/Object;");
+
+        Type returnType = Type.getReturnType(method);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+        } else {
+            unbox(mv, returnType);
+            mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateObjectMethod(ClassWriter cw, String className, String name, String descriptor) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+        mv.visitCode();
+
+        // handler.invokeObjectMethod(name, new Object[] {args...})
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "handler", HANDLER_DESC);
+        mv.visitLdcInsn(name);
+        Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+        pushInt(mv, argumentTypes.length);
+        mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
+        for (int i = 0; i < argumentTypes.length; i++) {
+            mv.visitInsn(Opcodes.DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(Opcodes.ALOAD, i + 1);
+            mv.visitInsn(Opcodes.AASTORE);
+        }
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+                           HANDLER,
+                           "invokeObjectMethod",
+                           "(Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/Object;");
+        Type returnType = Type.getReturnType(descriptor);
+        unbox(mv, returnType);
+        mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(Integer.valueOf(value));
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        String wrapper = getWrapper(type);
+        if (wrapper != null) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper, "valueOf", "(" + type.getDescriptor()
+                + ")L"
+                + wrapper
+                + ";");
+        }
+    }
+
+    private static void unbox(MethodVisitor mv, Type type) {
+        String wrapper = getWrapper(type);
+        if (wrapper == null) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, type.getInternalName());
+        } else {
+            // Like a JDK proxy, a null result for a primitive return type raises a NullPointerException
+            mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, type.getClassName() + "Value", "()"
+                + type.getDescriptor());
+        }
+    }
+
+    private static String getWrapper(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Defines the generated proxy classes of the business interfaces of one class loader. The
+     * Tuscany classes referenced by the generated code are always resolved from this factory's
+     * class loader, everything else from the class loader of the business interfaces.
+     */
+    private static class ProxyClassLoader extends ClassLoader {
+        private final Map<Class<?>, Constructor<?>> constructors = new HashMap<Class<?>, Constructor<?>>();
+
+        private ProxyClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private synchronized Constructor<?> getConstructor(Class<?> interfaze) throws NoSuchMethodException {
+            Constructor<?> constructor = constructors.get(interfaze);
+            if (constructor == null) {
+                String name = interfaze.getName() + PROXY_SUFFIX;
+                byte[] byteArray = generateProxyClass(name, interfaze);
+                Class<?> proxyClass = defineClass(name, byteArray, 0, byteArray.length);
+                constructor = proxyClass.getConstructor(JDKInvocationHandler.class);
+                constructors.put(interfaze, constructor);
+            }
+            return constructor;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(JDKInvocationHandler.class.getName())) {
+                return JDKInvocationHandler.class;
+            } else if (name.equals(GeneratedProxy.class.getName())) {
+                return GeneratedProxy.class;
+            } else if (name.equals(SerializedProxy.class.getName())) {
+                return SerializedProxy.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+
+}
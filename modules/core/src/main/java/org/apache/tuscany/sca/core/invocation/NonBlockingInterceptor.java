@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
 import org.apache.tuscany.sca.interfacedef.Operation;
 import org.apache.tuscany.sca.invocation.Interceptor;
 import org.apache.tuscany.sca.invocation.Invoker;
@@ -75,6 +76,9 @@ public class NonBlockingInterceptor implements Interceptor {
             workScheduler.scheduleWork(new Runnable() {
                 public void run() {
                     Message context = ThreadMessageContext.setMessageContext(msg);
+                    // the one-way invocation is a request of its own, which ends when the work completes
+                    RequestScopeContext request = new RequestScopeContext();
+                    RequestScopeContext oldRequest = ThreadMessageContext.setRequestContext(request);
                     try {
                         Message response = null;
 
@@ -99,6 +103,8 @@ public class NonBlockingInterceptor implements Interceptor {
                         }
                     } finally {
                         ThreadMessageContext.setMessageContext(context);
+                        ThreadMessageContext.setRequestContext(oldRequest);
+                        request.end();
                     }
                 }
             });
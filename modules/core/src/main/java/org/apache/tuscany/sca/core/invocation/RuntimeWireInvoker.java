@@ -25,6 +25,7 @@ import org.apache.tuscany.sca.core.conversation.ConversationExt;
 import org.apache.tuscany.sca.core.conversation.ConversationManager;
 import org.apache.tuscany.sca.core.conversation.ConversationState;
 import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
 import org.apache.tuscany.sca.core.scope.Scope;
 import org.apache.tuscany.sca.core.scope.ScopeContainer;
 import org.apache.tuscany.sca.core.scope.ScopedRuntimeComponent;
@@ -122,6 +123,7 @@ public class RuntimeWireInvoker implements Invoker{
         Object currentConversationID = msgContext.getFrom().getReferenceParameters().getConversationID();
 
         ThreadMessageContext.setMessageContext(msg);
+        RequestScopeContext request = ThreadMessageContext.startRequest();
         try {
             conversationPreinvoke(msg);
             // handleCallback(msg, currentConversationID);
@@ -143,6 +145,7 @@ public class RuntimeWireInvoker implements Invoker{
                 throw new ServiceRuntimeException(e);
             } finally {
                 ThreadMessageContext.setMessageContext(msgContext);
+                ThreadMessageContext.endRequest(request);
             }
         }
     }
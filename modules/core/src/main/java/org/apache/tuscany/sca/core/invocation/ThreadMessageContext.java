@@ -20,6 +20,7 @@ package org.apache.tuscany.sca.core.invocation;
 
 import org.apache.tuscany.sca.core.assembly.impl.EndpointReferenceImpl;
 import org.apache.tuscany.sca.core.invocation.impl.MessageImpl;
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
 import org.apache.tuscany.sca.invocation.Message;
 
 /**
@@ -38,6 +39,8 @@ public final class ThreadMessageContext {
         }
     };
 
+    private static final ThreadLocal<RequestScopeContext> REQUEST_CONTEXT = new ThreadLocal<RequestScopeContext>();
+
     private ThreadMessageContext() {
     }
 
@@ -70,4 +73,66 @@ public final class ThreadMessageContext {
     public static Message getMessageContext() {
         return CONTEXT.get();
     }
+
+    /**
+     * Start a request on the current thread unless one is already in progress. The returned
+     * context must be passed to {@link #endRequest(RequestScopeContext)} when the invocation
+     * that started the request completes:
+     * <pre>
+     *   RequestScopeContext request = ThreadMessageContext.startRequest();
+     *   try {
+     *      ... invoke ...
+     *   } finally {
+     *     ThreadMessageContext.endRequest(request);
+     *   }
+     * </pre>
+     * @return the new request context, or null if the thread is already processing a request
+     */
+    public static RequestScopeContext startRequest() {
+        if (REQUEST_CONTEXT.get() != null) {
+            return null;
+        }
+        RequestScopeContext request = new RequestScopeContext();
+        REQUEST_CONTEXT.set(request);
+        return request;
+    }
+
+    /**
+     * End a request started by {@link #startRequest()}, stopping its request scoped instances
+     * @param request the context returned by startRequest, nothing is done if it is null
+     */
+    public static void endRequest(RequestScopeContext request) {
+        if (request != null) {
+            if (REQUEST_CONTEXT.get() == request) {
+                REQUEST_CONTEXT.remove();
+            }
+            request.end();
+        }
+    }
+
+    /**
+     * Returns the context of the request the current thread is working on.
+     *
+     * @return the request context or null if the thread isn't processing a request
+     */
+    public static RequestScopeContext getRequestContext() {
+        return REQUEST_CONTEXT.get();
+    }
+
+    /**
+     * Make a request context current on this thread, typically to continue a request on another
+     * thread. The previous context is returned and must be restored when the work is done.
+     *
+     * @param request the request context, can be null
+     * @return the previous request context
+     */
+    public static RequestScopeContext setRequestContext(RequestScopeContext request) {
+        RequestScopeContext old = REQUEST_CONTEXT.get();
+        if (request == null) {
+            REQUEST_CONTEXT.remove();
+        } else {
+            REQUEST_CONTEXT.set(request);
+        }
+        return old;
+    }
 }
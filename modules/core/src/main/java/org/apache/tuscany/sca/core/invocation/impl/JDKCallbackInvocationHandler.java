@@ -107,4 +107,10 @@ public class JDKCallbackInvocationHandler extends JDKInvocationHandler {
         }
     }
 
+    @Override
+    protected Object invoke(int index, Method method, Object[] args) throws Throwable {
+        // the callback wire is selected per invocation
+        return invoke(null, method, args);
+    }
+
 }
@@ -22,20 +22,27 @@ package org.apache.tuscany.sca.core.invocation.impl;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 import org.apache.tuscany.sca.core.assembly.impl.RuntimeWireImpl2;
 import org.apache.tuscany.sca.core.context.CallableReferenceExt;
 import org.apache.tuscany.sca.core.context.impl.CallableReferenceImpl;
 import org.apache.tuscany.sca.core.conversation.ConversationExt;
+import org.apache.tuscany.sca.core.conversation.ConversationIDGenerator;
 import org.apache.tuscany.sca.core.conversation.ConversationManager;
 import org.apache.tuscany.sca.core.conversation.ConversationState;
 import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.invocation.GeneratedProxyFactory.GeneratedProxy;
 import org.apache.tuscany.sca.core.invocation.ThreadMessageContext;
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
 import org.apache.tuscany.sca.core.scope.Scope;
 import org.apache.tuscany.sca.core.scope.ScopeContainer;
 import org.apache.tuscany.sca.core.scope.ScopedRuntimeComponent;
@@ -77,7 +84,11 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
 
     protected boolean fixedWire = true;
 
-    protected transient Map<Method, InvocationChain> chains = new HashMap<Method, InvocationChain>();
+    /**
+     * Immutable method to invocation chain table, rebuilt when the wire's invocation chains change
+     */
+    protected transient volatile DispatchTable dispatchTable;
+    private transient volatile Method[] businessMethods;
 
     public JDKInvocationHandler(MessageFactory messageFactory, Class<?> businessInterface, RuntimeWire wire) {
         this.messageFactory = messageFactory;
@@ -159,6 +170,50 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
         return result;
     }
 
+    /**
+     * Invoke the business method at the given index of {@link #getBusinessMethods(Class)}. This is the
+     * entry point for generated proxies that already know which method is being called.
+     * 
+     * @param index The index of the business method
+     * @param args The arguments
+     * @return The result
+     * @throws Throwable
+     */
+    public Object invoke(int index, Object[] args) throws Throwable {
+        Method method = getBusinessMethods()[index];
+        try {
+            return invoke(index, method, args);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // Keep the same contract as a JDK proxy for checked exceptions the method doesn't declare
+            for (Class<?> exceptionType : method.getExceptionTypes()) {
+                if (exceptionType.isInstance(e)) {
+                    throw e;
+                }
+            }
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    protected Object invoke(int index, Method method, Object[] args) throws Throwable {
+        if (wire == null) {
+            throw new ServiceRuntimeException("No runtime wire is available");
+        }
+        InvocationChain chain = null;
+        if (fixedWire) {
+            chain = getDispatchTable(wire).getInvocationChain(index);
+        } else {
+            chain = getInvocationChain(method, wire);
+        }
+        if (chain == null) {
+            throw new IllegalArgumentException("No matching operation is found: " + method);
+        }
+        return invoke(chain, args, wire, source);
+    }
+
     /**
      * Handle the methods on the Object.class
      * @param method
@@ -166,6 +221,21 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
      */
     protected Object invokeObjectMethod(Method method, Object[] args) throws Throwable {
         String name = method.getName();
+        if ("toString".equals(name) || "equals".equals(name) || "hashCode".equals(name)) {
+            return invokeObjectMethod(name, args);
+        } else {
+            return method.invoke(this);
+        }
+    }
+
+    /**
+     * Handle toString, equals and hashCode. This is the entry point for generated proxies.
+     * 
+     * @param name The method name
+     * @param args The arguments
+     * @return The result
+     */
+    public Object invokeObjectMethod(String name, Object[] args) {
         if ("toString".equals(name)) {
             return "[Proxy - " + toString() + "]";
         } else if ("equals".equals(name)) {
@@ -173,15 +243,17 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
             if (obj == null) {
                 return false;
             }
+            if (obj instanceof GeneratedProxy) {
+                return equals(((GeneratedProxy)obj).getInvocationHandler());
+            }
             if (!Proxy.isProxyClass(obj.getClass())) {
                 return false;
             }
             return equals(Proxy.getInvocationHandler(obj));
         } else if ("hashCode".equals(name)) {
             return hashCode();
-        } else {
-            return method.invoke(this);
         }
+        throw new IllegalArgumentException(name);
     }
 
     /**
@@ -238,26 +310,141 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
 
     }
 
-    protected synchronized InvocationChain getInvocationChain(Method method, RuntimeWire wire) {
-        if (fixedWire && chains.containsKey(method)) {
-            return chains.get(method);
+    protected InvocationChain getInvocationChain(Method method, RuntimeWire wire) {
+        if (!fixedWire) {
+            return findInvocationChain(method, wire.getInvocationChains());
+        }
+        DispatchTable table = getDispatchTable(wire);
+        int index = table.indexOf(method);
+        if (index >= 0) {
+            return table.getInvocationChain(index);
+        }
+        return findInvocationChain(method, table.chains);
+    }
+
+    private DispatchTable getDispatchTable(RuntimeWire wire) {
+        List<InvocationChain> wireChains = wire.getInvocationChains();
+        DispatchTable table = dispatchTable;
+        if (table == null || table.chains != wireChains) {
+            // The wire has been built or rebuilt since the table was computed. Concurrent callers
+            // may race to build the table but each result is immutable and equivalent
+            table = new DispatchTable(getBusinessMethods(), wireChains);
+            dispatchTable = table;
         }
-        InvocationChain found = null;
-        for (InvocationChain chain : wire.getInvocationChains()) {
+        return table;
+    }
+
+    protected Method[] getBusinessMethods() {
+        Method[] methods = businessMethods;
+        if (methods == null) {
+            methods = getBusinessMethods(businessInterface);
+            businessMethods = methods;
+        }
+        return methods;
+    }
+
+    /**
+     * Get the methods of a business interface in a stable order, so that the index of a method is
+     * the same wherever the array is computed
+     * 
+     * @param businessInterface The business interface
+     * @return The sorted non-static methods of the interface
+     */
+    public static Method[] getBusinessMethods(Class<?> businessInterface) {
+        if (businessInterface == null) {
+            return new Method[0];
+        }
+        List<Method> methods = new ArrayList<Method>();
+        for (Method method : businessInterface.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                methods.add(method);
+            }
+        }
+        Method[] sorted = methods.toArray(new Method[methods.size()]);
+        Arrays.sort(sorted, new Comparator<Method>() {
+            public int compare(Method m1, Method m2) {
+                return signature(m1).compareTo(signature(m2));
+            }
+        });
+        return sorted;
+    }
+
+    private static String signature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        for (Class<?> type : method.getParameterTypes()) {
+            signature.append(type.getName()).append(';');
+        }
+        return signature.append(')').append(method.getReturnType().getName()).append(' ')
+            .append(method.getDeclaringClass().getName()).toString();
+    }
+
+    private static InvocationChain findInvocationChain(Method method, List<InvocationChain> wireChains) {
+        for (InvocationChain chain : wireChains) {
             Operation operation = chain.getSourceOperation();
             if (operation.isDynamic()) {
                 operation.setName(method.getName());
-                found = chain;
-                break;
+                return chain;
             } else if (match(operation, method)) {
-                found = chain;
-                break;
+                return chain;
             }
         }
-        if (fixedWire) {
-            chains.put(method, found);
+        return null;
+    }
+
+    /**
+     * A precomputed, index-based dispatch table from the business interface methods to the
+     * invocation chains of a wire. The table is never modified after construction so it can be
+     * read without locking.
+     */
+    protected static final class DispatchTable {
+        private final List<InvocationChain> chains;
+        private final Method[] methods;
+        private final InvocationChain[] targets;
+        private final Map<Method, Integer> indexes;
+        private final boolean dynamic;
+
+        private DispatchTable(Method[] methods, List<InvocationChain> chains) {
+            this.chains = chains;
+            this.methods = methods;
+            this.targets = new InvocationChain[methods.length];
+            // The proxies pass their own copies of the Method objects so the lookup goes by equals()
+            this.indexes = new HashMap<Method, Integer>(methods.length * 2);
+            for (int i = 0; i < methods.length; i++) {
+                indexes.put(methods[i], i);
+            }
+            boolean dynamicOperation = false;
+            for (InvocationChain chain : chains) {
+                if (chain.getSourceOperation().isDynamic()) {
+                    dynamicOperation = true;
+                    break;
+                }
+            }
+            // A dynamic operation takes its name from each invoked method so it can't be precomputed
+            this.dynamic = dynamicOperation;
+            if (dynamicOperation) {
+                return;
+            }
+            for (int i = 0; i < methods.length; i++) {
+                for (InvocationChain chain : chains) {
+                    if (match(chain.getSourceOperation(), methods[i])) {
+                        targets[i] = chain;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private InvocationChain getInvocationChain(int index) {
+            if (dynamic) {
+                return findInvocationChain(methods[index], chains);
+            }
+            return targets[index];
+        }
+
+        private int indexOf(Method method) {
+            Integer index = indexes.get(method);
+            return index == null ? -1 : index;
         }
-        return found;
     }
 
     protected void setEndpoint(EndpointReference endpoint) {
@@ -284,6 +471,7 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
         conversationPreinvoke(msg, wire);
         handleCallback(msg, wire, currentConversationID);
         ThreadMessageContext.setMessageContext(msg);
+        RequestScopeContext request = ThreadMessageContext.startRequest();
         boolean abnormalEndConversation = false;
         try {
             // dispatch the wire down the chain and get the response
@@ -314,8 +502,12 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
             }
             return body;
         } finally {
-            conversationPostInvoke(msg, wire, abnormalEndConversation);
-            ThreadMessageContext.setMessageContext(msgContext);
+            try {
+                conversationPostInvoke(msg, wire, abnormalEndConversation);
+            } finally {
+                ThreadMessageContext.setMessageContext(msgContext);
+                ThreadMessageContext.endRequest(request);
+            }
         }
     }
 
@@ -473,7 +665,7 @@ public class JDKInvocationHandler implements InvocationHandler, Serializable {
         if (getConversationID() != null) {
             return getConversationID();
         } else {
-            return UUID.randomUUID().toString();
+            return ConversationIDGenerator.generate();
         }
     }
 
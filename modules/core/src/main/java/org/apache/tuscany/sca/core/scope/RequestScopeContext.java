@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+
+/**
+ * The context of a request flowing through the runtime. It holds the request scoped component
+ * instances created while the request is processed, and stops them when the request ends.
+ * <p>
+ * A request is not tied to a thread: the context is made current on a thread through
+ * {@link org.apache.tuscany.sca.core.invocation.ThreadMessageContext} and can be handed to
+ * other threads that work on the same request.
+ *
+ * @version $Rev$ $Date$
+ */
+public class RequestScopeContext {
+    private static final Logger LOGGER = Logger.getLogger(RequestScopeContext.class.getName());
+
+    // a request rarely touches more than a few request scoped components so the instances
+    // are kept in small arrays looked up by identity
+    private ScopeContainer<?>[] containers = new ScopeContainer<?>[2];
+    private InstanceWrapper<?>[] instances = new InstanceWrapper<?>[2];
+    private int size;
+    private boolean ended;
+
+    /**
+     * Get the instance created for a scope container during this request
+     *
+     * @param container the scope container
+     * @return the instance or null if none has been created yet
+     */
+    public synchronized InstanceWrapper<?> getWrapper(ScopeContainer<?> container) {
+        for (int i = 0; i < size; i++) {
+            if (containers[i] == container) {
+                return instances[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Register the instance created for a scope container during this request
+     *
+     * @param container the scope container
+     * @param wrapper the started instance
+     * @return false if the request has already ended, in which case the caller owns the instance
+     */
+    public synchronized boolean addWrapper(ScopeContainer<?> container, InstanceWrapper<?> wrapper) {
+        if (ended) {
+            return false;
+        }
+        if (size == containers.length) {
+            ScopeContainer<?>[] newContainers = new ScopeContainer<?>[size * 2];
+            InstanceWrapper<?>[] newInstances = new InstanceWrapper<?>[size * 2];
+            System.arraycopy(containers, 0, newContainers, 0, size);
+            System.arraycopy(instances, 0, newInstances, 0, size);
+            containers = newContainers;
+            instances = newInstances;
+        }
+        containers[size] = container;
+        instances[size] = wrapper;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the request has ended
+     */
+    public synchronized boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * End the request and stop the instances created during it, in reverse order of creation
+     */
+    public void end() {
+        InstanceWrapper<?>[] stopped;
+        int count;
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            stopped = instances;
+            count = size;
+            containers = null;
+            instances = null;
+            size = 0;
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            try {
+                stopped[i].stop();
+            } catch (TargetDestructionException e) {
+                LOGGER.log(Level.WARNING, "Error stopping a request scoped instance", e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error stopping a request scoped instance", e);
+            }
+        }
+    }
+}
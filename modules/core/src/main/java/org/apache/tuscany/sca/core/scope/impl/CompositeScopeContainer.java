@@ -32,7 +32,11 @@ import org.apache.tuscany.sca.runtime.RuntimeComponent;
  * @version $Rev$ $Date$
  */
 public class CompositeScopeContainer<KEY> extends AbstractScopeContainer<KEY> {
-    private InstanceWrapper<?> wrapper;
+    // only assigned once the instance has been started, so readers never see a partially initialized instance
+    private volatile InstanceWrapper<?> wrapper;
+    // the instance being started, guarded by the container lock. As the lock is held while the instance
+    // starts only the starting thread can see it, when a reference is resolved again from @Init
+    private InstanceWrapper<?> starting;
 
     public CompositeScopeContainer(RuntimeComponent component) {
         super(Scope.COMPOSITE, component);
@@ -52,20 +56,45 @@ public class CompositeScopeContainer<KEY> extends AbstractScopeContainer<KEY> {
     }
 
     @Override
-    public synchronized InstanceWrapper getWrapper(KEY contextId) throws TargetResolutionException {
-        if (wrapper == null) {
-            wrapper = createInstanceWrapper();
-            wrapper.start();
+    public InstanceWrapper getWrapper(KEY contextId) throws TargetResolutionException {
+        InstanceWrapper<?> instance = wrapper;
+        if (instance != null) {
+            return instance;
         }
-        return wrapper;
+        return createWrapper();
+    }
+
+    private synchronized InstanceWrapper<?> createWrapper() throws TargetResolutionException {
+        if (wrapper != null) {
+            return wrapper;
+        }
+        if (starting != null) {
+            // a cyclic reference re-entered from the start of the instance
+            return starting;
+        }
+        InstanceWrapper<?> instance = createInstanceWrapper();
+        starting = instance;
+        try {
+            instance.start();
+        } finally {
+            starting = null;
+        }
+        wrapper = instance;
+        return instance;
     }
 
     @Override
     public InstanceWrapper getAssociatedWrapper(KEY contextId) throws TargetResolutionException {
-        if (wrapper == null) {
-            throw new TargetNotFoundException(component.getURI());
+        InstanceWrapper<?> instance = wrapper;
+        if (instance == null) {
+            synchronized (this) {
+                instance = wrapper != null ? wrapper : starting;
+            }
+            if (instance == null) {
+                throw new TargetNotFoundException(component.getURI());
+            }
         }
-        return wrapper;
+        return instance;
     }
 
     @Override
@@ -19,13 +19,22 @@
 
 package org.apache.tuscany.sca.core.scope.impl;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.apache.tuscany.sca.core.conversation.ConversationExt;
+import org.apache.tuscany.sca.core.conversation.ConversationIDGenerator;
 import org.apache.tuscany.sca.core.conversation.ConversationListener;
 import org.apache.tuscany.sca.core.conversation.ConversationManager;
 import org.apache.tuscany.sca.core.factory.InstanceWrapper;
@@ -38,29 +47,100 @@ import org.apache.tuscany.sca.invocation.Message;
 import org.apache.tuscany.sca.runtime.RuntimeComponent;
 
 /**
- * A scope context which manages atomic component instances keyed on ConversationID
+ * A scope context which manages atomic component instances keyed on ConversationID.
+ * <p>
+ * When the MaxResidentInstances system property is set, the container passivates the least
+ * recently used idle instances to a local file once more than that number of instances are
+ * held in memory, and reactivates them on their next use. The state of an instance is made of
+ * its non transient fields, other than the ones holding injected references and contexts, which
+ * must be serializable. Instances whose state can't be serialized stay in memory.
  *
  * @version $Rev$ $Date$
  */
 public class ConversationalScopeContainer extends AbstractScopeContainer<Object> implements ConversationListener {
+    private static final Logger LOGGER = Logger.getLogger(ConversationalScopeContainer.class.getName());
+
     private ConversationManager conversationManager;
     private Map<Object, InstanceLifeCycleWrapper> instanceLifecycleCollection =
         new ConcurrentHashMap<Object, InstanceLifeCycleWrapper>();
 
+    /**
+     * the number of instances kept in memory before idle ones are passivated, 0 if passivation is disabled
+     */
+    private final int maxResidentInstances;
+
+    /**
+     * the directory of the passivation store, null for the default temporary directory
+     */
+    private final File passivationDirectory;
+
+    private InstancePassivationStore passivationStore;
+    private final InstanceStateSerializer stateSerializer = new InstanceStateSerializer();
+    private final AtomicInteger residentInstances = new AtomicInteger();
+
+    /**
+     * the resident instances that may be passivated, least recently used first
+     */
+    private final LinkedHashMap<InstanceLifeCycleWrapper, Boolean> passivationCandidates =
+        new LinkedHashMap<InstanceLifeCycleWrapper, Boolean>(16, 0.75f, true);
+    private final AtomicBoolean passivating = new AtomicBoolean();
+
     public ConversationalScopeContainer(RuntimeComponent component) {
         super(Scope.CONVERSATION, component);
 
-        // Note: aStore is here to preserve the original factory interface. It is not currently used in this 
-        // implementation since we do not support instance persistence.
+        // Allow privileged access to read system property. Requires PropertyPermission in security
+        // policy.
+        String aProperty = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(ConversationalScopeContainer.class.getName() + ".MaxResidentInstances");
+            }
+        });
+        int max = 0;
+        if (aProperty != null) {
+            try {
+                max = Math.max(0, Integer.parseInt(aProperty));
+            } catch (NumberFormatException nfe) {
+                // Ignore
+            }
+        }
+        maxResidentInstances = max;
 
-        // Check System properties to see if timeout values have been specified. All timeout values 
-        // will be specified in seconds.
-        //
+        aProperty = AccessController.doPrivileged(new PrivilegedAction<String>() {
+            public String run() {
+                return System.getProperty(ConversationalScopeContainer.class.getName() + ".PassivationDirectory");
+            }
+        });
+        passivationDirectory = aProperty != null ? new File(aProperty) : null;
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        if (passivationStore != null) {
+            passivationStore.close();
+            passivationStore = null;
+        }
+    }
 
+    @Override
+    public void startContext(Object contextId) {
+        if (isEagerInit()) {
+            try {
+                // the instance isn't used by an invocation so it's not borrowed
+                getInstanceWrapper(true, contextId, false);
+            } catch (TargetResolutionException e) {
+                // 
+            }
+        }
     }
 
 
     protected InstanceWrapper getInstanceWrapper(boolean create, Object contextId) throws TargetResolutionException {
+        return getInstanceWrapper(create, contextId, false);
+    }
+
+    private InstanceWrapper getInstanceWrapper(boolean create, Object contextId, boolean borrow)
+        throws TargetResolutionException {
 
         // we might get a null context if the target service has
         // conversational scope but only its callback interface 
@@ -68,7 +148,7 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
         // conversation Id here to store the service against
         // and populate the thread context
         if (contextId == null) {
-            contextId = UUID.randomUUID().toString();
+            contextId = ConversationIDGenerator.generate();
             Message msgContext = ThreadMessageContext.getMessageContext();
 
             if (msgContext != null) {
@@ -86,13 +166,120 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
             this.instanceLifecycleCollection.put(contextId, anInstanceWrapper);
         }
 
-        return anInstanceWrapper.getInstanceWrapper(contextId);
+        InstanceWrapper instanceWrapper = anInstanceWrapper.getInstanceWrapper(contextId, borrow);
+
+        if (maxResidentInstances > 0 && residentInstances.get() > maxResidentInstances) {
+            passivateIdleInstances();
+        }
+        return instanceWrapper;
 
     }
 
     @Override
     public InstanceWrapper getWrapper(Object contextId) throws TargetResolutionException {
-        return getInstanceWrapper(true, contextId);
+        return getInstanceWrapper(true, contextId, maxResidentInstances > 0);
+    }
+
+    @Override
+    public void returnWrapper(InstanceWrapper wrapper, Object contextId) throws TargetDestructionException {
+        if (maxResidentInstances > 0 && contextId != null) {
+            InstanceLifeCycleWrapper anInstanceWrapper = this.instanceLifecycleCollection.get(contextId);
+            if (anInstanceWrapper != null) {
+                anInstanceWrapper.release();
+            }
+        }
+    }
+
+    /**
+     * @return the number of instances held in memory
+     */
+    public int getResidentInstanceCount() {
+        return residentInstances.get();
+    }
+
+    /**
+     * @return the number of instances held in the passivation store
+     */
+    public synchronized int getPassivatedInstanceCount() {
+        return passivationStore == null ? 0 : passivationStore.size();
+    }
+
+    /**
+     * Passivate the least recently used idle instances until the number of resident instances
+     * is a tenth below the maximum, so that passivation runs in batches rather than on every
+     * new conversation. Only one thread passivates at a time, the others carry on. The candidates
+     * are taken from the head of the LRU list so the cost is proportional to the batch, not to
+     * the number of conversations.
+     */
+    private void passivateIdleInstances() {
+        if (!passivating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int target = maxResidentInstances - Math.max(1, maxResidentInstances / 10);
+            int excess = residentInstances.get() - target;
+            List<InstanceLifeCycleWrapper> candidates = new ArrayList<InstanceLifeCycleWrapper>(Math.max(0, excess));
+            synchronized (passivationCandidates) {
+                for (InstanceLifeCycleWrapper anInstanceWrapper : passivationCandidates.keySet()) {
+                    if (candidates.size() >= excess) {
+                        break;
+                    }
+                    // the instances used by an invocation are checked again when they are passivated
+                    if (anInstanceWrapper.borrowed == 0) {
+                        candidates.add(anInstanceWrapper);
+                    }
+                }
+            }
+            for (InstanceLifeCycleWrapper anInstanceWrapper : candidates) {
+                if (residentInstances.get() <= target) {
+                    break;
+                }
+                anInstanceWrapper.passivate();
+            }
+        } finally {
+            passivating.set(false);
+        }
+    }
+
+    /**
+     * @return the number of bytes taken by the state of the passivated instances
+     */
+    public synchronized long getPassivatedInstanceBytes() {
+        return passivationStore == null ? 0 : passivationStore.getStoredBytes();
+    }
+
+    private void addPassivationCandidate(InstanceLifeCycleWrapper anInstanceWrapper) {
+        if (maxResidentInstances > 0) {
+            synchronized (passivationCandidates) {
+                passivationCandidates.put(anInstanceWrapper, Boolean.TRUE);
+            }
+        }
+    }
+
+    private void removePassivationCandidate(InstanceLifeCycleWrapper anInstanceWrapper) {
+        if (maxResidentInstances > 0) {
+            synchronized (passivationCandidates) {
+                passivationCandidates.remove(anInstanceWrapper);
+            }
+        }
+    }
+
+    /**
+     * Moves the instance to the most recently used end of the LRU list, if it is there
+     */
+    private void touchPassivationCandidate(InstanceLifeCycleWrapper anInstanceWrapper) {
+        if (maxResidentInstances > 0) {
+            synchronized (passivationCandidates) {
+                passivationCandidates.get(anInstanceWrapper);
+            }
+        }
+    }
+
+    private synchronized InstancePassivationStore getPassivationStore() throws IOException {
+        if (passivationStore == null) {
+            passivationStore = new InstancePassivationStore(passivationDirectory, "tuscany");
+        }
+        return passivationStore;
     }
 
     /**
@@ -129,7 +316,7 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
         // if a wrapper for a different instance is already registered for this contextId, remove it
         InstanceLifeCycleWrapper anInstanceWrapper = this.instanceLifecycleCollection.get(contextId);
         if (anInstanceWrapper != null) {
-            if (anInstanceWrapper.getInstanceWrapper(contextId).getInstance() != wrapper.getInstance()) {
+            if (anInstanceWrapper.getInstanceWrapper(contextId, false).getInstance() != wrapper.getInstance()) {
                 remove(contextId);
             } else {
                 return;
@@ -165,9 +352,24 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
         private Object clientConversationId;
         private List<Object> callbackConversations = new ArrayList<Object>();
 
+        /**
+         * the number of invocations using the instance, only changed with the wrapper locked
+         */
+        private volatile int borrowed;
+
+        /**
+         * true if the instance has been created by this container and may be passivated
+         */
+        private boolean passivatable;
+        private boolean passivated;
+        private boolean stopped;
+
         private InstanceLifeCycleWrapper(Object contextId) throws TargetResolutionException {
             this.clientConversationId = contextId;
             this.createInstance(contextId);
+            this.passivatable = true;
+            residentInstances.incrementAndGet();
+            addPassivationCandidate(this);
         }
 
         private InstanceLifeCycleWrapper(InstanceWrapper wrapper, Object contextId) throws TargetResolutionException {
@@ -180,22 +382,132 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
         // is asked to remove an object given a ontextId an associated conversation object will 
         // have its conversationId reset to null. When the list of ids is empty the component instance
         // will be removed from the scope container
-        private void addCallbackConversation(Object conversationID) {
-            InstanceWrapper ctx = getInstanceWrapper(clientConversationId);
+        private synchronized void addCallbackConversation(Object conversationID) throws TargetResolutionException {
+            InstanceWrapper ctx = getInstanceWrapper(clientConversationId, false);
             callbackConversations.add(conversationID);
             wrappers.put(conversationID, ctx);
+            // an instance with callback conversations stays resident
+            removePassivationCandidate(this);
         }
 
         //
-        // Return the backing implementation instance  
+        // Return the backing implementation instance, reactivating it if it has been passivated  
         //
-        private InstanceWrapper getInstanceWrapper(Object contextId) {
+        private synchronized InstanceWrapper getInstanceWrapper(Object contextId, boolean borrow)
+            throws TargetResolutionException {
+            if (passivated) {
+                activate();
+            }
+            if (borrow) {
+                borrowed++;
+            }
+            touchPassivationCandidate(this);
             InstanceWrapper ctx = wrappers.get(contextId);
             return ctx;
         }
 
-        private void removeInstanceWrapper(Object contextId) throws TargetDestructionException {
-            InstanceWrapper ctx = getInstanceWrapper(contextId);
+        private synchronized void release() {
+            if (borrowed > 0) {
+                borrowed--;
+            }
+            touchPassivationCandidate(this);
+        }
+
+        private synchronized boolean isPassivationCandidate() {
+            return passivatable && !passivated
+                && !stopped
+                && borrowed == 0
+                && clientConversationId != null
+                && callbackConversations.isEmpty();
+        }
+
+        private synchronized void passivate() {
+            if (!isPassivationCandidate()) {
+                return;
+            }
+            InstanceWrapper ctx = wrappers.get(clientConversationId);
+            if (ctx == null) {
+                return;
+            }
+            try {
+                byte[] state = stateSerializer.serialize(ctx.getInstance());
+                getPassivationStore().write(clientConversationId, state);
+            } catch (IOException e) {
+                // a field that isn't serializable, expected for some implementations
+                disablePassivation(Level.FINE, e);
+                return;
+            } catch (RuntimeException e) {
+                // for example a security manager denying access to the fields
+                disablePassivation(Level.WARNING, e);
+                return;
+            }
+            wrappers.remove(clientConversationId);
+            passivated = true;
+            residentInstances.decrementAndGet();
+            removePassivationCandidate(this);
+        }
+
+        /**
+         * Keep the instance in memory from now on
+         */
+        private void disablePassivation(Level level, Exception e) {
+            passivatable = false;
+            removePassivationCandidate(this);
+            LOGGER.log(level, "Instance of component " + component.getURI()
+                + " for conversation "
+                + clientConversationId
+                + " can't be passivated", e);
+        }
+
+        private void activate() throws TargetResolutionException {
+            byte[] state;
+            try {
+                InstancePassivationStore store = getPassivationStore();
+                state = store.read(clientConversationId);
+            } catch (IOException e) {
+                throw new TargetResolutionException("Instance of component " + component.getURI()
+                    + " for conversation "
+                    + clientConversationId
+                    + " can't be reactivated", e);
+            }
+            if (state == null) {
+                throw new TargetResolutionException("The passivated instance of component " + component.getURI()
+                    + " for conversation "
+                    + clientConversationId
+                    + " has been lost");
+            }
+            // the instance has been initialized before it was passivated so it is injected but not started again
+            InstanceWrapper instanceWrapper = createInstanceWrapper();
+            try {
+                stateSerializer.deserialize(instanceWrapper.getInstance(), state);
+            } catch (IOException e) {
+                throw new TargetResolutionException("Instance of component " + component.getURI()
+                    + " for conversation "
+                    + clientConversationId
+                    + " can't be reactivated", e);
+            } catch (RuntimeException e) {
+                // the state has been written but can't be read back, don't write it again
+                passivatable = false;
+                String message = "Instance of component " + component.getURI()
+                    + " for conversation "
+                    + clientConversationId
+                    + " can't be reactivated";
+                LOGGER.log(Level.WARNING, message, e);
+                throw new TargetResolutionException(message, e);
+            }
+            wrappers.put(clientConversationId, instanceWrapper);
+            passivated = false;
+            residentInstances.incrementAndGet();
+            addPassivationCandidate(this);
+        }
+
+        private synchronized void removeInstanceWrapper(Object contextId) throws TargetDestructionException {
+            InstanceWrapper ctx;
+            try {
+                ctx = getInstanceWrapper(contextId, false);
+            } catch (TargetResolutionException e) {
+                throw new TargetDestructionException(e.getMessage(), e);
+            }
             wrappers.remove(contextId);
 
             // find out if we are dealing with the original client conversation id
@@ -210,7 +522,12 @@ public class ConversationalScopeContainer extends AbstractScopeContainer<Object>
             }
 
             // stop the component if this removes the last reference
-            if (clientConversationId == null && callbackConversations.isEmpty()) {
+            if (clientConversationId == null && callbackConversations.isEmpty() && !stopped) {
+                stopped = true;
+                if (passivatable) {
+                    residentInstances.decrementAndGet();
+                    removePassivationCandidate(this);
+                }
                 ctx.stop();
             }
         }
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local file used to hold the state of passivated component instances. Records are appended
+ * to the file and located through an in-memory index; the file is compacted when more than half
+ * of it is taken by records that have been read back or removed.
+ *
+ * @version $Rev$ $Date$
+ */
+public class InstancePassivationStore {
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private final Map<Object, long[]> index = new HashMap<Object, long[]>();
+    private long end;
+    private long liveBytes;
+
+    /**
+     * Create a store backed by a new temporary file in the given directory
+     *
+     * @param directory the directory, or null for the default temporary directory
+     * @param prefix the prefix of the file name
+     * @throws IOException if the file can't be created
+     */
+    public InstancePassivationStore(File directory, String prefix) throws IOException {
+        this.file = File.createTempFile(prefix, ".passivated", directory);
+        this.file.deleteOnExit();
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * Store the state of an instance, replacing any state stored for the same key
+     *
+     * @param key the key of the instance
+     * @param data the state
+     * @throws IOException
+     */
+    public synchronized void write(Object key, byte[] data) throws IOException {
+        checkOpen();
+        remove(key);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = end;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        index.put(key, new long[] {end, data.length});
+        end = position;
+        liveBytes += data.length;
+    }
+
+    /**
+     * Read and remove the state stored for an instance
+     *
+     * @param key the key of the instance
+     * @return the state or null if nothing is stored for the key
+     * @throws IOException
+     */
+    public synchronized byte[] read(Object key) throws IOException {
+        checkOpen();
+        long[] entry = index.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        liveBytes -= entry[1];
+        byte[] data = new byte[(int)entry[1]];
+        readFully(entry[0], data);
+        compactIfNeeded();
+        return data;
+    }
+
+    /**
+     * Discard the state stored for an instance
+     *
+     * @param key the key of the instance
+     * @return true if state was stored for the key
+     */
+    public synchronized boolean remove(Object key) {
+        long[] entry = index.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        liveBytes -= entry[1];
+        return true;
+    }
+
+    /**
+     * @return the number of instances in the store
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of bytes of the file taken by stored instances
+     */
+    public synchronized long getStoredBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Close the store and delete its file
+     */
+    public synchronized void close() {
+        index.clear();
+        liveBytes = 0;
+        end = 0;
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            randomAccessFile = null;
+            channel = null;
+            file.delete();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("The passivation store " + file + " is closed");
+        }
+    }
+
+    private void readFully(long position, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the passivation store " + file);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the live records at the start of the file once the space taken by dead records
+     * outweighs them
+     */
+    private void compactIfNeeded() throws IOException {
+        if (index.isEmpty()) {
+            // nothing left to keep, start writing from the beginning again
+            end = 0;
+            return;
+        }
+        if (end < MIN_COMPACTION_SIZE || liveBytes * 2 > end) {
+            return;
+        }
+        // move the records in file order so a record is never overwritten before it is moved
+        List<long[]> entries = new ArrayList<long[]>(index.values());
+        Collections.sort(entries, new Comparator<long[]>() {
+            public int compare(long[] e1, long[] e2) {
+                return e1[0] < e2[0] ? -1 : (e1[0] == e2[0] ? 0 : 1);
+            }
+        });
+        long position = 0;
+        for (long[] entry : entries) {
+            byte[] data = new byte[(int)entry[1]];
+            readFully(entry[0], data);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long target = position;
+            while (buffer.hasRemaining()) {
+                target += channel.write(buffer, target);
+            }
+            entry[0] = position;
+            position = target;
+        }
+        end = position;
+        channel.truncate(end);
+    }
+}
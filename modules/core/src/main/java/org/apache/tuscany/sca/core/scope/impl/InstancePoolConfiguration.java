@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.tuscany.sca.assembly.Extension;
+import org.apache.tuscany.sca.assembly.Implementation;
+import org.apache.tuscany.sca.contribution.Constants;
+import org.apache.tuscany.sca.policy.Intent;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+
+/**
+ * The configuration of the instance pool of a stateless component. Pooling is enabled for a
+ * component that requires the tuscany:pooled intent, either on the component or on its
+ * implementation, or that sets any of the following attributes on the component element:
+ * <ul>
+ * <li>tuscany:poolMinSize - the number of instances kept in the pool (default 0)
+ * <li>tuscany:poolMaxSize - the maximum number of instances in use at a time (default 16)
+ * <li>tuscany:poolMaxIdleTime - the time in milliseconds after which an idle instance above the
+ * minimum size is stopped (default 60000, 0 means never)
+ * <li>tuscany:poolExhaustedAction - what to do when all instances are in use: block, fail or grow
+ * (default block)
+ * <li>tuscany:poolMaxWait - how long in milliseconds to block for an instance when the pool is
+ * exhausted (default 0, which waits forever)
+ * </ul>
+ *
+ * @version $Rev$ $Date$
+ */
+public class InstancePoolConfiguration {
+    public static final QName POOLED_INTENT = new QName(Constants.SCA11_TUSCANY_NS, "pooled");
+    public static final QName MIN_SIZE = new QName(Constants.SCA11_TUSCANY_NS, "poolMinSize");
+    public static final QName MAX_SIZE = new QName(Constants.SCA11_TUSCANY_NS, "poolMaxSize");
+    public static final QName MAX_IDLE_TIME = new QName(Constants.SCA11_TUSCANY_NS, "poolMaxIdleTime");
+    public static final QName MAX_WAIT = new QName(Constants.SCA11_TUSCANY_NS, "poolMaxWait");
+    public static final QName EXHAUSTED_ACTION = new QName(Constants.SCA11_TUSCANY_NS, "poolExhaustedAction");
+
+    /**
+     * The action taken when all the instances of the pool are in use
+     */
+    public static enum ExhaustedAction {
+        /**
+         * Wait for an instance to be returned
+         */
+        BLOCK,
+        /**
+         * Fail the invocation
+         */
+        FAIL,
+        /**
+         * Create an instance outside the pool that is stopped after the invocation
+         */
+        GROW
+    };
+
+    private int minSize = 0;
+    private int maxSize = 16;
+    private long maxIdleTime = 60000;
+    private long maxWait = 0;
+    private ExhaustedAction exhaustedAction = ExhaustedAction.BLOCK;
+
+    public InstancePoolConfiguration() {
+    }
+
+    /**
+     * Get the pool configuration for a component
+     *
+     * @param component The component
+     * @return The pool configuration or null if the component instances are not pooled
+     */
+    public static InstancePoolConfiguration getConfiguration(RuntimeComponent component) {
+        boolean pooled = requiresPooling(component.getRequiredIntents());
+        Implementation implementation = component.getImplementation();
+        if (!pooled && implementation != null) {
+            pooled = requiresPooling(implementation.getRequiredIntents());
+        }
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        for (Extension extension : component.getAttributeExtensions()) {
+            QName name = extension.getQName();
+            Object value = extension.getValue();
+            if (value == null) {
+                continue;
+            }
+            String text = value.toString().trim();
+            try {
+                if (MIN_SIZE.equals(name)) {
+                    configuration.setMinSize(Integer.parseInt(text));
+                } else if (MAX_SIZE.equals(name)) {
+                    configuration.setMaxSize(Integer.parseInt(text));
+                } else if (MAX_IDLE_TIME.equals(name)) {
+                    configuration.setMaxIdleTime(Long.parseLong(text));
+                } else if (MAX_WAIT.equals(name)) {
+                    configuration.setMaxWait(Long.parseLong(text));
+                } else if (EXHAUSTED_ACTION.equals(name)) {
+                    configuration.setExhaustedAction(ExhaustedAction.valueOf(text.toUpperCase()));
+                } else {
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid value '" + text
+                    + "' for "
+                    + name
+                    + " on component "
+                    + component.getURI());
+            }
+            pooled = true;
+        }
+        if (!pooled) {
+            return null;
+        }
+        if (configuration.getMaxSize() < 1 || configuration.getMinSize() < 0
+            || configuration.getMinSize() > configuration.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid instance pool size for component " + component.getURI());
+        }
+        return configuration;
+    }
+
+    private static boolean requiresPooling(List<Intent> intents) {
+        for (Intent intent : intents) {
+            if (POOLED_INTENT.equals(intent.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public ExhaustedAction getExhaustedAction() {
+        return exhaustedAction;
+    }
+
+    public void setExhaustedAction(ExhaustedAction exhaustedAction) {
+        this.exhaustedAction = exhaustedAction;
+    }
+
+}
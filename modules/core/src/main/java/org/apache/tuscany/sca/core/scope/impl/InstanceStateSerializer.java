@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tuscany.sca.core.invocation.GeneratedProxyFactory.GeneratedProxy;
+import org.oasisopen.sca.CallableReference;
+import org.oasisopen.sca.ComponentContext;
+import org.oasisopen.sca.RequestContext;
+
+/**
+ * Captures the state of a component instance as the serialized values of its fields, and
+ * restores it into another instance of the same class. Static and transient fields are
+ * skipped, and so are fields holding values injected by the runtime (references, callable
+ * references and contexts) since the instance the state is restored into has been injected
+ * already. A serializer is owned by a scope container so the fields it caches go away with
+ * the component.
+ *
+ * @version $Rev$ $Date$
+ */
+class InstanceStateSerializer {
+    private final Map<Class<?>, Field[]> fields = new ConcurrentHashMap<Class<?>, Field[]>();
+
+    InstanceStateSerializer() {
+    }
+
+    /**
+     * @param instance the instance
+     * @return the serialized state of the instance
+     * @throws IOException if a field value can't be serialized
+     */
+    byte[] serialize(Object instance) throws IOException {
+        Map<String, Object> state = new HashMap<String, Object>();
+        try {
+            for (Field field : getFields(instance.getClass())) {
+                Object value = field.get(instance);
+                if (!isInjected(value)) {
+                    state.put(getKey(field), value);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(state);
+        oos.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * @param instance the instance to restore the state into
+     * @param data the state returned by {@link #serialize(Object)} for an instance of the same class
+     * @throws IOException if the state can't be deserialized
+     */
+    @SuppressWarnings("unchecked")
+    void deserialize(Object instance, byte[] data) throws IOException {
+        Map<String, Object> state;
+        ObjectInputStream ois =
+            new ClassLoaderObjectInputStream(new ByteArrayInputStream(data), instance.getClass().getClassLoader());
+        try {
+            state = (Map<String, Object>)ois.readObject();
+        } catch (ClassNotFoundException e) {
+            IOException ioe = new IOException(e.getMessage());
+            ioe.initCause(e);
+            throw ioe;
+        } finally {
+            ois.close();
+        }
+        try {
+            for (Field field : getFields(instance.getClass())) {
+                String key = getKey(field);
+                if (state.containsKey(key)) {
+                    field.set(instance, state.get(key));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean isInjected(Object value) {
+        return value != null && (Proxy.isProxyClass(value.getClass()) || value instanceof GeneratedProxy
+            || value instanceof CallableReference
+            || value instanceof ComponentContext
+            || value instanceof RequestContext);
+    }
+
+    private static String getKey(Field field) {
+        return field.getDeclaringClass().getName() + "." + field.getName();
+    }
+
+    private Field[] getFields(final Class<?> cls) {
+        Field[] classFields = fields.get(cls);
+        if (classFields == null) {
+            classFields = AccessController.doPrivileged(new PrivilegedAction<Field[]>() {
+                public Field[] run() {
+                    List<Field> list = new ArrayList<Field>();
+                    for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            int modifiers = field.getModifiers();
+                            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                                continue;
+                            }
+                            field.setAccessible(true);
+                            list.add(field);
+                        }
+                    }
+                    return list.toArray(new Field[list.size()]);
+                }
+            });
+            fields.put(cls, classFields);
+        }
+        return classFields;
+    }
+
+    /**
+     * Resolves the classes of the field values against the class loader of the implementation
+     */
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+        private final ClassLoader classLoader;
+
+        private ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
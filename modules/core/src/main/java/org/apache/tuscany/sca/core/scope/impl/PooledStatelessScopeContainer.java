@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.AbstractScopeContainer;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.TargetDestructionException;
+import org.apache.tuscany.sca.core.scope.TargetInitializationException;
+import org.apache.tuscany.sca.core.scope.TargetResolutionException;
+import org.apache.tuscany.sca.runtime.RuntimeComponent;
+
+/**
+ * A scope context which manages stateless atomic component instances in a bounded pool. Started
+ * instances are reused across invocations instead of being created, injected and destroyed for
+ * every call.
+ *
+ * @version $Rev$ $Date$
+ */
+public class PooledStatelessScopeContainer<KEY> extends AbstractScopeContainer<KEY> {
+    private static final Logger logger = Logger.getLogger(PooledStatelessScopeContainer.class.getName());
+
+    // evicts the idle instances of all the pools that are not used anymore
+    private static ScheduledExecutorService reaper;
+
+    private final InstancePoolConfiguration configuration;
+
+    // one permit per instance that may be in use at a time
+    private final Semaphore permits;
+
+    // the idle instances, most recently used first
+    private final LinkedList<PooledInstanceWrapper> idle = new LinkedList<PooledInstanceWrapper>();
+    private volatile long lastEviction;
+    private ScheduledFuture<?> reaperTask;
+
+    public PooledStatelessScopeContainer(RuntimeComponent component, InstancePoolConfiguration configuration) {
+        super(Scope.STATELESS, component);
+        this.configuration = configuration;
+        this.permits = new Semaphore(configuration.getMaxSize());
+    }
+
+    @Override
+    public synchronized void start() {
+        super.start();
+        lastEviction = System.currentTimeMillis();
+        try {
+            for (int i = idleCount(); i < configuration.getMinSize(); i++) {
+                PooledInstanceWrapper wrapper = newInstance(true);
+                wrapper.lastUsed = lastEviction;
+                synchronized (idle) {
+                    idle.addLast(wrapper);
+                }
+            }
+        } catch (TargetResolutionException e) {
+            throw new IllegalStateException(e);
+        }
+        long maxIdleTime = configuration.getMaxIdleTime();
+        if (maxIdleTime > 0) {
+            long period = Math.max(100, Math.min(maxIdleTime, 1000));
+            reaperTask = getReaper().scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    evictIdleInstances();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        if (reaperTask != null) {
+            reaperTask.cancel(false);
+            reaperTask = null;
+        }
+        List<PooledInstanceWrapper> stopped;
+        synchronized (idle) {
+            stopped = new ArrayList<PooledInstanceWrapper>(idle);
+            idle.clear();
+        }
+        for (PooledInstanceWrapper wrapper : stopped) {
+            try {
+                wrapper.stop();
+            } catch (TargetDestructionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Override
+    public InstanceWrapper getWrapper(KEY contextId) throws TargetResolutionException {
+        if (!acquire()) {
+            if (configuration.getExhaustedAction() == InstancePoolConfiguration.ExhaustedAction.GROW) {
+                return newInstance(false);
+            }
+            throw new TargetResolutionException("The instance pool is exhausted for component " + component.getURI());
+        }
+        try {
+            evictIdleInstances();
+            PooledInstanceWrapper wrapper;
+            synchronized (idle) {
+                wrapper = idle.poll();
+            }
+            if (wrapper == null) {
+                wrapper = newInstance(true);
+            }
+            return wrapper;
+        } catch (TargetResolutionException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public InstanceWrapper getAssociatedWrapper(KEY contextId) throws TargetResolutionException {
+        return getWrapper(contextId);
+    }
+
+    @Override
+    public void returnWrapper(InstanceWrapper wrapper, KEY contextId) throws TargetDestructionException {
+        PooledInstanceWrapper pooledWrapper = (PooledInstanceWrapper)wrapper;
+        if (!pooledWrapper.pooled) {
+            pooledWrapper.stop();
+            return;
+        }
+        try {
+            if (getLifecycleState() != RUNNING) {
+                pooledWrapper.stop();
+                return;
+            }
+            long now = System.currentTimeMillis();
+            pooledWrapper.lastUsed = now;
+            synchronized (idle) {
+                idle.addFirst(pooledWrapper);
+            }
+            evictIdleInstances(now);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the number of instances waiting in the pool
+     *
+     * @return the number of idle instances
+     */
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Returns the number of pooled instances currently in use
+     *
+     * @return the number of active instances
+     */
+    public int activeCount() {
+        return configuration.getMaxSize() - permits.availablePermits();
+    }
+
+    private boolean acquire() throws TargetResolutionException {
+        if (configuration.getExhaustedAction() != InstancePoolConfiguration.ExhaustedAction.BLOCK) {
+            return permits.tryAcquire();
+        }
+        try {
+            if (configuration.getMaxWait() > 0) {
+                return permits.tryAcquire(configuration.getMaxWait(), TimeUnit.MILLISECONDS);
+            }
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TargetResolutionException("Interrupted while waiting for an instance of component "
+                + component.getURI(), e);
+        }
+    }
+
+    private PooledInstanceWrapper newInstance(boolean pooled) throws TargetResolutionException {
+        InstanceWrapper<?> wrapper = createInstanceWrapper();
+        wrapper.start();
+        return new PooledInstanceWrapper(wrapper, pooled);
+    }
+
+    /**
+     * Evict the idle instances on acquire and from the reaper, a failure to stop an instance
+     * doesn't affect the caller
+     */
+    private void evictIdleInstances() {
+        try {
+            evictIdleInstances(System.currentTimeMillis());
+        } catch (Throwable e) {
+            logger.log(Level.WARNING, "Unable to stop an idle instance of component " + component.getURI(), e);
+        }
+    }
+
+    /**
+     * Stop the instances that have been idle for longer than the max idle time, keeping at least
+     * the minimum number of instances in the pool. The least recently used instances are at the
+     * end of the idle list.
+     */
+    private void evictIdleInstances(long now) throws TargetDestructionException {
+        long maxIdleTime = configuration.getMaxIdleTime();
+        if (maxIdleTime <= 0 || now - lastEviction < Math.min(maxIdleTime, 1000)) {
+            return;
+        }
+        List<PooledInstanceWrapper> evicted = null;
+        synchronized (idle) {
+            lastEviction = now;
+            while (idle.size() > configuration.getMinSize() && now - idle.getLast().lastUsed > maxIdleTime) {
+                if (evicted == null) {
+                    evicted = new ArrayList<PooledInstanceWrapper>();
+                }
+                evicted.add(idle.removeLast());
+            }
+        }
+        if (evicted != null) {
+            for (PooledInstanceWrapper wrapper : evicted) {
+                wrapper.stop();
+            }
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getReaper() {
+        if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Tuscany instance pool reaper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return reaper;
+    }
+
+    /**
+     * An instance wrapper that remembers whether it belongs to the pool and when it was last used
+     */
+    private static class PooledInstanceWrapper<T> implements InstanceWrapper<T> {
+        private final InstanceWrapper<T> wrapper;
+        private final boolean pooled;
+        private long lastUsed;
+
+        private PooledInstanceWrapper(InstanceWrapper<T> wrapper, boolean pooled) {
+            this.wrapper = wrapper;
+            this.pooled = pooled;
+        }
+
+        public T getInstance() {
+            return wrapper.getInstance();
+        }
+
+        public void start() throws TargetInitializationException {
+            wrapper.start();
+        }
+
+        public void stop() throws TargetDestructionException {
+            wrapper.stop();
+        }
+    }
+
+}
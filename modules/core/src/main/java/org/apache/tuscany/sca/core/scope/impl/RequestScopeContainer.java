@@ -18,27 +18,28 @@
  */
 package org.apache.tuscany.sca.core.scope.impl;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.invocation.ThreadMessageContext;
 import org.apache.tuscany.sca.core.scope.AbstractScopeContainer;
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
 import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.TargetDestructionException;
+import org.apache.tuscany.sca.core.scope.TargetInitializationException;
 import org.apache.tuscany.sca.core.scope.TargetResolutionException;
 import org.apache.tuscany.sca.runtime.RuntimeComponent;
 
 /**
  * A scope context which manages atomic component instances keyed on the current
- * request context
+ * request context. The instances are held by the {@link RequestScopeContext} of the
+ * request, not by the container, and are stopped when the request ends whichever
+ * thread it ends on.
  * 
  * @version $Rev$ $Date$
  */
-public class RequestScopeContainer extends AbstractScopeContainer<Thread> {
-    private final Map<Thread, InstanceWrapper> contexts;
+public class RequestScopeContainer extends AbstractScopeContainer<Object> {
 
     public RequestScopeContainer(RuntimeComponent component) {
         super(Scope.REQUEST, component);
-        contexts = new ConcurrentHashMap<Thread, InstanceWrapper>();
     }
 
     @Override
@@ -51,29 +52,68 @@ public class RequestScopeContainer extends AbstractScopeContainer<Thread> {
 
     @Override
     public synchronized void stop() {
-        contexts.clear();
-        // synchronized (destroyQueues) {
-        // destroyQueues.clear();
-        // }
         lifecycleState = STOPPED;
     }
 
-    protected InstanceWrapper getInstanceWrapper(boolean create) throws TargetResolutionException {
-        InstanceWrapper ctx = wrappers.get(Thread.currentThread());
+    protected InstanceWrapper getInstanceWrapper(boolean create, RequestScopeContext request)
+        throws TargetResolutionException {
+        InstanceWrapper ctx = request == null ? null : request.getWrapper(this);
         if (ctx == null && !create) {
             return null;
         }
         if (ctx == null) {
             ctx = super.createInstanceWrapper();
             ctx.start();
-            wrappers.put(Thread.currentThread(), ctx);
+            if (request == null || !request.addWrapper(this, ctx)) {
+                // outside of a request the instance lives for this invocation only
+                return new UnscopedInstanceWrapper(ctx);
+            }
         }
         return ctx;
     }
 
+    /**
+     * @param contextId the request context, or null for the request the current thread is working on
+     */
+    @Override
+    public InstanceWrapper getWrapper(Object contextId) throws TargetResolutionException {
+        RequestScopeContext request;
+        if (contextId instanceof RequestScopeContext) {
+            request = (RequestScopeContext)contextId;
+        } else {
+            request = ThreadMessageContext.getRequestContext();
+        }
+        return getInstanceWrapper(true, request);
+    }
+
     @Override
-    public InstanceWrapper getWrapper(Thread contextId) throws TargetResolutionException {
-        return getInstanceWrapper(true);
+    public void returnWrapper(InstanceWrapper wrapper, Object contextId) throws TargetDestructionException {
+        if (wrapper instanceof UnscopedInstanceWrapper) {
+            wrapper.stop();
+        }
+    }
+
+    /**
+     * An instance created outside of a request, which is stopped when it is returned
+     */
+    private static class UnscopedInstanceWrapper<T> implements InstanceWrapper<T> {
+        private final InstanceWrapper<T> wrapper;
+
+        private UnscopedInstanceWrapper(InstanceWrapper<T> wrapper) {
+            this.wrapper = wrapper;
+        }
+
+        public T getInstance() {
+            return wrapper.getInstance();
+        }
+
+        public void start() throws TargetInitializationException {
+            wrapper.start();
+        }
+
+        public void stop() throws TargetDestructionException {
+            wrapper.stop();
+        }
     }
 
 }
@@ -30,6 +30,10 @@ import org.apache.tuscany.sca.runtime.RuntimeComponent;
 public class StatelessScopeContainerFactory implements ScopeContainerFactory {
 
     public ScopeContainer createScopeContainer(RuntimeComponent component) {
+        InstancePoolConfiguration configuration = InstancePoolConfiguration.getConfiguration(component);
+        if (configuration != null) {
+            return new PooledStatelessScopeContainer(component, configuration);
+        }
         return new StatelessScopeContainer(component);
     }
 
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.assembly.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.tuscany.sca.runtime.RuntimeWire;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class CallbackWireCacheTestCase {
+
+    @Test
+    public void testAcquireRelease() {
+        CallbackWireCache cache = new CallbackWireCache(8);
+        assertNull(cache.acquire("a"));
+        RuntimeWire first = createWire();
+        RuntimeWire second = createWire();
+        cache.release("a", first);
+        cache.release("a", second);
+        assertEquals(2, cache.size());
+
+        // concurrent callbacks to the same endpoint each get their own wire
+        RuntimeWire one = cache.acquire("a");
+        RuntimeWire two = cache.acquire("a");
+        assertNotNull(one);
+        assertNotNull(two);
+        assertEquals(false, one == two);
+        assertNull(cache.acquire("a"));
+        assertNull(cache.acquire("b"));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        CallbackWireCache cache = new CallbackWireCache(2);
+        cache.release("a", createWire());
+        RuntimeWire b = createWire();
+        cache.release("b", b);
+        RuntimeWire a = cache.acquire("a");
+        cache.release("a", a);
+        cache.release("c", createWire());
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.acquire("b"));
+        assertSame(a, cache.acquire("a"));
+        assertNotNull(cache.acquire("c"));
+    }
+
+    private static RuntimeWire createWire() {
+        return (RuntimeWire)Proxy.newProxyInstance(RuntimeWire.class.getClassLoader(),
+                                                   new Class<?>[] {RuntimeWire.class},
+                                                   new InvocationHandler() {
+                                                       public Object invoke(Object proxy, Method method, Object[] args) {
+                                                           if (method.getName().equals("equals")) {
+                                                               return proxy == args[0];
+                                                           } else if (method.getName().equals("hashCode")) {
+                                                               return System.identityHashCode(proxy);
+                                                           }
+                                                           return null;
+                                                       }
+                                                   });
+    }
+
+}
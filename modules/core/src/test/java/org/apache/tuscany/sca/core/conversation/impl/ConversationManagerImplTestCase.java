@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.conversation.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.tuscany.sca.core.assembly.impl.RuntimeComponentImpl;
+import org.apache.tuscany.sca.core.conversation.ConversationExt;
+import org.apache.tuscany.sca.core.conversation.ConversationIDGenerator;
+import org.apache.tuscany.sca.core.conversation.ConversationManager;
+import org.apache.tuscany.sca.core.conversation.ConversationState;
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.ScopedImplementationProvider;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ConversationManagerImplTestCase {
+
+    @Test
+    public void testExpiryWheelRounds() {
+        ConversationManagerImpl manager = new ConversationManagerImpl();
+        ConversationExpiryWheel wheel = new ConversationExpiryWheel(10, 4, 0);
+        ExtendedConversationImpl soon = new ExtendedConversationImpl(manager, "soon", ConversationState.STARTED);
+        ExtendedConversationImpl later = new ExtendedConversationImpl(manager, "later", ConversationState.STARTED);
+        wheel.schedule(soon, 15);
+        // lands in the same bucket as soon, one round later
+        wheel.schedule(later, 55);
+        assertEquals(2, wheel.size());
+
+        assertEquals(0, wheel.advance(10).size());
+        List<ExtendedConversationImpl> due = wheel.advance(20);
+        assertEquals(1, due.size());
+        assertTrue(due.get(0) == soon);
+        assertEquals(0, wheel.advance(50).size());
+        due = wheel.advance(1000);
+        assertEquals(1, due.size());
+        assertTrue(due.get(0) == later);
+        assertEquals(0, wheel.size());
+        manager.stopReaper();
+    }
+
+    @Test
+    public void testExpiryWheelCancel() {
+        ConversationManagerImpl manager = new ConversationManagerImpl();
+        ConversationExpiryWheel wheel = new ConversationExpiryWheel(10, 4, 0);
+        ExtendedConversationImpl first = new ExtendedConversationImpl(manager, "first", ConversationState.STARTED);
+        ExtendedConversationImpl middle = new ExtendedConversationImpl(manager, "middle", ConversationState.STARTED);
+        ExtendedConversationImpl last = new ExtendedConversationImpl(manager, "last", ConversationState.STARTED);
+        // all in the same bucket
+        wheel.schedule(first, 15);
+        wheel.schedule(middle, 55);
+        wheel.schedule(last, 15);
+        assertEquals(3, wheel.size());
+
+        wheel.cancel(middle);
+        assertEquals(2, wheel.size());
+        wheel.cancel(middle);
+        assertEquals(2, wheel.size());
+        wheel.cancel(last);
+        assertEquals(1, wheel.size());
+
+        List<ExtendedConversationImpl> due = wheel.advance(1000);
+        assertEquals(1, due.size());
+        assertTrue(due.get(0) == first);
+        assertEquals(0, wheel.size());
+        manager.stopReaper();
+    }
+
+    @Test
+    public void testEndUnschedules() {
+        ConversationManagerImpl manager = new ConversationManagerImpl();
+        try {
+            RuntimeComponentImpl component = new RuntimeComponentImpl();
+            component.setURI("TestComponent");
+            component.setImplementationProvider(new MockProvider(60000));
+            List<Object> ids = new ArrayList<Object>();
+            for (int i = 0; i < 10; i++) {
+                ConversationExt conversation = manager.startConversation(null);
+                conversation.initializeConversationAttributes(component);
+                ids.add(conversation.getConversationID());
+            }
+            assertEquals(10, manager.getScheduledConversationCount());
+            for (Object id : ids.subList(0, 4)) {
+                manager.endConversation(id);
+            }
+            assertEquals(6, manager.getScheduledConversationCount());
+            assertEquals(6, manager.getLiveConversationCount());
+        } finally {
+            manager.stopReaper();
+        }
+    }
+
+    @Test
+    public void testExpireAndEnd() throws Exception {
+        System.setProperty(ConversationManager.class.getName() + ".ExpiryTick", "10");
+        ConversationManagerImpl manager;
+        try {
+            manager = new ConversationManagerImpl();
+        } finally {
+            System.clearProperty(ConversationManager.class.getName() + ".ExpiryTick");
+        }
+        try {
+            RuntimeComponentImpl component = new RuntimeComponentImpl();
+            component.setURI("TestComponent");
+            component.setImplementationProvider(new MockProvider(50));
+            for (int i = 0; i < 100; i++) {
+                ConversationExt conversation = manager.startConversation(null);
+                conversation.initializeConversationAttributes(component);
+                conversation.updateLastReferencedTime();
+            }
+            manager.endConversation(manager.startConversation("ended").getConversationID());
+            assertEquals(100, manager.getLiveConversationCount());
+            assertEquals(1, manager.getEndedConversationCount());
+            assertEquals(Integer.valueOf(100), manager.getLiveConversationCountsByComponent().get("TestComponent"));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (manager.getExpiredConversationCount() < 100 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(100, manager.getExpiredConversationCount());
+            assertEquals(0, manager.getLiveConversationCount());
+            assertEquals(0, manager.getScheduledConversationCount());
+            assertTrue(manager.getLiveConversationCountsByComponent().isEmpty());
+        } finally {
+            manager.stopReaper();
+        }
+    }
+
+    @Test
+    public void testConversationIDs() {
+        Set<String> ids = new HashSet<String>();
+        for (int i = 0; i < 10000; i++) {
+            String id = ConversationIDGenerator.generate();
+            assertEquals(36, id.length());
+            assertTrue(ids.add(id));
+        }
+    }
+
+    private static class MockProvider implements ScopedImplementationProvider {
+        private final long timeout;
+
+        private MockProvider(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public InstanceWrapper createInstanceWrapper() {
+            return null;
+        }
+
+        public long getMaxAge() {
+            return timeout;
+        }
+
+        public long getMaxIdleTime() {
+            return timeout;
+        }
+
+        public Scope getScope() {
+            return Scope.CONVERSATION;
+        }
+
+        public boolean isEagerInit() {
+            return false;
+        }
+
+        public Invoker createInvoker(RuntimeComponentService service, Operation operation) {
+            return null;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+
+        public boolean supportsOneWayInvocation() {
+            return false;
+        }
+    }
+
+}
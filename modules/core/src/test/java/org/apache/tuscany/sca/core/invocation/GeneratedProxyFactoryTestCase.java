@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.core.invocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuscany.sca.core.invocation.impl.JDKInvocationHandler;
+import org.junit.Test;
+
+/**
+ * Checks that the generated proxies behave like the JDK proxies
+ *
+ * @version $Rev$ $Date$
+ */
+public class GeneratedProxyFactoryTestCase {
+
+    @Test
+    public void testInvoke() throws Exception {
+        for (boolean generated : new boolean[] {true, false}) {
+            TestHandler handler = new TestHandler(Calculator.class);
+            Calculator calculator = newProxy(Calculator.class, handler, generated);
+            handler.result = Integer.valueOf(5);
+            assertEquals(5, calculator.add(2, 3));
+            assertEquals("add", handler.methods.get(0));
+            assertEquals(Integer.valueOf(2), handler.args.get(0)[0]);
+            assertEquals(Integer.valueOf(3), handler.args.get(0)[1]);
+
+            handler.result = "x";
+            assertEquals("x", calculator.echo("y", 2.5d, 'c'));
+            assertEquals(Double.valueOf(2.5d), handler.args.get(1)[1]);
+            assertEquals(Character.valueOf('c'), handler.args.get(1)[2]);
+
+            handler.result = null;
+            calculator.reset();
+            assertEquals(0, handler.args.get(2).length);
+
+            try {
+                calculator.add(1, 1);
+                fail("NullPointerException expected");
+            } catch (NullPointerException e) {
+                // a null result for a primitive type
+            }
+        }
+    }
+
+    @Test
+    public void testExceptions() throws Exception {
+        for (boolean generated : new boolean[] {true, false}) {
+            TestHandler handler = new TestHandler(Calculator.class);
+            Calculator calculator = newProxy(Calculator.class, handler, generated);
+            handler.fault = new IOException();
+            try {
+                calculator.echo("y", 0, 'c');
+                fail("IOException expected");
+            } catch (IOException e) {
+                assertSame(handler.fault, e);
+            }
+            handler.fault = new IllegalStateException();
+            try {
+                calculator.reset();
+                fail("IllegalStateException expected");
+            } catch (IllegalStateException e) {
+                assertSame(handler.fault, e);
+            }
+            handler.fault = new Exception();
+            try {
+                calculator.reset();
+                fail("UndeclaredThrowableException expected");
+            } catch (UndeclaredThrowableException e) {
+                assertSame(handler.fault, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testObjectMethods() throws Exception {
+        TestHandler handler = new TestHandler(Calculator.class);
+        Calculator generated = newProxy(Calculator.class, handler, true);
+        Calculator jdk = newProxy(Calculator.class, handler, false);
+        Calculator other = newProxy(Calculator.class, new TestHandler(Calculator.class), true);
+
+        assertEquals(jdk.toString(), generated.toString());
+        assertEquals(jdk.hashCode(), generated.hashCode());
+        assertTrue(generated.equals(generated));
+        assertTrue(generated.equals(jdk));
+        assertTrue(jdk.equals(generated));
+        assertFalse(generated.equals(other));
+        assertFalse(generated.equals(null));
+        assertFalse(generated.equals("x"));
+
+        // The Object methods redeclared by an interface are not business methods
+        handler = new TestHandler(Named.class);
+        Named named = newProxy(Named.class, handler, true);
+        assertEquals(newProxy(Named.class, handler, false).toString(), named.toString());
+        assertTrue(handler.methods.isEmpty());
+        named.getName();
+        assertEquals("getName", handler.methods.get(0));
+    }
+
+    @Test
+    public void testProxyClass() throws Exception {
+        Calculator first = newProxy(Calculator.class, new TestHandler(Calculator.class), true);
+        Calculator second = newProxy(Calculator.class, new TestHandler(Calculator.class), true);
+        assertSame(first.getClass(), second.getClass());
+        GeneratedProxyFactory factory = new GeneratedProxyFactory(null, null);
+        assertTrue(factory.isProxyClass(first.getClass()));
+        assertFalse(factory.isProxyClass(Calculator.class));
+        assertNull(factory.cast(first));
+    }
+
+    @Test
+    public void testGeneratable() throws Exception {
+        assertTrue(GeneratedProxyFactory.isGeneratable(Calculator.class));
+        assertFalse(GeneratedProxyFactory.isGeneratable(Runnable.class));
+        assertFalse(GeneratedProxyFactory.isGeneratable(HiddenInterface.class));
+        // The generated class can't link against non-public types used by a public interface
+        assertFalse(GeneratedProxyFactory.isGeneratable(HiddenParameter.class));
+        assertFalse(GeneratedProxyFactory.isGeneratable(HiddenResult.class));
+        assertFalse(GeneratedProxyFactory.isGeneratable(HiddenException.class));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        for (boolean generated : new boolean[] {true, false}) {
+            Calculator calculator = newProxy(Calculator.class, new TestHandler(Calculator.class), generated);
+            Calculator copy = (Calculator)copy(calculator);
+            assertEquals(generated, copy instanceof GeneratedProxyFactory.GeneratedProxy);
+
+            TestHandler handler;
+            if (generated) {
+                handler = (TestHandler)((GeneratedProxyFactory.GeneratedProxy)copy).getInvocationHandler();
+            } else {
+                handler = (TestHandler)Proxy.getInvocationHandler(copy);
+            }
+            handler.result = Integer.valueOf(5);
+            assertEquals(5, copy.add(2, 3));
+            assertEquals("add", handler.methods.get(0));
+        }
+    }
+
+    private static Object copy(Object object) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bos);
+        out.writeObject(object);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+        return in.readObject();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> interfaze, JDKInvocationHandler handler, boolean generated)
+        throws ProxyCreationException {
+        if (generated) {
+            return (T)GeneratedProxyFactory.newProxyInstance(interfaze, handler);
+        }
+        return (T)Proxy.newProxyInstance(interfaze.getClassLoader(), new Class<?>[] {interfaze}, handler);
+    }
+
+    public static interface Calculator {
+        int add(int a, int b);
+
+        String echo(String s, double d, char c) throws IOException;
+
+        void reset();
+    }
+
+    static interface HiddenInterface {
+        void run();
+    }
+
+    public static interface HiddenParameter {
+        void run(Hidden hidden);
+    }
+
+    public static interface HiddenResult {
+        Hidden[] run();
+    }
+
+    public static interface HiddenException {
+        void run() throws HiddenFault;
+    }
+
+    static class Hidden {
+    }
+
+    static class HiddenFault extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+
+    public static interface Named {
+        String getName();
+
+        String toString();
+    }
+
+    /**
+     * Records the business method calls instead of dispatching them to a wire
+     */
+    private static class TestHandler extends JDKInvocationHandler {
+        private static final long serialVersionUID = 1L;
+        private List<String> methods = new ArrayList<String>();
+        private List<Object[]> args = new ArrayList<Object[]>();
+        private Object result;
+        private Throwable fault;
+
+        private TestHandler(Class<?> businessInterface) {
+            super(null, businessInterface, null);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return super.invoke(proxy, method, args);
+            }
+            return invoke(-1, method, args);
+        }
+
+        @Override
+        protected Object invoke(int index, Method method, Object[] args) throws Throwable {
+            methods.add(method.getName());
+            this.args.add(args == null ? new Object[0] : args);
+            if (fault != null) {
+                throw fault;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.apache.tuscany.sca.core.assembly.impl.RuntimeComponentImpl;
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.ScopedImplementationProvider;
+import org.apache.tuscany.sca.core.scope.TargetResolutionException;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class CompositeScopeContainerTestCase {
+    private static final Logger logger = Logger.getLogger(CompositeScopeContainerTestCase.class.getName());
+
+    @Test
+    public void testConcurrentGetWrapper() throws Exception {
+        final MockProvider provider = new MockProvider(false);
+        final CompositeScopeContainer<Object> container = createContainer(provider);
+        container.start();
+
+        final int threads = 64;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Object> first = new AtomicReference<Object>();
+        final AtomicInteger mismatches = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 1000; j++) {
+                            InstanceWrapper<?> wrapper = container.getWrapper(null);
+                            first.compareAndSet(null, wrapper);
+                            if (wrapper != first.get() || !((MockWrapper)wrapper).started) {
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        mismatches.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals(0, mismatches.get());
+        assertEquals(1, provider.created.get());
+        assertSame(first.get(), container.getAssociatedWrapper(null));
+
+        container.stop();
+        assertEquals(1, provider.stopped.get());
+    }
+
+    @Test
+    public void testEagerInit() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        CompositeScopeContainer<Object> container = createContainer(provider);
+        container.start();
+        assertEquals(1, provider.created.get());
+        container.getWrapper(null);
+        assertEquals(1, provider.created.get());
+        container.stop();
+        assertEquals(1, provider.stopped.get());
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        MockProvider provider = new MockProvider(false);
+        CompositeScopeContainer<Object> container = createContainer(provider);
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        container.stop();
+        container.start();
+        InstanceWrapper<?> newWrapper = container.getWrapper(null);
+        assertEquals(2, provider.created.get());
+        assertNotSame(wrapper, newWrapper);
+        container.stop();
+    }
+
+    /**
+     * Reports the throughput of the read path for an increasing number of threads. The composite
+     * scope read path takes no lock so the throughput should grow with the number of cores.
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        final CompositeScopeContainer<Object> container = createContainer(provider);
+        container.start();
+        final InstanceWrapper<?> expected = container.getWrapper(null);
+        final AtomicInteger mismatches = new AtomicInteger();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            final int iterations = 1000000;
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            for (int i = 0; i < threads; i++) {
+                new Thread() {
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int j = 0; j < iterations; j++) {
+                                if (container.getWrapper(null) != expected) {
+                                    mismatches.incrementAndGet();
+                                }
+                            }
+                        } catch (Exception e) {
+                            mismatches.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }.start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            long elapsed = Math.max(1, (System.nanoTime() - begin) / 1000000);
+            logger.info("Composite scope getWrapper() with " + threads
+                + " thread(s): "
+                + ((long)threads * iterations / elapsed)
+                + " calls/ms");
+        }
+        assertEquals(0, mismatches.get());
+        assertEquals(1, provider.created.get());
+        container.stop();
+    }
+
+    /**
+     * The instance resolves a reference to itself while it starts, as a cyclic reference used from
+     * @Init does, while other threads ask for the instance.
+     */
+    @Test
+    public void testConcurrentReentrantStart() throws Exception {
+        final MockProvider provider = new MockProvider(false);
+        final CompositeScopeContainer<Object> container = createContainer(provider);
+        provider.container = container;
+        container.start();
+
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final Set<InstanceWrapper<?>> wrappers = Collections.synchronizedSet(new HashSet<InstanceWrapper<?>>());
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        InstanceWrapper<?> wrapper = container.getWrapper(null);
+                        if (!((MockWrapper)wrapper).started) {
+                            failures.incrementAndGet();
+                        }
+                        wrappers.add(wrapper);
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals(0, failures.get());
+        assertEquals(1, provider.created.get());
+        assertEquals(1, wrappers.size());
+        MockWrapper wrapper = (MockWrapper)wrappers.iterator().next();
+        assertSame(wrapper, wrapper.reentered);
+        container.stop();
+        assertEquals(1, provider.stopped.get());
+    }
+
+    private static CompositeScopeContainer<Object> createContainer(MockProvider provider) {
+        RuntimeComponentImpl component = new RuntimeComponentImpl();
+        component.setURI("TestComponent");
+        component.setImplementationProvider(provider);
+        return new CompositeScopeContainer<Object>(component);
+    }
+
+    private static class MockProvider implements ScopedImplementationProvider {
+        private final boolean eagerInit;
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+        private CompositeScopeContainer<Object> container;
+
+        private MockProvider(boolean eagerInit) {
+            this.eagerInit = eagerInit;
+        }
+
+        public InstanceWrapper createInstanceWrapper() {
+            created.incrementAndGet();
+            return new MockWrapper(stopped, container);
+        }
+
+        public long getMaxAge() {
+            return 0;
+        }
+
+        public long getMaxIdleTime() {
+            return 0;
+        }
+
+        public Scope getScope() {
+            return Scope.COMPOSITE;
+        }
+
+        public boolean isEagerInit() {
+            return eagerInit;
+        }
+
+        public Invoker createInvoker(RuntimeComponentService service, Operation operation) {
+            return null;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+
+        public boolean supportsOneWayInvocation() {
+            return false;
+        }
+    }
+
+    private static class MockWrapper implements InstanceWrapper<Object> {
+        private final Object instance = new Object();
+        private final AtomicInteger stopped;
+        private final CompositeScopeContainer<Object> container;
+        private volatile boolean started;
+        private volatile InstanceWrapper<?> reentered;
+
+        private MockWrapper(AtomicInteger stopped, CompositeScopeContainer<Object> container) {
+            this.stopped = stopped;
+            this.container = container;
+        }
+
+        public Object getInstance() {
+            return instance;
+        }
+
+        public void start() {
+            // make the window between creating and starting the instance visible to other threads
+            Thread.yield();
+            if (container != null) {
+                try {
+                    reentered = container.getWrapper(null);
+                } catch (TargetResolutionException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            started = true;
+        }
+
+        public void stop() {
+            stopped.incrementAndGet();
+        }
+    }
+
+}
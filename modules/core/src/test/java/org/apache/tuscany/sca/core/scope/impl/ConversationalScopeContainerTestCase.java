@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuscany.sca.core.assembly.impl.RuntimeComponentImpl;
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.ScopedImplementationProvider;
+import org.apache.tuscany.sca.core.scope.TargetResolutionException;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class ConversationalScopeContainerTestCase {
+    private static final String MAX_RESIDENT_INSTANCES =
+        ConversationalScopeContainer.class.getName() + ".MaxResidentInstances";
+
+    @Test
+    public void testPassivation() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        ConversationalScopeContainer container = createContainer(provider, 10);
+        container.start();
+        for (int i = 0; i < 100; i++) {
+            InstanceWrapper<?> wrapper = container.getWrapper("c" + i);
+            ((Counter)wrapper.getInstance()).count = i;
+            container.returnWrapper(wrapper, "c" + i);
+        }
+        assertTrue(container.getResidentInstanceCount() <= 10);
+        assertEquals(100, container.getResidentInstanceCount() + container.getPassivatedInstanceCount());
+
+        // reactivated with its state, injected again but not initialized again
+        InstanceWrapper<?> wrapper = container.getWrapper("c0");
+        Counter counter = (Counter)wrapper.getInstance();
+        assertEquals(0, counter.count);
+        assertEquals("injected", counter.reference);
+        assertEquals(100, provider.started.get());
+        container.returnWrapper(wrapper, "c0");
+
+        wrapper = container.getWrapper("c1");
+        assertEquals(1, ((Counter)wrapper.getInstance()).count);
+        container.returnWrapper(wrapper, "c1");
+
+        // removing a passivated instance runs its destroy callback
+        for (int i = 0; i < 100; i++) {
+            container.remove("c" + i);
+        }
+        assertEquals(100, provider.stopped.get());
+        assertEquals(0, container.getResidentInstanceCount());
+        assertEquals(0, container.getPassivatedInstanceCount());
+        container.stop();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPassivated() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        ConversationalScopeContainer container = createContainer(provider, 10);
+        container.start();
+        for (int i = 0; i < 10; i++) {
+            container.returnWrapper(container.getWrapper("c" + i), "c" + i);
+        }
+        container.returnWrapper(container.getWrapper("c0"), "c0");
+        assertEquals(0, container.getPassivatedInstanceCount());
+
+        // c1 and c2 are now the least recently used instances
+        container.returnWrapper(container.getWrapper("c10"), "c10");
+        assertEquals(2, container.getPassivatedInstanceCount());
+        container.returnWrapper(container.getWrapper("c0"), "c0");
+        container.returnWrapper(container.getWrapper("c3"), "c3");
+        assertEquals(2, container.getPassivatedInstanceCount());
+        container.returnWrapper(container.getWrapper("c1"), "c1");
+        assertEquals(1, container.getPassivatedInstanceCount());
+        container.stop();
+    }
+
+    @Test
+    public void testBorrowedInstanceNotPassivated() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        ConversationalScopeContainer container = createContainer(provider, 1);
+        container.start();
+        InstanceWrapper<?> borrowed = container.getWrapper("borrowed");
+        for (int i = 0; i < 10; i++) {
+            container.returnWrapper(container.getWrapper("c" + i), "c" + i);
+        }
+        assertSame(borrowed, container.getWrapper("borrowed"));
+        container.stop();
+    }
+
+    @Test
+    public void testNotSerializable() throws Exception {
+        MockProvider provider = new MockProvider(false);
+        ConversationalScopeContainer container = createContainer(provider, 5);
+        container.start();
+        for (int i = 0; i < 20; i++) {
+            container.returnWrapper(container.getWrapper("c" + i), "c" + i);
+        }
+        assertEquals(20, container.getResidentInstanceCount());
+        assertEquals(0, container.getPassivatedInstanceCount());
+        container.stop();
+    }
+
+    @Test
+    public void testSerializationFailure() throws Exception {
+        MockProvider provider = new MockProvider(Unwritable.class);
+        ConversationalScopeContainer container = createContainer(provider, 5);
+        container.start();
+        for (int i = 0; i < 20; i++) {
+            container.returnWrapper(container.getWrapper("c" + i), "c" + i);
+        }
+        assertEquals(20, container.getResidentInstanceCount());
+        assertEquals(0, container.getPassivatedInstanceCount());
+        container.stop();
+    }
+
+    @Test
+    public void testDeserializationFailure() throws Exception {
+        MockProvider provider = new MockProvider(Unreadable.class);
+        ConversationalScopeContainer container = createContainer(provider, 1);
+        container.start();
+        container.returnWrapper(container.getWrapper("c0"), "c0");
+        container.returnWrapper(container.getWrapper("c1"), "c1");
+        assertEquals(1, container.getPassivatedInstanceCount());
+        try {
+            container.getWrapper("c0");
+            fail();
+        } catch (TargetResolutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // the other conversations are not affected
+        container.returnWrapper(container.getWrapper("c2"), "c2");
+        container.stop();
+    }
+
+    @Test
+    public void testPassivationDisabled() throws Exception {
+        MockProvider provider = new MockProvider(true);
+        ConversationalScopeContainer container = createContainer(provider, 0);
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper("c");
+        for (int i = 0; i < 20; i++) {
+            container.returnWrapper(container.getWrapper("c" + i), "c" + i);
+        }
+        assertSame(wrapper, container.getWrapper("c"));
+        assertNotSame(wrapper, container.getWrapper("c0"));
+        assertEquals(0, container.getPassivatedInstanceCount());
+        container.stop();
+    }
+
+    private static ConversationalScopeContainer createContainer(MockProvider provider, int maxResidentInstances) {
+        RuntimeComponentImpl component = new RuntimeComponentImpl();
+        component.setURI("TestComponent");
+        component.setImplementationProvider(provider);
+        System.setProperty(MAX_RESIDENT_INSTANCES, String.valueOf(maxResidentInstances));
+        try {
+            return new ConversationalScopeContainer(component);
+        } finally {
+            System.clearProperty(MAX_RESIDENT_INSTANCES);
+        }
+    }
+
+    public static class Counter {
+        private int count;
+        private String reference;
+    }
+
+    public static class NotSerializable {
+        private Object state = new Object();
+    }
+
+    public static class Unwritable {
+        private Exploding state = new Exploding(true);
+    }
+
+    public static class Unreadable {
+        private Exploding state = new Exploding(false);
+    }
+
+    /**
+     * Fails with a runtime exception rather than an IOException
+     */
+    private static class Exploding implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final boolean onWrite;
+
+        private Exploding(boolean onWrite) {
+            this.onWrite = onWrite;
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            if (onWrite) {
+                throw new IllegalStateException("write");
+            }
+            out.defaultWriteObject();
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            throw new IllegalStateException("read");
+        }
+    }
+
+    private static class MockProvider implements ScopedImplementationProvider {
+        private final Class<?> instanceClass;
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+
+        private MockProvider(boolean serializable) {
+            this(serializable ? Counter.class : NotSerializable.class);
+        }
+
+        private MockProvider(Class<?> instanceClass) {
+            this.instanceClass = instanceClass;
+        }
+
+        public InstanceWrapper createInstanceWrapper() {
+            Object instance;
+            try {
+                instance = instanceClass.newInstance();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            if (instance instanceof Counter) {
+                ((Counter)instance).reference = "injected";
+            }
+            return new MockWrapper(instance, started, stopped);
+        }
+
+        public long getMaxAge() {
+            return 0;
+        }
+
+        public long getMaxIdleTime() {
+            return 0;
+        }
+
+        public Scope getScope() {
+            return Scope.CONVERSATION;
+        }
+
+        public boolean isEagerInit() {
+            return false;
+        }
+
+        public Invoker createInvoker(RuntimeComponentService service, Operation operation) {
+            return null;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+
+        public boolean supportsOneWayInvocation() {
+            return false;
+        }
+    }
+
+    private static class MockWrapper implements InstanceWrapper<Object> {
+        private final Object instance;
+        private final AtomicInteger started;
+        private final AtomicInteger stopped;
+
+        private MockWrapper(Object instance, AtomicInteger started, AtomicInteger stopped) {
+            this.instance = instance;
+            this.started = started;
+            this.stopped = stopped;
+        }
+
+        public Object getInstance() {
+            return instance;
+        }
+
+        public void start() {
+            started.incrementAndGet();
+        }
+
+        public void stop() {
+            stopped.incrementAndGet();
+        }
+    }
+
+}
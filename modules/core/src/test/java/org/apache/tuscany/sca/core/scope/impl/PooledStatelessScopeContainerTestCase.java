@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuscany.sca.core.assembly.impl.RuntimeComponentImpl;
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.ScopedImplementationProvider;
+import org.apache.tuscany.sca.core.scope.TargetResolutionException;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class PooledStatelessScopeContainerTestCase {
+
+    @Test
+    public void testInstanceReuse() throws Exception {
+        MockProvider provider = new MockProvider();
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, new InstancePoolConfiguration());
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        container.returnWrapper(wrapper, null);
+        assertSame(wrapper.getInstance(), container.getWrapper(null).getInstance());
+        assertEquals(1, provider.created.get());
+        assertEquals(1, container.activeCount());
+        container.stop();
+    }
+
+    @Test
+    public void testMinSize() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMinSize(3);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        assertEquals(3, provider.created.get());
+        assertEquals(3, container.idleCount());
+        container.stop();
+        assertEquals(3, provider.stopped.get());
+        assertEquals(0, container.idleCount());
+    }
+
+    @Test
+    public void testExhaustedFail() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxSize(1);
+        configuration.setExhaustedAction(InstancePoolConfiguration.ExhaustedAction.FAIL);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        try {
+            container.getWrapper(null);
+            fail("TargetResolutionException expected");
+        } catch (TargetResolutionException e) {
+            // expected
+        }
+        container.returnWrapper(wrapper, null);
+        container.returnWrapper(container.getWrapper(null), null);
+        container.stop();
+    }
+
+    @Test
+    public void testExhaustedGrow() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxSize(1);
+        configuration.setExhaustedAction(InstancePoolConfiguration.ExhaustedAction.GROW);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        InstanceWrapper<?> extra = container.getWrapper(null);
+        assertNotSame(wrapper.getInstance(), extra.getInstance());
+        container.returnWrapper(extra, null);
+        assertEquals(1, provider.stopped.get());
+        container.returnWrapper(wrapper, null);
+        assertEquals(1, container.idleCount());
+        container.stop();
+    }
+
+    @Test
+    public void testBlockWithTimeout() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxSize(1);
+        configuration.setMaxWait(50);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        final InstanceWrapper<?> wrapper = container.getWrapper(null);
+        try {
+            container.getWrapper(null);
+            fail("TargetResolutionException expected");
+        } catch (TargetResolutionException e) {
+            // expected
+        }
+        container.returnWrapper(wrapper, null);
+        container.stop();
+    }
+
+    @Test
+    public void testIdleEviction() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxIdleTime(10);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        InstanceWrapper<?> first = container.getWrapper(null);
+        InstanceWrapper<?> second = container.getWrapper(null);
+        container.returnWrapper(first, null);
+        Thread.sleep(50);
+        container.returnWrapper(second, null);
+        assertEquals(1, provider.stopped.get());
+        assertEquals(1, container.idleCount());
+        container.stop();
+    }
+
+    @Test
+    public void testIdleEvictionOnAcquire() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxIdleTime(10);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        InstanceWrapper<?> first = container.getWrapper(null);
+        InstanceWrapper<?> second = container.getWrapper(null);
+        container.returnWrapper(first, null);
+        container.returnWrapper(second, null);
+        Thread.sleep(50);
+        InstanceWrapper<?> third = container.getWrapper(null);
+        assertEquals(2, provider.stopped.get());
+        assertEquals(3, provider.created.get());
+        container.returnWrapper(third, null);
+        container.stop();
+    }
+
+    @Test
+    public void testIdleEvictionWithoutTraffic() throws Exception {
+        MockProvider provider = new MockProvider();
+        InstancePoolConfiguration configuration = new InstancePoolConfiguration();
+        configuration.setMaxIdleTime(10);
+        PooledStatelessScopeContainer<Object> container = createContainer(provider, configuration);
+        container.start();
+        container.returnWrapper(container.getWrapper(null), null);
+        assertEquals(1, container.idleCount());
+        for (int i = 0; i < 100 && container.idleCount() != 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, container.idleCount());
+        assertEquals(1, provider.stopped.get());
+        container.stop();
+    }
+
+    private static PooledStatelessScopeContainer<Object> createContainer(MockProvider provider,
+                                                                        InstancePoolConfiguration configuration) {
+        RuntimeComponentImpl component = new RuntimeComponentImpl();
+        component.setURI("TestComponent");
+        component.setImplementationProvider(provider);
+        return new PooledStatelessScopeContainer<Object>(component, configuration);
+    }
+
+    private static class MockProvider implements ScopedImplementationProvider {
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+
+        public InstanceWrapper createInstanceWrapper() {
+            created.incrementAndGet();
+            return new MockWrapper(stopped);
+        }
+
+        public long getMaxAge() {
+            return 0;
+        }
+
+        public long getMaxIdleTime() {
+            return 0;
+        }
+
+        public Scope getScope() {
+            return Scope.STATELESS;
+        }
+
+        public boolean isEagerInit() {
+            return false;
+        }
+
+        public Invoker createInvoker(RuntimeComponentService service, Operation operation) {
+            return null;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+
+        public boolean supportsOneWayInvocation() {
+            return false;
+        }
+    }
+
+    private static class MockWrapper implements InstanceWrapper<Object> {
+        private final Object instance = new Object();
+        private final AtomicInteger stopped;
+
+        private MockWrapper(AtomicInteger stopped) {
+            this.stopped = stopped;
+        }
+
+        public Object getInstance() {
+            return instance;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+            stopped.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.core.scope.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.tuscany.sca.core.assembly.impl.RuntimeComponentImpl;
+import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.invocation.ThreadMessageContext;
+import org.apache.tuscany.sca.core.scope.RequestScopeContext;
+import org.apache.tuscany.sca.core.scope.Scope;
+import org.apache.tuscany.sca.core.scope.ScopedImplementationProvider;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.invocation.Invoker;
+import org.apache.tuscany.sca.runtime.RuntimeComponentService;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class RequestScopeContainerTestCase {
+
+    @Test
+    public void testInstancePerRequest() throws Exception {
+        MockProvider provider = new MockProvider();
+        RequestScopeContainer container = createContainer(provider);
+        container.start();
+
+        RequestScopeContext request = ThreadMessageContext.startRequest();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        // a nested invocation joins the request in progress
+        assertNull(ThreadMessageContext.startRequest());
+        assertSame(wrapper, container.getWrapper(null));
+        container.returnWrapper(wrapper, null);
+        assertEquals(0, provider.stopped.get());
+        ThreadMessageContext.endRequest(request);
+        assertEquals(1, provider.stopped.get());
+        assertNull(ThreadMessageContext.getRequestContext());
+
+        request = ThreadMessageContext.startRequest();
+        assertNotSame(wrapper, container.getWrapper(null));
+        ThreadMessageContext.endRequest(request);
+        assertEquals(2, provider.stopped.get());
+        container.stop();
+    }
+
+    @Test
+    public void testRequestOnAnotherThread() throws Exception {
+        MockProvider provider = new MockProvider();
+        final RequestScopeContainer container = createContainer(provider);
+        container.start();
+
+        final RequestScopeContext request = ThreadMessageContext.startRequest();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        final AtomicReference<Object> other = new AtomicReference<Object>();
+        Thread thread = new Thread() {
+            public void run() {
+                RequestScopeContext old = ThreadMessageContext.setRequestContext(request);
+                try {
+                    other.set(container.getWrapper(null));
+                } catch (Exception e) {
+                    other.set(e);
+                } finally {
+                    ThreadMessageContext.setRequestContext(old);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+        assertSame(wrapper, other.get());
+        ThreadMessageContext.endRequest(request);
+        assertEquals(1, provider.created.get());
+        assertEquals(1, provider.stopped.get());
+        container.stop();
+    }
+
+    @Test
+    public void testNoRequest() throws Exception {
+        MockProvider provider = new MockProvider();
+        RequestScopeContainer container = createContainer(provider);
+        container.start();
+        InstanceWrapper<?> wrapper = container.getWrapper(null);
+        assertNotSame(wrapper, container.getWrapper(null));
+        container.returnWrapper(wrapper, null);
+        assertEquals(1, provider.stopped.get());
+        container.stop();
+    }
+
+    private static RequestScopeContainer createContainer(MockProvider provider) {
+        RuntimeComponentImpl component = new RuntimeComponentImpl();
+        component.setURI("TestComponent");
+        component.setImplementationProvider(provider);
+        return new RequestScopeContainer(component);
+    }
+
+    private static class MockProvider implements ScopedImplementationProvider {
+        private final AtomicInteger created = new AtomicInteger();
+        private final AtomicInteger stopped = new AtomicInteger();
+
+        public InstanceWrapper createInstanceWrapper() {
+            created.incrementAndGet();
+            return new MockWrapper(stopped);
+        }
+
+        public long getMaxAge() {
+            return 0;
+        }
+
+        public long getMaxIdleTime() {
+            return 0;
+        }
+
+        public Scope getScope() {
+            return Scope.REQUEST;
+        }
+
+        public boolean isEagerInit() {
+            return false;
+        }
+
+        public Invoker createInvoker(RuntimeComponentService service, Operation operation) {
+            return null;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+        }
+
+        public boolean supportsOneWayInvocation() {
+            return false;
+        }
+    }
+
+    private static class MockWrapper implements InstanceWrapper<Object> {
+        private final Object instance = new Object();
+        private final AtomicInteger stopped;
+
+        private MockWrapper(AtomicInteger stopped) {
+            this.stopped = stopped;
+        }
+
+        public Object getInstance() {
+            return instance;
+        }
+
+        public void start() {
+        }
+
+        public void stop() {
+            stopped.incrementAndGet();
+        }
+    }
+
+}
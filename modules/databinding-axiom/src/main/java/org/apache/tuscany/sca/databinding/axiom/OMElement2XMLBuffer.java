@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.axiom;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.axiom.om.OMDataSource;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMSourcedElement;
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.xml.XMLBuffer;
+
+/**
+ * Turn an OMElement into an XMLBuffer. An element that still wraps an XMLBuffer and has not
+ * been expanded gives back the original buffer. Other elements are consumed: the part of the
+ * tree that has not been built yet is streamed from the parser into the buffer instead of
+ * being built first, so the source element can't be read again afterwards.
+ *
+ * @version $Rev$ $Date$
+ */
+public class OMElement2XMLBuffer extends BaseTransformer<OMElement, XMLBuffer> implements
+    PullTransformer<OMElement, XMLBuffer> {
+
+    public XMLBuffer transform(OMElement source, TransformationContext context) {
+        if (source == null) {
+            return null;
+        }
+        if (source instanceof OMSourcedElement) {
+            OMSourcedElement sourced = (OMSourcedElement)source;
+            OMDataSource dataSource = sourced.getDataSource();
+            if (!sourced.isExpanded() && dataSource instanceof XMLBufferDataSource) {
+                return ((XMLBufferDataSource)dataSource).getBuffer();
+            }
+        }
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            source.serializeAndConsume(bos);
+            return new XMLBuffer(bos.toByteArray());
+        } catch (Exception e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    protected Class<OMElement> getSourceType() {
+        return OMElement.class;
+    }
+
+    @Override
+    protected Class<XMLBuffer> getTargetType() {
+        return XMLBuffer.class;
+    }
+
+    @Override
+    public int getWeight() {
+        return 10;
+    }
+
+}
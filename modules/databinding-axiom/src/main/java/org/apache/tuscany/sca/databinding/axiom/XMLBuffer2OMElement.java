@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.axiom;
+
+import javax.xml.namespace.QName;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.xml.XMLBuffer;
+
+/**
+ * Wrap an XMLBuffer into an OMSourcedElement. Only the name of the root element is read, the
+ * rest of the document is parsed if the element is expanded.
+ *
+ * @version $Rev$ $Date$
+ */
+public class XMLBuffer2OMElement extends BaseTransformer<XMLBuffer, OMElement> implements
+    PullTransformer<XMLBuffer, OMElement> {
+
+    public OMElement transform(XMLBuffer source, TransformationContext context) {
+        if (source == null) {
+            return null;
+        }
+        try {
+            OMFactory factory = OMAbstractFactory.getOMFactory();
+            QName name = source.getRootElementName();
+            return AxiomHelper.createOMElement(factory, name, new XMLBufferDataSource(source));
+        } catch (Exception e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    protected Class<XMLBuffer> getSourceType() {
+        return XMLBuffer.class;
+    }
+
+    @Override
+    protected Class<OMElement> getTargetType() {
+        return OMElement.class;
+    }
+
+    @Override
+    public int getWeight() {
+        return 10;
+    }
+
+}
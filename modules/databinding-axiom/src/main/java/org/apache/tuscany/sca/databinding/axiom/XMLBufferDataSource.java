@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.axiom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.axiom.om.OMDataSource;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.tuscany.sca.databinding.xml.StAXHelper;
+import org.apache.tuscany.sca.databinding.xml.XMLBuffer;
+
+/**
+ * An OMDataSource backed by an XMLBuffer. When the element is written to a stream with the
+ * same encoding, the original bytes are copied without being parsed.
+ *
+ * @version $Rev$ $Date$
+ */
+public class XMLBufferDataSource implements OMDataSource {
+    private final XMLBuffer buffer;
+
+    public XMLBufferDataSource(XMLBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public XMLBuffer getBuffer() {
+        return buffer;
+    }
+
+    public XMLStreamReader getReader() throws XMLStreamException {
+        return buffer.getXMLStreamReader();
+    }
+
+    public void serialize(OutputStream output, OMOutputFormat format) throws XMLStreamException {
+        String encoding = format == null ? null : format.getCharSetEncoding();
+        try {
+            if (buffer.isEmbeddableIn(encoding)) {
+                buffer.writeContentTo(output);
+            } else {
+                Writer writer = new OutputStreamWriter(output, encoding == null ? "UTF-8" : encoding);
+                serialize(writer, format);
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    public void serialize(Writer writer, OMOutputFormat format) throws XMLStreamException {
+        XMLStreamReader reader = getElementReader();
+        try {
+            StAXHelper.save(reader, writer);
+        } finally {
+            reader.close();
+        }
+    }
+
+    public void serialize(XMLStreamWriter xmlWriter) throws XMLStreamException {
+        XMLStreamReader reader = getElementReader();
+        try {
+            StAXHelper.save(reader, xmlWriter);
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Position the reader on the root element so that the XML declaration is not written
+    private XMLStreamReader getElementReader() throws XMLStreamException {
+        XMLStreamReader reader = buffer.getXMLStreamReader();
+        while (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            reader.next();
+        }
+        return reader;
+    }
+
+}
@@ -41,13 +41,17 @@ public class JAXB2Node extends BaseTransformer<Object, Node> implements PullTran
 //        }
         try {
             JAXBContext context = JAXBContextHelper.createJAXBContext(tContext, true);
-            Marshaller marshaller = context.createMarshaller();
-            // FIXME: The default Marshaller doesn't support
-            // marshaller.getNode()
-            Document document = DOMHelper.newDocument();
-            Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
-            marshaller.marshal(jaxbElement, document);
-            return DOMHelper.adjustElementName(tContext, document.getDocumentElement());
+            Marshaller marshaller = JAXBContextHelper.getMarshaller(context);
+            try {
+                // FIXME: The default Marshaller doesn't support
+                // marshaller.getNode()
+                Document document = DOMHelper.newDocument();
+                Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
+                marshaller.marshal(jaxbElement, document);
+                return DOMHelper.adjustElementName(tContext, document.getDocumentElement());
+            } finally {
+                JAXBContextHelper.releaseJAXBMarshaller(context, marshaller);
+            }
         } catch (Exception e) {
             throw new TransformationException(e);
         }
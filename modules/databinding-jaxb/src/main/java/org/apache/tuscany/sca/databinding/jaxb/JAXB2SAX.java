@@ -50,9 +50,15 @@ public class JAXB2SAX extends BaseTransformer<Object, ContentHandler> implements
     public void transform(Object source, ContentHandler target, TransformationContext tContext) {
         try {
             JAXBContext context = JAXBContextHelper.createJAXBContext(tContext, true);
-            Marshaller marshaller = context.createMarshaller();
-            Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
-            marshaller.marshal(jaxbElement, target);
+            Marshaller marshaller = JAXBContextHelper.getMarshaller(context);
+            try {
+                // The pooled marshallers are set up to produce fragments
+                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+                Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
+                marshaller.marshal(jaxbElement, target);
+            } finally {
+                JAXBContextHelper.releaseJAXBMarshaller(context, marshaller);
+            }
         } catch (Exception e) {
             throw new TransformationException(e);
         }
@@ -39,12 +39,18 @@ public class JAXB2String extends BaseTransformer<Object, String> implements Pull
     public String transform(Object source, TransformationContext tContext) {
         try {
             JAXBContext context = JAXBContextHelper.createJAXBContext(tContext, true);
-            Marshaller marshaller = context.createMarshaller();
-            StringWriter writer = new StringWriter();
-            StreamResult result = new StreamResult(writer);
-            Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
-            marshaller.marshal(jaxbElement, result);
-            return writer.toString();
+            Marshaller marshaller = JAXBContextHelper.getMarshaller(context);
+            try {
+                // The pooled marshallers are set up to produce fragments
+                marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+                StringWriter writer = new StringWriter();
+                StreamResult result = new StreamResult(writer);
+                Object jaxbElement = JAXBContextHelper.createJAXBElement(context, tContext.getSourceDataType(), source);
+                marshaller.marshal(jaxbElement, result);
+                return writer.toString();
+            } finally {
+                JAXBContextHelper.releaseJAXBMarshaller(context, marshaller);
+            }
         } catch (Exception e) {
             throw new TransformationException(e);
         }
@@ -19,23 +19,22 @@
 package org.apache.tuscany.sca.databinding.jaxb;
 
 import java.awt.Image;
-import java.lang.ref.SoftReference;
 import java.net.URI;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.activation.DataHandler;
 import javax.xml.bind.JAXBContext;
@@ -44,13 +43,16 @@ import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.Source;
 
-import org.apache.tuscany.sca.databinding.util.LRUCache;
-
 /**
+ * A cache of JAXBContexts keyed by the classes they are created for, together with bounded
+ * pools of the Marshallers and Unmarshallers of each context. The lookups don't lock; a
+ * context is only created once per key even if several threads ask for it at the same time.
+ * 
  * @version $Rev$ $Date$
  */
 public class JAXBContextCache {
     private static final int CACHE_SIZE = 128;
+    private static final int POOL_SIZE = 32;
 
     private static HashMap<String, Class<?>> loadClassMap = new HashMap<String, Class<?>>();
 
@@ -89,21 +91,36 @@ public class JAXBContextCache {
     protected static final Set<Class<?>> COMMON_CLASSES_SET = new HashSet<Class<?>>(Arrays.asList(COMMON_ARRAY_CLASSES));
     */
 
-    protected LRUCache<Object, JAXBContext> cache;
-    protected Pool<JAXBContext, Marshaller>  mpool;
-    protected Pool<JAXBContext, Unmarshaller> upool;
-    
+    private final ConcurrentHashMap<Object, CachedContext> cache = new ConcurrentHashMap<Object, CachedContext>();
+    private final ConcurrentHashMap<JAXBContext, ContextPool> pools = new ConcurrentHashMap<JAXBContext, ContextPool>();
+    private final int contextSize;
+    private final int marshallerSize;
+    private final int unmarshallerSize;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong contextsCreated = new AtomicLong();
+    private final AtomicLong marshallersCreated = new AtomicLong();
+    private final AtomicLong unmarshallersCreated = new AtomicLong();
+
     // protected JAXBContext commonContext;
     protected JAXBContext defaultContext;
 
     public JAXBContextCache() {
-        this(CACHE_SIZE, CACHE_SIZE, CACHE_SIZE);
+        this(CACHE_SIZE, POOL_SIZE, POOL_SIZE);
     }
 
+    /**
+     * @param contextSize the maximum number of cached contexts
+     * @param marshallerSize the maximum number of idle Marshallers kept per context
+     * @param unmarshallerSize the maximum number of idle Unmarshallers kept per context
+     */
     public JAXBContextCache(int contextSize, int marshallerSize, int unmarshallerSize) {
-        cache = new LRUCache<Object, JAXBContext>(contextSize);
-        mpool = new Pool<JAXBContext, Marshaller>();
-        upool = new Pool<JAXBContext, Unmarshaller>();
+        this.contextSize = contextSize;
+        this.marshallerSize = marshallerSize;
+        this.unmarshallerSize = unmarshallerSize;
         defaultContext = getDefaultJAXBContext();
     }
     
@@ -213,9 +230,13 @@ public class JAXBContextCache {
     }
 
     public Marshaller getMarshaller(JAXBContext context) throws JAXBException {
-        Marshaller marshaller = mpool.get(context);
+        ContextPool pool = getPool(context);
+        Marshaller marshaller = pool.marshallers.poll();
         if (marshaller == null) {
             marshaller = context.createMarshaller();
+            marshallersCreated.incrementAndGet();
+        } else {
+            pool.idleMarshallers.decrementAndGet();
         }
         marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE); 
         return marshaller;
@@ -224,16 +245,25 @@ public class JAXBContextCache {
     public void releaseJAXBMarshaller(JAXBContext context, Marshaller marshaller) {   
         if (marshaller != null) {
             marshaller.setAttachmentMarshaller(null);
-            mpool.put(context, marshaller);
+            ContextPool pool = getPool(context);
+            if (pool.idleMarshallers.incrementAndGet() <= marshallerSize) {
+                pool.marshallers.offer(marshaller);
+            } else {
+                pool.idleMarshallers.decrementAndGet();
+            }
             // No point unsetting marshaller's JAXB_FRAGMENT property, since we'll just reset it when
             // doing the next get.
         }
     }
     
     public Unmarshaller getUnmarshaller(JAXBContext context) throws JAXBException {
-        Unmarshaller unmarshaller = upool.get(context);
+        ContextPool pool = getPool(context);
+        Unmarshaller unmarshaller = pool.unmarshallers.poll();
         if (unmarshaller == null) {
             unmarshaller = context.createUnmarshaller();
+            unmarshallersCreated.incrementAndGet();
+        } else {
+            pool.idleUnmarshallers.decrementAndGet();
         }
         return unmarshaller;
     }
@@ -241,40 +271,82 @@ public class JAXBContextCache {
     public void releaseJAXBUnmarshaller(JAXBContext context, Unmarshaller unmarshaller) {   
         if (unmarshaller != null) {
             unmarshaller.setAttachmentUnmarshaller(null);
-            upool.put(context, unmarshaller);
+            ContextPool pool = getPool(context);
+            if (pool.idleUnmarshallers.incrementAndGet() <= unmarshallerSize) {
+                pool.unmarshallers.offer(unmarshaller);
+            } else {
+                pool.idleUnmarshallers.decrementAndGet();
+            }
         }
     }
-    
-    public LRUCache<Object, JAXBContext> getCache() {
-        return cache;
+
+    /**
+     * Look up a context cached under an arbitrary key. A context that isn't found is expected
+     * to be created and added with {@link #putJAXBContext(Object, JAXBContext)}, which counts
+     * the miss.
+     * 
+     * @param key the key
+     * @return the context or null if it's not cached
+     */
+    public JAXBContext getCachedJAXBContext(Object key) {
+        JAXBContext context = lookup(key);
+        if (context != null) {
+            hits.incrementAndGet();
+        }
+        return context;
     }
 
-    public JAXBContext getJAXBContext(Class<?> cls) throws JAXBException {
+    /**
+     * Cache a context under an arbitrary key
+     * 
+     * @param key the key
+     * @param context the context
+     * @return the context cached under the key, it's the one already there if another thread
+     * got first
+     */
+    public JAXBContext putJAXBContext(Object key, final JAXBContext context) {
+        try {
+            return getJAXBContext(key, new ContextFactory() {
+                public JAXBContext create() {
+                    return context;
+                }
+            });
+        } catch (JAXBException e) {
+            // The factory doesn't throw it
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public JAXBContext getJAXBContext(final Class<?> cls) throws JAXBException {
         if (BUILTIN_CLASSES_SET.contains(cls)) {
             return defaultContext;
         }
-        synchronized (cache) {
-            JAXBContext context = cache.get(cls);
+        JAXBContext context = lookup(cls);
+        if (context != null) {
+            hits.incrementAndGet();
+            return context;
+        }
+        final Package pkg = cls.getPackage();
+        if (pkg != null) {
+            context = lookup(pkg);
             if (context != null) {
+                hits.incrementAndGet();
                 return context;
             }
-            Package pkg = cls.getPackage();
-            if (pkg != null) {
-                context = cache.get(pkg);
-                if (context != null) {
-                    return context;
-                }
-            }
-
-            if (pkg != null && checkPackage(pkg.getName(), cls.getClassLoader())) {
-                context = newJAXBContext(pkg.getName(), cls.getClassLoader());
-                cache.put(pkg, context);
-            } else {
-                context = newJAXBContext(cls);
-                cache.put(cls, context);
-            }
-            return context;
+        }
 
+        if (pkg != null && checkPackage(pkg.getName(), cls.getClassLoader())) {
+            return getJAXBContext(pkg, new ContextFactory() {
+                public JAXBContext create() throws JAXBException {
+                    return newJAXBContext(pkg.getName(), cls.getClassLoader());
+                }
+            });
+        } else {
+            return getJAXBContext(cls, new ContextFactory() {
+                public JAXBContext create() throws JAXBException {
+                    return newJAXBContext(cls);
+                }
+            });
         }
     }
 
@@ -285,7 +357,7 @@ public class JAXBContextCache {
 
     public JAXBContext getJAXBContext(Set<Class<?>> classes) throws JAXBException {
         // Remove the JAXB built-in types to maximize the cache hit 
-        Set<Class<?>> classSet = new HashSet<Class<?>>(classes);
+        final Set<Class<?>> classSet = new HashSet<Class<?>>(classes);
         classSet.removeAll(BUILTIN_CLASSES_SET);
         
         // FIXME: [rfeng] Remove java classes that are mapped to the same XSD type to avoid
@@ -311,138 +383,184 @@ public class JAXBContextCache {
         if (classSet.size() == 1) {
             return getJAXBContext(classSet.iterator().next());
         }
-        synchronized (cache) {
-            JAXBContext context = cache.get(classSet);
-            if (context != null) {
-                return context;
+
+        // The set is a private copy so it's safe to use it as the key
+        return getJAXBContext(classSet, new ContextFactory() {
+            public JAXBContext create() throws JAXBException {
+                return newJAXBContext(classSet.toArray(new Class<?>[classSet.size()]));
             }
-            context = newJAXBContext(classSet.toArray(new Class<?>[classSet.size()]));
-            cache.put(classSet, context);
-            return context;
-        }
+        });
     }
 
     public void clear() {
-        synchronized (cache) {
-            cache.clear();
-        }
-        /*
-        synchronized (upool) {
-            upool.clear();
-        }
-        synchronized (upool) {
-            upool.clear();
-        }
-        */
+        cache.clear();
+        pools.clear();
     }
 
-    //
-    // This inner class is copied in its entirety from the Axis2 utility class,
-    // org.apache.axis2.jaxws.message.databinding.JAXBUtils.   We could look into extending but it's such a basic data structure
-    // without other dependencies so we might be better off copying it and avoiding a new
-    // Axis2 dependency here.
-    //
-    
     /**
-     * Pool a list of items for a specific key
-     *
-     * @param <K> Key
-     * @param <V> Pooled object
+     * @return the number of cached contexts
      */
-    private static class Pool<K,V> {
-        private SoftReference<Map<K,List<V>>> softMap = 
-            new SoftReference<Map<K,List<V>>>(
-                    new ConcurrentHashMap<K, List<V>>());
-
-        // The maps are freed up when a LOAD FACTOR is hit
-        private static final int MAX_LIST_FACTOR = 50;
-        private static final int MAX_LOAD_FACTOR = 32;  // Maximum number of JAXBContext to store
-        
-        /**
-         * @param key
-         * @return removed item from pool or null.
-         */
-        public V get(K key) {
-            List<V> values = getValues(key);
-            synchronized (values) {
-                if (values.size()>0) {
-                    V v = values.remove(values.size()-1);
-                    return v;
-                    
-                }
-            }
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of lookups that found a cached context
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that had to create a context
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of contexts dropped to keep the cache within its size
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of contexts created
+     */
+    public long getContextsCreated() {
+        return contextsCreated.get();
+    }
+
+    /**
+     * @return the number of Marshallers created because none was pooled
+     */
+    public long getMarshallersCreated() {
+        return marshallersCreated.get();
+    }
+
+    /**
+     * @return the number of Unmarshallers created because none was pooled
+     */
+    public long getUnmarshallersCreated() {
+        return unmarshallersCreated.get();
+    }
+
+    private JAXBContext lookup(Object key) {
+        CachedContext cached = cache.get(key);
+        if (cached == null) {
             return null;
         }
+        JAXBContext context = cached.context;
+        if (context != null) {
+            cached.lastUsed = clock.incrementAndGet();
+        }
+        return context;
+    }
 
-        /**
-         * Add item back to pool
-         * @param key
-         * @param value
-         */
-        public void put(K key, V value) {
-            adjustSize();
-            List<V> values = getValues(key);
-            synchronized (values) {
-                if (values.size() < MAX_LIST_FACTOR) {
-                    values.add(value);
-                }
+    private JAXBContext getJAXBContext(Object key, ContextFactory factory) throws JAXBException {
+        CachedContext cached = cache.get(key);
+        if (cached == null) {
+            cached = new CachedContext();
+            CachedContext existing = cache.putIfAbsent(key, cached);
+            if (existing != null) {
+                cached = existing;
+            } else if (cache.size() > contextSize) {
+                evict(cache, cached);
             }
         }
+        cached.lastUsed = clock.incrementAndGet();
+        JAXBContext context = cached.context;
+        if (context != null) {
+            hits.incrementAndGet();
+            return context;
+        }
 
-        /**
-         * Get or create a list of the values for the key
-         * @param key
-         * @return list of values.
-         */
-        private List<V> getValues(K key) {
-            Map<K,List<V>> map = softMap.get();
-            List<V> values = null;
-            if (map != null) {
-                values = map.get(key);
-                if(values !=null) {
-                    return values;
-                }
+        // Only one thread creates the context, the others wait for it
+        synchronized (cached) {
+            context = cached.context;
+            if (context != null) {
+                hits.incrementAndGet();
+                return context;
             }
-            synchronized (this) {
-                if (map != null) {
-                    values = map.get(key);
-                }
-                if (values == null) {
-                    if (map == null) {
-                        map = new ConcurrentHashMap<K, List<V>>();
-                        softMap = 
-                            new SoftReference<Map<K,List<V>>>(map);
-                    }
-                    values = new ArrayList<V>();
-                    map.put(key, values);
+            misses.incrementAndGet();
+            try {
+                context = factory.create();
+            } catch (JAXBException e) {
+                cache.remove(key, cached);
+                throw e;
+            } catch (RuntimeException e) {
+                cache.remove(key, cached);
+                throw e;
+            }
+            contextsCreated.incrementAndGet();
+            cached.context = context;
+            return context;
+        }
+    }
 
-                }
-                return values;
+    private ContextPool getPool(JAXBContext context) {
+        ContextPool pool = pools.get(context);
+        if (pool == null) {
+            pool = new ContextPool();
+            ContextPool existing = pools.putIfAbsent(context, pool);
+            if (existing != null) {
+                pool = existing;
+            } else if (pools.size() > contextSize) {
+                evict(pools, pool);
             }
         }
-        
-        /**
-         * AdjustSize
-         * When the number of keys exceeds the maximum load, half
-         * of the entries are deleted.
-         * 
-         * The assumption is that the JAXBContexts, UnMarshallers, Marshallers, etc. require
-         * a large footprint.
-         */
-        private void adjustSize() {
-            Map<K,List<V>> map = softMap.get();
-            if (map != null && map.size() > MAX_LOAD_FACTOR) {
-                // Remove every other Entry in the map.
-                Iterator it = map.entrySet().iterator();
-                boolean removeIt = false;
-                while (it.hasNext()) {
-                    it.next();
-                    if (removeIt) {
-                        it.remove();
-                    }
-                    removeIt = !removeIt;
-                }
+        pool.lastUsed = clock.incrementAndGet();
+        return pool;
+    }
+
+    /**
+     * Remove the least recently used entry of a map
+     * 
+     * @param map the map
+     * @param keep an entry that must stay
+     */
+    private <K> void evict(Map<K, ? extends CacheEntry> map, CacheEntry keep) {
+        K lruKey = null;
+        long lruTime = Long.MAX_VALUE;
+        for (Map.Entry<K, ? extends CacheEntry> e : map.entrySet()) {
+            CacheEntry entry = e.getValue();
+            if (entry != keep && entry.lastUsed < lruTime) {
+                lruTime = entry.lastUsed;
+                lruKey = e.getKey();
             }
         }
+        if (lruKey != null && map.remove(lruKey) != null) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Creates the context for a key on a cache miss
+     */
+    private static interface ContextFactory {
+        JAXBContext create() throws JAXBException;
+    }
+
+    private static class CacheEntry {
+        protected volatile long lastUsed;
+    }
+
+    /**
+     * A cached context, the context is null while it's being created
+     */
+    private static class CachedContext extends CacheEntry {
+        private volatile JAXBContext context;
+    }
+
+    /**
+     * The idle Marshallers and Unmarshallers of a context. They are held strongly as they are
+     * most needed when the VM is busy; the pools are bounded instead.
+     */
+    private static class ContextPool extends CacheEntry {
+        private final ConcurrentLinkedQueue<Marshaller> marshallers = new ConcurrentLinkedQueue<Marshaller>();
+        private final ConcurrentLinkedQueue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<Unmarshaller>();
+        private final AtomicInteger idleMarshallers = new AtomicInteger();
+        private final AtomicInteger idleUnmarshallers = new AtomicInteger();
     }
 }
@@ -43,7 +43,6 @@ import javax.xml.namespace.QName;
 import org.apache.tuscany.sca.databinding.TransformationContext;
 import org.apache.tuscany.sca.databinding.TransformationException;
 import org.apache.tuscany.sca.databinding.impl.SimpleTypeMapperImpl;
-import org.apache.tuscany.sca.databinding.util.LRUCache;
 import org.apache.tuscany.sca.interfacedef.DataType;
 import org.apache.tuscany.sca.interfacedef.Interface;
 import org.apache.tuscany.sca.interfacedef.Operation;
@@ -189,18 +188,14 @@ public final class JAXBContextHelper {
      * @throws JAXBException
      */
     public static JAXBContext createJAXBContext(Interface intf, boolean useWrapper) throws JAXBException {
-        synchronized (cache) {
-            LRUCache<Object, JAXBContext> map = cache.getCache();
-            Integer key = new Integer(System.identityHashCode(intf));
-            JAXBContext context = map.get(key);
-            if (context != null) {
-                return context;
-            }
-            List<DataType> dataTypes = getDataTypes(intf, useWrapper);
-            context = createJAXBContext(dataTypes);
-            map.put(key, context);
+        Integer key = new Integer(System.identityHashCode(intf));
+        JAXBContext context = cache.getCachedJAXBContext(key);
+        if (context != null) {
             return context;
         }
+        List<DataType> dataTypes = getDataTypes(intf, useWrapper);
+        context = createJAXBContext(dataTypes);
+        return cache.putJAXBContext(key, context);
     }
 
     public static JAXBContext createJAXBContext(List<DataType> dataTypes) throws JAXBException {
@@ -24,6 +24,8 @@ import java.lang.reflect.Type;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 
 import org.apache.tuscany.sca.databinding.WrapperHandler;
@@ -106,8 +108,19 @@ public class JAXBDataBinding extends BaseDataBinding {
             JAXBContext context = JAXBContextHelper.createJAXBContext(dataType);
             arg = JAXBContextHelper.createJAXBElement(context, dataType, arg);
             Document doc = DOMHelper.newDocument();
-            context.createMarshaller().marshal(arg, doc);
-            Object value = context.createUnmarshaller().unmarshal(doc, dataType.getPhysical());
+            Marshaller marshaller = JAXBContextHelper.getMarshaller(context);
+            try {
+                marshaller.marshal(arg, doc);
+            } finally {
+                JAXBContextHelper.releaseJAXBMarshaller(context, marshaller);
+            }
+            Object value;
+            Unmarshaller unmarshaller = JAXBContextHelper.getUnmarshaller(context);
+            try {
+                value = unmarshaller.unmarshal(doc, dataType.getPhysical());
+            } finally {
+                JAXBContextHelper.releaseJAXBUnmarshaller(context, unmarshaller);
+            }
             if (isElement && value instanceof JAXBElement) {
                 return value;
             }
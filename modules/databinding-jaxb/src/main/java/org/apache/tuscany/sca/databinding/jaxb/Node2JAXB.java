@@ -42,8 +42,13 @@ public class Node2JAXB extends BaseTransformer<Node, Object> implements PullTran
             return null;
         try {
             JAXBContext jaxbContext = JAXBContextHelper.createJAXBContext(context, false);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            Object result = unmarshaller.unmarshal(source, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            Unmarshaller unmarshaller = JAXBContextHelper.getUnmarshaller(jaxbContext);
+            Object result;
+            try {
+                result = unmarshaller.unmarshal(source, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            } finally {
+                JAXBContextHelper.releaseJAXBUnmarshaller(jaxbContext, unmarshaller);
+            }
             return JAXBContextHelper.createReturnValue(jaxbContext, context.getTargetDataType(), result);
         } catch (Exception e) {
             throw new TransformationException(e);
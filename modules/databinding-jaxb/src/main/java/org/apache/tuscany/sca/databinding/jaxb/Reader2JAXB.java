@@ -42,9 +42,14 @@ public class Reader2JAXB extends BaseTransformer<Reader, Object> implements
         }
         try {
             JAXBContext jaxbContext = JAXBContextHelper.createJAXBContext(context, false);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            StreamSource streamSource = new StreamSource(source);
-            Object result = unmarshaller.unmarshal(streamSource, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            Unmarshaller unmarshaller = JAXBContextHelper.getUnmarshaller(jaxbContext);
+            Object result;
+            try {
+                StreamSource streamSource = new StreamSource(source);
+                result = unmarshaller.unmarshal(streamSource, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            } finally {
+                JAXBContextHelper.releaseJAXBUnmarshaller(jaxbContext, unmarshaller);
+            }
             return JAXBContextHelper.createReturnValue(jaxbContext, context.getTargetDataType(), result);
         } catch (Exception e) {
             throw new TransformationException(e);
@@ -44,10 +44,15 @@ public class XMLStreamReader2JAXB extends BaseTransformer<XMLStreamReader, Objec
         }
         try {
             JAXBContext jaxbContext = JAXBContextHelper.createJAXBContext(context, false);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
-            // FIXME: [rfeng] If the java type is Object.class, the unmarshalled result will be
-            // a DOM Node
-            Object result = unmarshaller.unmarshal(source, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            Unmarshaller unmarshaller = JAXBContextHelper.getUnmarshaller(jaxbContext);
+            Object result;
+            try {
+                // FIXME: [rfeng] If the java type is Object.class, the unmarshalled result will be
+                // a DOM Node
+                result = unmarshaller.unmarshal(source, JAXBContextHelper.getJavaType(context.getTargetDataType()));
+            } finally {
+                JAXBContextHelper.releaseJAXBUnmarshaller(jaxbContext, unmarshaller);
+            }
             source.close();
             return JAXBContextHelper.createReturnValue(jaxbContext, context.getTargetDataType(), result);
         } catch (Exception e) {
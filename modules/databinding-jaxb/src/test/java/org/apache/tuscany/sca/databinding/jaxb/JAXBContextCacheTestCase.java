@@ -25,6 +25,8 @@ import java.io.StringWriter;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -63,6 +65,35 @@ public class JAXBContextCacheTestCase {
         Assert.assertSame(context5, context6);
     }
 
+    @Test
+    public void testMetricsAndPools() throws JAXBException {
+        JAXBContextCache cache = new JAXBContextCache(1, 1, 1);
+        JAXBContext context1 = cache.getJAXBContext(new Class<?>[] {Address.class, String[].class});
+        Assert.assertSame(context1, cache.getJAXBContext(new Class<?>[] {String[].class, Address.class}));
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getContextsCreated());
+
+        // The cache is bounded
+        cache.getJAXBContext(String[].class);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+
+        Marshaller marshaller = cache.getMarshaller(context1);
+        cache.releaseJAXBMarshaller(context1, marshaller);
+        Assert.assertSame(marshaller, cache.getMarshaller(context1));
+        Assert.assertEquals(1, cache.getMarshallersCreated());
+
+        // Only one idle unmarshaller is kept
+        Unmarshaller unmarshaller1 = cache.getUnmarshaller(context1);
+        Unmarshaller unmarshaller2 = cache.getUnmarshaller(context1);
+        cache.releaseJAXBUnmarshaller(context1, unmarshaller1);
+        cache.releaseJAXBUnmarshaller(context1, unmarshaller2);
+        Assert.assertSame(unmarshaller1, cache.getUnmarshaller(context1));
+        Assert.assertNotSame(unmarshaller2, cache.getUnmarshaller(context1));
+        Assert.assertEquals(3, cache.getUnmarshallersCreated());
+    }
+
     @Test
     public void testLRUCache() {
         LRUCache<String, String> cache = new LRUCache<String, String>(3);
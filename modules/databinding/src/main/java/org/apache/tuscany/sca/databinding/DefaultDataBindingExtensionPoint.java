@@ -25,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,6 +50,18 @@ public class DefaultDataBindingExtensionPoint implements DataBindingExtensionPoi
     private static final Logger logger = Logger.getLogger(DefaultDataBindingExtensionPoint.class.getName());
     private boolean loadedDataBindings;
 
+    // Marks the classes that no databinding recognizes
+    private static final Object NO_DATABINDING = new Object();
+
+    /**
+     * The databinding that recognized the values of a class, by class loader and class name.
+     * The class loaders are weakly referenced and the entries don't refer to the classes, so
+     * the cache doesn't keep the contributions alive
+     */
+    private final Map<ClassLoader, Map<String, Object>> introspectionCache =
+        new WeakHashMap<ClassLoader, Map<String, Object>>();
+    private volatile Map<String, Object> systemIntrospectionCache = new ConcurrentHashMap<String, Object>();
+
     public DefaultDataBindingExtensionPoint() {
     }
 
@@ -75,6 +89,7 @@ public class DefaultDataBindingExtensionPoint implements DataBindingExtensionPoi
         }
         databindings.add(dataBinding);
         bindings.put(dataBinding.getName().toLowerCase(), dataBinding);
+        clearIntrospectionCache();
 
     }
 
@@ -85,6 +100,7 @@ public class DefaultDataBindingExtensionPoint implements DataBindingExtensionPoi
         DataBinding dataBinding = bindings.remove(id.toLowerCase());
         if (dataBinding != null) {
             databindings.remove(dataBinding);
+            clearIntrospectionCache();
         }
         return dataBinding;
     }
@@ -225,6 +241,22 @@ public class DefaultDataBindingExtensionPoint implements DataBindingExtensionPoi
 
     public DataType introspectType(Object value, Operation operation) {
         loadDataBindings();
+        Map<String, Object> cache = null;
+        if (value != null) {
+            // Go straight to the databinding that recognized the class last time
+            Class<?> type = value.getClass();
+            cache = getIntrospectionCache(type.getClassLoader());
+            Object cached = cache.get(type.getName());
+            if (cached == NO_DATABINDING) {
+                return new DataTypeImpl<XMLType>(JavaBeansDataBinding.NAME, type, XMLType.UNKNOWN);
+            } else if (cached != null) {
+                DataType dataType = ((DataBinding)cached).introspect(value, operation);
+                if (dataType != null) {
+                    return dataType;
+                }
+            }
+        }
+
         DataType dataType = null;
         for (DataBinding binding : databindings) {
             // don't introspect for JavaBeansDatabinding as all javatypes will
@@ -235,9 +267,40 @@ public class DefaultDataBindingExtensionPoint implements DataBindingExtensionPoi
                 dataType = binding.introspect(value, operation);
             }
             if (dataType != null) {
+                if (cache != null) {
+                    cache.put(value.getClass().getName(), binding);
+                }
                 return dataType;
             }
         }
+        if (cache != null) {
+            cache.put(value.getClass().getName(), NO_DATABINDING);
+        }
         return new DataTypeImpl<XMLType>(JavaBeansDataBinding.NAME, value.getClass(), XMLType.UNKNOWN);
     }
+
+    private Map<String, Object> getIntrospectionCache(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return systemIntrospectionCache;
+        }
+        synchronized (introspectionCache) {
+            Map<String, Object> cache = introspectionCache.get(classLoader);
+            if (cache == null) {
+                cache = new ConcurrentHashMap<String, Object>();
+                introspectionCache.put(classLoader, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Forget the introspection results when the databindings change. The maps are replaced
+     * rather than emptied so that a concurrent introspection can't put back a stale result.
+     */
+    private void clearIntrospectionCache() {
+        synchronized (introspectionCache) {
+            introspectionCache.clear();
+        }
+        systemIntrospectionCache = new ConcurrentHashMap<String, Object>();
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.datatype.Duration;
+import javax.xml.namespace.QName;
+
+import org.apache.tuscany.sca.databinding.annotation.Immutable;
+import org.apache.tuscany.sca.extensibility.ServiceDeclaration;
+import org.apache.tuscany.sca.extensibility.ServiceDiscovery;
+import org.apache.tuscany.sca.interfacedef.Operation;
+
+/**
+ * The default implementation of the immutable type extension point.
+ *
+ * @version $Rev$ $Date$
+ */
+public class DefaultImmutableTypeExtensionPoint implements ImmutableTypeExtensionPoint {
+    private static final Logger logger = Logger.getLogger(DefaultImmutableTypeExtensionPoint.class.getName());
+
+    private static final Class<?>[] BUILTIN_TYPES =
+        {String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
+         Float.class, Double.class, BigInteger.class, BigDecimal.class, URI.class, UUID.class, QName.class,
+         Locale.class, Class.class};
+
+    // The value types of java.time, they are registered by name as they are not in all the JDKs we run on
+    private static final String[] JAVA_TIME_TYPES =
+        {"java.time.Duration", "java.time.Instant", "java.time.LocalDate", "java.time.LocalDateTime",
+         "java.time.LocalTime", "java.time.MonthDay", "java.time.OffsetDateTime", "java.time.OffsetTime",
+         "java.time.Period", "java.time.Year", "java.time.YearMonth", "java.time.ZonedDateTime",
+         "java.time.ZoneOffset", "java.time.ZoneRegion"};
+
+    private static final Set<String> BUILTIN_TYPE_NAMES = new HashSet<String>();
+    static {
+        for (Class<?> type : BUILTIN_TYPES) {
+            BUILTIN_TYPE_NAMES.add(type.getName());
+        }
+        for (String className : JAVA_TIME_TYPES) {
+            BUILTIN_TYPE_NAMES.add(className);
+        }
+    }
+
+    private final Map<String, Boolean> typeNames = new ConcurrentHashMap<String, Boolean>();
+    // the operations are weakly referenced so that the counts go away with the composites
+    private final Map<Operation, AtomicLong> copiesAvoided =
+        Collections.synchronizedMap(new WeakHashMap<Operation, AtomicLong>());
+    private volatile boolean loadedImmutableTypes;
+
+    public DefaultImmutableTypeExtensionPoint() {
+        for (String className : BUILTIN_TYPE_NAMES) {
+            typeNames.put(className, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Test if a class is immutable without looking at the registered types. This covers the
+     * primitives, the enums, the value types of the JDK and the classes annotated with
+     * {@link Immutable}.
+     *
+     * @param type the class
+     * @return true if the instances of the class can be shared instead of copied
+     */
+    public static boolean isBuiltinImmutable(Class<?> type) {
+        return isPrimitiveOrEnum(type) || BUILTIN_TYPE_NAMES.contains(type.getName()) || isAnnotatedImmutable(type);
+    }
+
+    private static boolean isPrimitiveOrEnum(Class<?> type) {
+        if (type.isPrimitive() || type.isEnum()) {
+            return true;
+        }
+        // The constants of an enum with a body are instances of a subclass
+        Class<?> superclass = type.getSuperclass();
+        return superclass != null && superclass.isEnum();
+    }
+
+    private static boolean isAnnotatedImmutable(Class<?> type) {
+        return Duration.class.isAssignableFrom(type) || type.isAnnotationPresent(Immutable.class);
+    }
+
+    public void addImmutableType(Class<?> type) {
+        addImmutableType(type.getName());
+    }
+
+    public void addImmutableType(String className) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Adding immutable type: " + className);
+        }
+        typeNames.put(className, Boolean.TRUE);
+    }
+
+    public boolean removeImmutableType(String className) {
+        loadImmutableTypes();
+        return typeNames.remove(className) != null;
+    }
+
+    public boolean isImmutable(Class<?> type) {
+        if (isPrimitiveOrEnum(type)) {
+            return true;
+        }
+        loadImmutableTypes();
+        if (typeNames.containsKey(type.getName())) {
+            return true;
+        }
+        return isAnnotatedImmutable(type);
+    }
+
+    public void addCopiesAvoided(Operation operation, int count) {
+        getCopiesAvoidedCounter(operation).addAndGet(count);
+    }
+
+    public AtomicLong getCopiesAvoidedCounter(Operation operation) {
+        synchronized (copiesAvoided) {
+            AtomicLong counter = copiesAvoided.get(operation);
+            if (counter == null) {
+                counter = new AtomicLong();
+                copiesAvoided.put(operation, counter);
+            }
+            return counter;
+        }
+    }
+
+    public long getCopiesAvoided(Operation operation) {
+        AtomicLong counter = copiesAvoided.get(operation);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public Map<Operation, Long> getCopiesAvoided() {
+        Map<Operation, Long> counts = new HashMap<Operation, Long>();
+        synchronized (copiesAvoided) {
+            for (Map.Entry<Operation, AtomicLong> entry : copiesAvoided.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().get());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Dynamically load the immutable types declared under META-INF/services
+     */
+    private void loadImmutableTypes() {
+        if (loadedImmutableTypes) {
+            return;
+        }
+        synchronized (this) {
+            if (loadedImmutableTypes) {
+                return;
+            }
+
+            // Get the immutable type declarations
+            Set<ServiceDeclaration> typeDeclarations;
+            try {
+                typeDeclarations = ServiceDiscovery.getInstance().getServiceDeclarations(Immutable.class.getName());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            // The classes are not loaded, they are matched by name
+            for (ServiceDeclaration typeDeclaration : typeDeclarations) {
+                addImmutableType(typeDeclaration.getClassName());
+            }
+
+            loadedImmutableTypes = true;
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,9 +37,10 @@ import org.apache.tuscany.sca.extensibility.ServiceDiscovery;
  */
 public class DefaultTransformerExtensionPoint implements TransformerExtensionPoint {
     private static final Logger logger = Logger.getLogger(DefaultTransformerExtensionPoint.class.getName());
-    private boolean loadedTransformers;
+    private volatile boolean loadedTransformers;
 
     private final DirectedGraph<Object, Transformer> graph = new DirectedGraph<Object, Transformer>();
+    private final AtomicInteger version = new AtomicInteger();
 
     public DefaultTransformerExtensionPoint() {
     }
@@ -70,6 +72,7 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
                 + lazy);
         }
         graph.addEdge(sourceType, resultType, transformer, weight, publicTransformer);
+        version.incrementAndGet();
     }
 
     public void addTransformer(Transformer transformer, boolean publicTransformer) {
@@ -80,7 +83,15 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
     }
 
     public boolean removeTransformer(String sourceType, String resultType) {
-        return graph.removeEdge(sourceType, resultType);
+        boolean removed = graph.removeEdge(sourceType, resultType);
+        version.incrementAndGet();
+        return removed;
+    }
+
+    public int getVersion() {
+        // loading the declared transformers changes the version, do it before it is read
+        loadTransformers();
+        return version.get();
     }
 
     public Transformer getTransformer(String sourceType, String resultType) {
@@ -92,16 +103,22 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
 
     /**
      * Dynamically load transformers registered under META-INF/services.
-     *
+     * Once they are loaded the transformer graph is frozen so that the transformer
+     * chains are looked up in a precomputed table.
      */
-    private synchronized void loadTransformers() {
+    private void loadTransformers() {
         if (loadedTransformers) {
             return;
         }
-        loadedTransformers = true;
-        loadTransformers(PullTransformer.class);
-        loadTransformers(PushTransformer.class);
-        
+        synchronized (this) {
+            if (loadedTransformers) {
+                return;
+            }
+            loadTransformers(PullTransformer.class);
+            loadTransformers(PushTransformer.class);
+            graph.freeze();
+            loadedTransformers = true;
+        }
     }
 
     /**
@@ -147,15 +164,17 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
 
     /**
      * A transformer facade allowing transformers to be lazily loaded
-     * and initialized.
+     * and initialized. The data pipes, such as StreamDataPipe, are declared
+     * with the pull transformers so the facade opens their pipes too.
      */
-    private static class LazyPullTransformer implements PullTransformer<Object, Object> {
+    private static class LazyPullTransformer implements PullTransformer<Object, Object>,
+        DataPipeTransformer<Object, Object> {
 
         private String source;
         private String target;
         private int weight;
         private ServiceDeclaration transformerDeclaration;
-        private PullTransformer<Object, Object> transformer;
+        private Transformer transformer;
 
         public LazyPullTransformer(String source, String target, int weight, ServiceDeclaration transformerDeclaration) {
             this.source = source;
@@ -170,12 +189,11 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
          * @return The transformer.
          */
         @SuppressWarnings("unchecked")
-        private PullTransformer<Object, Object> getTransformer() {
+        private Transformer getTransformer() {
             if (transformer == null) {
                 try {
-                    Class<PullTransformer<Object, Object>> transformerClass =
-                        (Class<PullTransformer<Object, Object>>)transformerDeclaration.loadClass();
-                    Constructor<PullTransformer<Object, Object>> constructor = transformerClass.getConstructor();
+                    Class<Transformer> transformerClass = (Class<Transformer>)transformerDeclaration.loadClass();
+                    Constructor<Transformer> constructor = transformerClass.getConstructor();
                     transformer = constructor.newInstance();
                 } catch (Exception e) {
                     throw new IllegalStateException(e);
@@ -196,8 +214,14 @@ public class DefaultTransformerExtensionPoint implements TransformerExtensionPoi
             return weight;
         }
 
+        @SuppressWarnings("unchecked")
         public Object transform(Object source, TransformationContext context) {
-            return getTransformer().transform(source, context);
+            return ((PullTransformer<Object, Object>)getTransformer()).transform(source, context);
+        }
+
+        @SuppressWarnings("unchecked")
+        public DataPipe<Object, Object> newInstance() {
+            return ((DataPipeTransformer<Object, Object>)getTransformer()).newInstance();
         }
 
         @Override
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tuscany.sca.interfacedef.Operation;
+
+/**
+ * An extension point for the value types whose instances can be passed by reference when
+ * pass-by-value semantics are enforced, as they can't be changed by the callee.
+ * <p>
+ * Besides the types registered here, the primitive types, the enums and the classes
+ * annotated with {@link org.apache.tuscany.sca.databinding.annotation.Immutable} are
+ * immutable. Extensions can declare their immutable types by listing the class names in
+ * a META-INF/services/org.apache.tuscany.sca.databinding.annotation.Immutable file.
+ *
+ * @version $Rev$ $Date$
+ */
+public interface ImmutableTypeExtensionPoint {
+
+    /**
+     * Register an immutable type
+     * 
+     * @param type the immutable class
+     */
+    void addImmutableType(Class<?> type);
+
+    /**
+     * Register an immutable type by name, the class doesn't need to be loadable. This allows
+     * types of newer JDKs or optional libraries to be declared
+     * 
+     * @param className the name of the immutable class
+     */
+    void addImmutableType(String className);
+
+    /**
+     * Unregister an immutable type
+     * 
+     * @param className the name of the class
+     * @return true if the type was registered
+     */
+    boolean removeImmutableType(String className);
+
+    /**
+     * Test if the instances of a class can be shared instead of copied
+     * 
+     * @param type the class
+     * @return true if the class is immutable
+     */
+    boolean isImmutable(Class<?> type);
+
+    /**
+     * Record the copies that were avoided on an invocation of an operation because the data
+     * was immutable
+     * 
+     * @param operation the invoked operation
+     * @param count the number of data objects that were passed by reference
+     */
+    void addCopiesAvoided(Operation operation, int count);
+
+    /**
+     * Get the counter of the copies avoided for an operation, so that an invocation path can
+     * resolve it once and record the copies without a lookup
+     * 
+     * @param operation the operation
+     * @return the counter of the operation, created if needed
+     */
+    AtomicLong getCopiesAvoidedCounter(Operation operation);
+
+    /**
+     * Get the number of copies avoided for an operation
+     * 
+     * @param operation the operation
+     * @return the number of data objects passed by reference so far
+     */
+    long getCopiesAvoided(Operation operation);
+
+    /**
+     * Get the number of copies avoided for each operation
+     * 
+     * @return a snapshot of the counts keyed by operation
+     */
+    Map<Operation, Long> getCopiesAvoided();
+}
@@ -78,4 +78,12 @@ public interface TransformerExtensionPoint {
      * @return
      */
     List<Transformer> getTransformerChain(String sourceDataBinding, String targetDataBinding);
+
+    /**
+     * Get the number of times transformers have been added or removed. The transformer chains
+     * computed for a given version stay valid as long as the version doesn't change.
+     * 
+     * @return The version of the transformer registry
+     */
+    int getVersion();
 }
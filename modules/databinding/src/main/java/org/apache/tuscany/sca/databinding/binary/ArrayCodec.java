@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+
+/**
+ * The codec of arrays. The elements of the arrays of primitives are written without tags and
+ * byte arrays are written as is.
+ *
+ * @version $Rev$ $Date$
+ */
+final class ArrayCodec extends BinaryCodec {
+    private final BinaryCodec componentCodec;
+    private final Class<?> componentType;
+
+    ArrayCodec(Class<?> type, BinaryCodec componentCodec) {
+        super(type);
+        this.componentCodec = componentCodec;
+        this.componentType = type.getComponentType();
+    }
+
+    @Override
+    void write(BinaryOutput out, Object value) throws IOException {
+        if (componentType == byte.class) {
+            byte[] bytes = (byte[])value;
+            out.writeVarInt(bytes.length);
+            out.writeBytes(bytes, 0, bytes.length);
+            return;
+        }
+        int length = Array.getLength(value);
+        out.writeVarInt(length);
+        if (componentType.isPrimitive()) {
+            for (int i = 0; i < length; i++) {
+                componentCodec.write(out, Array.get(value, i));
+            }
+        } else {
+            out.enter();
+            Object[] array = (Object[])value;
+            for (int i = 0; i < length; i++) {
+                componentCodec.writeValue(out, array[i]);
+            }
+            out.exit();
+        }
+    }
+
+    @Override
+    Object read(BinaryInput in) throws IOException {
+        int length = in.readVarInt();
+        if (componentType == byte.class) {
+            return in.readBytes(length);
+        }
+        // Each element takes at least one byte
+        in.checkLength(length);
+        Object array = Array.newInstance(componentType, length);
+        if (componentType.isPrimitive()) {
+            for (int i = 0; i < length; i++) {
+                Array.set(array, i, componentCodec.read(in));
+            }
+        } else {
+            Object[] objects = (Object[])array;
+            for (int i = 0; i < length; i++) {
+                objects[i] = componentCodec.readValue(in);
+            }
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.beans.IntrospectionException;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata;
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata.BeanProperty;
+
+/**
+ * The codec of beans, including the JAXB generated classes, and of exceptions. The properties
+ * are written in the order of their names, without the names. The collection properties that
+ * only have a getter, as generated by JAXB, are read into the collection returned by the getter.
+ * An exception is written as its message followed by its own properties.
+ *
+ * @version $Rev$ $Date$
+ */
+final class BeanCodec extends BinaryCodec {
+    private static final Set<String> THROWABLE_PROPERTIES = new HashSet<String>();
+    static {
+        try {
+            for (BeanProperty property : BeanMetadata.getMetadata(Throwable.class).getProperties()) {
+                THROWABLE_PROPERTIES.add(property.getName());
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final boolean exception;
+    // Resolved on first use as the properties may refer back to this type
+    private volatile Property[] properties;
+    private Constructor<?> constructor;
+    private boolean messageConstructor;
+
+    BeanCodec(Class<?> type) {
+        super(type);
+        this.exception = Throwable.class.isAssignableFrom(type);
+    }
+
+    @Override
+    void write(BinaryOutput out, Object value) throws IOException {
+        Property[] properties = getProperties();
+        if (constructor == null) {
+            throw new IOException(getType().getName() + " is not mapped to the binary format, "
+                + "it doesn't have a public default constructor");
+        }
+        out.enter();
+        try {
+            if (exception) {
+                String message = ((Throwable)value).getMessage();
+                out.writeByte(message == null ? 0 : 1);
+                if (message != null) {
+                    out.writeString(message);
+                }
+            }
+            for (Property property : properties) {
+                Object propertyValue = property.property.getValue(value);
+                if (property.primitive) {
+                    property.codec.write(out, propertyValue);
+                } else {
+                    property.codec.writeValue(out, propertyValue);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw error(e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw error(e.getMessage(), e.getCause());
+        }
+        out.exit();
+    }
+
+    @Override
+    Object read(BinaryInput in) throws IOException {
+        Property[] properties = getProperties();
+        if (constructor == null) {
+            throw new IOException(getType().getName() + " doesn't have a public default constructor");
+        }
+        try {
+            Object bean;
+            if (exception) {
+                String message = in.readByte() == 0 ? null : in.readString();
+                bean = messageConstructor ? constructor.newInstance(message) : constructor.newInstance();
+            } else {
+                bean = constructor.newInstance();
+            }
+            for (Property property : properties) {
+                if (property.writable) {
+                    Object value = property.primitive ? property.codec.read(in) : property.codec.readValue(in);
+                    property.property.setValue(bean, value);
+                } else {
+                    Object target = property.property.getValue(bean);
+                    if (target == null) {
+                        // Nothing to read into, skip the value
+                        property.codec.readValue(in);
+                    } else {
+                        ((CollectionCodec)property.codec).readInto(in, target);
+                    }
+                }
+            }
+            return bean;
+        } catch (InstantiationException e) {
+            throw error(e.getMessage(), e);
+        } catch (IllegalAccessException e) {
+            throw error(e.getMessage(), e);
+        } catch (InvocationTargetException e) {
+            throw error(e.getMessage(), e.getCause());
+        }
+    }
+
+    private Property[] getProperties() throws IOException {
+        Property[] resolved = properties;
+        if (resolved == null) {
+            resolved = resolve();
+            properties = resolved;
+        }
+        return resolved;
+    }
+
+    private synchronized Property[] resolve() throws IOException {
+        if (properties != null) {
+            return properties;
+        }
+        Class<?> type = getType();
+        List<Property> list = new ArrayList<Property>();
+        try {
+            for (BeanProperty property : BeanMetadata.getMetadata(type).getProperties()) {
+                if (!property.isReadable() || (exception && THROWABLE_PROPERTIES.contains(property.getName()))) {
+                    continue;
+                }
+                Class<?> propertyType = property.getType();
+                boolean collection =
+                    Collection.class.isAssignableFrom(propertyType) || Map.class.isAssignableFrom(propertyType);
+                if (property.isWritable() || collection) {
+                    list.add(new Property(property, getCodec(property.getGenericType())));
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw error(e.getMessage(), e);
+        }
+
+        if (Modifier.isPublic(type.getModifiers()) && !Modifier.isAbstract(type.getModifiers())) {
+            if (exception) {
+                constructor = getConstructor(type, String.class);
+                messageConstructor = constructor != null;
+            }
+            if (constructor == null) {
+                constructor = getConstructor(type);
+            }
+        }
+        return list.toArray(new Property[list.size()]);
+    }
+
+    private static Constructor<?> getConstructor(Class<?> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<?> constructor = type.getConstructor(parameterTypes);
+            return Modifier.isPublic(constructor.getModifiers()) ? constructor : null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static final class Property {
+        private final BeanProperty property;
+        private final BinaryCodec codec;
+        private final boolean primitive;
+        private final boolean writable;
+
+        private Property(BeanProperty property, BinaryCodec codec) {
+            this.property = property;
+            this.codec = codec;
+            this.primitive = property.getType().isPrimitive();
+            this.writable = property.isWritable();
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.javabeans.JavaBeansDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+
+/**
+ * Decode Java data from the binary format, the target data type drives the decoding
+ *
+ * @version $Rev$ $Date$
+ */
+public class Binary2Object extends BaseTransformer<byte[], Object> implements PullTransformer<byte[], Object> {
+
+    public Object transform(byte[] source, TransformationContext context) {
+        DataType<?> targetType = context != null ? context.getTargetDataType() : null;
+        BinaryCodec codec =
+            targetType != null ? BinaryCodec.getCodec(targetType) : BinaryCodec.getCodec(Object.class);
+        ClassLoader classLoader = context != null ? context.getClassLoader() : null;
+        if (classLoader == null) {
+            classLoader = codec.getType().getClassLoader();
+        }
+        if (classLoader == null) {
+            classLoader = Thread.currentThread().getContextClassLoader();
+        }
+        try {
+            return codec.decode(source, classLoader);
+        } catch (IOException e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    protected Class<byte[]> getSourceType() {
+        return byte[].class;
+    }
+
+    @Override
+    protected Class<Object> getTargetType() {
+        return Object.class;
+    }
+
+    @Override
+    public String getSourceDataBinding() {
+        return BinaryDataBinding.NAME;
+    }
+
+    @Override
+    public String getTargetDataBinding() {
+        return JavaBeansDataBinding.NAME;
+    }
+
+    @Override
+    public int getWeight() {
+        return 10;
+    }
+
+}
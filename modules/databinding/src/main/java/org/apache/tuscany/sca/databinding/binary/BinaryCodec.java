@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.tuscany.sca.interfacedef.DataType;
+
+/**
+ * A compact binary encoding of the data of remotable interfaces. The codec of a type is derived
+ * once from its Java type, as declared by the interface, and cached. The encoding relies on both
+ * sides sharing the interface: the values of the declared type are written without any field
+ * name or type information, in the order of the sorted bean properties, and only the values of
+ * a subtype are preceded by a reference to their class.
+ * <p>
+ * Primitives, strings, enums, arrays, collections, maps, the common value types of the JAXB
+ * mappings (BigInteger, BigDecimal, Date, QName, XMLGregorianCalendar, Duration), beans
+ * including the JAXB generated classes, and exceptions are supported. The objects are written
+ * as trees, shared references are written once per reference.
+ *
+ * @version $Rev$ $Date$
+ */
+public abstract class BinaryCodec {
+    private static final int NULL = 0;
+    private static final int DECLARED = 1;
+    private static final int CLASS = 2;
+
+    // A codec refers to its class, and so to the class loader. The codecs of the classes of the
+    // other loaders are softly referenced and keyed by class name so that the cache doesn't keep
+    // the loaders reachable.
+    private static final Map<ClassLoader, ConcurrentMap<String, Reference<BinaryCodec>>> codecs =
+        new WeakHashMap<ClassLoader, ConcurrentMap<String, Reference<BinaryCodec>>>();
+    private static final ConcurrentMap<Class<?>, BinaryCodec> systemCodecs =
+        new ConcurrentHashMap<Class<?>, BinaryCodec>();
+
+    private final Class<?> type;
+
+    BinaryCodec(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Get the codec for a data type of an interface
+     *
+     * @param dataType the data type
+     * @return the codec for its generic Java type
+     */
+    public static BinaryCodec getCodec(DataType<?> dataType) {
+        Type type = dataType.getGenericType();
+        return getCodec(type != null ? type : dataType.getPhysical());
+    }
+
+    /**
+     * Get the codec for a Java type
+     *
+     * @param type a class or a parameterized type such as List&lt;String&gt;
+     * @return the codec
+     */
+    public static BinaryCodec getCodec(Type type) {
+        if (!(type instanceof Class)) {
+            // The codecs of the parameterized types are cheap wrappers around the cached codecs
+            // of their arguments
+            return createCodec(type, getRawClass(type));
+        }
+        Class<?> cls = (Class<?>)type;
+        ClassLoader classLoader = cls.getClassLoader();
+        if (classLoader == null) {
+            BinaryCodec codec = systemCodecs.get(cls);
+            if (codec == null) {
+                codec = createCodec(cls, cls);
+                BinaryCodec existing = systemCodecs.putIfAbsent(cls, codec);
+                if (existing != null) {
+                    codec = existing;
+                }
+            }
+            return codec;
+        }
+        ConcurrentMap<String, Reference<BinaryCodec>> map;
+        synchronized (codecs) {
+            map = codecs.get(classLoader);
+            if (map == null) {
+                map = new ConcurrentHashMap<String, Reference<BinaryCodec>>();
+                codecs.put(classLoader, map);
+            }
+        }
+        Reference<BinaryCodec> ref = map.get(cls.getName());
+        BinaryCodec codec = ref != null ? ref.get() : null;
+        if (codec == null) {
+            codec = createCodec(cls, cls);
+            map.put(cls.getName(), new SoftReference<BinaryCodec>(codec));
+        }
+        return codec;
+    }
+
+    private static BinaryCodec createCodec(Type type, Class<?> cls) {
+        BinaryCodec codec = SimpleTypeCodec.getCodec(cls);
+        if (codec != null) {
+            return codec;
+        }
+        if (cls.isArray()) {
+            Type componentType =
+                type instanceof GenericArrayType ? ((GenericArrayType)type).getGenericComponentType() : cls
+                    .getComponentType();
+            return new ArrayCodec(cls, getCodec(componentType));
+        }
+        if (Collection.class.isAssignableFrom(cls) || Map.class.isAssignableFrom(cls)) {
+            Class<?> collectionType = CollectionCodec.getInstantiableType(cls);
+            if (collectionType != cls) {
+                return getCodec(collectionType);
+            }
+            if (Map.class.isAssignableFrom(cls)) {
+                return new CollectionCodec(cls, getCodec(getTypeArgument(type, 0)), getCodec(getTypeArgument(type, 1)));
+            }
+            return new CollectionCodec(cls, null, getCodec(getTypeArgument(type, 0)));
+        }
+        return new BeanCodec(cls);
+    }
+
+    /**
+     * Encode a value
+     *
+     * @param value the value, an instance of the type of the codec or null
+     * @return the encoded value
+     * @throws IOException if the value can't be encoded
+     */
+    public byte[] encode(Object value) throws IOException {
+        BinaryOutput out = new BinaryOutput();
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a value
+     *
+     * @param data the encoded value
+     * @param classLoader the class loader used to load the classes referred to in the data
+     * @return the value
+     * @throws IOException if the data is malformed or doesn't match the type of the codec
+     */
+    public Object decode(byte[] data, ClassLoader classLoader) throws IOException {
+        BinaryInput in = new BinaryInput(data, 0, data.length, classLoader);
+        Object value = readValue(in);
+        if (in.remaining() != 0) {
+            throw new IOException("Unexpected data after the value: " + in.remaining() + " bytes");
+        }
+        return value;
+    }
+
+    /**
+     * @return the Java type of the codec
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Write a value that isn't null and is accepted by this codec
+     */
+    abstract void write(BinaryOutput out, Object value) throws IOException;
+
+    abstract Object read(BinaryInput in) throws IOException;
+
+    /**
+     * @return true if the value can be written by this codec without naming its class
+     */
+    boolean accepts(Object value) {
+        return value.getClass() == type;
+    }
+
+    /**
+     * Write a value of the declared type of the codec, preceded by a tag telling if it is null,
+     * of the declared type or of a subtype
+     */
+    final void writeValue(BinaryOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeVarInt(NULL);
+        } else if (accepts(value)) {
+            out.writeVarInt(DECLARED);
+            write(out, value);
+        } else {
+            BinaryCodec codec = getCodec(value.getClass());
+            if (!type.isAssignableFrom(codec.type)) {
+                throw new IOException(value.getClass().getName() + " is not a " + type.getName());
+            }
+            out.writeClass(codec.type, CLASS);
+            codec.write(out, value);
+        }
+    }
+
+    final Object readValue(BinaryInput in) throws IOException {
+        int tag = in.readVarInt();
+        if (tag == NULL) {
+            return null;
+        } else if (tag == DECLARED) {
+            return read(in);
+        }
+        Class<?> cls = in.readClass(tag, CLASS);
+        if (!type.isAssignableFrom(cls)) {
+            // Don't instantiate classes that the interface doesn't allow
+            throw new IOException(cls.getName() + " is not a " + type.getName());
+        }
+        return getCodec(cls).read(in);
+    }
+
+    static IOException error(String message, Throwable cause) {
+        IOException e = new IOException(message);
+        e.initCause(cause);
+        return e;
+    }
+
+    private static Type getTypeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType)type).getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    static Class<?> getRawClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>)type;
+        } else if (type instanceof ParameterizedType) {
+            return getRawClass(((ParameterizedType)type).getRawType());
+        } else if (type instanceof GenericArrayType) {
+            Class<?> componentType = getRawClass(((GenericArrayType)type).getGenericComponentType());
+            return Array.newInstance(componentType, 0).getClass();
+        } else if (type instanceof TypeVariable) {
+            return getRawClass(((TypeVariable<?>)type).getBounds()[0]);
+        } else if (type instanceof WildcardType) {
+            return getRawClass(((WildcardType)type).getUpperBounds()[0]);
+        }
+        return Object.class;
+    }
+
+}
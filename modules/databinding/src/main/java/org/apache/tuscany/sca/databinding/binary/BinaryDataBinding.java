@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import org.apache.tuscany.sca.databinding.impl.BaseDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
+
+/**
+ * A DataBinding for Java data encoded in the compact binary format of {@link BinaryCodec}. The
+ * data is a byte[], so the databinding is never introspected from a Java type: a binding that
+ * supports the binary format selects it for the data types of its interface contract.
+ *
+ * @version $Rev$ $Date$
+ */
+public class BinaryDataBinding extends BaseDataBinding {
+    public static final String NAME = "databinding:binary";
+
+    public BinaryDataBinding() {
+        super(NAME, byte[].class);
+    }
+
+    @Override
+    public boolean introspect(DataType type, Operation operation) {
+        return false;
+    }
+
+    @Override
+    public DataType introspect(Object value, Operation operation) {
+        return null;
+    }
+
+}
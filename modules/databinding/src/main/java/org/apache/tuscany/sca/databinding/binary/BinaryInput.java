@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The input of the binary codecs, see {@link BinaryOutput}
+ *
+ * @version $Rev$ $Date$
+ */
+final class BinaryInput {
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+    private final ClassLoader classLoader;
+    private List<Class<?>> classes;
+
+    BinaryInput(byte[] buffer, int offset, int length, ClassLoader classLoader) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+        this.classLoader = classLoader;
+    }
+
+    int remaining() {
+        return limit - position;
+    }
+
+    int readByte() throws IOException {
+        if (position >= limit) {
+            throw new EOFException();
+        }
+        return buffer[position++];
+    }
+
+    byte[] readBytes(int length) throws IOException {
+        checkLength(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length int");
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length long");
+    }
+
+    int readInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readFixedInt() throws IOException {
+        checkLength(4);
+        int value =
+            ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+                | ((buffer[position + 2] & 0xFF) << 8)
+                | (buffer[position + 3] & 0xFF);
+        position += 4;
+        return value;
+    }
+
+    long readFixedLong() throws IOException {
+        return ((long)readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+    }
+
+    String readString() throws IOException {
+        int length = readVarInt();
+        checkLength(length);
+        String value = new String(buffer, position, length, "UTF-8");
+        position += length;
+        return value;
+    }
+
+    /**
+     * Read a reference to a class written by {@link BinaryOutput#writeClass(Class, int)}
+     *
+     * @param value the value read for the reference
+     * @param tag the tag of the first class reference
+     */
+    Class<?> readClass(int value, int tag) throws IOException {
+        if (classes == null) {
+            classes = new ArrayList<Class<?>>();
+        }
+        if (value == tag) {
+            String name = readString();
+            Class<?> cls;
+            try {
+                cls = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                IOException ex = new IOException("Class not found: " + name);
+                ex.initCause(e);
+                throw ex;
+            }
+            classes.add(cls);
+            return cls;
+        }
+        int index = value - tag - 1;
+        if (index < 0 || index >= classes.size()) {
+            throw new IOException("Invalid class reference: " + index);
+        }
+        return classes.get(index);
+    }
+
+    /**
+     * Check that a length read from the data isn't larger than the data left, so that a corrupted
+     * length doesn't cause a large allocation
+     */
+    void checkLength(int length) throws IOException {
+        if (length < 0 || length > limit - position) {
+            throw new EOFException("Invalid length: " + length);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The output of the binary codecs. Integers are written as variable length quantities so that
+ * the small values that dominate most payloads take one or two bytes, and each class that has
+ * to be named in the data is written once and then referred to by index.
+ *
+ * @version $Rev$ $Date$
+ */
+final class BinaryOutput {
+    private static final int MAX_DEPTH = 512;
+
+    private byte[] buffer = new byte[256];
+    private int count;
+    private int depth;
+    private Map<Class<?>, Integer> classes;
+
+    void writeByte(int b) {
+        ensureCapacity(1);
+        buffer[count++] = (byte)b;
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * Write an unsigned variable length int
+     */
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[count++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte)value;
+    }
+
+    /**
+     * Write an unsigned variable length long
+     */
+    void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[count++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte)value;
+    }
+
+    /**
+     * Write a signed int, zigzag encoded so that small negative values stay short
+     */
+    void writeInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    void writeLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeFixedInt(int value) {
+        ensureCapacity(4);
+        buffer[count++] = (byte)(value >>> 24);
+        buffer[count++] = (byte)(value >>> 16);
+        buffer[count++] = (byte)(value >>> 8);
+        buffer[count++] = (byte)value;
+    }
+
+    void writeFixedLong(long value) {
+        writeFixedInt((int)(value >>> 32));
+        writeFixedInt((int)value);
+    }
+
+    /**
+     * Write a string as its length in bytes followed by its UTF-8 encoding
+     */
+    void writeString(String value) {
+        int length = value.length();
+        // ASCII strings are written without an encoder
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            writeVarInt(length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buffer[count++] = (byte)value.charAt(i);
+            }
+        } else {
+            byte[] bytes;
+            try {
+                bytes = value.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Write a reference to a class: its name the first time, its index afterwards
+     *
+     * @param tag the tag of the first class reference, the following tags are the indexes
+     */
+    void writeClass(Class<?> cls, int tag) {
+        if (classes == null) {
+            classes = new IdentityHashMap<Class<?>, Integer>();
+        }
+        Integer index = classes.get(cls);
+        if (index != null) {
+            writeVarInt(tag + 1 + index);
+        } else {
+            classes.put(cls, classes.size());
+            writeVarInt(tag);
+            writeString(cls.getName());
+        }
+    }
+
+    /**
+     * Enter a nested value
+     *
+     * @throws IOException if the values are nested too deeply, which is usually a cycle
+     */
+    void enter() throws IOException {
+        if (++depth > MAX_DEPTH) {
+            throw new IOException("The data is nested more than " + MAX_DEPTH + " levels deep, it may contain a cycle");
+        }
+    }
+
+    void exit() {
+        depth--;
+    }
+
+    byte[] toByteArray() {
+        byte[] bytes = new byte[count];
+        System.arraycopy(buffer, 0, bytes, 0, count);
+        return bytes;
+    }
+
+    private void ensureCapacity(int length) {
+        if (count + length > buffer.length) {
+            byte[] larger = new byte[Math.max(buffer.length << 1, count + length)];
+            System.arraycopy(buffer, 0, larger, 0, count);
+            buffer = larger;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The codec of collections and maps. The elements are written with the codecs of the type
+ * arguments of the declared type, for example the codec of String for a List&lt;String&gt;.
+ * A collection declared with an interface type is read into the usual implementation of the
+ * interface.
+ *
+ * @version $Rev$ $Date$
+ */
+final class CollectionCodec extends BinaryCodec {
+    private final BinaryCodec keyCodec;
+    private final BinaryCodec elementCodec;
+    private final boolean map;
+    private final boolean declaredByInterface;
+
+    /**
+     * @param type the collection or map type
+     * @param keyCodec the codec of the keys of a map, null for a collection
+     * @param elementCodec the codec of the elements or of the values of a map
+     */
+    CollectionCodec(Class<?> type, BinaryCodec keyCodec, BinaryCodec elementCodec) {
+        super(type);
+        this.keyCodec = keyCodec;
+        this.elementCodec = elementCodec;
+        this.map = Map.class.isAssignableFrom(type);
+        this.declaredByInterface = type.isInterface() || Modifier.isAbstract(type.getModifiers());
+    }
+
+    /**
+     * Get the type used to read a collection or a map. The classes that can't be instantiated,
+     * such as the unmodifiable views of java.util.Collections, are read as their interface.
+     */
+    static Class<?> getInstantiableType(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return type;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                if (Modifier.isPublic(type.getConstructor().getModifiers())) {
+                    return type;
+                }
+            } catch (NoSuchMethodException e) {
+                // Fall back to the interface
+            }
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return SortedMap.class.isAssignableFrom(type) ? SortedMap.class : Map.class;
+        } else if (List.class.isAssignableFrom(type)) {
+            return List.class;
+        } else if (SortedSet.class.isAssignableFrom(type)) {
+            return SortedSet.class;
+        } else if (Set.class.isAssignableFrom(type)) {
+            return Set.class;
+        }
+        return Collection.class;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+        return declaredByInterface ? getType().isInstance(value) : value.getClass() == getType();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void write(BinaryOutput out, Object value) throws IOException {
+        out.enter();
+        if (map) {
+            Map<Object, Object> entries = (Map<Object, Object>)value;
+            out.writeVarInt(entries.size());
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                keyCodec.writeValue(out, entry.getKey());
+                elementCodec.writeValue(out, entry.getValue());
+            }
+        } else {
+            Collection<Object> elements = (Collection<Object>)value;
+            out.writeVarInt(elements.size());
+            for (Object element : elements) {
+                elementCodec.writeValue(out, element);
+            }
+        }
+        out.exit();
+    }
+
+    @Override
+    Object read(BinaryInput in) throws IOException {
+        int size = in.readVarInt();
+        in.checkLength(size);
+        if (map) {
+            Map<Object, Object> entries = newMap();
+            for (int i = 0; i < size; i++) {
+                Object key = keyCodec.readValue(in);
+                entries.put(key, elementCodec.readValue(in));
+            }
+            return entries;
+        } else {
+            Collection<Object> elements = newCollection();
+            for (int i = 0; i < size; i++) {
+                elements.add(elementCodec.readValue(in));
+            }
+            return elements;
+        }
+    }
+
+    /**
+     * Read the elements into an existing collection or map, for the properties of JAXB beans that
+     * only have a getter
+     */
+    @SuppressWarnings("unchecked")
+    void readInto(BinaryInput in, Object target) throws IOException {
+        Object value = readValue(in);
+        if (value == null) {
+            return;
+        }
+        if (map) {
+            ((Map<Object, Object>)target).putAll((Map<Object, Object>)value);
+        } else {
+            ((Collection<Object>)target).addAll((Collection<Object>)value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<Object> newCollection() throws IOException {
+        Class<?> type = getType();
+        if (!declaredByInterface) {
+            return (Collection<Object>)newInstance(type);
+        } else if (type.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<Object>();
+        } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+            return new LinkedHashSet<Object>();
+        } else if (type.isAssignableFrom(TreeSet.class)) {
+            return new TreeSet<Object>();
+        } else if (type.isAssignableFrom(LinkedList.class)) {
+            return new LinkedList<Object>();
+        }
+        throw new IOException("Unsupported collection type: " + type.getName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> newMap() throws IOException {
+        Class<?> type = getType();
+        if (!declaredByInterface) {
+            return (Map<Object, Object>)newInstance(type);
+        } else if (type.isAssignableFrom(LinkedHashMap.class)) {
+            return new LinkedHashMap<Object, Object>();
+        } else if (type.isAssignableFrom(TreeMap.class)) {
+            return new TreeMap<Object, Object>();
+        }
+        throw new IOException("Unsupported map type: " + type.getName());
+    }
+
+    private static Object newInstance(Class<?> type) throws IOException {
+        try {
+            return type.newInstance();
+        } catch (Exception e) {
+            throw error("Unable to create an instance of " + type.getName(), e);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.javabeans.JavaBeansDataBinding;
+import org.apache.tuscany.sca.interfacedef.DataType;
+
+/**
+ * Encode Java data, beans, simple types or exceptions, into the binary format
+ *
+ * @version $Rev$ $Date$
+ */
+public class Object2Binary extends BaseTransformer<Object, byte[]> implements PullTransformer<Object, byte[]> {
+
+    public byte[] transform(Object source, TransformationContext context) {
+        DataType<?> sourceType = context != null ? context.getSourceDataType() : null;
+        BinaryCodec codec =
+            sourceType != null ? BinaryCodec.getCodec(sourceType) : BinaryCodec.getCodec(Object.class);
+        try {
+            return codec.encode(source);
+        } catch (IOException e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    protected Class<Object> getSourceType() {
+        return Object.class;
+    }
+
+    @Override
+    protected Class<byte[]> getTargetType() {
+        return byte[].class;
+    }
+
+    @Override
+    public String getSourceDataBinding() {
+        return JavaBeansDataBinding.NAME;
+    }
+
+    @Override
+    public String getTargetDataBinding() {
+        return BinaryDataBinding.NAME;
+    }
+
+    @Override
+    public int getWeight() {
+        return 10;
+    }
+
+}
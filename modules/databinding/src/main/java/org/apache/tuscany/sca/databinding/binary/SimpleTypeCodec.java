@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.Duration;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+/**
+ * The codecs of the primitive types, their wrappers, strings, enums and the value types of the
+ * JAXB mappings
+ *
+ * @version $Rev$ $Date$
+ */
+final class SimpleTypeCodec extends BinaryCodec {
+    private static final int BOOLEAN = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int CHAR = 3;
+    private static final int INT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int STRING = 8;
+    private static final int BIG_INTEGER = 9;
+    private static final int BIG_DECIMAL = 10;
+    private static final int DATE = 11;
+    private static final int CALENDAR = 12;
+    private static final int QNAME = 13;
+    private static final int XML_CALENDAR = 14;
+    private static final int DURATION = 15;
+    private static final int URI_TYPE = 16;
+    private static final int ENUM = 17;
+
+    private static DatatypeFactory datatypeFactory;
+
+    private final int kind;
+    private final Class<?> valueType;
+    private final Object[] enumConstants;
+
+    private SimpleTypeCodec(Class<?> type, Class<?> valueType, int kind) {
+        super(type);
+        this.kind = kind;
+        this.valueType = valueType;
+        this.enumConstants = kind == ENUM ? valueType.getEnumConstants() : null;
+    }
+
+    /**
+     * @return the codec of a simple type, or null if the type isn't a simple type
+     */
+    static SimpleTypeCodec getCodec(Class<?> type) {
+        if (type.isPrimitive()) {
+            if (type == boolean.class) {
+                return new SimpleTypeCodec(type, Boolean.class, BOOLEAN);
+            } else if (type == byte.class) {
+                return new SimpleTypeCodec(type, Byte.class, BYTE);
+            } else if (type == short.class) {
+                return new SimpleTypeCodec(type, Short.class, SHORT);
+            } else if (type == char.class) {
+                return new SimpleTypeCodec(type, Character.class, CHAR);
+            } else if (type == int.class) {
+                return new SimpleTypeCodec(type, Integer.class, INT);
+            } else if (type == long.class) {
+                return new SimpleTypeCodec(type, Long.class, LONG);
+            } else if (type == float.class) {
+                return new SimpleTypeCodec(type, Float.class, FLOAT);
+            } else if (type == double.class) {
+                return new SimpleTypeCodec(type, Double.class, DOUBLE);
+            }
+            return null;
+        }
+        int kind = getKind(type);
+        if (kind == -1) {
+            if (Enum.class.isAssignableFrom(type) && type != Enum.class) {
+                // The constants with a body are subclasses of the enum
+                Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+                return new SimpleTypeCodec(enumType, enumType, ENUM);
+            } else if (XMLGregorianCalendar.class.isAssignableFrom(type)) {
+                return new SimpleTypeCodec(XMLGregorianCalendar.class, XMLGregorianCalendar.class, XML_CALENDAR);
+            } else if (Duration.class.isAssignableFrom(type)) {
+                return new SimpleTypeCodec(Duration.class, Duration.class, DURATION);
+            } else if (Calendar.class.isAssignableFrom(type)) {
+                return new SimpleTypeCodec(Calendar.class, Calendar.class, CALENDAR);
+            }
+            return null;
+        }
+        return new SimpleTypeCodec(type, type, kind);
+    }
+
+    private static int getKind(Class<?> type) {
+        if (type == String.class) {
+            return STRING;
+        } else if (type == Integer.class) {
+            return INT;
+        } else if (type == Long.class) {
+            return LONG;
+        } else if (type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == Double.class) {
+            return DOUBLE;
+        } else if (type == Float.class) {
+            return FLOAT;
+        } else if (type == Short.class) {
+            return SHORT;
+        } else if (type == Byte.class) {
+            return BYTE;
+        } else if (type == Character.class) {
+            return CHAR;
+        } else if (type == BigInteger.class) {
+            return BIG_INTEGER;
+        } else if (type == BigDecimal.class) {
+            return BIG_DECIMAL;
+        } else if (type == Date.class) {
+            return DATE;
+        } else if (type == QName.class) {
+            return QNAME;
+        } else if (type == URI.class) {
+            return URI_TYPE;
+        }
+        return -1;
+    }
+
+    @Override
+    boolean accepts(Object value) {
+        switch (kind) {
+            case ENUM:
+            case CALENDAR:
+            case XML_CALENDAR:
+            case DURATION:
+                return valueType.isInstance(value);
+            default:
+                return value.getClass() == valueType;
+        }
+    }
+
+    @Override
+    void write(BinaryOutput out, Object value) throws IOException {
+        switch (kind) {
+            case BOOLEAN:
+                out.writeByte(((Boolean)value).booleanValue() ? 1 : 0);
+                break;
+            case BYTE:
+                out.writeByte(((Byte)value).byteValue());
+                break;
+            case SHORT:
+                out.writeInt(((Short)value).shortValue());
+                break;
+            case CHAR:
+                out.writeVarInt(((Character)value).charValue());
+                break;
+            case INT:
+                out.writeInt(((Integer)value).intValue());
+                break;
+            case LONG:
+                out.writeLong(((Long)value).longValue());
+                break;
+            case FLOAT:
+                out.writeFixedInt(Float.floatToIntBits(((Float)value).floatValue()));
+                break;
+            case DOUBLE:
+                out.writeFixedLong(Double.doubleToLongBits(((Double)value).doubleValue()));
+                break;
+            case STRING:
+                out.writeString((String)value);
+                break;
+            case BIG_INTEGER:
+                writeBigInteger(out, (BigInteger)value);
+                break;
+            case BIG_DECIMAL:
+                BigDecimal decimal = (BigDecimal)value;
+                writeBigInteger(out, decimal.unscaledValue());
+                out.writeInt(decimal.scale());
+                break;
+            case DATE:
+                out.writeLong(((Date)value).getTime());
+                break;
+            case CALENDAR:
+                Calendar calendar = (Calendar)value;
+                out.writeLong(calendar.getTimeInMillis());
+                out.writeString(calendar.getTimeZone().getID());
+                break;
+            case QNAME:
+                QName qname = (QName)value;
+                out.writeString(qname.getNamespaceURI());
+                out.writeString(qname.getLocalPart());
+                out.writeString(qname.getPrefix());
+                break;
+            case XML_CALENDAR:
+                out.writeString(((XMLGregorianCalendar)value).toXMLFormat());
+                break;
+            case DURATION:
+            case URI_TYPE:
+                out.writeString(value.toString());
+                break;
+            case ENUM:
+                out.writeVarInt(((Enum<?>)value).ordinal());
+                break;
+        }
+    }
+
+    @Override
+    Object read(BinaryInput in) throws IOException {
+        switch (kind) {
+            case BOOLEAN:
+                return in.readByte() != 0 ? Boolean.TRUE : Boolean.FALSE;
+            case BYTE:
+                return Byte.valueOf((byte)in.readByte());
+            case SHORT:
+                return Short.valueOf((short)in.readInt());
+            case CHAR:
+                return Character.valueOf((char)in.readVarInt());
+            case INT:
+                return Integer.valueOf(in.readInt());
+            case LONG:
+                return Long.valueOf(in.readLong());
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat(in.readFixedInt()));
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(in.readFixedLong()));
+            case STRING:
+                return in.readString();
+            case BIG_INTEGER:
+                return readBigInteger(in);
+            case BIG_DECIMAL:
+                BigInteger unscaled = readBigInteger(in);
+                return new BigDecimal(unscaled, in.readInt());
+            case DATE:
+                return new Date(in.readLong());
+            case CALENDAR:
+                long time = in.readLong();
+                GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone(in.readString()));
+                calendar.setTimeInMillis(time);
+                return calendar;
+            case QNAME:
+                String namespace = in.readString();
+                String localPart = in.readString();
+                return new QName(namespace, localPart, in.readString());
+            case XML_CALENDAR:
+                return getDatatypeFactory().newXMLGregorianCalendar(in.readString());
+            case DURATION:
+                return getDatatypeFactory().newDuration(in.readString());
+            case URI_TYPE:
+                return URI.create(in.readString());
+            case ENUM:
+                int ordinal = in.readVarInt();
+                if (ordinal < 0 || ordinal >= enumConstants.length) {
+                    throw new IOException("Invalid ordinal " + ordinal + " for " + valueType.getName());
+                }
+                return enumConstants[ordinal];
+        }
+        throw new IllegalStateException();
+    }
+
+    private static void writeBigInteger(BinaryOutput out, BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        out.writeVarInt(bytes.length);
+        out.writeBytes(bytes, 0, bytes.length);
+    }
+
+    private static BigInteger readBigInteger(BinaryInput in) throws IOException {
+        return new BigInteger(in.readBytes(in.readVarInt()));
+    }
+
+    private static synchronized DatatypeFactory getDatatypeFactory() throws IOException {
+        if (datatypeFactory == null) {
+            try {
+                datatypeFactory = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw error(e.getMessage(), e);
+            }
+        }
+        return datatypeFactory;
+    }
+
+}
@@ -79,6 +79,11 @@ public class DirectedGraph<V, E> implements Cloneable {
     private final Map<VertexPair, Path> paths = new ConcurrentHashMap<VertexPair, Path>();
     private final Path NULL_PATH = new Path();
 
+    /**
+     * The precomputed shortest paths once the graph is frozen, null otherwise
+     */
+    private volatile PathTable pathTable;
+
     /**
      * Vertex of a graph
      */
@@ -198,7 +203,7 @@ public class DirectedGraph<V, E> implements Cloneable {
         }
     }
 
-    public void addEdge(V source, V target, E edgeValue, int weight, boolean publicEdge) {
+    public synchronized void addEdge(V source, V target, E edgeValue, int weight, boolean publicEdge) {
         Vertex s = getVertex(source);
         if (s == null) {
             s = new Vertex(source);
@@ -212,6 +217,7 @@ public class DirectedGraph<V, E> implements Cloneable {
         Edge edge = new Edge(s, t, edgeValue, weight, publicEdge);
         s.outEdges.put(t, edge);
         t.inEdges.put(s, edge);
+        graphChanged();
     }
 
     public void addEdge(V soure, V target) {
@@ -223,7 +229,7 @@ public class DirectedGraph<V, E> implements Cloneable {
         return s;
     }
 
-    public boolean removeEdge(V source, V target) {
+    public synchronized boolean removeEdge(V source, V target) {
         Vertex s = getVertex(source);
         if (s == null) {
             return false;
@@ -234,22 +240,54 @@ public class DirectedGraph<V, E> implements Cloneable {
             return false;
         }
 
-        return s.outEdges.remove(t) != null && t.inEdges.remove(s) != null;
+        boolean removed = s.outEdges.remove(t) != null && t.inEdges.remove(s) != null;
+        graphChanged();
+        return removed;
 
     }
 
-    public void removeEdge(Edge edge) {
+    public synchronized void removeEdge(Edge edge) {
         edge.sourceVertex.outEdges.remove(edge.targetVertex);
         edge.targetVertex.inEdges.remove(edge.sourceVertex);
+        graphChanged();
     }
 
-    public void removeVertex(Vertex vertex) {
+    public synchronized void removeVertex(Vertex vertex) {
         vertices.remove(vertex.getValue());
         for (Edge e : new ArrayList<Edge>(vertex.outEdges.values())) {
-            removeEdge(e);
+            e.targetVertex.inEdges.remove(vertex);
         }
         for (Edge e : new ArrayList<Edge>(vertex.inEdges.values())) {
-            removeEdge(e);
+            e.sourceVertex.outEdges.remove(vertex);
+        }
+        vertex.outEdges.clear();
+        vertex.inEdges.clear();
+        graphChanged();
+    }
+
+    /**
+     * Freeze the graph: the shortest paths between all the vertices are computed at once
+     * and looked up in a table from then on. The lookups don't touch the vertices, so they
+     * are safe while the graph is changed; each change rebuilds the table and swaps it in.
+     */
+    public synchronized void freeze() {
+        pathTable = new PathTable();
+    }
+
+    /**
+     * @return true if the shortest paths are precomputed
+     */
+    public boolean isFrozen() {
+        return pathTable != null;
+    }
+
+    /**
+     * Drop the paths computed for the previous shape of the graph
+     */
+    private void graphChanged() {
+        paths.clear();
+        if (pathTable != null) {
+            pathTable = new PathTable();
         }
     }
 
@@ -258,6 +296,10 @@ public class DirectedGraph<V, E> implements Cloneable {
     }
 
     public Edge getEdge(V source, V target) {
+        PathTable table = pathTable;
+        if (table != null) {
+            return table.getEdge(source, target);
+        }
         Vertex sv = getVertex(source);
         if (sv == null) {
             return null;
@@ -280,6 +322,10 @@ public class DirectedGraph<V, E> implements Cloneable {
      * @return The shortest path
      */
     public Path getShortestPath(V sourceValue, V targetValue) {
+        PathTable table = pathTable;
+        if (table != null) {
+            return table.getPath(sourceValue, targetValue);
+        }
         Vertex source = getVertex(sourceValue);
         if (source == null) {
             return null;
@@ -394,6 +440,137 @@ public class DirectedGraph<V, E> implements Cloneable {
         return path;
     }
 
+    /**
+     * The shortest paths between all the pairs of vertices, indexed by the positions of the
+     * vertices. It's immutable once built.
+     */
+    private final class PathTable {
+        private final Map<V, Integer> indexes = new HashMap<V, Integer>();
+        private final int size;
+        private final Edge[] edges;
+        private final Path[] shortestPaths;
+
+        @SuppressWarnings("unchecked")
+        private PathTable() {
+            size = vertices.size();
+            List<Vertex> vertexList = new ArrayList<Vertex>(vertices.values());
+            Map<Vertex, Integer> vertexIndexes = new HashMap<Vertex, Integer>();
+            for (int i = 0; i < size; i++) {
+                Vertex v = vertexList.get(i);
+                indexes.put(v.value, i);
+                vertexIndexes.put(v, i);
+            }
+            edges = (Edge[])new DirectedGraph.Edge[size * size];
+            shortestPaths = (Path[])new DirectedGraph.Path[size * size];
+            for (Vertex v : vertexList) {
+                int i = vertexIndexes.get(v);
+                for (Edge e : v.outEdges.values()) {
+                    edges[i * size + vertexIndexes.get(e.targetVertex)] = e;
+                }
+            }
+
+            long[] distances = new long[size];
+            Edge[] previous = (Edge[])new DirectedGraph.Edge[size];
+            boolean[] done = new boolean[size];
+            for (int s = 0; s < size; s++) {
+                computePublicDistances(s, vertexIndexes, distances, previous, done);
+                for (int t = 0; t < size; t++) {
+                    shortestPaths[s * size + t] = computePath(s, t, vertexList, vertexIndexes, distances, previous);
+                }
+            }
+        }
+
+        /**
+         * Dijkstra's algorithm from the source over the public edges
+         */
+        private void computePublicDistances(int source,
+                                            Map<Vertex, Integer> vertexIndexes,
+                                            long[] distances,
+                                            Edge[] previous,
+                                            boolean[] done) {
+            for (int i = 0; i < size; i++) {
+                distances[i] = Integer.MAX_VALUE;
+                previous[i] = null;
+                done[i] = false;
+            }
+            distances[source] = 0;
+            for (int n = 0; n < size; n++) {
+                int u = -1;
+                for (int i = 0; i < size; i++) {
+                    if (!done[i] && distances[i] < Integer.MAX_VALUE && (u == -1 || distances[i] < distances[u])) {
+                        u = i;
+                    }
+                }
+                if (u == -1) {
+                    break;
+                }
+                done[u] = true;
+                for (int v = 0; v < size; v++) {
+                    Edge edge = edges[u * size + v];
+                    if (edge != null && edge.isPublic() && distances[u] + edge.weight < distances[v]) {
+                        distances[v] = distances[u] + edge.weight;
+                        previous[v] = edge;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Same rules as the search in getShortestPath(): a direct edge wins regardless of the
+         * weight, and a private edge can only be the last edge of a path
+         */
+        private Path computePath(int source,
+                                 int target,
+                                 List<Vertex> vertexList,
+                                 Map<Vertex, Integer> vertexIndexes,
+                                 long[] distances,
+                                 Edge[] previous) {
+            Path path = new Path();
+            Edge direct = edges[source * size + target];
+            if (direct != null) {
+                path.addEdge(direct);
+                return path;
+            }
+            if (source == target) {
+                return path;
+            }
+            Edge last = null;
+            long distance = Integer.MAX_VALUE;
+            for (Edge edge : vertexList.get(target).inEdges.values()) {
+                if (edge.sourceVertex == edge.targetVertex) {
+                    continue;
+                }
+                int u = vertexIndexes.get(edge.sourceVertex);
+                if (distances[u] + edge.weight < distance) {
+                    distance = distances[u] + edge.weight;
+                    last = edge;
+                }
+            }
+            if (last == null) {
+                return null;
+            }
+            path.addEdge(last);
+            Edge edge = previous[vertexIndexes.get(last.sourceVertex)];
+            while (edge != null) {
+                path.addEdge(edge);
+                edge = previous[vertexIndexes.get(edge.sourceVertex)];
+            }
+            return path;
+        }
+
+        private Edge getEdge(V source, V target) {
+            Integer s = indexes.get(source);
+            Integer t = indexes.get(target);
+            return (s == null || t == null) ? null : edges[s * size + t];
+        }
+
+        private Path getPath(V source, V target) {
+            Integer s = indexes.get(source);
+            Integer t = indexes.get(target);
+            return (s == null || t == null) ? null : shortestPaths[s * size + t];
+        }
+    }
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer();
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tuscany.sca.databinding.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tuscany.sca.databinding.DataPipe;
+import org.apache.tuscany.sca.databinding.DataPipeTransformer;
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.PushTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.Transformer;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+
+/**
+ * A compiled transformation from one data type to another: the chain of transformers found
+ * in the transformer graph together with the data types of each step, so that running it
+ * involves no graph search.
+ *
+ * @version $Rev$ $Date$
+ */
+class MediationPlan {
+    private final Transformer[] transformers;
+    private final DataType[] sourceTypes;
+    private final DataType[] targetTypes;
+
+    /**
+     * The version of the transformer registry the transformer chain was found in
+     */
+    private final int version;
+
+    @SuppressWarnings("unchecked")
+    MediationPlan(DataType sourceDataType, DataType targetDataType, List<Transformer> path, int version) {
+        this.version = version;
+        int size = path.size();
+        transformers = path.toArray(new Transformer[size]);
+        sourceTypes = new DataType[size];
+        targetTypes = new DataType[size];
+        for (int i = 0; i < size; i++) {
+            Transformer transformer = transformers[i];
+            // For intermediate nodes, the data type is the data binding of the transformer
+            sourceTypes[i] =
+                (i == 0) ? sourceDataType : new DataTypeImpl<Object>(transformer.getSourceDataBinding(), Object.class,
+                                                                     sourceDataType.getLogical());
+            targetTypes[i] =
+                (i == size - 1) ? targetDataType : new DataTypeImpl<Object>(transformer.getTargetDataBinding(),
+                                                                            Object.class, targetDataType.getLogical());
+        }
+    }
+
+    /**
+     * @return the version of the transformer registry the plan was compiled for
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Run the plan
+     *
+     * @param source the data to transform
+     * @param metadata the metadata of the mediation
+     * @return the transformed data
+     */
+    @SuppressWarnings("unchecked")
+    Object transform(Object source, Map<String, Object> metadata) {
+        Map<String, Object> readOnly = PlannedTransformationContext.readOnly(metadata);
+        Object result = source;
+        int size = transformers.length;
+        int i = 0;
+        while (i < size) {
+            Transformer transformer = transformers[i];
+            TransformationContext context = newContext(i, readOnly);
+            if (transformer instanceof PullTransformer) {
+                result = ((PullTransformer)transformer).transform(result, context);
+            } else if (transformer instanceof PushTransformer) {
+                DataPipeTransformer dataPipeFactory = (i < size - 1) ? (DataPipeTransformer)transformers[++i] : null;
+                DataPipe dataPipe = dataPipeFactory == null ? null : dataPipeFactory.newInstance();
+                ((PushTransformer)transformer).transform(result, dataPipe.getSink(), context);
+                result = dataPipe.getResult();
+            }
+            i++;
+        }
+        return result;
+    }
+
+    /**
+     * Run the plan, pushing the result of the last step into the given target
+     *
+     * @param source the data to transform
+     * @param target the sink for the transformed data
+     * @param metadata the metadata of the mediation
+     */
+    @SuppressWarnings("unchecked")
+    void transform(Object source, Object target, Map<String, Object> metadata) {
+        Map<String, Object> readOnly = PlannedTransformationContext.readOnly(metadata);
+        Object result = source;
+        int size = transformers.length;
+        for (int i = 0; i < size; i++) {
+            Transformer transformer = transformers[i];
+            TransformationContext context = newContext(i, readOnly);
+            if (transformer instanceof PullTransformer) {
+                result = ((PullTransformer)transformer).transform(result, context);
+            } else if (transformer instanceof PushTransformer) {
+                DataPipeTransformer dataPipeFactory = (i < size - 1) ? (DataPipeTransformer)transformers[++i] : null;
+                DataPipe dataPipe = dataPipeFactory == null ? null : dataPipeFactory.newInstance();
+                Object sink = dataPipe != null ? dataPipe.getSink() : target;
+                ((PushTransformer)transformer).transform(result, sink, context);
+                result = (dataPipe != null) ? dataPipe.getResult() : null;
+            }
+        }
+    }
+
+    /**
+     * Create the context of a step. The contexts are created for each mediation as the metadata
+     * references the wire and the operations, which the plan must not keep alive
+     */
+    private TransformationContext newContext(int step, Map<String, Object> metadata) {
+        return new PlannedTransformationContext(sourceTypes[step], targetTypes[step], metadata);
+    }
+
+}
@@ -18,24 +18,19 @@
  */
 package org.apache.tuscany.sca.databinding.impl;
 
-import java.security.AccessController;
-import java.security.PrivilegedAction;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.tuscany.sca.databinding.DataBindingExtensionPoint;
-import org.apache.tuscany.sca.databinding.DataPipe;
-import org.apache.tuscany.sca.databinding.DataPipeTransformer;
 import org.apache.tuscany.sca.databinding.Mediator;
-import org.apache.tuscany.sca.databinding.PullTransformer;
-import org.apache.tuscany.sca.databinding.PushTransformer;
-import org.apache.tuscany.sca.databinding.TransformationContext;
 import org.apache.tuscany.sca.databinding.TransformationException;
 import org.apache.tuscany.sca.databinding.Transformer;
 import org.apache.tuscany.sca.databinding.TransformerExtensionPoint;
 import org.apache.tuscany.sca.interfacedef.DataType;
 import org.apache.tuscany.sca.interfacedef.Operation;
-import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
 
 /**
  * Default Mediator implementation
@@ -44,9 +39,19 @@ import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
  */
 public class MediatorImpl implements Mediator {
 
+    private static final int MAX_PLANS = 4096;
+
     private DataBindingExtensionPoint dataBindings;
     private TransformerExtensionPoint transformers;
 
+    /**
+     * The plans by source and target data types and source operation. The data types and the
+     * operation are weakly referenced and the plans hold copies of the data types, so the plans
+     * go away with the interfaces they were compiled for
+     */
+    private final ConcurrentHashMap<PlanKey, MediationPlan> plans = new ConcurrentHashMap<PlanKey, MediationPlan>();
+    private final ReferenceQueue<Object> collectedKeys = new ReferenceQueue<Object>();
+
     public MediatorImpl(DataBindingExtensionPoint dataBindings, TransformerExtensionPoint transformers) {
         this.dataBindings = dataBindings;
         this.transformers = transformers;
@@ -66,55 +71,7 @@ public class MediatorImpl implements Mediator {
             return source;
         }
 
-        List<Transformer> path = getTransformerChain(sourceDataType, targetDataType);
-
-        Object result = source;
-        int size = path.size();
-        int i = 0;
-        while (i < size) {
-            Transformer transformer = path.get(i);
-            TransformationContext context =
-                createTransformationContext(sourceDataType, targetDataType, size, i, transformer, metadata);
-            // the source and target type
-            if (transformer instanceof PullTransformer) {
-                // For intermediate node, set data type to null
-                result = ((PullTransformer)transformer).transform(result, context);
-            } else if (transformer instanceof PushTransformer) {
-                DataPipeTransformer dataPipeFactory = (i < size - 1) ? (DataPipeTransformer)path.get(++i) : null;
-                DataPipe dataPipe = dataPipeFactory == null ? null : dataPipeFactory.newInstance();
-                ((PushTransformer)transformer).transform(result, dataPipe.getSink(), context);
-                result = dataPipe.getResult();
-            }
-            i++;
-        }
-
-        return result;
-    }
-
-    private TransformationContext createTransformationContext(DataType sourceDataType,
-                                                              DataType targetDataType,
-                                                              int size,
-                                                              int index,
-                                                              Transformer transformer,
-                                                              Map<String, Object> metadata) {
-        DataType sourceType =
-            (index == 0) ? sourceDataType : new DataTypeImpl<Object>(transformer.getSourceDataBinding(), Object.class,
-                                                                     sourceDataType.getLogical());
-        DataType targetType =
-            (index == size - 1) ? targetDataType : new DataTypeImpl<Object>(transformer.getTargetDataBinding(),
-                                                                            Object.class, targetDataType.getLogical());
-        
-        //FIXME The ClassLoader should be passed in
-        // Allow privileged access to get ClassLoader. Requires RuntimePermission in security
-        // policy.
-        ClassLoader classLoader = AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
-            public ClassLoader run() {
-                return Thread.currentThread().getContextClassLoader();
-            }
-        });           
-        
-        TransformationContext context = new TransformationContextImpl(sourceType, targetType, classLoader, metadata);
-        return context;
+        return getMediationPlan(sourceDataType, targetDataType, metadata).transform(source, metadata);
     }
 
     @SuppressWarnings("unchecked")
@@ -137,23 +94,52 @@ public class MediatorImpl implements Mediator {
             return;
         }
 
-        List<Transformer> path = getTransformerChain(sourceDataType, targetDataType);
-        Object result = source;
-        int size = path.size();
-        for (int i = 0; i < size; i++) {
-            Transformer transformer = path.get(i);
-            TransformationContext context =
-                createTransformationContext(sourceDataType, targetDataType, size, i, transformer, metadata);
-
-            if (transformer instanceof PullTransformer) {
-                result = ((PullTransformer)transformer).transform(result, context);
-            } else if (transformer instanceof PushTransformer) {
-                DataPipeTransformer dataPipeFactory = (i < size - 1) ? (DataPipeTransformer)path.get(++i) : null;
-                DataPipe dataPipe = dataPipeFactory == null ? null : dataPipeFactory.newInstance();
-                Object sink = dataPipe != null ? dataPipe.getSink() : target;
-                ((PushTransformer)transformer).transform(result, sink, context);
-                result = (dataPipe != null) ? dataPipe.getResult() : null;
+        getMediationPlan(sourceDataType, targetDataType, metadata).transform(source, target, metadata);
+    }
+
+    /**
+     * Get the compiled plan for a transformation, compiling it on first use
+     *
+     * @param sourceDataType the source data type
+     * @param targetDataType the target data type
+     * @param metadata the metadata of the mediation, the plan is compiled for its source operation
+     * @return the plan
+     */
+    private MediationPlan getMediationPlan(DataType sourceDataType,
+                                           DataType targetDataType,
+                                           Map<String, Object> metadata) {
+        Operation operation = metadata == null ? null : (Operation)metadata.get("source.operation");
+        // read the version first, a plan compiled while the transformers change is compiled again next time
+        int version = transformers.getVersion();
+        MediationPlan plan = plans.get(new LookupKey(sourceDataType, targetDataType, operation));
+        if (plan == null || plan.getVersion() != version) {
+            List<Transformer> path = getTransformerChain(sourceDataType, targetDataType);
+            plan = new MediationPlan(copy(sourceDataType), copy(targetDataType), path, version);
+            purgePlans();
+            if (plans.size() >= MAX_PLANS) {
+                // The data types come from the interfaces of the composites being run so the
+                // plans only overflow when types are made up on the fly, start again then
+                plans.clear();
             }
+            plans.put(new WeakKey(sourceDataType, targetDataType, operation, collectedKeys), plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Remove the plans of the data types and operations that have been garbage collected
+     */
+    private void purgePlans() {
+        for (Object ref = collectedKeys.poll(); ref != null; ref = collectedKeys.poll()) {
+            plans.remove(((KeyReference)ref).key);
+        }
+    }
+
+    private static DataType copy(DataType dataType) {
+        try {
+            return (DataType)dataType.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalArgumentException(e);
         }
     }
 
@@ -179,4 +165,130 @@ public class MediatorImpl implements Mediator {
         return transformers;
     }
 
+    /**
+     * Key of a mediation plan. The hash code of a data type walks its logical type so it is
+     * computed once per key. Operations are compared by identity as their hash code walks the
+     * whole operation.
+     */
+    private abstract static class PlanKey {
+        private final int hashCode;
+        private final boolean hasOperation;
+
+        private PlanKey(DataType sourceDataType, DataType targetDataType, Operation operation) {
+            this.hashCode =
+                31 * (31 * sourceDataType.hashCode() + targetDataType.hashCode()) + System.identityHashCode(operation);
+            this.hasOperation = operation != null;
+        }
+
+        abstract DataType getSourceDataType();
+
+        abstract DataType getTargetDataType();
+
+        abstract Operation getOperation();
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey)obj;
+            if (hashCode != other.hashCode || hasOperation != other.hasOperation) {
+                return false;
+            }
+            if (hasOperation) {
+                Operation operation = getOperation();
+                if (operation == null || operation != other.getOperation()) {
+                    return false;
+                }
+            }
+            DataType sourceDataType = getSourceDataType();
+            DataType targetDataType = getTargetDataType();
+            return sourceDataType != null && targetDataType != null
+                && sourceDataType.equals(other.getSourceDataType())
+                && targetDataType.equals(other.getTargetDataType());
+        }
+    }
+
+    /**
+     * The key used to look up a plan, only lives for the lookup
+     */
+    private static class LookupKey extends PlanKey {
+        private final DataType sourceDataType;
+        private final DataType targetDataType;
+        private final Operation operation;
+
+        private LookupKey(DataType sourceDataType, DataType targetDataType, Operation operation) {
+            super(sourceDataType, targetDataType, operation);
+            this.sourceDataType = sourceDataType;
+            this.targetDataType = targetDataType;
+            this.operation = operation;
+        }
+
+        @Override
+        DataType getSourceDataType() {
+            return sourceDataType;
+        }
+
+        @Override
+        DataType getTargetDataType() {
+            return targetDataType;
+        }
+
+        @Override
+        Operation getOperation() {
+            return operation;
+        }
+    }
+
+    /**
+     * The key a plan is stored under, it doesn't keep the data types or the operation alive
+     */
+    private static class WeakKey extends PlanKey {
+        private final KeyReference sourceDataType;
+        private final KeyReference targetDataType;
+        private final KeyReference operation;
+
+        private WeakKey(DataType sourceDataType,
+                        DataType targetDataType,
+                        Operation operation,
+                        ReferenceQueue<Object> queue) {
+            super(sourceDataType, targetDataType, operation);
+            this.sourceDataType = new KeyReference(sourceDataType, this, queue);
+            this.targetDataType = new KeyReference(targetDataType, this, queue);
+            this.operation = operation == null ? null : new KeyReference(operation, this, queue);
+        }
+
+        @Override
+        DataType getSourceDataType() {
+            return (DataType)sourceDataType.get();
+        }
+
+        @Override
+        DataType getTargetDataType() {
+            return (DataType)targetDataType.get();
+        }
+
+        @Override
+        Operation getOperation() {
+            return operation == null ? null : (Operation)operation.get();
+        }
+    }
+
+    private static class KeyReference extends WeakReference<Object> {
+        private final WeakKey key;
+
+        private KeyReference(Object referent, WeakKey key, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+
 }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.tuscany.sca.databinding.impl;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
+
+/**
+ * The TransformationContext of one step of a mediation plan. It's created for each mediation
+ * from the data types compiled into the plan and a read-only view of the metadata, without
+ * copying the metadata or looking up the ClassLoader up front.
+ *
+ * @version $Rev$ $Date$
+ */
+class PlannedTransformationContext implements TransformationContext {
+    private static final PrivilegedAction<ClassLoader> GET_CONTEXT_CLASS_LOADER =
+        new PrivilegedAction<ClassLoader>() {
+            public ClassLoader run() {
+                return Thread.currentThread().getContextClassLoader();
+            }
+        };
+
+    private DataType sourceDataType;
+    private DataType targetDataType;
+    private Operation sourceOperation;
+    private Operation targetOperation;
+    private final Map<String, Object> metadata;
+
+    /**
+     * @param sourceDataType the source data type of the step
+     * @param targetDataType the target data type of the step
+     * @param metadata a read-only view of the metadata of the mediation
+     */
+    PlannedTransformationContext(DataType sourceDataType, DataType targetDataType, Map<String, Object> metadata) {
+        this.sourceDataType = sourceDataType;
+        this.targetDataType = targetDataType;
+        this.metadata = metadata;
+        this.sourceOperation = (Operation)metadata.get("source.operation");
+        this.targetOperation = (Operation)metadata.get("target.operation");
+    }
+
+    /**
+     * @param metadata the metadata of a mediation, may be null
+     * @return a read-only view of the metadata to be shared by the contexts of the mediation,
+     *         never null
+     */
+    static Map<String, Object> readOnly(Map<String, Object> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(metadata);
+    }
+
+    public DataType getSourceDataType() {
+        return sourceDataType;
+    }
+
+    public DataType getTargetDataType() {
+        return targetDataType;
+    }
+
+    public void setSourceDataType(DataType sourceDataType) {
+        this.sourceDataType = sourceDataType;
+    }
+
+    public void setTargetDataType(DataType targetDataType) {
+        this.targetDataType = targetDataType;
+    }
+
+    public ClassLoader getClassLoader() {
+        //FIXME The ClassLoader should be passed in
+        // The ClassLoader is only looked up when a transformer asks for it. Allow privileged access to get ClassLoader. Requires RuntimePermission in
+        // security policy.
+        return AccessController.doPrivileged(GET_CONTEXT_CLASS_LOADER);
+    }
+
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+
+    public Operation getSourceOperation() {
+        return sourceOperation;
+    }
+
+    public void setSourceOperation(Operation sourceOperation) {
+        this.sourceOperation = sourceOperation;
+    }
+
+    public Operation getTargetOperation() {
+        return targetOperation;
+    }
+
+    public void setTargetOperation(Operation targetOperation) {
+        this.targetOperation = targetOperation;
+    }
+
+}
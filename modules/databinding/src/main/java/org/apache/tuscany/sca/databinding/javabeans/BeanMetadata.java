@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.javabeans;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fields, getters and setters of a JavaBean class. The class is introspected once and the
+ * accessors are shared by the JavaBean transformers and the bean XMLStreamReader, so converting
+ * a bean costs one reflective call per value instead of a scan of the class.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class BeanMetadata {
+    private static final String GET = "get";
+    private static final String SET = "set";
+
+    private static final Comparator<BeanProperty> COMPARATOR = new Comparator<BeanProperty>() {
+        public int compare(BeanProperty o1, BeanProperty o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    // The metadata refers to its class, and so to the class loader. It is softly referenced and
+    // keyed by class name so that the cache does not keep the class loader reachable.
+    private static final Map<ClassLoader, Map<String, Reference<BeanMetadata>>> metadata =
+        new WeakHashMap<ClassLoader, Map<String, Reference<BeanMetadata>>>();
+    private static final Map<Class<?>, BeanMetadata> systemMetadata = new ConcurrentHashMap<Class<?>, BeanMetadata>();
+
+    private final Class<?> type;
+    private final List<Field> fields;
+    private final Map<String, Field> fieldsByName;
+    private final List<BeanProperty> getters;
+    private final Map<String, Method> setters;
+    private volatile List<BeanProperty> properties;
+
+    private BeanMetadata(Class<?> type) {
+        this.type = type;
+
+        Field[] publicFields = type.getFields();
+        List<Field> fieldList = new ArrayList<Field>(publicFields.length);
+        fieldsByName = new HashMap<String, Field>();
+        for (Field field : publicFields) {
+            setAccessible(field);
+            fieldList.add(field);
+            fieldsByName.put(field.getName(), field);
+        }
+        fields = Collections.unmodifiableList(fieldList);
+
+        List<BeanProperty> getterList = new ArrayList<BeanProperty>();
+        setters = new HashMap<String, Method>();
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isPublic(method.getModifiers())) {
+                continue;
+            }
+            String name = method.getName();
+            int parameters = method.getParameterTypes().length;
+            if (parameters == 0 && name.startsWith(GET) && name.length() > GET.length()) {
+                String propertyName = Character.toLowerCase(name.charAt(GET.length())) + name.substring(GET.length() + 1);
+                if (!fieldsByName.containsKey(propertyName)) {
+                    setAccessible(method);
+                    getterList.add(new BeanProperty(propertyName, method.getReturnType(), null, method, null));
+                }
+            } else if (parameters == 1 && name.startsWith(SET) && !setters.containsKey(name)) {
+                setAccessible(method);
+                setters.put(name, method);
+            }
+        }
+        getters = Collections.unmodifiableList(getterList);
+    }
+
+    /**
+     * Get the metadata of a class
+     *
+     * @param type the class
+     * @return the metadata, introspected on the first call
+     */
+    public static BeanMetadata getMetadata(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            BeanMetadata beanMetadata = systemMetadata.get(type);
+            if (beanMetadata == null) {
+                // Two threads may introspect the same class, they get equivalent metadata
+                beanMetadata = new BeanMetadata(type);
+                systemMetadata.put(type, beanMetadata);
+            }
+            return beanMetadata;
+        }
+        Map<String, Reference<BeanMetadata>> classes;
+        synchronized (metadata) {
+            classes = metadata.get(classLoader);
+            if (classes == null) {
+                classes = new ConcurrentHashMap<String, Reference<BeanMetadata>>();
+                metadata.put(classLoader, classes);
+            }
+        }
+        Reference<BeanMetadata> ref = classes.get(type.getName());
+        BeanMetadata beanMetadata = ref != null ? ref.get() : null;
+        if (beanMetadata == null || beanMetadata.type != type) {
+            beanMetadata = new BeanMetadata(type);
+            classes.put(type.getName(), new SoftReference<BeanMetadata>(beanMetadata));
+        }
+        return beanMetadata;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return the public fields, in the order of Class.getFields()
+     */
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @param name the name of the field
+     * @return the public field with the given name, or null
+     */
+    public Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * @return the public getXxx() methods that are not hidden by a public field of the same
+     * name, in the order of Class.getMethods()
+     */
+    public List<BeanProperty> getGetters() {
+        return getters;
+    }
+
+    /**
+     * @param name the name of the property
+     * @return the first public setXxx method with one parameter for the property, or null
+     */
+    public Method getSetter(String name) {
+        if (name.length() == 0) {
+            return null;
+        }
+        StringBuilder methodName = new StringBuilder(SET.length() + name.length());
+        methodName.append(SET).append(Character.toUpperCase(name.charAt(0))).append(name, 1, name.length());
+        return setters.get(methodName.toString());
+    }
+
+    /**
+     * @return the public fields and the JavaBean properties sorted by name. A property hides a
+     * field with the same name.
+     * @throws IntrospectionException
+     */
+    public List<BeanProperty> getProperties() throws IntrospectionException {
+        List<BeanProperty> list = properties;
+        if (list == null) {
+            Map<String, BeanProperty> map = new HashMap<String, BeanProperty>();
+            for (Field field : fields) {
+                map.put(field.getName(), new BeanProperty(field.getName(), field.getType(), field, null, null));
+            }
+            BeanInfo info = Introspector.getBeanInfo(type, Object.class);
+            for (PropertyDescriptor p : info.getPropertyDescriptors()) {
+                Method getter = p.getReadMethod();
+                Method setter = p.getWriteMethod();
+                if (getter != null) {
+                    setAccessible(getter);
+                }
+                if (setter != null) {
+                    setAccessible(setter);
+                }
+                map.put(p.getName(), new BeanProperty(p.getName(), p.getPropertyType(), null, getter, setter));
+            }
+            list = new ArrayList<BeanProperty>(map.values());
+            Collections.sort(list, COMPARATOR);
+            list = Collections.unmodifiableList(list);
+            properties = list;
+        }
+        return list;
+    }
+
+    private static void setAccessible(Member member) {
+        // Public members only need it when they are declared by a class that isn't public
+        if (!Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+            try {
+                ((AccessibleObject)member).setAccessible(true);
+            } catch (RuntimeException e) {
+                // Leave it to the invocation to report the problem
+            }
+        }
+    }
+
+    /**
+     * A property of a bean, backed by a public field or by getter and setter methods
+     */
+    public static final class BeanProperty {
+        private final String name;
+        private final Class<?> type;
+        private final Field field;
+        private final Method getter;
+        private final Method setter;
+
+        BeanProperty(String name, Class<?> type, Field field, Method getter, Method setter) {
+            this.name = name;
+            this.type = type;
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public Method getGetter() {
+            return getter;
+        }
+
+        /**
+         * @return the generic type of the property, for example List&lt;String&gt;
+         */
+        public Type getGenericType() {
+            if (field != null) {
+                return field.getGenericType();
+            } else if (getter != null) {
+                return getter.getGenericReturnType();
+            } else if (setter != null) {
+                return setter.getGenericParameterTypes()[0];
+            }
+            return type;
+        }
+
+        public boolean isReadable() {
+            return field != null || getter != null;
+        }
+
+        public boolean isWritable() {
+            return (field != null && !Modifier.isFinal(field.getModifiers())) || setter != null;
+        }
+
+        public Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException {
+            if (field != null) {
+                return field.get(bean);
+            }
+            if (getter != null) {
+                return getter.invoke(bean);
+            }
+            throw new IllegalAccessException("The property cannot be read: " + name);
+        }
+
+        public void setValue(Object bean, Object value) throws IllegalAccessException, InvocationTargetException {
+            if (field != null) {
+                field.set(bean, value);
+            } else if (setter != null) {
+                setter.invoke(bean, value);
+            } else {
+                throw new IllegalAccessException("The property cannot be written: " + name);
+            }
+        }
+    }
+
+}
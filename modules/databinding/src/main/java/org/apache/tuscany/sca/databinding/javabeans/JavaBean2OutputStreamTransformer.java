@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.javabeans;
+
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.tuscany.sca.databinding.PushTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.xml.StAXHelper;
+
+/**
+ * Transformer to write a JavaBean object as UTF-8 XML to an OutputStream
+ *
+ * @see JavaBean2XMLStreamWriterTransformer
+ * @version $Rev$ $Date$
+ */
+public class JavaBean2OutputStreamTransformer extends BaseTransformer<Object, OutputStream> implements
+    PushTransformer<Object, OutputStream> {
+
+    public void transform(Object source, OutputStream output, TransformationContext context) {
+        try {
+            XMLStreamWriter writer = StAXHelper.createXMLStreamWriter(output, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            JavaBean2XMLStreamWriterTransformer.write(JavaBean2XMLStreamWriterTransformer.getElementName(context),
+                                                      source,
+                                                      writer);
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (Exception e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    public String getSourceDataBinding() {
+        return JavaBeansDataBinding.NAME;
+    }
+
+    @Override
+    protected Class<Object> getSourceType() {
+        return Object.class;
+    }
+
+    @Override
+    protected Class<OutputStream> getTargetType() {
+        return OutputStream.class;
+    }
+
+    @Override
+    public int getWeight() {
+        return 89900;
+    }
+
+}
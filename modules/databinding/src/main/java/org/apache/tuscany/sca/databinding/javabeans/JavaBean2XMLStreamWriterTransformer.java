@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.javabeans;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.tuscany.sca.databinding.PushTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.impl.SimpleTypeMapperImpl;
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata.BeanProperty;
+import org.apache.tuscany.sca.databinding.xml.BeanXMLStreamReaderImpl.BeanXmlNodeImpl;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.util.TypeInfo;
+import org.apache.tuscany.sca.interfacedef.util.XMLType;
+
+/**
+ * Transformer to write a JavaBean object to an XMLStreamWriter. The XML is the same as the
+ * one read from the JavaBean2XMLStreamReaderTransformer, but it is written as the bean graph
+ * is walked, using the accessors cached in the BeanMetadata of each class, so no node tree is
+ * built. A bean that contains itself, directly or through other beans, is rejected.
+ *
+ * @version $Rev$ $Date$
+ */
+public class JavaBean2XMLStreamWriterTransformer extends BaseTransformer<Object, XMLStreamWriter> implements
+    PushTransformer<Object, XMLStreamWriter> {
+    private static final String XSI_PREFIX = "xsi";
+    private static final String ENTRY = "entry";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    private static final SimpleTypeMapperImpl MAPPER = new SimpleTypeMapperImpl();
+
+    public void transform(Object source, XMLStreamWriter writer, TransformationContext context) {
+        try {
+            write(getElementName(context), source, writer);
+            writer.flush();
+        } catch (Exception e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    /**
+     * Write a bean as an XML element
+     *
+     * @param name the name of the element, if null it is derived from the class of the bean
+     * @param bean the bean
+     * @param writer the writer
+     * @throws Exception if the bean can't be read, refers to itself or the XML can't be written
+     */
+    public static void write(QName name, Object bean, XMLStreamWriter writer) throws Exception {
+        if (name == null) {
+            name = BeanXmlNodeImpl.getName(bean == null ? null : bean.getClass());
+        }
+        String namespace = name.getNamespaceURI();
+        String defaultNamespace = writer.getNamespaceContext().getNamespaceURI(XMLConstants.DEFAULT_NS_PREFIX);
+        writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, name.getLocalPart(), namespace);
+        if (!namespace.equals(defaultNamespace == null ? XMLConstants.NULL_NS_URI : defaultNamespace)) {
+            writer.writeDefaultNamespace(namespace);
+            writer.setDefaultNamespace(namespace);
+        }
+        writeContent(namespace, bean, writer, new IdentityHashMap<Object, Object>());
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(String namespace,
+                                     String localName,
+                                     Object value,
+                                     XMLStreamWriter writer,
+                                     Map<Object, Object> ancestors) throws Exception {
+        writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, localName, namespace);
+        writeContent(namespace, value, writer, ancestors);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Write the content of a value. The ancestors are the values being written on the path
+     * from the root, an object shared by two branches of the graph is not a cycle.
+     */
+    private static void writeContent(String namespace,
+                                     Object value,
+                                     XMLStreamWriter writer,
+                                     Map<Object, Object> ancestors) throws Exception {
+        if (value == null) {
+            writeNil(writer);
+            return;
+        }
+        Class<?> type = value.getClass();
+        TypeInfo info = SimpleTypeMapperImpl.getXMLType(type);
+        if (info != null) {
+            writer.writeCharacters(MAPPER.toXMLLiteral(info.getQName(), value, null));
+            return;
+        }
+        if (ancestors.put(value, value) != null) {
+            throw new TransformationException("Cycle detected in the object graph at an instance of " + type.getName());
+        }
+        try {
+            writeComplexContent(namespace, value, writer, ancestors);
+        } finally {
+            ancestors.remove(value);
+        }
+    }
+
+    private static void writeComplexContent(String namespace,
+                                            Object value,
+                                            XMLStreamWriter writer,
+                                            Map<Object, Object> ancestors) throws Exception {
+        if (value instanceof Map) {
+            for (Object e : ((Map<?, ?>)value).entrySet()) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>)e;
+                writer.writeStartElement(XMLConstants.DEFAULT_NS_PREFIX, ENTRY, namespace);
+                writeElement(namespace, KEY, entry.getKey(), writer, ancestors);
+                writeElement(namespace, VALUE, entry.getValue(), writer, ancestors);
+                writer.writeEndElement();
+            }
+        } else {
+            List<BeanProperty> properties = BeanMetadata.getMetadata(value.getClass()).getProperties();
+            for (BeanProperty property : properties) {
+                Class<?> propertyType = property.getType();
+                Object propertyValue = property.getValue(value);
+                if (propertyType.isArray()) {
+                    if (propertyValue != null) {
+                        int length = Array.getLength(propertyValue);
+                        for (int i = 0; i < length; i++) {
+                            writeElement(namespace, property.getName(), Array.get(propertyValue, i), writer, ancestors);
+                        }
+                    }
+                } else if (Collection.class.isAssignableFrom(propertyType)) {
+                    if (propertyValue != null) {
+                        for (Object item : (Collection<?>)propertyValue) {
+                            writeElement(namespace, property.getName(), item, writer, ancestors);
+                        }
+                    }
+                } else {
+                    writeElement(namespace, property.getName(), propertyValue, writer, ancestors);
+                }
+            }
+        }
+    }
+
+    private static void writeNil(XMLStreamWriter writer) throws XMLStreamException {
+        String prefix = writer.getPrefix(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+        if (prefix == null) {
+            prefix = XSI_PREFIX;
+            writer.writeNamespace(prefix, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+        }
+        writer.writeAttribute(prefix, XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil", "true");
+    }
+
+    static QName getElementName(TransformationContext context) {
+        if (context == null) {
+            return null;
+        }
+        QName name = getElementName(context.getSourceDataType());
+        return name != null ? name : getElementName(context.getTargetDataType());
+    }
+
+    private static QName getElementName(DataType<?> dataType) {
+        Object logical = dataType == null ? null : dataType.getLogical();
+        if (logical instanceof XMLType) {
+            return ((XMLType)logical).getElementName();
+        }
+        return null;
+    }
+
+    @Override
+    public String getSourceDataBinding() {
+        return JavaBeansDataBinding.NAME;
+    }
+
+    @Override
+    protected Class<Object> getSourceType() {
+        return Object.class;
+    }
+
+    @Override
+    protected Class<XMLStreamWriter> getTargetType() {
+        return XMLStreamWriter.class;
+    }
+
+    @Override
+    public int getWeight() {
+        return 89900;
+    }
+
+}
@@ -22,7 +22,6 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.Date;
 import java.util.GregorianCalendar;
 
@@ -97,8 +96,8 @@ public abstract class JavaBean2XMLTransformer<T> extends BaseTransformer<Object,
                     appendChildElements(element, elementName, javaType.getComponentType(), item, context);
                 }
             } else {
-                Field[] javaFields = javaType.getFields();
-                for (Field aField : javaFields) {
+                BeanMetadata metadata = BeanMetadata.getMetadata(javaType);
+                for (Field aField : metadata.getFields()) {
                     try {
                         QName fieldElementName = new QName(aField.getName());
                         if (!aField.getType().isArray()) {
@@ -124,28 +123,22 @@ public abstract class JavaBean2XMLTransformer<T> extends BaseTransformer<Object,
                     }
                 }
 
-                Method[] methods = javaType.getMethods();
-                String fieldName = null;
-                for (Method aMethod : methods) {
+                for (BeanMetadata.BeanProperty getter : metadata.getGetters()) {
+                    Method aMethod = getter.getGetter();
+                    if (!isMappedGetter(aMethod.getName())) {
+                        continue;
+                    }
+                    String fieldName = getter.getName();
                     try {
-                        if (Modifier.isPublic(aMethod.getModifiers()) && aMethod.getName().startsWith(GET)
-                            && aMethod.getParameterTypes().length == 0
-                            && isMappedGetter(aMethod.getName())) {
-                            fieldName = resolveFieldFromMethod(aMethod.getName());
-                            try {
-                                javaType.getField(fieldName);
-                            } catch (NoSuchFieldException e) {
-                                QName fieldElementName = new QName(fieldName);
-                                if (aMethod.getReturnType().isArray()) {
-                                    appendChildElements(parent, fieldElementName, aMethod.getReturnType(), aMethod
-                                        .invoke(javaObject, new Object[0]), context);
-                                } else {
-                                    element = createElement(fieldElementName);
-                                    appendChild(parent, element);
-                                    appendChildElements(element, fieldElementName, aMethod.getReturnType(), aMethod
-                                        .invoke(javaObject, new Object[0]), context);
-                                }
-                            }
+                        QName fieldElementName = new QName(fieldName);
+                        if (aMethod.getReturnType().isArray()) {
+                            appendChildElements(parent, fieldElementName, aMethod.getReturnType(), getter
+                                .getValue(javaObject), context);
+                        } else {
+                            element = createElement(fieldElementName);
+                            appendChild(parent, element);
+                            appendChildElements(element, fieldElementName, aMethod.getReturnType(), getter
+                                .getValue(javaObject), context);
                         }
                     } catch (IllegalAccessException e) {
                         Java2XMLMapperException java2xmlEx = new Java2XMLMapperException(e);
@@ -220,13 +213,6 @@ public abstract class JavaBean2XMLTransformer<T> extends BaseTransformer<Object,
         }
     }
 
-    private String resolveFieldFromMethod(String methodName) {
-        StringBuffer fieldName = new StringBuffer();
-        fieldName.append(Character.toLowerCase(methodName.charAt(GET.length())));
-        fieldName.append(methodName.substring(GET.length() + 1));
-        return fieldName.toString();
-    }
-
     public String getNexPrefix() {
         return PREFIX + prefixCount++;
     }
@@ -102,6 +102,7 @@ public abstract class XML2JavaBeanTransformer<T> extends BaseTransformer<T, Obje
                 } else {
                     javaInstance = javaType.newInstance();
                 }
+                BeanMetadata metadata = BeanMetadata.getMetadata(javaType);
                 Map<Field, List<Object>> arrayFields = new Hashtable<Field, List<Object>>();
                 Map<Method, List<Object>> arraySetters = new Hashtable<Method, List<Object>>();
                 
@@ -109,16 +110,16 @@ public abstract class XML2JavaBeanTransformer<T> extends BaseTransformer<T, Obje
                     T childElement = childElements.next();
                     if (!isTextElement(childElement) && childElement != detailMsg) {
                         fieldName = getElementName(childElement);
-                        try {
-                            Field javaField = javaType.getField(fieldName);
+                        Field javaField = metadata.getField(fieldName);
+                        if (javaField != null) {
                             setFieldValue(javaInstance,
                                           javaField,
                                           childElement,
                                           arrayFields,
                                           context);
-
-                        } catch (NoSuchFieldException e1) {
+                        } else {
                             setFieldValueUsingSetter(javaType,
+                                                     metadata,
                                                      javaInstance,
                                                      fieldName,
                                                      childElement,
@@ -155,53 +156,41 @@ public abstract class XML2JavaBeanTransformer<T> extends BaseTransformer<T, Obje
             }
             fldValueArray.add(createJavaObject(fieldValue, componentType, context));
         } else {
-            javaField.setAccessible(true);
             javaField.set(javaInstance, createJavaObject(fieldValue, javaFieldType, context));
         }
     }
 
     private void setFieldValueUsingSetter(Class javaType,
+                                          BeanMetadata metadata,
                                           Object javaInstance,
                                           String fieldName,
                                           T fieldValue,
                                           Map<Method, List<Object>> arraySetters,
                                           TransformationContext context) throws IllegalAccessException,
                                                                         InvocationTargetException {
-        char firstChar = Character.toUpperCase(fieldName.charAt(0));
-        StringBuilder methodName = new StringBuilder(SET + fieldName);
-        methodName.setCharAt(SET.length(), firstChar);
-        boolean methodNotFound = true;
-
-        for (int methodCount = 0; methodNotFound && methodCount < javaType.getMethods().length; ++methodCount) {
-            Method aMethod = javaType.getMethods()[methodCount];
-            if (aMethod.getName().equals(methodName.toString())
-                    && aMethod.getParameterTypes().length == 1) {
-                Class<?> paramType = aMethod.getParameterTypes()[0];
-
-                if (paramType.isArray()) {
-                    Class<?> componentType = paramType.getComponentType();
-                    List<Object> setterValueArray = arraySetters.get(aMethod);
-                    if (setterValueArray == null) {
-                        setterValueArray = new ArrayList<Object>();
-                        arraySetters.put(aMethod, setterValueArray);
-                    }
-                    setterValueArray.add(createJavaObject(fieldValue, componentType, context));
-                } else {
-                    aMethod.invoke(javaInstance, new Object[] {createJavaObject(fieldValue,
-                                                                                 paramType,
-                                                                                 context)});
-                }
-                methodNotFound = false;
-            }
-        }
-
-        if (methodNotFound) {
+        Method aMethod = metadata.getSetter(fieldName);
+        if (aMethod == null) {
             XML2JavaMapperException xml2JavaEx =
                     new XML2JavaMapperException("No field or setter method to configure xml data");
             xml2JavaEx.setJavaFieldName(fieldName);
             xml2JavaEx.setJavaType(javaType);
             throw xml2JavaEx;
         }
+
+        Class<?> paramType = aMethod.getParameterTypes()[0];
+        if (paramType.isArray()) {
+            Class<?> componentType = paramType.getComponentType();
+            List<Object> setterValueArray = arraySetters.get(aMethod);
+            if (setterValueArray == null) {
+                setterValueArray = new ArrayList<Object>();
+                arraySetters.put(aMethod, setterValueArray);
+            }
+            setterValueArray.add(createJavaObject(fieldValue, componentType, context));
+        } else {
+            aMethod.invoke(javaInstance, new Object[] {createJavaObject(fieldValue,
+                                                                         paramType,
+                                                                         context)});
+        }
     }
 
     private void setArrayValues(Object javaInstance,
@@ -210,8 +199,6 @@ public abstract class XML2JavaBeanTransformer<T> extends BaseTransformer<T, Obje
                                                                        InvocationTargetException {
         if (arrayFields.size() > 0) {
             for (Field javaField : arrayFields.keySet()) {
-                javaField.setAccessible(true);
-
                 if (javaField.getType().getComponentType().isPrimitive()) {
                     javaField.set(javaInstance, createPrimitiveArray(javaField.getType()
                                                                               .getComponentType(),
@@ -19,18 +19,10 @@
 
 package org.apache.tuscany.sca.databinding.xml;
 
-import java.beans.BeanInfo;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,18 +30,14 @@ import java.util.Map;
 import javax.xml.namespace.QName;
 
 import org.apache.tuscany.sca.databinding.impl.SimpleTypeMapperImpl;
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata;
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata.BeanProperty;
 import org.apache.tuscany.sca.interfacedef.util.TypeInfo;
 
 /**
  * @version $Rev$ $Date$
  */
 public class BeanXMLStreamReaderImpl extends XmlTreeStreamReaderImpl {
-    private static final Comparator<Accessor> COMPARATOR = new Comparator<Accessor>() {
-        public int compare(Accessor o1, Accessor o2) {
-            return o1.getName().compareTo(o2.getName());
-        }
-    };
-
     public static class BeanXmlNodeImpl extends SimpleXmlNodeImpl implements XmlNode {
         private static final Object[] NULL = null;
         private static final SimpleTypeMapperImpl MAPPER = new SimpleTypeMapperImpl();
@@ -103,16 +91,14 @@ public class BeanXMLStreamReaderImpl extends XmlTreeStreamReaderImpl {
                 return entries.iterator();
             }
             try {
-                Map<String, Accessor> accessorMap = getAccessors(value);
-                List<Accessor> accessorList = new ArrayList<Accessor>(accessorMap.values());
-                Collections.sort(accessorList, COMPARATOR);
+                List<BeanProperty> properties = BeanMetadata.getMetadata(value.getClass()).getProperties();
 
                 List<XmlNode> props = new ArrayList<XmlNode>();
-                for (Accessor accessor : accessorList) {
-                    Class<?> pType = accessor.getType();
+                for (BeanProperty property : properties) {
+                    Class<?> pType = property.getType();
 
-                    QName pName = new QName(name.getNamespaceURI(), accessor.getName());
-                    Object pValue = accessor.getValue();
+                    QName pName = new QName(name.getNamespaceURI(), property.getName());
+                    Object pValue = property.getValue(value);
                     if (pType.isArray()) {
                         if (pValue != null) {
                             int i1 = Array.getLength(pValue);
@@ -198,99 +184,4 @@ public class BeanXMLStreamReaderImpl extends XmlTreeStreamReaderImpl {
         return root;
     }
 
-    public static interface Accessor {
-        String getName();
-
-        Class<?> getType();
-
-        Object getValue() throws Exception;
-
-        void setValue(Object value) throws Exception;
-    }
-
-    private static class FieldAccessor implements Accessor {
-        private Object target;
-        private Field field;
-
-        public FieldAccessor(Object target, Field field) {
-            super();
-            this.target = target;
-            this.field = field;
-            this.field.setAccessible(true);
-        }
-
-        public String getName() {
-            return field.getName();
-        }
-
-        public Object getValue() throws Exception {
-            return field.get(target);
-        }
-
-        public void setValue(Object value) throws Exception {
-            field.set(target, value);
-        }
-
-        public Class<?> getType() {
-            return field.getType();
-        }
-
-    }
-
-    private static class PropertyAccessor implements Accessor {
-        private Object target;
-        private PropertyDescriptor prop;
-
-        public PropertyAccessor(Object target, PropertyDescriptor prop) {
-            super();
-            this.target = target;
-            this.prop = prop;
-        }
-
-        public String getName() {
-            return prop.getName();
-        }
-
-        public Class<?> getType() {
-            return prop.getPropertyType();
-        }
-
-        public Object getValue() throws Exception {
-            Method getter = prop.getReadMethod();
-            if (getter != null) {
-                getter.setAccessible(true);
-                return getter.invoke(target);
-            }
-            throw new IllegalAccessException("The property cannot be read: " + getName());
-        }
-
-        public void setValue(Object value) throws Exception {
-            Method setter = prop.getWriteMethod();
-            if (setter != null) {
-                setter.setAccessible(true);
-                setter.invoke(target);
-            }
-            throw new IllegalAccessException("The property cannot be written: " + getName());
-        }
-
-    }
-
-    private static Map<String, Accessor> getAccessors(Object target) throws Exception {
-        if (target == null) {
-            return Collections.emptyMap();
-        }
-        Map<String, Accessor> map = new HashMap<String, Accessor>();
-        Class<?> type = target.getClass();
-        for (Field f : type.getFields()) {
-            map.put(f.getName(), new FieldAccessor(target, f));
-        }
-        BeanInfo info = Introspector.getBeanInfo(type, Object.class);
-        for (PropertyDescriptor p : info.getPropertyDescriptors()) {
-            // if (p.getReadMethod() != null && p.getWriteMethod() != null) {
-                map.put(p.getName(), new PropertyAccessor(target, p));
-            // }
-        }
-        return map;
-    }
-
 }
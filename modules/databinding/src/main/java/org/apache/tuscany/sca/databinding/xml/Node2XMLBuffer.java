@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.xml;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.w3c.dom.Node;
+
+/**
+ * Serialize a DOM Node into an XMLBuffer
+ *
+ * @version $Rev$ $Date$
+ */
+public class Node2XMLBuffer extends BaseTransformer<Node, XMLBuffer> implements
+    PullTransformer<Node, XMLBuffer> {
+    private static final Source2ResultTransformer TRANSFORMER = new Source2ResultTransformer();
+
+    public XMLBuffer transform(Node source, TransformationContext context) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            Source domSource = new DOMSource(source);
+            Result result = new StreamResult(bos);
+            TRANSFORMER.transform(domSource, result, context);
+            return new XMLBuffer(bos.toByteArray());
+        } catch (Exception e) {
+            throw new TransformationException(e);
+        }
+    }
+
+    @Override
+    protected Class<Node> getSourceType() {
+        return Node.class;
+    }
+
+    @Override
+    protected Class<XMLBuffer> getTargetType() {
+        return XMLBuffer.class;
+    }
+
+    @Override
+    public int getWeight() {
+        return 40;
+    }
+
+}
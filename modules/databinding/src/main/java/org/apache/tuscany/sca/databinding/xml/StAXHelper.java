@@ -57,6 +57,18 @@ public final class StAXHelper {
         return createXMLStreamReader(reader);
     }
 
+    public static XMLStreamWriter createXMLStreamWriter(OutputStream outputStream, String encoding)
+        throws XMLStreamException {
+        if (encoding == null) {
+            return OUTPUT_FACTORY.createXMLStreamWriter(outputStream);
+        }
+        return OUTPUT_FACTORY.createXMLStreamWriter(outputStream, encoding);
+    }
+
+    public static XMLStreamWriter createXMLStreamWriter(Writer writer) throws XMLStreamException {
+        return OUTPUT_FACTORY.createXMLStreamWriter(writer);
+    }
+
     public static String save(XMLStreamReader reader) throws XMLStreamException {
         StringWriter writer = new StringWriter();
         save(reader, writer);
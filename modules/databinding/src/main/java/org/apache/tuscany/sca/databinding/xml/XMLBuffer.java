@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.tuscany.sca.databinding.annotation.Immutable;
+
+/**
+ * An XML document kept as the bytes it was received as. Nothing is parsed until the content
+ * is asked for, so a document that is only routed from one endpoint to another is never
+ * turned into a tree.
+ * <p>
+ * The bytes are not copied: the array, or the backing array of the buffer, must not be
+ * changed once it has been handed over.
+ *
+ * @version $Rev$ $Date$
+ */
+@Immutable
+public final class XMLBuffer {
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    // The encoding and the position of the first byte after the XML declaration
+    private final String encoding;
+    private final int contentOffset;
+    private final boolean asciiCompatible;
+    // True if nothing but the XML declaration comes before the root element
+    private final boolean simpleProlog;
+
+    private volatile QName rootElementName;
+
+    public XMLBuffer(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public XMLBuffer(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+
+        int end = offset + length;
+        int i = offset;
+        if (length >= 2 && (bytes[i] == 0 || bytes[i + 1] == 0 || (bytes[i] & 0xFF) == 0xFE || (bytes[i] & 0xFF) == 0xFF)) {
+            // UTF-16 or UTF-32, let the parser work it out
+            encoding = null;
+            contentOffset = offset;
+            asciiCompatible = false;
+            simpleProlog = false;
+            return;
+        }
+        if (length >= 3 && (bytes[i] & 0xFF) == 0xEF && (bytes[i + 1] & 0xFF) == 0xBB && (bytes[i + 2] & 0xFF) == 0xBF) {
+            // UTF-8 byte order mark
+            i += 3;
+        }
+        String declaredEncoding = null;
+        if (startsWith(i, "<?xml") && i + 5 < end && isWhitespace(bytes[i + 5])) {
+            int declarationEnd = indexOf(i, "?>");
+            if (declarationEnd != -1) {
+                declaredEncoding = getDeclaredEncoding(i, declarationEnd);
+                i = declarationEnd + 2;
+                while (i < end && isWhitespace(bytes[i])) {
+                    i++;
+                }
+            }
+        }
+        encoding = declaredEncoding == null ? DEFAULT_ENCODING : declaredEncoding;
+        contentOffset = i;
+        asciiCompatible = true;
+        // A DOCTYPE, comment or processing instruction can't be copied into another document
+        simpleProlog = i + 1 < end && bytes[i] == '<' && bytes[i + 1] != '!' && bytes[i + 1] != '?';
+    }
+
+    /**
+     * Wrap the remaining bytes of a buffer. A heap buffer is shared, a direct buffer is copied.
+     * The position of the buffer is left unchanged.
+     *
+     * @param buffer the buffer
+     */
+    public XMLBuffer(ByteBuffer buffer) {
+        this(array(buffer), buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0, buffer.remaining());
+    }
+
+    private static byte[] array(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * @return the number of bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the encoding declared by the document, UTF-8 by default, or null for UTF-16 and
+     * UTF-32 documents
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(bytes, offset, length);
+    }
+
+    /**
+     * @return a read-only view of the bytes
+     */
+    public ByteBuffer getByteBuffer() {
+        return ByteBuffer.wrap(bytes, offset, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a copy of the bytes
+     */
+    public byte[] toByteArray() {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * Write the whole document
+     *
+     * @param out the stream
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+    }
+
+    /**
+     * Test if the document without its XML declaration can be copied byte for byte into a
+     * document with the given encoding. This is only the case if nothing but the XML
+     * declaration comes before the root element.
+     *
+     * @param documentEncoding the encoding of the enclosing document
+     * @return true if the bytes can be embedded as they are
+     */
+    public boolean isEmbeddableIn(String documentEncoding) {
+        if (!asciiCompatible || !simpleProlog) {
+            return false;
+        }
+        if (documentEncoding == null) {
+            documentEncoding = DEFAULT_ENCODING;
+        }
+        if (encoding.equalsIgnoreCase(documentEncoding)) {
+            return true;
+        }
+        try {
+            return Charset.forName(encoding).equals(Charset.forName(documentEncoding));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the document without its XML declaration, to embed it in another document
+     *
+     * @param out the stream
+     * @throws IOException
+     * @see #isEmbeddableIn(String)
+     */
+    public void writeContentTo(OutputStream out) throws IOException {
+        out.write(bytes, contentOffset, offset + length - contentOffset);
+    }
+
+    /**
+     * @return a new parser over the document
+     * @throws XMLStreamException
+     */
+    public XMLStreamReader getXMLStreamReader() throws XMLStreamException {
+        return StAXHelper.createXMLStreamReader(getInputStream());
+    }
+
+    /**
+     * Get the name of the root element. Only the start of the document is parsed.
+     *
+     * @return the name of the root element
+     * @throws XMLStreamException
+     */
+    public QName getRootElementName() throws XMLStreamException {
+        QName name = rootElementName;
+        if (name == null) {
+            XMLStreamReader reader = getXMLStreamReader();
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        name = reader.getName();
+                        break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            if (name == null) {
+                throw new XMLStreamException("The document has no root element");
+            }
+            rootElementName = name;
+        }
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        if (!asciiCompatible) {
+            return super.toString();
+        }
+        try {
+            return new String(bytes, offset, length, encoding);
+        } catch (UnsupportedEncodingException e) {
+            return super.toString();
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private boolean startsWith(int position, String prefix) {
+        if (position + prefix.length() > offset + length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[position + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int position, String token) {
+        for (int i = position; i < offset + length; i++) {
+            if (startsWith(i, token)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getDeclaredEncoding(int start, int end) {
+        String declaration;
+        try {
+            declaration = new String(bytes, start, end - start, "ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            return null;
+        }
+        int index = declaration.indexOf("encoding");
+        if (index == -1) {
+            return null;
+        }
+        index = declaration.indexOf('=', index);
+        if (index == -1) {
+            return null;
+        }
+        index++;
+        while (index < declaration.length() && Character.isWhitespace(declaration.charAt(index))) {
+            index++;
+        }
+        if (index >= declaration.length()) {
+            return null;
+        }
+        char quote = declaration.charAt(index);
+        int close = declaration.indexOf(quote, index + 1);
+        if ((quote != '"' && quote != '\'') || close == -1) {
+            return null;
+        }
+        return declaration.substring(index + 1, close);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tuscany.sca.databinding.annotation.Immutable;
+import org.apache.tuscany.sca.interfacedef.Operation;
+import org.apache.tuscany.sca.interfacedef.impl.OperationImpl;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class DefaultImmutableTypeExtensionPointTestCase {
+
+    @Test
+    public void testImmutableTypes() {
+        ImmutableTypeExtensionPoint immutableTypes = new DefaultImmutableTypeExtensionPoint();
+        assertTrue(immutableTypes.isImmutable(int.class));
+        assertTrue(immutableTypes.isImmutable(String.class));
+        assertTrue(immutableTypes.isImmutable(BigDecimal.class));
+        assertTrue(immutableTypes.isImmutable(TimeUnit.class));
+        assertTrue(immutableTypes.isImmutable(Money.class));
+        assertFalse(immutableTypes.isImmutable(Date.class));
+        // A Number isn't immutable because of its superclass
+        assertFalse(immutableTypes.isImmutable(AtomicInteger.class));
+
+        assertFalse(immutableTypes.isImmutable(AccountId.class));
+        immutableTypes.addImmutableType(AccountId.class);
+        assertTrue(immutableTypes.isImmutable(AccountId.class));
+        assertTrue(immutableTypes.removeImmutableType(AccountId.class.getName()));
+        assertFalse(immutableTypes.isImmutable(AccountId.class));
+    }
+
+    @Test
+    public void testCopiesAvoided() {
+        ImmutableTypeExtensionPoint immutableTypes = new DefaultImmutableTypeExtensionPoint();
+        Operation operation = new OperationImpl();
+        operation.setName("transfer");
+        assertEquals(0, immutableTypes.getCopiesAvoided(operation));
+        immutableTypes.addCopiesAvoided(operation, 2);
+        immutableTypes.addCopiesAvoided(operation, 1);
+        assertEquals(3, immutableTypes.getCopiesAvoided(operation));
+        assertEquals(Long.valueOf(3), immutableTypes.getCopiesAvoided().get(operation));
+
+        AtomicLong counter = immutableTypes.getCopiesAvoidedCounter(operation);
+        assertSame(counter, immutableTypes.getCopiesAvoidedCounter(operation));
+        counter.incrementAndGet();
+        assertEquals(4, immutableTypes.getCopiesAvoided(operation));
+    }
+
+    @Test
+    public void testBuiltinImmutableTypes() {
+        assertTrue(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(long.class));
+        assertTrue(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(String.class));
+        assertTrue(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(TimeUnit.SECONDS.getClass()));
+        assertTrue(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(Money.class));
+        assertFalse(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(Date.class));
+        assertFalse(DefaultImmutableTypeExtensionPoint.isBuiltinImmutable(AccountId.class));
+    }
+
+    @Test
+    public void testCopiesAvoidedReleased() throws Exception {
+        ImmutableTypeExtensionPoint immutableTypes = new DefaultImmutableTypeExtensionPoint();
+        Operation operation = new OperationImpl();
+        operation.setName("transfer");
+        immutableTypes.addCopiesAvoided(operation, 1);
+        WeakReference<Operation> ref = new WeakReference<Operation>(operation);
+        operation = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(ref.get());
+        assertTrue(immutableTypes.getCopiesAvoided().isEmpty());
+    }
+
+    @Immutable
+    public static class Money {
+        private final BigDecimal amount;
+
+        public Money(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+
+    public static class AccountId {
+        private final String id;
+
+        public AccountId(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+}
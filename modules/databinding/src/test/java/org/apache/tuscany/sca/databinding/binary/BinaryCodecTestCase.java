@@ -0,0 +1,310 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.binary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+
+import org.apache.tuscany.sca.databinding.DefaultDataBindingExtensionPoint;
+import org.apache.tuscany.sca.databinding.DefaultTransformerExtensionPoint;
+import org.apache.tuscany.sca.databinding.impl.MediatorImpl;
+import org.apache.tuscany.sca.databinding.impl.TransformationContextImpl;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class BinaryCodecTestCase {
+
+    @Test
+    public void testSimpleTypes() throws Exception {
+        assertEquals(Integer.valueOf(-5), roundTrip(int.class, -5));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), roundTrip(Long.class, Long.MIN_VALUE));
+        assertEquals(Double.valueOf(1.5), roundTrip(double.class, 1.5));
+        assertEquals("h\u00e9llo", roundTrip(String.class, "h\u00e9llo"));
+        assertEquals(new BigDecimal("-12.345"), roundTrip(BigDecimal.class, new BigDecimal("-12.345")));
+        assertEquals(new QName("urn:test", "name", "t"), roundTrip(QName.class, new QName("urn:test", "name", "t")));
+        XMLGregorianCalendar calendar = DatatypeFactory.newInstance().newXMLGregorianCalendar("2008-11-12T10:00:00Z");
+        assertEquals(calendar, roundTrip(XMLGregorianCalendar.class, calendar));
+        assertEquals(Color.BLUE, roundTrip(Color.class, Color.BLUE));
+        assertNull(roundTrip(String.class, null));
+        assertTrue(Arrays.equals(new int[] {1, -1, 300}, (int[])roundTrip(int[].class, new int[] {1, -1, 300})));
+
+        // small ints take one byte after the tag
+        assertEquals(2, BinaryCodec.getCodec(Integer.class).encode(7).length);
+    }
+
+    @Test
+    public void testBean() throws Exception {
+        Order order = newOrder();
+        BinaryCodec codec = BinaryCodec.getCodec(Order.class);
+        assertSame(codec, BinaryCodec.getCodec(Order.class));
+        byte[] data = codec.encode(order);
+        Order copy = (Order)codec.decode(data, getClass().getClassLoader());
+
+        assertEquals("A-1", copy.getId());
+        assertEquals(Color.RED, copy.getColor());
+        assertEquals(order.getDate(), copy.getDate());
+        assertEquals(2, copy.getItems().size());
+        assertEquals("pen", copy.getItems().get(0).getName());
+        assertEquals(3, copy.getItems().get(0).getQuantity());
+        assertEquals(Arrays.asList("a", "b"), copy.getNotes());
+        assertEquals(Integer.valueOf(1), copy.getAttributes().get("priority"));
+        // a subtype of the declared type keeps its class
+        assertTrue(copy.getExtension() instanceof SpecialItem);
+        assertEquals("gift", ((SpecialItem)copy.getExtension()).getLabel());
+        assertEquals(order.getParent().getId(), copy.getParent().getId());
+
+        // several times smaller than the Java serialization of the same data
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(order);
+        oos.close();
+        assertTrue(data.length * 3 < bos.size());
+    }
+
+    @Test
+    public void testFaultAndTransformers() throws Exception {
+        OrderException fault = new OrderException("Out of stock");
+        fault.setCode(42);
+        DataTypeImpl<Class> dataType = new DataTypeImpl<Class>(OrderException.class, OrderException.class);
+        TransformationContextImpl context =
+            new TransformationContextImpl(dataType, dataType, getClass().getClassLoader(), null);
+        byte[] data = new Object2Binary().transform(fault, context);
+        OrderException copy = (OrderException)new Binary2Object().transform(data, context);
+        assertEquals("Out of stock", copy.getMessage());
+        assertEquals(42, copy.getCode());
+
+        // a cycle is reported instead of overflowing the stack
+        Order order = newOrder();
+        order.setParent(order);
+        try {
+            BinaryCodec.getCodec(Order.class).encode(order);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testJAXBThroughMediator() throws Exception {
+        // a bean introspected by the JAXB databinding has a direct path to and from the binary format
+        MediatorImpl mediator =
+            new MediatorImpl(new DefaultDataBindingExtensionPoint(), new DefaultTransformerExtensionPoint());
+        DataType jaxbType = new DataTypeImpl<Class>("javax.xml.bind.JAXBElement", Order.class, Order.class);
+        DataType binaryType = new DataTypeImpl<Class>(BinaryDataBinding.NAME, byte[].class, Order.class);
+
+        byte[] data = (byte[])mediator.mediate(newOrder(), jaxbType, binaryType, null);
+        Order copy = (Order)mediator.mediate(data, binaryType, jaxbType, null);
+        assertEquals("A-1", copy.getId());
+        assertEquals(2, copy.getItems().size());
+    }
+
+    private static Object roundTrip(Class<?> type, Object value) throws IOException {
+        BinaryCodec codec = BinaryCodec.getCodec(type);
+        return codec.decode(codec.encode(value), BinaryCodecTestCase.class.getClassLoader());
+    }
+
+    private static Order newOrder() {
+        Order order = new Order();
+        order.setId("A-1");
+        order.setColor(Color.RED);
+        order.setDate(new Date());
+        order.getItems().add(new Item("pen", 3));
+        order.getItems().add(new Item("ink", 1));
+        order.getNotes().add("a");
+        order.getNotes().add("b");
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("priority", 1);
+        order.setAttributes(attributes);
+        SpecialItem extension = new SpecialItem();
+        extension.setLabel("gift");
+        order.setExtension(extension);
+        Order parent = new Order();
+        parent.setId("P-1");
+        order.setParent(parent);
+        return order;
+    }
+
+    public static enum Color {
+        RED, GREEN, BLUE
+    }
+
+    public static class Item implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String name;
+        private int quantity;
+
+        public Item() {
+        }
+
+        public Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    public static class SpecialItem extends Item {
+        private static final long serialVersionUID = 1L;
+        private String label;
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+    public static class Order implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String id;
+        private Color color;
+        private Date date;
+        private List<Item> items = new ArrayList<Item>();
+        private List<String> notes;
+        private Map<String, Object> attributes;
+        private Item extension;
+        private Order parent;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public Color getColor() {
+            return color;
+        }
+
+        public void setColor(Color color) {
+            this.color = color;
+        }
+
+        public Date getDate() {
+            return date;
+        }
+
+        public void setDate(Date date) {
+            this.date = date;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+
+        // A JAXB style list property, without a setter
+        public List<String> getNotes() {
+            if (notes == null) {
+                notes = new ArrayList<String>();
+            }
+            return notes;
+        }
+
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+
+        public Item getExtension() {
+            return extension;
+        }
+
+        public void setExtension(Item extension) {
+            this.extension = extension;
+        }
+
+        public Order getParent() {
+            return parent;
+        }
+
+        public void setParent(Order parent) {
+            this.parent = parent;
+        }
+    }
+
+    public static class OrderException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private int code;
+
+        public OrderException() {
+        }
+
+        public OrderException(String message) {
+            super(message);
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public void setCode(int code) {
+            this.code = code;
+        }
+    }
+
+}
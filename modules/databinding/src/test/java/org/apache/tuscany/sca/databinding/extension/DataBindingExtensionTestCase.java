@@ -29,6 +29,7 @@ import org.apache.tuscany.sca.databinding.DataBindingExtensionPoint;
 import org.apache.tuscany.sca.databinding.DefaultDataBindingExtensionPoint;
 import org.apache.tuscany.sca.databinding.impl.BaseDataBinding;
 import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
 import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
 import org.junit.Test;
 import org.w3c.dom.Element;
@@ -60,6 +61,52 @@ public class DataBindingExtensionTestCase {
         assertEquals("dom", binding2.getName());
     }
 
+    @Test
+    public void testIntrospectionCache() {
+        CountingDataBinding elementBinding = new CountingDataBinding("element", Element.class);
+        CountingDataBinding payloadBinding = new CountingDataBinding("payload", Payload.class);
+        DataBindingExtensionPoint registry = new DefaultDataBindingExtensionPoint();
+        registry.addDataBinding(elementBinding);
+        registry.addDataBinding(payloadBinding);
+
+        assertEquals("payload", registry.introspectType(new Payload(), null).getDataBinding());
+        assertEquals("payload", registry.introspectType(new Payload(), null).getDataBinding());
+        // The second lookup goes straight to the databinding that recognized the class
+        assertEquals(1, elementBinding.count);
+        assertEquals(2, payloadBinding.count);
+
+        // Negative results are cached too
+        registry.introspectType(new Unknown(), null);
+        registry.introspectType(new Unknown(), null);
+        assertEquals(2, elementBinding.count);
+        assertEquals(3, payloadBinding.count);
+
+        // Adding a databinding invalidates the cache
+        registry.addDataBinding(new CountingDataBinding("unknown", Unknown.class));
+        assertEquals("unknown", registry.introspectType(new Unknown(), null).getDataBinding());
+        assertEquals(3, elementBinding.count);
+    }
+
+    private static class Payload {
+    }
+
+    private static class Unknown {
+    }
+
+    private static class CountingDataBinding extends BaseDataBinding {
+        private int count;
+
+        public CountingDataBinding(String name, Class<?> baseType) {
+            super(name, baseType);
+        }
+
+        @Override
+        public DataType introspect(Object value, Operation operation) {
+            count++;
+            return super.introspect(value, operation);
+        }
+    }
+
     private static class DataBinding1 extends BaseDataBinding {
 
         /**
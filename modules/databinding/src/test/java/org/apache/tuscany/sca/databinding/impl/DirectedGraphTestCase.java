@@ -97,6 +97,42 @@ public class DirectedGraphTestCase {
 
     }
 
+    @Test
+    public void testFrozenGraph() {
+        graph.addEdge("a", "b", null, 3, true);
+        graph.addEdge("b", "c", null, 1, true);
+        graph.addEdge("a", "d", null, 3, true);
+        graph.addEdge("d", "c", null, 3, true);
+        graph.addEdge("c", "c", null, 2, true);
+        graph.addEdge("f", "g", null, 2, false);
+        graph.addEdge("g", "j", null, 2, false);
+        graph.addEdge("j", "i", null, 2, true);
+        graph.addEdge("f", "h", null, 8, true);
+        graph.addEdge("h", "i", null, 8, true);
+        graph.freeze();
+        assertTrue(graph.isFrozen());
+
+        DirectedGraph<String, Object>.Path path = graph.getShortestPath("a", "c");
+        assertEquals(4, path.getWeight());
+        assertEquals(Arrays.asList(graph.getEdge("a", "b"), graph.getEdge("b", "c")), path.getEdges());
+        assertTrue(graph.getShortestPath("a", "a").getEdges().isEmpty());
+        assertEquals(1, graph.getShortestPath("c", "c").getEdges().size());
+        assertEquals(16, graph.getShortestPath("f", "i").getWeight());
+        Assert.assertNull(graph.getShortestPath("c", "a"));
+        Assert.assertNull(graph.getShortestPath("a", "x"));
+
+        // The table is rebuilt when the graph changes
+        graph.addEdge("d", "b", null, 1, true);
+        graph.addEdge("c", "x", null, 1, false);
+        path = graph.getShortestPath("a", "x");
+        assertEquals(5, path.getWeight());
+        assertEquals(3, path.getEdges().size());
+        graph.addEdge("a", "x", null, 10, true);
+        assertEquals(10, graph.getShortestPath("a", "x").getWeight());
+        assertTrue(graph.removeEdge("a", "x"));
+        assertEquals(5, graph.getShortestPath("a", "x").getWeight());
+    }
+
     @Test
     public void testSort() {
         graph.addEdge("a", "b");
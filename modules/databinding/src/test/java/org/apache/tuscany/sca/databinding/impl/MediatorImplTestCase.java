@@ -20,18 +20,25 @@ package org.apache.tuscany.sca.databinding.impl;
 
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.tuscany.sca.databinding.DataBindingExtensionPoint;
 import org.apache.tuscany.sca.databinding.DefaultDataBindingExtensionPoint;
 import org.apache.tuscany.sca.databinding.DefaultTransformerExtensionPoint;
+import org.apache.tuscany.sca.databinding.PullTransformer;
 import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
 import org.apache.tuscany.sca.databinding.TransformerExtensionPoint;
 import org.apache.tuscany.sca.databinding.xml.Node2String;
 import org.apache.tuscany.sca.databinding.xml.Node2Writer;
 import org.apache.tuscany.sca.databinding.xml.SAX2DOMPipe;
 import org.apache.tuscany.sca.databinding.xml.String2SAX;
 import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.Operation;
 import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.apache.tuscany.sca.interfacedef.impl.OperationImpl;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -119,4 +126,137 @@ public class MediatorImplTestCase {
         Assert.assertTrue(str != null && str.indexOf("<shipDate>1999-12-05</shipDate>") != -1);
     }
 
+    @Test
+    public void testPlanReuse() {
+        RecordingTransformer recorder = new RecordingTransformer();
+        mediator.getTransformers().addTransformer(recorder, true);
+        DataType sourceDataType = new DataTypeImpl<Class>(String.class.getName(), String.class, String.class);
+        DataType targetDataType = new DataTypeImpl<Class>("test", String.class, String.class);
+
+        Assert.assertEquals("x!", mediator.mediate("x", sourceDataType, targetDataType, null));
+        TransformationContext context = recorder.context;
+        Assert.assertEquals("y!", mediator.mediate("y", sourceDataType, targetDataType, null));
+        // the contexts are created for each mediation from the data types compiled into the plan
+        Assert.assertNotSame(context, recorder.context);
+        Assert.assertSame(context.getTargetDataType(), recorder.context.getTargetDataType());
+        // the plan holds a copy of the data types so that it doesn't keep them alive
+        Assert.assertNotSame(targetDataType, context.getTargetDataType());
+        Assert.assertEquals(targetDataType, context.getTargetDataType());
+        Assert.assertNotNull(context.getClassLoader());
+
+        // the metadata of the mediation is visible to the transformers
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put("key", "value");
+        mediator.mediate("z", sourceDataType, new DataTypeImpl<Class>("test", String.class, String.class), metadata);
+        Assert.assertEquals("value", recorder.context.getMetadata().get("key"));
+        Assert.assertSame(context.getTargetDataType(), recorder.context.getTargetDataType());
+    }
+
+    @Test
+    public void testPlanPerOperation() {
+        RecordingTransformer recorder = new RecordingTransformer();
+        mediator.getTransformers().addTransformer(recorder, true);
+        DataType sourceDataType = new DataTypeImpl<Class>(String.class.getName(), String.class, String.class);
+        DataType targetDataType = new DataTypeImpl<Class>("test", String.class, String.class);
+        Operation operation = new OperationImpl();
+        operation.setName("call");
+
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put("source.operation", operation);
+        mediator.mediate("x", sourceDataType, targetDataType, metadata);
+        TransformationContext context = recorder.context;
+        Assert.assertSame(operation, context.getSourceOperation());
+        mediator.mediate("x", sourceDataType, targetDataType, metadata);
+        Assert.assertSame(context.getTargetDataType(), recorder.context.getTargetDataType());
+
+        // an equal operation gets a plan of its own
+        Operation other = new OperationImpl();
+        other.setName("call");
+        metadata.put("source.operation", other);
+        mediator.mediate("x", sourceDataType, targetDataType, metadata);
+        Assert.assertNotSame(context.getTargetDataType(), recorder.context.getTargetDataType());
+        mediator.mediate("x", sourceDataType, targetDataType, null);
+        Assert.assertNotSame(context.getTargetDataType(), recorder.context.getTargetDataType());
+
+        // the contexts can be changed by the transformers
+        context.setSourceOperation(other);
+        Assert.assertSame(other, context.getSourceOperation());
+    }
+
+    @Test
+    public void testPlanDoesNotKeepMetadata() throws Exception {
+        RecordingTransformer recorder = new RecordingTransformer();
+        mediator.getTransformers().addTransformer(recorder, true);
+        DataType sourceDataType = new DataTypeImpl<Class>(String.class.getName(), String.class, String.class);
+        DataType targetDataType = new DataTypeImpl<Class>("test", String.class, String.class);
+
+        Map<String, Object> metadata = new HashMap<String, Object>();
+        metadata.put("wire", new Object());
+        WeakReference<Object> wire = new WeakReference<Object>(metadata.get("wire"));
+        mediator.mediate("x", sourceDataType, targetDataType, metadata);
+        metadata = null;
+        recorder.context = null;
+        for (int i = 0; i < 50 && wire.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(wire.get());
+    }
+
+    @Test
+    public void testPlanInvalidation() {
+        TransformerExtensionPoint transformers = mediator.getTransformers();
+        transformers.addTransformer(new RecordingTransformer(), true);
+        DataType sourceDataType = new DataTypeImpl<Class>(String.class.getName(), String.class, String.class);
+        DataType targetDataType = new DataTypeImpl<Class>("test", String.class, String.class);
+        Assert.assertEquals("x!", mediator.mediate("x", sourceDataType, targetDataType, null));
+
+        // the plan uses the transformer registered in place of the first one
+        transformers.addTransformer(new RecordingTransformer() {
+            @Override
+            public String transform(String source, TransformationContext context) {
+                return source + "?";
+            }
+        }, true);
+        Assert.assertEquals("x?", mediator.mediate("x", sourceDataType, targetDataType, null));
+
+        transformers.removeTransformer(String.class.getName(), "test");
+        try {
+            mediator.mediate("x", sourceDataType, targetDataType, null);
+            Assert.fail("TransformationException expected");
+        } catch (TransformationException e) {
+            // expected
+        }
+    }
+
+    private static class RecordingTransformer extends BaseTransformer<String, String> implements
+        PullTransformer<String, String> {
+        private TransformationContext context;
+
+        public String transform(String source, TransformationContext context) {
+            this.context = context;
+            return source + "!";
+        }
+
+        @Override
+        protected Class<String> getSourceType() {
+            return String.class;
+        }
+
+        @Override
+        protected Class<String> getTargetType() {
+            return String.class;
+        }
+
+        @Override
+        public String getTargetDataBinding() {
+            return "test";
+        }
+
+        @Override
+        public int getWeight() {
+            return 10;
+        }
+    }
+
 }
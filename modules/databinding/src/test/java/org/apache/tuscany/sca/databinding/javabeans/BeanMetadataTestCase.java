@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.javabeans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.tuscany.sca.databinding.impl.DOMHelper;
+import org.apache.tuscany.sca.databinding.impl.TransformationContextImpl;
+import org.apache.tuscany.sca.databinding.javabeans.BeanMetadata.BeanProperty;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class BeanMetadataTestCase {
+
+    @Test
+    public void testMetadata() throws Exception {
+        BeanMetadata metadata = BeanMetadata.getMetadata(Bean.class);
+        assertSame(metadata, BeanMetadata.getMetadata(Bean.class));
+
+        assertNotNull(metadata.getField("count"));
+        assertNull(metadata.getField("name"));
+        assertNotNull(metadata.getSetter("name"));
+        assertNotNull(metadata.getSetter("tags"));
+        assertNull(metadata.getSetter("missing"));
+
+        // The public field hides its getter
+        List<String> getters = new ArrayList<String>();
+        for (BeanProperty getter : metadata.getGetters()) {
+            getters.add(getter.getName());
+        }
+        assertTrue(getters.contains("name"));
+        assertTrue(getters.contains("tags"));
+        assertTrue(!getters.contains("count"));
+
+        List<String> properties = new ArrayList<String>();
+        for (BeanProperty property : metadata.getProperties()) {
+            properties.add(property.getName());
+        }
+        assertEquals(Arrays.asList("count", "name", "tags"), properties);
+
+        Bean bean = new Bean();
+        bean.setName("bean");
+        assertEquals("bean", metadata.getProperties().get(1).getValue(bean));
+    }
+
+    @Test
+    public void testXML2JavaBean() throws Exception {
+        Document document = DOMHelper.newDocument();
+        Element root = document.createElementNS(null, "Bean");
+        document.appendChild(root);
+        addElement(root, "name", "bean");
+        addElement(root, "count", "3");
+        addElement(root, "tags", "a");
+        addElement(root, "tags", "b");
+
+        TransformationContextImpl context = new TransformationContextImpl();
+        context.setTargetDataType(new DataTypeImpl<Class>(JavaBeansDataBinding.NAME, Bean.class, Bean.class));
+        Bean bean = (Bean)new DOMNode2JavaBeanTransformer().toJavaObject(null, root, context);
+        assertEquals("bean", bean.getName());
+        assertEquals(3, bean.count);
+        assertEquals(Arrays.asList("a", "b"), Arrays.asList(bean.getTags()));
+    }
+
+    private static void addElement(Element parent, String name, String text) {
+        Element element = parent.getOwnerDocument().createElementNS(null, name);
+        element.appendChild(parent.getOwnerDocument().createTextNode(text));
+        parent.appendChild(element);
+    }
+
+    public static class Bean {
+        public int count;
+        private String name;
+        private String[] tags;
+
+        public int getCount() {
+            return count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String[] getTags() {
+            return tags;
+        }
+
+        public void setTags(String[] tags) {
+            this.tags = tags;
+        }
+    }
+
+}
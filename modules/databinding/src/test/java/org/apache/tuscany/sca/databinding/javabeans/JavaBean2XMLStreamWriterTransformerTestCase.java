@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.javabeans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.tuscany.sca.databinding.DefaultDataBindingExtensionPoint;
+import org.apache.tuscany.sca.databinding.DefaultTransformerExtensionPoint;
+import org.apache.tuscany.sca.databinding.Mediator;
+import org.apache.tuscany.sca.databinding.PullTransformer;
+import org.apache.tuscany.sca.databinding.TransformationContext;
+import org.apache.tuscany.sca.databinding.TransformationException;
+import org.apache.tuscany.sca.databinding.Transformer;
+import org.apache.tuscany.sca.databinding.TransformerExtensionPoint;
+import org.apache.tuscany.sca.databinding.impl.BaseTransformer;
+import org.apache.tuscany.sca.databinding.impl.MediatorImpl;
+import org.apache.tuscany.sca.databinding.xml.BeanXMLStreamReaderImpl;
+import org.apache.tuscany.sca.databinding.xml.DOMDataBinding;
+import org.apache.tuscany.sca.databinding.xml.Node2String;
+import org.apache.tuscany.sca.databinding.xml.StAXHelper;
+import org.apache.tuscany.sca.databinding.xml.String2Node;
+import org.apache.tuscany.sca.interfacedef.DataType;
+import org.apache.tuscany.sca.interfacedef.impl.DataTypeImpl;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class JavaBean2XMLStreamWriterTransformerTestCase {
+
+    @Test
+    public void testTransformation() throws Exception {
+        Order order = new Order();
+        order.setId(7);
+        order.setCustomer("Jane");
+        order.setCodes(new long[] {1, 2});
+        order.getItems().add("Item1");
+        order.getItems().add("Item2");
+        order.getAttributes().put("key1", "value1");
+        order.setShipTo(new Address());
+        order.getShipTo().setCity("Paris");
+
+        String expected = StAXHelper.save(new BeanXMLStreamReaderImpl(null, order));
+
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter writer = StAXHelper.createXMLStreamWriter(sw);
+        new JavaBean2XMLStreamWriterTransformer().transform(order, writer, null);
+        assertTrue(isSame(expected, sw.toString()));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new JavaBean2OutputStreamTransformer().transform(order, bos, null);
+        assertTrue(isSame(expected, bos.toString("UTF-8")));
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+        Node node = new Node();
+        node.setNext(new Node());
+        node.getNext().setNext(node);
+        StringWriter sw = new StringWriter();
+        XMLStreamWriter writer = StAXHelper.createXMLStreamWriter(sw);
+        try {
+            new JavaBean2XMLStreamWriterTransformer().transform(node, writer, null);
+            fail("TransformationException expected");
+        } catch (TransformationException e) {
+            // expected
+        }
+
+        // A bean referenced twice is not a cycle
+        Address address = new Address();
+        address.setCity("Paris");
+        List<Address> addresses = new ArrayList<Address>();
+        addresses.add(address);
+        addresses.add(address);
+        Wrapper wrapper = new Wrapper();
+        wrapper.setAddresses(addresses);
+        sw = new StringWriter();
+        writer = StAXHelper.createXMLStreamWriter(sw);
+        new JavaBean2XMLStreamWriterTransformer().transform(wrapper, writer, null);
+        assertTrue(isSame(StAXHelper.save(new BeanXMLStreamReaderImpl(null, wrapper)), sw.toString()));
+    }
+
+    @Test
+    public void testMediation() throws Exception {
+        TransformerExtensionPoint transformers = new DefaultTransformerExtensionPoint();
+        Mediator mediator = new MediatorImpl(new DefaultDataBindingExtensionPoint(), transformers);
+        Address address = new Address();
+        address.setCity("Paris");
+        String expected = StAXHelper.save(new BeanXMLStreamReaderImpl(null, address));
+        DataType<Class> sourceType = new DataTypeImpl<Class>(JavaBeansDataBinding.NAME, Address.class, Address.class);
+
+        // the bean is written to the stream, no DOM is built on the way
+        String stream = InputStream.class.getName();
+        List<Transformer> chain = transformers.getTransformerChain(JavaBeansDataBinding.NAME, stream);
+        assertEquals(2, chain.size());
+        assertTrue(chain.get(0).toString().contains(JavaBean2OutputStreamTransformer.class.getName()));
+        DataType<Class> streamType = new DataTypeImpl<Class>(stream, InputStream.class, InputStream.class);
+        InputStream is = (InputStream)mediator.mediate(address, sourceType, streamType, null);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (int b = is.read(); b != -1; b = is.read()) {
+            bos.write(b);
+        }
+        assertTrue(isSame(expected, bos.toString("UTF-8")));
+
+        // and parsed from the stream when there is no direct path to the DOM
+        DataType<Class> nodeType =
+            new DataTypeImpl<Class>(DOMDataBinding.NAME, org.w3c.dom.Node.class, org.w3c.dom.Node.class);
+        Object node = mediator.mediate(address, sourceType, nodeType, null);
+        assertTrue(isSame(expected, new Node2String().transform((org.w3c.dom.Node)node, null)));
+
+        // a JAXB2Node keeps the paths through the DOM
+        transformers.addTransformer(new Bean2Node(), true);
+        chain = transformers.getTransformerChain(JavaBeansDataBinding.NAME, String.class.getName());
+        assertTrue(chain.get(0) instanceof Bean2Node);
+        chain = transformers.getTransformerChain(JavaBeansDataBinding.NAME, stream);
+        assertTrue(chain.get(0).toString().contains(JavaBean2OutputStreamTransformer.class.getName()));
+    }
+
+    private static boolean isSame(String xml1, String xml2) {
+        String2Node t = new String2Node();
+        Document document1 = (Document)t.transform(xml1, null);
+        Document document2 = (Document)t.transform(xml2, null);
+        document1.normalizeDocument();
+        document2.normalizeDocument();
+        return document1.getDocumentElement().isEqualNode(document2.getDocumentElement());
+    }
+
+    /**
+     * Registered like JAXB2Node in databinding-jaxb
+     */
+    private static class Bean2Node extends BaseTransformer<Object, org.w3c.dom.Node> implements
+        PullTransformer<Object, org.w3c.dom.Node> {
+
+        public org.w3c.dom.Node transform(Object source, TransformationContext context) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getSourceDataBinding() {
+            return JavaBeansDataBinding.NAME;
+        }
+
+        @Override
+        protected Class<Object> getSourceType() {
+            return Object.class;
+        }
+
+        @Override
+        protected Class<org.w3c.dom.Node> getTargetType() {
+            return org.w3c.dom.Node.class;
+        }
+
+        @Override
+        public int getWeight() {
+            return 90000;
+        }
+    }
+
+    public static class Order {
+        private int id;
+        private String customer;
+        private long[] codes;
+        private List<String> items = new ArrayList<String>();
+        private Map<String, String> attributes = new HashMap<String, String>();
+        private Address shipTo;
+        private String note;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public String getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(String customer) {
+            this.customer = customer;
+        }
+
+        public long[] getCodes() {
+            return codes;
+        }
+
+        public void setCodes(long[] codes) {
+            this.codes = codes;
+        }
+
+        public List<String> getItems() {
+            return items;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public Address getShipTo() {
+            return shipTo;
+        }
+
+        public void setShipTo(Address shipTo) {
+            this.shipTo = shipTo;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+    }
+
+    public static class Node {
+        private Node next;
+
+        public Node getNext() {
+            return next;
+        }
+
+        public void setNext(Node next) {
+            this.next = next;
+        }
+    }
+
+    public static class Wrapper {
+        private List<Address> addresses;
+
+        public List<Address> getAddresses() {
+            return addresses;
+        }
+
+        public void setAddresses(List<Address> addresses) {
+            this.addresses = addresses;
+        }
+    }
+
+    public static class Address {
+        private String city;
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+
+}
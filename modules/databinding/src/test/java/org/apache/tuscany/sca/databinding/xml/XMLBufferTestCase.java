@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.databinding.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ *
+ * @version $Rev$ $Date$
+ */
+public class XMLBufferTestCase {
+    private static final String XML =
+        "<?xml version=\"1.0\" encoding='ISO-8859-1'?>\n<p:order xmlns:p=\"http://orders\"><p:item>1</p:item></p:order>";
+
+    @Test
+    public void testProlog() throws Exception {
+        byte[] bytes = ("junk" + XML).getBytes("ISO-8859-1");
+        XMLBuffer buffer = new XMLBuffer(ByteBuffer.wrap(bytes, 4, bytes.length - 4).slice());
+        assertEquals(XML.length(), buffer.getLength());
+        assertEquals("ISO-8859-1", buffer.getEncoding());
+        assertTrue(buffer.isEmbeddableIn("iso-8859-1"));
+        assertTrue(buffer.isEmbeddableIn("latin1"));
+        assertFalse(buffer.isEmbeddableIn("UTF-8"));
+        assertEquals(new QName("http://orders", "order"), buffer.getRootElementName());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        buffer.writeContentTo(bos);
+        assertEquals(XML.substring(XML.indexOf("<p:order")), bos.toString("ISO-8859-1"));
+
+        XMLBuffer plain = new XMLBuffer("<a/>".getBytes("UTF-8"));
+        assertEquals("UTF-8", plain.getEncoding());
+        assertTrue(plain.isEmbeddableIn(null));
+        assertFalse(new XMLBuffer("<a/>".getBytes("UTF-16")).isEmbeddableIn("UTF-16"));
+    }
+
+    @Test
+    public void testPrologWithMarkup() throws Exception {
+        String[] documents =
+            {"<?xml version=\"1.0\"?>\n<!DOCTYPE a [<!ENTITY e \"x\">]><a>&e;</a>",
+             "<?xml version=\"1.0\"?><!-- comment --><a/>",
+             "<?xml-stylesheet href=\"a.xsl\"?><a/>",
+             "<!-- comment --><a/>"};
+        for (String document : documents) {
+            XMLBuffer buffer = new XMLBuffer(document.getBytes("UTF-8"));
+            assertFalse(document, buffer.isEmbeddableIn("UTF-8"));
+            assertEquals(new QName("a"), buffer.getRootElementName());
+        }
+        assertTrue(new XMLBuffer("<?xml version=\"1.0\"?>\r\n<a/>".getBytes("UTF-8")).isEmbeddableIn("UTF-8"));
+    }
+
+    @Test
+    public void testTransformations() throws Exception {
+        XMLBuffer buffer = new XMLBuffer(XML.getBytes("ISO-8859-1"));
+
+        XMLStreamReader reader = new XMLBuffer2XMLStreamReader().transform(buffer, null);
+        XMLBuffer copy = new XMLStreamReader2XMLBuffer().transform(reader, null);
+        assertEquals(new QName("http://orders", "order"), copy.getRootElementName());
+
+        Node node = new XMLBuffer2Node().transform(buffer, null);
+        Element root = ((Document)node).getDocumentElement();
+        assertEquals("order", root.getLocalName());
+        assertEquals("1", root.getFirstChild().getTextContent());
+        copy = new Node2XMLBuffer().transform(node, null);
+        assertEquals(new QName("http://orders", "order"), copy.getRootElementName());
+    }
+}
@@ -20,11 +20,15 @@ package org.apache.tuscany.sca.implementation.java.invocation;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.tuscany.sca.core.factory.InstanceWrapper;
+import org.apache.tuscany.sca.core.invocation.ThreadMessageContext;
 import org.apache.tuscany.sca.core.scope.Scope;
 import org.apache.tuscany.sca.core.scope.ScopeContainer;
 import org.apache.tuscany.sca.core.scope.ScopedRuntimeComponent;
+import org.apache.tuscany.sca.core.scope.TargetDestructionException;
 import org.apache.tuscany.sca.implementation.java.JavaImplementation;
 import org.apache.tuscany.sca.interfacedef.ConversationSequence;
 import org.apache.tuscany.sca.interfacedef.DataType;
@@ -49,12 +53,20 @@ public class JavaImplementationInvoker implements Invoker, DataExchangeSemantics
     protected Method method;
     protected boolean allowsPBR;
 
+    // the accessor pre-linked to the method when the invocation chain is built
+    protected MethodAccessor accessor;
+
+    // the accessors for callback objects that don't implement the class declaring the method
+    private final ConcurrentMap<Class<?>, MethodAccessor> callbackAccessors =
+        new ConcurrentHashMap<Class<?>, MethodAccessor>();
+
     @SuppressWarnings("unchecked")
     protected final ScopeContainer scopeContainer;
 
     public JavaImplementationInvoker(Operation operation, Method method, RuntimeComponent component) {
         assert method != null : "Operation method cannot be null";
         this.method = method;
+        this.accessor = MethodAccessorFactory.getAccessor(method);
         this.operation = operation;
         this.scopeContainer = ((ScopedRuntimeComponent)component).getScopeContainer();
         this.allowsPBR = ((JavaImplementation)component.getImplementation()).isAllowsPassByReference(method);
@@ -86,16 +98,17 @@ public class JavaImplementationInvoker implements Invoker, DataExchangeSemantics
         if (scopeContainer != null) {
             Scope scope = scopeContainer.getScope();
             if (scope == Scope.REQUEST) {
-                contextId = Thread.currentThread();
+                contextId = ThreadMessageContext.getRequestContext();
             } else if (scope == Scope.CONVERSATION && parameters != null) {
                 contextId = parameters.getConversationID();
             }
         }
 
+        InstanceWrapper wrapper = null;
         try {
             // The following call might create a new conversation, as a result, the msg.getConversationID() might 
             // return a new value
-            InstanceWrapper wrapper = scopeContainer.getWrapper(contextId);
+            wrapper = scopeContainer.getWrapper(contextId);
 
             // detects whether the scope container has created a conversation Id. This will
             // happen in the case that the component has conversational scope but only the
@@ -115,24 +128,22 @@ public class JavaImplementationInvoker implements Invoker, DataExchangeSemantics
             // If the method couldn't be computed statically, or the instance being
             // invoked is a user-specified callback object that doesn't implement
             // the service interface from which the reflective method was obtained,
-            // compute the method object dynamically for this invocation.
-            Method imethod = method;
-            if (imethod == null || !imethod.getDeclaringClass().isInstance(instance)) {
-                try {
-                    imethod = JavaInterfaceUtil.findMethod(instance.getClass(), operation);
-                } catch (NoSuchMethodException e) {
-                    throw new IllegalArgumentException("Callback object does not provide method " + e.getMessage());
-                }
+            // resolve the method for the class of the instance (cached per class).
+            MethodAccessor imethod = accessor;
+            if (imethod == null || !method.getDeclaringClass().isInstance(instance)) {
+                imethod = getCallbackAccessor(instance.getClass());
             }
             
             Object ret;
             if (payload != null && !payload.getClass().isArray()) {
-                ret = imethod.invoke(instance, payload);
+                ret = imethod.invoke(instance, new Object[] {payload});
             } else {
                 ret = imethod.invoke(instance, (Object[])payload);
             }
 
-            scopeContainer.returnWrapper(wrapper, contextId);
+            InstanceWrapper returned = wrapper;
+            wrapper = null;
+            scopeContainer.returnWrapper(returned, contextId);
 
             if ((sequence == ConversationSequence.CONVERSATION_END) || (removeTemporaryConversationalComponentAfterCall)) {
                 // if end conversation, or we have the special case where a conversational
@@ -188,10 +199,37 @@ public class JavaImplementationInvoker implements Invoker, DataExchangeSemantics
                 
         } catch (Exception e) {
             msg.setFaultBody(e);           
+        } finally {
+            // An instance borrowed from a pooled scope container must go back to the pool
+            // even when the invocation fails
+            if (wrapper != null) {
+                try {
+                    scopeContainer.returnWrapper(wrapper, contextId);
+                } catch (TargetDestructionException e) {
+                    // the original fault is reported
+                }
+            }
         }
         return msg;
     }
 
+    /**
+     * Resolve the method for the operation on the given class once and cache it
+     */
+    private MethodAccessor getCallbackAccessor(Class<?> instanceClass) {
+        MethodAccessor callbackAccessor = callbackAccessors.get(instanceClass);
+        if (callbackAccessor == null) {
+            try {
+                Method imethod = JavaInterfaceUtil.findMethod(instanceClass, operation);
+                callbackAccessor = MethodAccessorFactory.getAccessor(imethod);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Callback object does not provide method " + e.getMessage());
+            }
+            callbackAccessors.put(instanceClass, callbackAccessor);
+        }
+        return callbackAccessor;
+    }
+
     public boolean allowsPassByReference() {
         return allowsPBR;
     }
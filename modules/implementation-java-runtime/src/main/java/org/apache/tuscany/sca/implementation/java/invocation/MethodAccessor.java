@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.implementation.java.invocation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Invokes a pre-linked Java method on a component implementation instance
+ *
+ * @version $Rev$ $Date$
+ */
+public interface MethodAccessor {
+
+    /**
+     * Get the method this accessor invokes
+     * @return the method
+     */
+    Method getMethod();
+
+    /**
+     * Invoke the method with the same contract as {@link Method#invoke(Object, Object...)}
+     *
+     * @param instance The target instance
+     * @param args The arguments, can be null if the method takes no arguments
+     * @return The result of the method, null for void methods
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException if the method throws an exception
+     */
+    Object invoke(Object instance, Object[] args) throws IllegalAccessException, InvocationTargetException;
+
+}
@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.tuscany.sca.implementation.java.invocation;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Creates {@link MethodAccessor}s. For public methods of public classes that only use public types a
+ * small class is generated that calls the method directly, other methods are invoked reflectively.
+ * Accessors are cached per class loader so that components sharing an implementation class share the
+ * generated code.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodAccessorFactory {
+    private static final Logger logger = Logger.getLogger(MethodAccessorFactory.class.getName());
+
+    private static final String ACCESSOR = Type.getInternalName(MethodAccessor.class);
+    private static final String METHOD_DESC = Type.getDescriptor(Method.class);
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    // The class loader that defines the accessor classes for each class loader of the implementation
+    // classes. The values are weak as an accessor class loader refers to its parent, it stays around as
+    // long as one of its accessors is in use
+    private final static Map<ClassLoader, WeakReference<AccessorClassLoader>> classLoaders =
+        Collections.synchronizedMap(new WeakHashMap<ClassLoader, WeakReference<AccessorClassLoader>>());
+
+    private MethodAccessorFactory() {
+    }
+
+    /**
+     * Get the accessor for a method
+     *
+     * @param method The method
+     * @return The accessor
+     */
+    public static MethodAccessor getAccessor(Method method) {
+        if (!isGeneratable(method)) {
+            return new ReflectiveMethodAccessor(method);
+        }
+        try {
+            return getAccessorClassLoader(method.getDeclaringClass()).getAccessor(method);
+        } catch (Throwable e) {
+            // Never fail the wire because of the optimization
+            logger.log(Level.FINE, "Unable to generate an accessor for " + method, e);
+            return new ReflectiveMethodAccessor(method);
+        }
+    }
+
+    /**
+     * The generated class lives in another class loader so it can only link against public
+     * classes and methods
+     */
+    private static boolean isGeneratable(Method method) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())
+            || declaringClass.getName().startsWith("java.")
+            || !isPublic(declaringClass)
+            || !isPublic(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isPublic(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static AccessorClassLoader getAccessorClassLoader(final Class<?> declaringClass) {
+        ClassLoader parent = declaringClass.getClassLoader();
+        synchronized (classLoaders) {
+            WeakReference<AccessorClassLoader> ref = classLoaders.get(parent);
+            AccessorClassLoader classLoader = ref != null ? ref.get() : null;
+            if (classLoader == null) {
+                // Allow privileged access to create the class loader. Requires RuntimePermission in security policy.
+                classLoader = AccessController.doPrivileged(new PrivilegedAction<AccessorClassLoader>() {
+                    public AccessorClassLoader run() {
+                        return new AccessorClassLoader(declaringClass.getClassLoader());
+                    }
+                });
+                classLoaders.put(parent, new WeakReference<AccessorClassLoader>(classLoader));
+            }
+            return classLoader;
+        }
+    }
+
+    private static byte[] generateAccessorClass(String name, Method method) {
+        String className = name.replace('.', '/');
+        Class<?> declaringClass = method.getDeclaringClass();
+        String owner = Type.getInternalName(declaringClass);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_5,
+                 Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER,
+                 className,
+                 null,
+                 "java/lang/Object",
+                 new String[] {ACCESSOR});
+        cw.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "method", METHOD_DESC, null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + METHOD_DESC + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitFieldInsn(Opcodes.PUTFIELD, className, "method", METHOD_DESC);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "getMethod", "()" + METHOD_DESC, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, className, "method", METHOD_DESC);
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // Object invoke(Object instance, Object[] args) { return ((Owner)instance).method((T0)args[0], ...); }
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC,
+                            "invoke",
+                            "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;",
+                            null,
+                            new String[] {"java/lang/IllegalAccessException",
+                                          "java/lang/reflect/InvocationTargetException"});
+        mv.visitCode();
+
+        // Like Method.invoke(), a null instance raises a NullPointerException
+        Label notNull = new Label();
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+        throwException(mv, "java/lang/NullPointerException", null);
+        mv.visitLabel(notNull);
+
+        // and the arguments that don't match the parameters raise an IllegalArgumentException
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 0) {
+            Label noArgs = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitJumpInsn(Opcodes.IFNULL, noArgs);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitInsn(Opcodes.ARRAYLENGTH);
+            mv.visitJumpInsn(Opcodes.IFEQ, noArgs);
+            throwException(mv, "java/lang/IllegalArgumentException", "wrong number of arguments");
+            mv.visitLabel(noArgs);
+        }
+        Label argStart = new Label();
+        Label argEnd = new Label();
+        Label argHandler = new Label();
+        mv.visitTryCatchBlock(argStart, argEnd, argHandler, "java/lang/ClassCastException");
+        mv.visitTryCatchBlock(argStart, argEnd, argHandler, "java/lang/NullPointerException");
+        mv.visitLabel(argStart);
+        if (parameterTypes.length != 0) {
+            Label lengthMatches = new Label();
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitInsn(Opcodes.ARRAYLENGTH);
+            pushInt(mv, parameterTypes.length);
+            mv.visitJumpInsn(Opcodes.IF_ICMPEQ, lengthMatches);
+            throwException(mv, "java/lang/IllegalArgumentException", "wrong number of arguments");
+            mv.visitLabel(lengthMatches);
+        }
+        mv.visitVarInsn(Opcodes.ALOAD, 1);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+        for (int i = 0; i < parameterTypes.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(Opcodes.AALOAD);
+            unbox(mv, Type.getType(parameterTypes[i]));
+        }
+        mv.visitLabel(argEnd);
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+        mv.visitLabel(start);
+        if (declaringClass.isInterface()) {
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, owner, method.getName(), Type.getMethodDescriptor(method));
+        } else {
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, method.getName(), Type.getMethodDescriptor(method));
+        }
+        mv.visitLabel(end);
+        Type returnType = Type.getReturnType(method);
+        if (returnType.getSort() == Type.VOID) {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+        } else {
+            box(mv, returnType);
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+
+        // Exceptions thrown by the method are wrapped as Method.invoke() does
+        mv.visitLabel(handler);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/reflect/InvocationTargetException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitVarInsn(Opcodes.ALOAD, 3);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                           "java/lang/reflect/InvocationTargetException",
+                           "<init>",
+                           "(Ljava/lang/Throwable;)V");
+        mv.visitInsn(Opcodes.ATHROW);
+
+        // new IllegalArgumentException("argument type mismatch", e)
+        mv.visitLabel(argHandler);
+        mv.visitVarInsn(Opcodes.ASTORE, 3);
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn("argument type mismatch");
+        mv.visitVarInsn(Opcodes.ALOAD, 3);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+                           "java/lang/IllegalArgumentException",
+                           "<init>",
+                           "(Ljava/lang/String;Ljava/lang/Throwable;)V");
+        mv.visitInsn(Opcodes.ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void throwException(MethodVisitor mv, String type, String message) {
+        mv.visitTypeInsn(Opcodes.NEW, type);
+        mv.visitInsn(Opcodes.DUP);
+        if (message == null) {
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, type, "<init>", "()V");
+        } else {
+            mv.visitLdcInsn(message);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, type, "<init>", "(Ljava/lang/String;)V");
+        }
+        mv.visitInsn(Opcodes.ATHROW);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        String wrapper = getWrapper(type);
+        if (wrapper != null) {
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, wrapper, "valueOf", "(" + type.getDescriptor()
+                + ")L"
+                + wrapper
+                + ";");
+        }
+    }
+
+    private static void unbox(MethodVisitor mv, Type type) {
+        Type[] sources = getWideningSources(type);
+        if (sources == null) {
+            mv.visitTypeInsn(Opcodes.CHECKCAST, type.getInternalName());
+            return;
+        }
+        // Accept the wrapper of the type and, like Method.invoke(), the wrappers of the types that
+        // widen to it. Anything else, null included, is an argument type mismatch.
+        Label done = new Label();
+        for (Type source : sources) {
+            String wrapper = getWrapper(source);
+            Label next = new Label();
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, wrapper);
+            mv.visitJumpInsn(Opcodes.IFEQ, next);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, wrapper);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapper, source.getClassName() + "Value", "()"
+                + source.getDescriptor());
+            widen(mv, source, type);
+            mv.visitJumpInsn(Opcodes.GOTO, done);
+            mv.visitLabel(next);
+        }
+        throwException(mv, "java/lang/IllegalArgumentException", "argument type mismatch");
+        mv.visitLabel(done);
+    }
+
+    /**
+     * The primitive types whose wrappers can be passed for a parameter of the given type, the type
+     * itself first, following the widening primitive conversions of the JLS
+     *
+     * @return the types, or null if the type is not primitive
+     */
+    private static Type[] getWideningSources(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return new Type[] {Type.BOOLEAN_TYPE};
+            case Type.CHAR:
+                return new Type[] {Type.CHAR_TYPE};
+            case Type.BYTE:
+                return new Type[] {Type.BYTE_TYPE};
+            case Type.SHORT:
+                return new Type[] {Type.SHORT_TYPE, Type.BYTE_TYPE};
+            case Type.INT:
+                return new Type[] {Type.INT_TYPE, Type.CHAR_TYPE, Type.SHORT_TYPE, Type.BYTE_TYPE};
+            case Type.LONG:
+                return new Type[] {Type.LONG_TYPE, Type.INT_TYPE, Type.CHAR_TYPE, Type.SHORT_TYPE, Type.BYTE_TYPE};
+            case Type.FLOAT:
+                return new Type[] {Type.FLOAT_TYPE, Type.LONG_TYPE, Type.INT_TYPE, Type.CHAR_TYPE, Type.SHORT_TYPE,
+                                   Type.BYTE_TYPE};
+            case Type.DOUBLE:
+                return new Type[] {Type.DOUBLE_TYPE, Type.FLOAT_TYPE, Type.LONG_TYPE, Type.INT_TYPE, Type.CHAR_TYPE,
+                                   Type.SHORT_TYPE, Type.BYTE_TYPE};
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Convert the primitive on the stack. byte, short, char and int are all ints on the stack.
+     */
+    private static void widen(MethodVisitor mv, Type from, Type to) {
+        int fromSort = isIntOnStack(from) ? Type.INT : from.getSort();
+        int toSort = isIntOnStack(to) ? Type.INT : to.getSort();
+        if (fromSort == toSort) {
+            return;
+        }
+        if (fromSort == Type.INT) {
+            mv.visitInsn(toSort == Type.LONG ? Opcodes.I2L : toSort == Type.FLOAT ? Opcodes.I2F : Opcodes.I2D);
+        } else if (fromSort == Type.LONG) {
+            mv.visitInsn(toSort == Type.FLOAT ? Opcodes.L2F : Opcodes.L2D);
+        } else {
+            mv.visitInsn(Opcodes.F2D);
+        }
+    }
+
+    private static boolean isIntOnStack(Type type) {
+        int sort = type.getSort();
+        return sort == Type.BYTE || sort == Type.SHORT || sort == Type.CHAR || sort == Type.INT;
+    }
+
+    private static String getWrapper(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Invokes the method through reflection
+     */
+    private static class ReflectiveMethodAccessor implements MethodAccessor {
+        private final Method method;
+
+        private ReflectiveMethodAccessor(Method method) {
+            this.method = method;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object invoke(Object instance, Object[] args) throws IllegalAccessException,
+            InvocationTargetException {
+            return method.invoke(instance, args);
+        }
+    }
+
+    /**
+     * Defines the generated accessor classes of the implementation classes of one class loader and
+     * keeps their accessors. MethodAccessor is always resolved from this factory's class loader,
+     * everything else from the class loader of the implementation classes.
+     */
+    private static class AccessorClassLoader extends ClassLoader {
+        private final Map<Method, MethodAccessor> accessors = new HashMap<Method, MethodAccessor>();
+
+        private AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private synchronized MethodAccessor getAccessor(Method method) throws Exception {
+            MethodAccessor accessor = accessors.get(method);
+            if (accessor == null) {
+                String name = method.getDeclaringClass().getName() + "$$TuscanyAccessor" + counter.incrementAndGet();
+                byte[] byteArray = generateAccessorClass(name, method);
+                Class<?> accessorClass = defineClass(name, byteArray, 0, byteArray.length);
+                accessor = (MethodAccessor)accessorClass.getConstructor(Method.class).newInstance(method);
+                accessors.put(method, accessor);
+            }
+            return accessor;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.equals(MethodAccessor.class.getName())) {
+                return MethodAccessor.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.    
+ */
+
+package org.apache.tuscany.sca.implementation.java.invocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class MethodAccessorFactoryTestCase {
+
+    @Test
+    public void testInvoke() throws Exception {
+        Target target = new Target();
+        MethodAccessor accessor = getAccessor("add", int.class, long.class);
+        assertTrue(accessor.getClass().getName().contains("$$TuscanyAccessor"));
+        assertEquals(Long.valueOf(5), accessor.invoke(target, new Object[] {Integer.valueOf(2), Long.valueOf(3)}));
+        // A narrower wrapper is widened like Method.invoke() does
+        assertEquals(Long.valueOf(5), accessor.invoke(target, new Object[] {Integer.valueOf(2), Integer.valueOf(3)}));
+        assertEquals("Hello World", getAccessor("hello", String.class).invoke(target, new Object[] {"World"}));
+        assertNull(getAccessor("run").invoke(target, null));
+        assertNull(getAccessor("run").invoke(target, new Object[0]));
+        assertEquals(3, target.runs);
+    }
+
+    @Test
+    public void testSameAccessor() throws Exception {
+        assertSame(getAccessor("hello", String.class), getAccessor("hello", String.class));
+    }
+
+    @Test
+    public void testWidening() throws Exception {
+        Target target = new Target();
+        MethodAccessor accessor = getAccessor("primitives", int.class, long.class, double.class);
+        assertTrue(accessor.getClass().getName().contains("$$TuscanyAccessor"));
+        Method method = accessor.getMethod();
+        Object[][] valid =
+            { {Integer.valueOf(1), Long.valueOf(2), Double.valueOf(3.5)},
+             {Byte.valueOf((byte)1), Short.valueOf((short)2), Float.valueOf(3.5f)},
+             {Character.valueOf('a'), Character.valueOf('b'), Character.valueOf('c')},
+             {Short.valueOf((short)-1), Integer.valueOf(-2), Long.valueOf(-3)}};
+        for (Object[] args : valid) {
+            assertEquals(method.invoke(target, args), accessor.invoke(target, args));
+        }
+        // Narrowing conversions are rejected, as Method.invoke() does
+        Object[][] invalid =
+            { {Long.valueOf(1), Long.valueOf(2), Double.valueOf(3)},
+             {Double.valueOf(1.5), Long.valueOf(2), Double.valueOf(3)},
+             {Integer.valueOf(1), Float.valueOf(2), Double.valueOf(3)},
+             {Integer.valueOf(1), Long.valueOf(2), Boolean.TRUE}};
+        for (Object[] args : invalid) {
+            assertIllegalArgument(new ReflectiveAccessor(method), target, args);
+            assertIllegalArgument(accessor, target, args);
+        }
+        MethodAccessor character = getAccessor("character", char.class);
+        assertEquals("b", character.invoke(target, new Object[] {Character.valueOf('b')}));
+        assertIllegalArgument(character, target, new Object[] {Integer.valueOf('b')});
+    }
+
+    @Test
+    public void testIllegalArguments() throws Exception {
+        Target target = new Target();
+        MethodAccessor accessor = getAccessor("add", int.class, long.class);
+        assertIllegalArgument(accessor, target, new Object[] {"2", Long.valueOf(3)});
+        assertIllegalArgument(accessor, target, new Object[] {null, Long.valueOf(3)});
+        assertIllegalArgument(accessor, target, new Object[] {Integer.valueOf(2)});
+        assertIllegalArgument(accessor, target, null);
+        assertIllegalArgument(accessor, "target", new Object[] {Integer.valueOf(2), Long.valueOf(3)});
+        assertIllegalArgument(getAccessor("hello", String.class), target, new Object[] {Integer.valueOf(2)});
+        assertIllegalArgument(getAccessor("run"), target, new Object[] {"extra"});
+        try {
+            accessor.invoke(null, new Object[] {Integer.valueOf(2), Long.valueOf(3)});
+            fail();
+        } catch (NullPointerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvocationTargetException() throws Exception {
+        try {
+            getAccessor("fail", String.class).invoke(new Target(), new Object[] {"failed"});
+            fail();
+        } catch (InvocationTargetException e) {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testNonPublicTypes() throws Exception {
+        MethodAccessor accessor = getAccessor("echo", Hidden.class);
+        assertTrue(!accessor.getClass().getName().contains("$$TuscanyAccessor"));
+        Hidden hidden = new Hidden();
+        assertSame(hidden, accessor.invoke(new Target(), new Object[] {hidden}));
+        assertIllegalArgument(accessor, new Target(), new Object[] {"hidden"});
+    }
+
+    private static MethodAccessor getAccessor(String name, Class<?>... parameterTypes) throws Exception {
+        Method method = Target.class.getMethod(name, parameterTypes);
+        return MethodAccessorFactory.getAccessor(method);
+    }
+
+    private static void assertIllegalArgument(MethodAccessor accessor, Object target, Object[] args) throws Exception {
+        try {
+            accessor.invoke(target, args);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static class ReflectiveAccessor implements MethodAccessor {
+        private final Method method;
+
+        private ReflectiveAccessor(Method method) {
+            this.method = method;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public Object invoke(Object instance, Object[] args) throws IllegalAccessException,
+            InvocationTargetException {
+            return method.invoke(instance, args);
+        }
+    }
+
+    public static class Target {
+        private int runs = 1;
+
+        public long add(int a, long b) {
+            return a + b;
+        }
+
+        public String primitives(int a, long b, double c) {
+            return a + " " + b + " " + c;
+        }
+
+        public String character(char c) {
+            return String.valueOf(c);
+        }
+
+        public String hello(String name) {
+            return "Hello " + name;
+        }
+
+        public void run() {
+            runs++;
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+        public Hidden echo(Hidden hidden) {
+            return hidden;
+        }
+    }
+
+    static class Hidden {
+    }
+}